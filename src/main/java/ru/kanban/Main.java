@@ -1,8 +1,8 @@
 package ru.kanban;
 
-import java.sql.Connection;
 import java.util.List;
 import ru.kanban.configurations.Config;
+import ru.kanban.configurations.PoolOptions;
 import ru.kanban.dao.DbHistoryDao;
 import ru.kanban.dao.DbTaskDao;
 import ru.kanban.model.Epic;
@@ -13,6 +13,7 @@ import ru.kanban.service.HistoryService;
 import ru.kanban.service.HistoryServiceImpl;
 import ru.kanban.service.TaskService;
 import ru.kanban.service.TaskServiceImpl;
+import ru.kanban.utils.ConnectionPool;
 import ru.kanban.utils.DbUtils;
 import ru.kanban.utils.Managers;
 import ru.kanban.validator.TaskValidator;
@@ -33,9 +34,9 @@ public class Main {
         Config config = new Config();
         config.load("/db/liquibase.properties");
 
-        try (Connection connection = DbUtils.getConnection(config);
-             DbHistoryDao historyDao = Managers.getDbHistoryManager(connection);
-             DbTaskDao taskDao = Managers.getDbManager(connection)
+        try (ConnectionPool pool = DbUtils.createPool(config, new PoolOptions());
+             DbHistoryDao historyDao = Managers.getDbHistoryManager(pool);
+             DbTaskDao taskDao = Managers.getDbManager(pool)
         ) {
             TaskValidator validator = new TaskValidator();
             HistoryService historyService = new HistoryServiceImpl(historyDao);
@@ -0,0 +1,113 @@
+package ru.kanban.configurations;
+
+import java.sql.Connection;
+import java.time.Duration;
+
+/**
+ * Настройки пула соединений с БД {@link ru.kanban.utils.ConnectionPool}.
+ */
+public class PoolOptions {
+    private int maxSize = 10;
+    private Duration acquireTimeout = Duration.ofSeconds(30);
+    private Duration idleTimeout = Duration.ofMinutes(10);
+    private Duration validationInterval = Duration.ofSeconds(5);
+    private int validationTimeoutSeconds = 2;
+    private int isolation = Connection.TRANSACTION_READ_COMMITTED;
+    private int statementCacheSize = 64;
+    private Integer prepareThreshold;
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize максимальное количество открытых соединений. По умолчанию 10
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getAcquireTimeout() {
+        return acquireTimeout;
+    }
+
+    /**
+     * @param acquireTimeout время ожидания свободного соединения, после которого получение соединения
+     *                       завершается ошибкой. По умолчанию 30 секунд
+     */
+    public void setAcquireTimeout(Duration acquireTimeout) {
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout время простоя, после которого свободное соединение закрывается.
+     *                    null - простаивающие соединения не закрываются. По умолчанию 10 минут
+     */
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public Duration getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @param validationInterval время простоя, после которого соединение проверяется перед выдачей.
+     *                           {@link Duration#ZERO} - проверка при каждой выдаче. По умолчанию 5 секунд
+     */
+    public void setValidationInterval(Duration validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    /**
+     * @param validationTimeoutSeconds время ожидания ответа на проверку соединения в секундах. По умолчанию 2
+     */
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public int getIsolation() {
+        return isolation;
+    }
+
+    /**
+     * @param isolation уровень изоляции, устанавливаемый соединению при создании и возврате в пул.
+     *                  По умолчанию {@link Connection#TRANSACTION_READ_COMMITTED}
+     */
+    public void setIsolation(int isolation) {
+        this.isolation = isolation;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @param statementCacheSize количество подготовленных запросов, кэшируемых каждым соединением.
+     *                           0 - запросы не кэшируются. По умолчанию 64
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public Integer getPrepareThreshold() {
+        return prepareThreshold;
+    }
+
+    /**
+     * @param prepareThreshold количество выполнений подготовленного запроса, после которого драйвер PostgreSQL
+     *                         создаёт серверный подготовленный запрос. null - значение драйвера (5).
+     *                         Для других БД не используется
+     */
+    public void setPrepareThreshold(Integer prepareThreshold) {
+        this.prepareThreshold = prepareThreshold;
+    }
+}
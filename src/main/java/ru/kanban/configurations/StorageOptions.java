@@ -0,0 +1,151 @@
+package ru.kanban.configurations;
+
+import java.time.Duration;
+import ru.kanban.storage.Durability;
+import ru.kanban.storage.HistoryRing;
+import ru.kanban.storage.TaskFormat;
+import ru.kanban.utils.Constants;
+
+/**
+ * Настройки файлового хранилища задач.
+ * По умолчанию хранилище работает в режиме полной перезаписи файла (снимок состояния), а каждая запись сразу
+ * пишется в файл в вызывающем потоке без сброса на диск ({@link Durability#WRITE_THROUGH}).
+ */
+public class StorageOptions {
+    private boolean journaled;
+    private long compactionJournalBytes;
+    private int compactionJournalRecords;
+    private Duration compactionInterval;
+    private Durability durability = Durability.WRITE_THROUGH;
+    private TaskFormat format = TaskFormat.CSV;
+    private int loadParallelism = 1;
+    private boolean historyRing;
+    private int historySlotSize = HistoryRing.DEFAULT_SLOT_SIZE;
+    private int historyCapacity = Constants.HISTORY_SIZE;
+
+    public boolean isJournaled() {
+        return journaled;
+    }
+
+    /**
+     * @param journaled true - каждое изменение дописывается в журнал ({@code <файл>.journal}),
+     *                  а файл со снимком состояния не перезаписывается
+     */
+    public void setJournaled(boolean journaled) {
+        this.journaled = journaled;
+    }
+
+    public long getCompactionJournalBytes() {
+        return compactionJournalBytes;
+    }
+
+    /**
+     * @param compactionJournalBytes размер журнала в байтах, при достижении которого запускается
+     *                               фоновое сжатие в снимок. 0 - порог не используется
+     */
+    public void setCompactionJournalBytes(long compactionJournalBytes) {
+        this.compactionJournalBytes = compactionJournalBytes;
+    }
+
+    public int getCompactionJournalRecords() {
+        return compactionJournalRecords;
+    }
+
+    /**
+     * @param compactionJournalRecords количество записей журнала, при достижении которого запускается
+     *                                 фоновое сжатие в снимок. 0 - порог не используется
+     */
+    public void setCompactionJournalRecords(int compactionJournalRecords) {
+        this.compactionJournalRecords = compactionJournalRecords;
+    }
+
+    public Duration getCompactionInterval() {
+        return compactionInterval;
+    }
+
+    /**
+     * @param compactionInterval период фонового сжатия журнала в снимок. null - периодическое сжатие отключено
+     */
+    public void setCompactionInterval(Duration compactionInterval) {
+        this.compactionInterval = compactionInterval;
+    }
+
+    public boolean isCompactionEnabled() {
+        return journaled
+                && (compactionJournalBytes > 0 || compactionJournalRecords > 0 || compactionInterval != null);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * @param durability гарантии сохранности дописываемых записей (файл задач в режиме снимка или журнал).
+     *                   По умолчанию {@link Durability#WRITE_THROUGH}. Запись фоновым потоком
+     *                   ({@link Durability#NONE}, {@link Durability#BATCHED}) и сброс на диск каждой записи
+     *                   ({@link Durability#PER_WRITE}) включаются явно
+     */
+    public void setDurability(Durability durability) {
+        this.durability = durability;
+    }
+
+    public TaskFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @param format формат нового файла задач. Существующий непустой файл сохраняет свой формат.
+     *               По умолчанию {@link TaskFormat#CSV}
+     */
+    public void setFormat(TaskFormat format) {
+        this.format = format;
+    }
+
+    public int getLoadParallelism() {
+        return loadParallelism;
+    }
+
+    /**
+     * @param loadParallelism количество потоков разбора файла задач при загрузке.
+     *                        1 (по умолчанию) - файл читается последовательно одним потоком
+     */
+    public void setLoadParallelism(int loadParallelism) {
+        this.loadParallelism = loadParallelism;
+    }
+
+    public boolean isHistoryRing() {
+        return historyRing;
+    }
+
+    /**
+     * @param historyRing true - новый файл истории создаётся фиксированного размера ({@link HistoryRing}):
+     *                    хранит только последние {@link #getHistoryCapacity()} просмотров
+     */
+    public void setHistoryRing(boolean historyRing) {
+        this.historyRing = historyRing;
+    }
+
+    public int getHistorySlotSize() {
+        return historySlotSize;
+    }
+
+    /**
+     * @param historySlotSize размер ячейки файла истории фиксированного размера в байтах.
+     *                        По умолчанию {@link HistoryRing#DEFAULT_SLOT_SIZE}
+     */
+    public void setHistorySlotSize(int historySlotSize) {
+        this.historySlotSize = historySlotSize;
+    }
+
+    public int getHistoryCapacity() {
+        return historyCapacity;
+    }
+
+    /**
+     * @param historyCapacity количество последних просмотров, хранимых в истории.
+     *                        По умолчанию {@link Constants#HISTORY_SIZE}
+     */
+    public void setHistoryCapacity(int historyCapacity) {
+        this.historyCapacity = historyCapacity;
+    }
+}
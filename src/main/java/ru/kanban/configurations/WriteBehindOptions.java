@@ -0,0 +1,35 @@
+package ru.kanban.configurations;
+
+import java.time.Duration;
+
+/**
+ * Настройки отложенной записи обновлений {@link ru.kanban.dao.WriteBehindTaskDao}.
+ * Оба ограничения задают максимальный объём обновлений, теряемых при аварийном завершении процесса.
+ */
+public class WriteBehindOptions {
+    private Duration flushInterval = Duration.ofSeconds(1);
+    private int maxPending = 1000;
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @param flushInterval период записи накопленных обновлений в хранилище. По умолчанию 1 секунда
+     */
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    /**
+     * @param maxPending количество задач с ожидающими записи обновлениями, при достижении которого
+     *                   обновления записываются сразу. По умолчанию 1000
+     */
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+}
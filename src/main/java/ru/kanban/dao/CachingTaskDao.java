@@ -0,0 +1,711 @@
+package ru.kanban.dao;
+
+import java.util.*;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.model.*;
+
+import static ru.kanban.model.TaskType.*;
+
+/**
+ * Кэширующая обёртка хранилища задач с чтением через кэш (read-through).
+ * Кэшируются задачи, прочитанные по ID ({@link #getTask(int)}, {@link #getEpic(int)}, {@link #getSubtask(int)}),
+ * ключ кэша - ID и тип задачи. Размер кэша ограничен, при переполнении вытесняется давно не читавшаяся
+ * задача (LRU). Изменения через обёртку удаляют из кэша затронутые задачи: изменение подзадачи - и её эпик,
+ * изменение эпика - и его подзадачи, так как хранилище пересчитывает статус эпика и хранит данные эпика в подзадаче.
+ * Внутри транзакции ({@link #begin()} - {@link #commit()}) прочитанные задачи и удаления из кэша копятся в
+ * транзакции потока и применяются к общему кэшу только при фиксации, при откате отбрасываются. Задачи, изменённые
+ * в транзакции, до фиксации читаются из хранилища.
+ * Чтение, начатое до фиксации чужого изменения этой задачи, не попадает в кэш после неё: изменения, прошедшие
+ * за время чтения, проверяются только для читаемых задач, поэтому изменения других задач не мешают кэшированию.
+ * Вложенные {@link #begin()} продолжают транзакцию потока, кэш обновляется при фиксации внешней транзакции.
+ * Кэш хранит собственные копии задач и при каждом чтении возвращает новую копию: изменение полученной задачи
+ * вызывающим кодом не меняет кэш, и откат транзакции не оставляет в кэше незафиксированных изменений.
+ */
+public class CachingTaskDao implements TaskDao, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CachingTaskDao.class);
+    private final TaskDao delegate;
+    private final int capacity;
+    private final Map<Key, Task> cache;
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+    /**
+     * Задачи, читаемые из хранилища, и изменения, прошедшие за время их чтения
+     */
+    private final Map<Key, Reading> reading = new HashMap<>();
+    private long clock;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param delegate хранилище задач
+     * @param capacity максимальное количество задач в кэше
+     */
+    public CachingTaskDao(TaskDao delegate, int capacity) {
+        if (capacity <= 0) {
+            log.error("Illegal cache capacity: {}", capacity);
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Task> eldest) {
+                if (size() > CachingTaskDao.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public Task addTask(Task task) {
+        return delegate.addTask(task);
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        return read(new Key(id, TASK), () -> delegate.getTask(id));
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return delegate.getTasks();
+    }
+
+    @Override
+    public Optional<Task> deleteTask(int id) {
+        Optional<Task> result = delegate.deleteTask(id);
+        invalidate(byKey(id, TASK));
+        return result;
+    }
+
+    @Override
+    public Optional<Task> updateTask(Task task) {
+        Optional<Task> result = delegate.updateTask(task);
+        invalidate(byKey(task.getId(), TASK));
+        return result;
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        delegate.deleteAllTasks();
+        invalidate(byType(TASK));
+    }
+
+    @Override
+    public Epic addEpic(Epic epic) {
+        return delegate.addEpic(epic);
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        return read(new Key(id, EPIC), () -> delegate.getEpic(id));
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        return delegate.getEpics();
+    }
+
+    @Override
+    public Optional<Epic> deleteEpic(int id) {
+        Optional<Epic> result = delegate.deleteEpic(id);
+        invalidate(byEpic(id));
+        return result;
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        delegate.deleteAllEpics();
+        invalidate(byType(EPIC).or(byType(SUBTASK)));
+    }
+
+    @Override
+    public Optional<Epic> updateEpic(Epic epic) {
+        Optional<Epic> result = delegate.updateEpic(epic);
+        invalidate(byEpic(epic.getId()));
+        return result;
+    }
+
+    @Override
+    public Subtask addSubtask(Subtask subtask) {
+        Subtask result = delegate.addSubtask(subtask);
+        invalidate(byKey(subtask.getEpic().getId(), EPIC));
+        return result;
+    }
+
+    @Override
+    public Optional<Subtask> getSubtask(int id) {
+        return read(new Key(id, SUBTASK), () -> delegate.getSubtask(id));
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return delegate.getSubtasks();
+    }
+
+    @Override
+    public Optional<Subtask> deleteSubtask(int id) {
+        Optional<Subtask> result = delegate.deleteSubtask(id);
+        invalidate(bySubtask(id, result.map(subtask -> subtask.getEpic().getId()).orElse(0)));
+        return result;
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        delegate.deleteAllSubtasks();
+        invalidate(byType(SUBTASK).or(byType(EPIC)));
+    }
+
+    @Override
+    public Optional<Subtask> updateSubtask(Subtask subtask) {
+        Optional<Subtask> result = delegate.updateSubtask(subtask);
+        invalidate(bySubtask(subtask.getId(), subtask.getEpic().getId()).or(byParent(Set.of(subtask.getId()))));
+        return result;
+    }
+
+    @Override
+    public void updateEpicStatus(int id, Status status) {
+        delegate.updateEpicStatus(id, status);
+        invalidate(byEpic(id));
+    }
+
+    @Override
+    public void refreshEpicStatus(int epicId) {
+        delegate.refreshEpicStatus(epicId);
+        invalidate(byEpic(epicId));
+    }
+
+    @Override
+    public void renewAllStatuses(String type, String status) {
+        delegate.renewAllStatuses(type, status);
+        invalidate(TASK.name().equals(type) ? byType(TASK) : byType(EPIC).or(byType(SUBTASK)));
+    }
+
+    @Override
+    public List<Status> getEpicSubtasksStatuses(int epicId) {
+        return delegate.getEpicSubtasksStatuses(epicId);
+    }
+
+    @Override
+    public EpicProgress getEpicProgress(int epicId) {
+        return delegate.getEpicProgress(epicId);
+    }
+
+    /**
+     * Задача, найденная в кэше, существует без обращения к хранилищу
+     */
+    @Override
+    public boolean existsById(int id, String type) {
+        Key key = new Key(id, TaskType.valueOf(type));
+        Transaction current = transaction.get();
+        if (current == null || !current.isInvalidated(key)) {
+            synchronized (this) {
+                if (cache.containsKey(key)) {
+                    return true;
+                }
+            }
+        }
+        return delegate.existsById(id, type);
+    }
+
+    /**
+     * Задачи из кэша возвращаются без обращения к хранилищу, остальные читаются одним обращением
+     * к хранилищу и попадают в кэш так же, как при чтении по одной
+     */
+    @Override
+    public List<Task> getByIds(int[] ids, TaskType[] types) {
+        Transaction current = transaction.get();
+        Task[] found = new Task[ids.length];
+        int[] missingIds = new int[ids.length];
+        TaskType[] missingTypes = new TaskType[ids.length];
+        int missing = 0;
+        long stamp;
+        synchronized (this) {
+            for (int i = 0; i < ids.length; i++) {
+                Key key = new Key(ids[i], types[i]);
+                Task cached = current != null && current.isInvalidated(key) ? null : cache.get(key);
+                if (cached != null) {
+                    hits++;
+                    found[i] = copy(cached);
+                } else {
+                    misses++;
+                    missingIds[missing] = ids[i];
+                    missingTypes[missing++] = types[i];
+                }
+            }
+            stamp = clock;
+        }
+        if (missing > 0) {
+            List<Key> cacheable = new ArrayList<>();
+            for (int i = 0; i < missing; i++) {
+                Key key = new Key(missingIds[i], missingTypes[i]);
+                if (current == null || !current.isInvalidated(key)) {
+                    cacheable.add(key);
+                }
+            }
+            startReading(cacheable);
+            Map<Key, Task> loaded = new HashMap<>();
+            try {
+                for (Task task : delegate.getByIds(Arrays.copyOf(missingIds, missing),
+                        Arrays.copyOf(missingTypes, missing))) {
+                    loaded.put(new Key(task.getId(), task.getType()), task);
+                }
+            } finally {
+                for (Key key : cacheable) {
+                    Task task = loaded.get(key);
+                    if (current != null && task != null) {
+                        current.load(key, copy(task), stamp);
+                    } else {
+                        finishReading(key, task == null ? null : copy(task), stamp);
+                    }
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (found[i] == null) {
+                    found[i] = loaded.get(new Key(ids[i], types[i]));
+                }
+            }
+        }
+        List<Task> result = new ArrayList<>(ids.length);
+        for (Task task : found) {
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> addTasks(List<Task> tasks) {
+        return delegate.addTasks(tasks);
+    }
+
+    @Override
+    public List<Subtask> addSubtasks(List<Subtask> subtasks) {
+        List<Subtask> result = delegate.addSubtasks(subtasks);
+        Set<Integer> epicIds = new HashSet<>();
+        subtasks.forEach(subtask -> epicIds.add(subtask.getEpic().getId()));
+        invalidate((key, task) -> key.type() == EPIC && epicIds.contains(key.id()));
+        return result;
+    }
+
+    @Override
+    public List<Task> updateTasks(List<Task> tasks) {
+        List<Task> result = delegate.updateTasks(tasks);
+        Set<Integer> ids = new HashSet<>();
+        tasks.forEach(task -> ids.add(task.getId()));
+        invalidate((key, task) -> key.type() == TASK && ids.contains(key.id()));
+        return result;
+    }
+
+    @Override
+    public List<Subtask> updateSubtasks(List<Subtask> subtasks) {
+        List<Subtask> result = delegate.updateSubtasks(subtasks);
+        Set<Integer> ids = new HashSet<>();
+        Set<Integer> epicIds = new HashSet<>();
+        subtasks.forEach(subtask -> {
+            ids.add(subtask.getId());
+            epicIds.add(subtask.getEpic().getId());
+        });
+        BiPredicate<Key, Task> updated = (key, task) -> key.type() == SUBTASK && ids.contains(key.id())
+                || key.type() == EPIC && epicIds.contains(key.id());
+        invalidate(updated.or(byParent(ids)));
+        return result;
+    }
+
+    @Override
+    public List<Task> deleteTasks(int... ids) {
+        List<Task> result = delegate.deleteTasks(ids);
+        Set<Integer> deleted = new HashSet<>();
+        Arrays.stream(ids).forEach(deleted::add);
+        invalidate((key, task) -> key.type() == TASK && deleted.contains(key.id()));
+        return result;
+    }
+
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return delegate.getTasks(afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        return delegate.getEpics(afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return delegate.getSubtasks(afterId, limit);
+    }
+
+    @Override
+    public void forEachTask(Consumer<? super Task> consumer) {
+        delegate.forEachTask(consumer);
+    }
+
+    @Override
+    public void forEachEpic(Consumer<? super Epic> consumer) {
+        delegate.forEachEpic(consumer);
+    }
+
+    @Override
+    public void forEachSubtask(Consumer<? super Subtask> consumer) {
+        delegate.forEachSubtask(consumer);
+    }
+
+    /**
+     * Начинает транзакцию потока. Вложенный вызов продолжает уже начатую транзакцию
+     */
+    @Override
+    public void begin() {
+        delegate.begin();
+        Transaction current = transaction.get();
+        if (current != null) {
+            current.depth++;
+            return;
+        }
+        transaction.set(new Transaction());
+    }
+
+    /**
+     * Фиксирует транзакцию хранилища. При фиксации внешней транзакции применяет к кэшу удаления
+     * и прочитанные в транзакции задачи
+     */
+    @Override
+    public void commit() {
+        Transaction current = transaction.get();
+        if (current != null && current.depth > 0) {
+            current.depth--;
+            delegate.commit();
+            return;
+        }
+        transaction.remove();
+        try {
+            delegate.commit();
+        } catch (RuntimeException e) {
+            if (current != null) {
+                current.discard();
+            }
+            throw e;
+        }
+        if (current != null && current.rollbackOnly) {
+            current.discard();
+        } else if (current != null) {
+            current.publish();
+        }
+    }
+
+    /**
+     * Откатывает транзакцию хранилища, прочитанные в транзакции задачи в кэш не попадают.
+     * Откат вложенной транзакции помечает внешнюю для отката: при её фиксации кэш не меняется
+     */
+    @Override
+    public void rollback() {
+        Transaction current = transaction.get();
+        if (current != null) {
+            current.discard();
+            if (current.depth > 0) {
+                current.depth--;
+                current.rollbackOnly = true;
+            } else {
+                transaction.remove();
+            }
+        }
+        delegate.rollback();
+    }
+
+    /**
+     * @return статистика кэша с момента создания
+     */
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, cache.size());
+    }
+
+    /**
+     * Очищает кэш, статистика сохраняется
+     */
+    public synchronized void clear() {
+        cache.clear();
+        changed((key, task) -> true);
+    }
+
+    /**
+     * Закрывает обёрнутое хранилище, если оно закрываемое
+     */
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> Optional<T> read(Key key, Loader<T> loader) {
+        Transaction current = transaction.get();
+        boolean changedInTransaction = current != null && current.isInvalidated(key);
+        long stamp;
+        synchronized (this) {
+            if (!changedInTransaction) {
+                Task cached = cache.get(key);
+                if (cached != null) {
+                    hits++;
+                    return Optional.of((T) copy(cached));
+                }
+            }
+            misses++;
+            stamp = clock;
+            if (!changedInTransaction) {
+                startReading(List.of(key));
+            }
+        }
+        if (changedInTransaction) {
+            return loader.load();
+        }
+        Optional<T> result = Optional.empty();
+        try {
+            result = loader.load();
+        } finally {
+            if (current != null && result.isPresent()) {
+                current.load(key, copy(result.get()), stamp);
+            } else {
+                finishReading(key, result.map(CachingTaskDao::copy).orElse(null), stamp);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Копия задачи для кэша или для вызывающего кода. Эпик копируется вместе с подзадачами,
+     * подзадача - вместе с копией своего эпика
+     */
+    private static Task copy(Task task) {
+        if (task instanceof Epic epic) {
+            return copy(epic);
+        }
+        if (task instanceof Subtask subtask) {
+            Epic epic = copy(subtask.getEpic());
+            for (Subtask sibling : epic.getSubtasks()) {
+                if (sibling.getId() == subtask.getId()) {
+                    return sibling;
+                }
+            }
+            return copy(subtask, epic);
+        }
+        Task result = new Task(task.getName(), task.getDescription(), task.getStatus());
+        result.setId(task.getId());
+        result.setViewed(task.isViewed());
+        return result;
+    }
+
+    /**
+     * Копия эпика с копиями его подзадач. Статус эпика копируется, а не пересчитывается
+     */
+    private static Epic copy(Epic epic) {
+        Epic result = new Epic(epic.getName(), epic.getDescription(), epic.getStatus());
+        result.setId(epic.getId());
+        result.setViewed(epic.isViewed());
+        epic.getSubtasks().forEach(subtask -> result.attachSubtask(copy(subtask, result)));
+        return result;
+    }
+
+    private static Subtask copy(Subtask subtask, Epic epic) {
+        Subtask result = new Subtask(subtask.getName(), subtask.getDescription(), subtask.getStatus(), epic);
+        result.setId(subtask.getId());
+        result.setViewed(subtask.isViewed());
+        return result;
+    }
+
+    private synchronized void startReading(List<Key> keys) {
+        keys.forEach(key -> reading.computeIfAbsent(key, k -> new Reading()).count++);
+    }
+
+    /**
+     * Завершает чтение задачи из хранилища. Задача попадает в кэш, если после начала чтения
+     * её не затронуло ни одно изменение
+     *
+     * @param task прочитанная задача, null - задача не найдена или не кэшируется
+     * @param stamp значение часов кэша на момент начала чтения
+     */
+    private synchronized void finishReading(Key key, Task task, long stamp) {
+        Reading current = reading.get(key);
+        if (task != null && current.changes.stream()
+                .noneMatch(change -> change.clock() > stamp && change.predicate().test(key, task))) {
+            cache.put(key, task);
+        }
+        if (--current.count == 0) {
+            reading.remove(key);
+        }
+    }
+
+    /**
+     * Запоминает изменение для задач, читаемых в данный момент из хранилища. Вызывается под блокировкой кэша
+     */
+    private void changed(BiPredicate<Key, Task> predicate) {
+        clock++;
+        Change change = new Change(clock, predicate);
+        reading.values().forEach(current -> current.changes.add(change));
+    }
+
+    private void invalidate(BiPredicate<Key, Task> predicate) {
+        Transaction current = transaction.get();
+        if (current != null) {
+            current.invalidations.add(predicate);
+            return;
+        }
+        remove(predicate);
+    }
+
+    private synchronized void remove(BiPredicate<Key, Task> predicate) {
+        cache.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue()));
+        changed(predicate);
+    }
+
+    private static BiPredicate<Key, Task> byKey(int id, TaskType type) {
+        return (key, task) -> key.id() == id && key.type() == type;
+    }
+
+    private static BiPredicate<Key, Task> byType(TaskType type) {
+        return (key, task) -> key.type() == type;
+    }
+
+    /**
+     * Эпик и его подзадачи
+     */
+    private static BiPredicate<Key, Task> byEpic(int epicId) {
+        return byKey(epicId, EPIC).or((key, task) -> task instanceof Subtask subtask
+                && subtask.getEpic().getId() == epicId);
+    }
+
+    /**
+     * Подзадача и её эпик. Если эпик неизвестен (0), удаляются все эпики
+     */
+    private static BiPredicate<Key, Task> bySubtask(int id, int epicId) {
+        BiPredicate<Key, Task> epic = epicId == 0 ? byType(EPIC) : byKey(epicId, EPIC);
+        return byKey(id, SUBTASK).or(epic);
+    }
+
+    /**
+     * Эпики, в которых лежит одна из подзадач. Нужны при переносе подзадачи в другой эпик
+     */
+    private static BiPredicate<Key, Task> byParent(Set<Integer> subtaskIds) {
+        return (key, task) -> task instanceof Epic epic
+                && epic.getSubtasks().stream().anyMatch(subtask -> subtaskIds.contains(subtask.getId()));
+    }
+
+    /**
+     * Ключ кэша - ID и тип задачи
+     */
+    private record Key(int id, TaskType type) {
+    }
+
+    /**
+     * Задача, прочитанная в транзакции, и значение часов кэша на момент начала чтения
+     */
+    private record Loaded(Task task, long stamp) {
+    }
+
+    /**
+     * Изменение, прошедшее во время чтения задач из хранилища
+     */
+    private record Change(long clock, BiPredicate<Key, Task> predicate) {
+    }
+
+    /**
+     * Незавершённые чтения одной задачи из хранилища и изменения, прошедшие за время чтения
+     */
+    private static final class Reading {
+        private final List<Change> changes = new ArrayList<>();
+        private int count;
+    }
+
+    /**
+     * Загрузка задачи из хранилища при промахе кэша
+     */
+    @FunctionalInterface
+    private interface Loader<T extends Task> {
+        Optional<T> load();
+    }
+
+    /**
+     * Статистика кэша
+     *
+     * @param hits      количество чтений из кэша
+     * @param misses    количество чтений из хранилища
+     * @param evictions количество вытесненных при переполнении задач
+     * @param size      текущее количество задач в кэше
+     */
+    public record CacheStats(long hits, long misses, long evictions, int size) {
+
+        /**
+         * @return доля чтений из кэша, 0 - если чтений не было
+         */
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * Состояние транзакции потока: прочитанные задачи и удаления из кэша до фиксации,
+     * глубина вложенных {@link #begin()} и отметка об откате вложенной транзакции
+     */
+    private final class Transaction {
+        private final Map<Key, Loaded> loaded = new HashMap<>();
+        private final List<BiPredicate<Key, Task>> invalidations = new ArrayList<>();
+        private int depth;
+        private boolean rollbackOnly;
+
+        private boolean isInvalidated(Key key) {
+            Task cached;
+            synchronized (CachingTaskDao.this) {
+                cached = cache.get(key);
+            }
+            for (BiPredicate<Key, Task> invalidation : invalidations) {
+                if (invalidation.test(key, cached)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Запоминает прочитанную задачу до фиксации. Чтение задачи из хранилища завершается при фиксации или откате
+         */
+        private void load(Key key, Task task, long stamp) {
+            Loaded previous = loaded.put(key, new Loaded(task, stamp));
+            if (previous != null) {
+                finishReading(key, null, previous.stamp());
+            }
+        }
+
+        private void publish() {
+            synchronized (CachingTaskDao.this) {
+                for (Map.Entry<Key, Loaded> entry : loaded.entrySet()) {
+                    Loaded value = entry.getValue();
+                    boolean changed = invalidations.stream()
+                            .anyMatch(invalidation -> invalidation.test(entry.getKey(), value.task()));
+                    finishReading(entry.getKey(), changed ? null : value.task(), value.stamp());
+                }
+                loaded.clear();
+                invalidations.forEach(CachingTaskDao.this::remove);
+            }
+        }
+
+        /**
+         * Отбрасывает прочитанные в транзакции задачи
+         */
+        private void discard() {
+            synchronized (CachingTaskDao.this) {
+                for (Map.Entry<Key, Loaded> entry : loaded.entrySet()) {
+                    finishReading(entry.getKey(), null, entry.getValue().stamp());
+                }
+                loaded.clear();
+            }
+        }
+    }
+}
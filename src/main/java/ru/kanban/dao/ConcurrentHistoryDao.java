@@ -0,0 +1,210 @@
+package ru.kanban.dao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import ru.kanban.model.Task;
+
+import static ru.kanban.utils.Constants.DEFAULT_USER_ID;
+
+/**
+ * Потокобезопасная обёртка истории просмотров с буферизацией просмотров (по образцу буферов чтения Caffeine).
+ * {@link #addToHistory(Task)} не блокирует: просмотр получает порядковый номер и записывается без блокировки
+ * в один из буферов, буфер выбирается по потоку, поэтому потоки почти не пишут в общие ячейки памяти.
+ * Заполненный буфер переносится в обёрнутую историю пакетом под блокировкой: просмотры всех буферов
+ * применяются в порядке номеров. Остальные операции сначала переносят все буферы, поэтому
+ * {@link #getViewedTasks()} возвращает точную историю с учётом всех завершённых просмотров.
+ * Просмотр хранит ID пользователя и переносится в историю этого пользователя.
+ * Обёрнутая история вызывается только под блокировкой и может быть непотокобезопасной.
+ */
+public class ConcurrentHistoryDao implements HistoryDao {
+    private static final int BUFFER_SIZE = 64;
+    private final HistoryDao delegate;
+    private final ViewBuffer[] buffers;
+    private final int bufferMask;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final List<View> drained = new ArrayList<>();
+
+    public ConcurrentHistoryDao(HistoryDao delegate) {
+        this(delegate, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes количество буферов, округляется вверх до степени двойки
+     */
+    public ConcurrentHistoryDao(HistoryDao delegate, int stripes) {
+        this.delegate = delegate;
+        int count = Integer.highestOneBit(Math.max(stripes, 1) * 2 - 1);
+        this.buffers = new ViewBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = new ViewBuffer();
+        }
+        this.bufferMask = count - 1;
+    }
+
+    @Override
+    public void setToViewed(Task task) {
+        task.setViewed(true);
+    }
+
+    @Override
+    public void addToHistory(Task task) {
+        addToHistory(DEFAULT_USER_ID, task);
+    }
+
+    @Override
+    public void addToHistory(int userId, Task task) {
+        long number = sequence.getAndIncrement();
+        ViewBuffer buffer = buffers[bufferIndex()];
+        while (!buffer.offer(number, userId, task)) {
+            drainLock.lock();
+            try {
+                drainBuffers();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(int id) {
+        drainLock.lock();
+        try {
+            drainBuffers();
+            delegate.remove(id);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getViewedTasks() {
+        drainLock.lock();
+        try {
+            drainBuffers();
+            return delegate.getViewedTasks();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getViewedTasks(int userId) {
+        drainLock.lock();
+        try {
+            drainBuffers();
+            return delegate.getViewedTasks(userId);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(List<? extends Task> tasks) {
+        drainLock.lock();
+        try {
+            drainBuffers();
+            delegate.addAll(tasks);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public void addAll(int userId, List<? extends Task> tasks) {
+        drainLock.lock();
+        try {
+            drainBuffers();
+            delegate.addAll(userId, tasks);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllByType(String type) {
+        drainLock.lock();
+        try {
+            drainBuffers();
+            delegate.deleteAllByType(type);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Переносит просмотры из всех буферов в обёрнутую историю в порядке номеров. Вызывается под блокировкой
+     */
+    private void drainBuffers() {
+        for (ViewBuffer buffer : buffers) {
+            buffer.drainTo(drained);
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+        drained.sort(Comparator.comparingLong(View::sequence));
+        try {
+            for (View view : drained) {
+                delegate.addToHistory(view.userId(), view.task());
+            }
+        } finally {
+            drained.clear();
+        }
+    }
+
+    private int bufferIndex() {
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & bufferMask;
+    }
+
+    private record View(long sequence, int userId, Task task) {
+    }
+
+    /**
+     * Кольцевой буфер просмотров с несколькими писателями и одним читателем. Писатель занимает ячейку сдвигом
+     * {@code tail} через CAS и публикует просмотр записью в ячейку, читатель (под блокировкой) забирает
+     * опубликованные просмотры подряд до первой пустой ячейки
+     */
+    private static final class ViewBuffer {
+        private static final int MASK = BUFFER_SIZE - 1;
+        private final AtomicReferenceArray<View> views = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        /**
+         * @return false - если буфер заполнен
+         */
+        boolean offer(long number, int userId, Task task) {
+            View view = new View(number, userId, task);
+            while (true) {
+                long current = tail.get();
+                if (current - head >= BUFFER_SIZE) {
+                    return false;
+                }
+                if (tail.compareAndSet(current, current + 1)) {
+                    views.lazySet((int) current & MASK, view);
+                    return true;
+                }
+            }
+        }
+
+        void drainTo(List<View> target) {
+            long position = head;
+            while (true) {
+                int index = (int) position & MASK;
+                View view = views.get(index);
+                if (view == null) {
+                    break;
+                }
+                views.lazySet(index, null);
+                target.add(view);
+                position++;
+            }
+            head = position;
+        }
+    }
+}
@@ -2,75 +2,147 @@ package ru.kanban.dao;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.kanban.model.*;
+import ru.kanban.utils.ConnectionPool;
+import ru.kanban.utils.SqlFunction;
 
+import static ru.kanban.utils.Constants.DEFAULT_USER_ID;
+import static ru.kanban.utils.Constants.HISTORY_SIZE;
+
+/**
+ * История просмотров в БД. Просмотры хранятся по пользователям (ключ - ID пользователя и ID задачи),
+ * история каждого пользователя ограничена {@code capacity} последними просмотрами.
+ */
 public class DbHistoryDao implements HistoryDao, AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(DbHistoryDao.class);
+    /**
+     * Удаляет из истории пользователя задачи, не входящие в заданное количество последних просмотренных
+     */
+    private static final String TRIM_HISTORY = """
+            DELETE FROM history
+            WHERE user_id = ? AND task_id
+            NOT IN
+                  (SELECT task_id
+                   FROM history
+                   WHERE user_id = ?
+                   ORDER BY viewed_at
+                   DESC  LIMIT  ?)""";
     private final Connection connection;
+    private final ConnectionPool pool;
+    private final int capacity;
 
+    /**
+     * @param connection единственное соединение, используемое всеми операциями DAO
+     */
     public DbHistoryDao(Connection connection) {
+        this(connection, null, HISTORY_SIZE);
+    }
+
+    /**
+     * @param connection единственное соединение, используемое всеми операциями DAO
+     * @param capacity   максимальное количество задач в истории
+     */
+    public DbHistoryDao(Connection connection, int capacity) {
+        this(connection, null, capacity);
+    }
+
+    /**
+     * @param pool пул, из которого берётся соединение на каждую операцию.
+     *             Внутри транзакции пула используется соединение транзакции
+     */
+    public DbHistoryDao(ConnectionPool pool) {
+        this(null, pool, HISTORY_SIZE);
+    }
+
+    /**
+     * @param pool     пул, из которого берётся соединение на каждую операцию
+     * @param capacity максимальное количество задач в истории
+     */
+    public DbHistoryDao(ConnectionPool pool, int capacity) {
+        this(null, pool, capacity);
+    }
+
+    private DbHistoryDao(Connection connection, ConnectionPool pool, int capacity) {
+        if (capacity <= 0) {
+            log.error("Illegal history capacity: {}", capacity);
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
         this.connection = connection;
+        this.pool = pool;
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
     }
 
     @Override
     public void setToViewed(Task task) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "UPDATE tasks set viewed = ? where id = ?")) {
-            statement.setBoolean(1, true);
-            statement.setInt(2, task.getId());
-            task.setViewed(true);
-            statement.execute();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE tasks set viewed = ? where id = ?")) {
+                statement.setBoolean(1, true);
+                statement.setInt(2, task.getId());
+                task.setViewed(true);
+                return statement.execute();
+            }
+        });
     }
 
     @Override
     public void addToHistory(Task task) {
-        try (PreparedStatement updateStmt = connection.prepareStatement(
-                "update history set viewed_at = current_timestamp where task_id = ?");
-                PreparedStatement InsertStmt = connection.prepareStatement(
-                        "INSERT INTO history (task_id, type) values (?, ?);");
-                PreparedStatement deleteStmt = connection.prepareStatement(
-                        """
-                                DELETE FROM history
-                                WHERE task_id
-                                NOT IN
-                                      (SELECT task_id
-                                       FROM history
-                                       ORDER BY viewed_at
-                                       DESC  LIMIT  10)""")) {
-            updateStmt.setInt(1, task.getId());
-            if ((updateStmt.executeUpdate() == 0)) {
-                InsertStmt.setInt(1, task.getId());
-                InsertStmt.setString(2, task.getType().name());
-                InsertStmt.execute();
-                deleteStmt.execute();
+        addToHistory(DEFAULT_USER_ID, task);
+    }
+
+    @Override
+    public void addToHistory(int userId, Task task) {
+        execute(connection -> {
+            try (PreparedStatement updateStmt = connection.prepareStatement(
+                    "update history set viewed_at = current_timestamp where user_id = ? and task_id = ?");
+                 PreparedStatement InsertStmt = connection.prepareStatement(
+                         "INSERT INTO history (user_id, task_id, type) values (?, ?, ?);");
+                 PreparedStatement deleteStmt = connection.prepareStatement(TRIM_HISTORY)) {
+                updateStmt.setInt(1, userId);
+                updateStmt.setInt(2, task.getId());
+                if ((updateStmt.executeUpdate() == 0)) {
+                    InsertStmt.setInt(1, userId);
+                    InsertStmt.setInt(2, task.getId());
+                    InsertStmt.setString(3, task.getType().name());
+                    InsertStmt.execute();
+                    setTrimParameters(deleteStmt, userId);
+                    deleteStmt.execute();
+                }
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+            return null;
+        });
     }
 
     @Override
     public void remove(int id) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "DELETE  from history where task_id = ?")) {
-            statement.setInt(1, id);
-            statement.execute();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "DELETE  from history where task_id = ?")) {
+                statement.setInt(1, id);
+                return statement.execute();
+            }
+        });
     }
 
     @Override
     public List<Task> getViewedTasks() {
-        List<Task> result = new ArrayList<>();
-        try (Statement statement = connection.createStatement()) {
-            statement.execute("""
+        return getViewedTasks(DEFAULT_USER_ID);
+    }
+
+    @Override
+    public List<Task> getViewedTasks(int userId) {
+        return execute(connection -> {
+            List<Task> result = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("""
                      SELECT t.id, t.name, t.description, t.status, t.type, t.epic_id,
                      ep.name as epic_name,
                      ep.description as epic_description,
@@ -78,64 +150,143 @@ public class DbHistoryDao implements HistoryDao, AutoCloseable {
                      from tasks t
                      join history h on t.id = h.task_id
                      left join tasks ep on t.epic_id = ep.id
+                     where h.user_id = ?
                     order by h.viewed_at
-                    """);
-            ResultSet resultSet = statement.getResultSet();
-            while (resultSet.next()) {
-                result.add(generateByType(resultSet));
+                    """)) {
+                statement.setInt(1, userId);
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    result.add(generateByType(resultSet));
+                }
             }
-        } catch (SQLException e) {
-            log.error("Database connection failure : {}", e.getMessage());
-            throw new RuntimeException(e);
-        }
-        return result;
+            Map<Integer, Epic> epics = new HashMap<>();
+            for (Task task : result) {
+                if (task instanceof Epic epic) {
+                    epics.put(epic.getId(), epic);
+                }
+            }
+            fillSubtasks(connection, epics);
+            return result;
+        });
     }
 
     @Override
     public void addAll(List<? extends Task> tasks) {
+        addAll(DEFAULT_USER_ID, tasks);
+    }
+
+    @Override
+    public void addAll(int userId, List<? extends Task> tasks) {
         if (tasks.isEmpty()) {
             return;
         }
-        try (
-                PreparedStatement deleteStmt = connection.prepareStatement(
-                        "delete from history where type = ?"
-
-                );
-                PreparedStatement insertStmt = connection.prepareStatement("""
-                        insert into history (task_id, type)
-                        SELECT t.id, t.type from tasks t
-                        where type = ? order by id desc limit 10
-                        """);
-                PreparedStatement updateStmt = connection.prepareStatement(
-                        "update tasks set viewed = TRUE where type = ?")) {
-
-            String type = tasks.get(0).getType().name();
-            deleteStmt.setString(1, type);
-            insertStmt.setString(1, type);
-            updateStmt.setString(1, type);
-            deleteStmt.execute();
-            updateStmt.execute();
-            insertStmt.execute();
-            tasks.forEach(task -> task.setViewed(true));
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        execute(connection -> {
+            try (
+                    PreparedStatement deleteStmt = connection.prepareStatement(
+                            "delete from history where user_id = ? and task_id = any(?)"
+
+                    );
+                    PreparedStatement insertStmt = connection.prepareStatement("""
+                            insert into history (user_id, task_id, type)
+                            SELECT ?, t.id, t.type from tasks t
+                            where id = any(?) order by id desc limit ?
+                            """);
+                    PreparedStatement updateStmt = connection.prepareStatement(
+                            "update tasks set viewed = TRUE where id = any(?)");
+                    PreparedStatement trimStmt = connection.prepareStatement(TRIM_HISTORY)) {
+
+                Array ids = connection.createArrayOf("INTEGER",
+                        tasks.stream().map(Task::getId).toArray());
+                deleteStmt.setInt(1, userId);
+                deleteStmt.setArray(2, ids);
+                insertStmt.setInt(1, userId);
+                insertStmt.setArray(2, ids);
+                insertStmt.setInt(3, capacity);
+                updateStmt.setArray(1, ids);
+                deleteStmt.execute();
+                updateStmt.execute();
+                insertStmt.execute();
+                setTrimParameters(trimStmt, userId);
+                trimStmt.execute();
+                tasks.forEach(task -> task.setViewed(true));
+            }
+            return null;
+        });
     }
 
     @Override
     public void deleteAllByType(String type) {
-        try (PreparedStatement deleteStmt = connection.prepareStatement(
-                "delete from history where type = ?")) {
-            deleteStmt.setString(1, type);
-            deleteStmt.execute();
+        execute(connection -> {
+            try (PreparedStatement deleteStmt = connection.prepareStatement(
+                    "delete from history where type = ?")) {
+                deleteStmt.setString(1, type);
+                return deleteStmt.execute();
+            }
+        });
+    }
+
+    /**
+     * Закрывает соединение DAO. Пул соединений DAO не закрывает - им владеет создавший его код.
+     */
+    @Override
+    public void close() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private void setTrimParameters(PreparedStatement trimStmt, int userId) throws SQLException {
+        trimStmt.setInt(1, userId);
+        trimStmt.setInt(2, userId);
+        trimStmt.setInt(3, capacity);
+    }
+
+    /**
+     * Выполняет операцию на соединении DAO либо на соединении из пула
+     *
+     * @param action операция над соединением
+     * @param <T>    тип результата операции
+     * @return результат операции
+     */
+    private <T> T execute(SqlFunction<T> action) {
+        try {
+            if (pool == null) {
+                return action.apply(connection);
+            }
+            try (Connection borrowed = pool.getConnection()) {
+                return action.apply(borrowed);
+            }
         } catch (SQLException e) {
+            log.error("Database connection failure : {}", e.getMessage());
             throw new RuntimeException(e);
         }
     }
 
-    @Override
-    public void close() throws Exception {
-        connection.close();
+    /**
+     * Загружает подзадачи эпиков истории одним запросом
+     *
+     * @param connection соединение текущей операции
+     * @param epics      эпики истории по ID
+     */
+    private void fillSubtasks(Connection connection, Map<Integer, Epic> epics) throws SQLException {
+        if (epics.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select id, name, description, status, epic_id from tasks where epic_id = any(?) order by id")) {
+            statement.setArray(1, connection.createArrayOf("INTEGER", epics.keySet().toArray()));
+            ResultSet resultSet = statement.executeQuery();
+            while (resultSet.next()) {
+                Epic epic = epics.get(resultSet.getInt("epic_id"));
+                Subtask subtask = new Subtask(
+                        resultSet.getString("name"),
+                        resultSet.getString("description"),
+                        Status.valueOf(resultSet.getString("status")),
+                        epic);
+                subtask.setId(resultSet.getInt("id"));
+                epic.attachSubtask(subtask);
+            }
+        }
     }
 
     /**
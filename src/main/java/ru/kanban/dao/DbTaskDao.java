@@ -2,37 +2,258 @@ package ru.kanban.dao;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.kanban.model.*;
+import ru.kanban.utils.ConnectionPool;
 import ru.kanban.utils.DbUtils;
+import ru.kanban.utils.SqlFunction;
 
 import static ru.kanban.model.TaskType.*;
 
 public class DbTaskDao implements TaskDao, AutoCloseable {
+    /**
+     * Удаление с возвратом удалённой задачи и её эпика для PostgreSQL
+     */
+    private static final String DELETE_RETURNING = """
+            delete from tasks t
+            where t.id = ? and t.type = ?
+            returning t.type as type,
+                      t.id as id,
+                      t.name as name,
+                      t.description as description,
+                      t.status as status,
+                      t.epic_id as e_id,
+                      (select e.name from tasks e where e.id = t.epic_id) as e_name,
+                      (select e.description from tasks e where e.id = t.epic_id) as e_desc,
+                      (select e.status from tasks e where e.id = t.epic_id) as e_status
+            """;
+    /**
+     * Удаление с возвратом удалённой задачи и её эпика для H2, не поддерживающей RETURNING
+     */
+    private static final String DELETE_OLD_TABLE = """
+            select t.type as type,
+                   t.id as id,
+                   t.name as name,
+                   t.description as description,
+                   t.status as status,
+                   e.id as e_id,
+                   e.name as e_name,
+                   e.description as e_desc,
+                   e.status as e_status
+            from old table (delete from tasks where id = ? and type = ?) t
+                     left join tasks e on t.epic_id = e.id
+            """;
+    /**
+     * Удаление подзадачи вместе с обновлением счётчиков и статуса её эпика одним запросом для PostgreSQL.
+     * Возвращает удалённую подзадачу и эпик с уже пересчитанным статусом
+     */
+    private static final String DELETE_SUBTASK_WITH_EPIC = """
+            with deleted as (
+                delete from tasks
+                where id = ? and type = 'SUBTASK'
+                returning id, name, description, status, epic_id
+            ), epic as (
+                update tasks e set
+                    new_count = e.new_count - (d.status = 'NEW')::int,
+                    in_progress_count = e.in_progress_count - (d.status = 'IN_PROGRESS')::int,
+                    done_count = e.done_count - (d.status = 'DONE')::int,
+                    status = case
+                        when e.in_progress_count - (d.status = 'IN_PROGRESS')::int = 0
+                             and e.done_count - (d.status = 'DONE')::int = 0 then 'NEW'
+                        when e.new_count - (d.status = 'NEW')::int = 0
+                             and e.in_progress_count - (d.status = 'IN_PROGRESS')::int = 0 then 'DONE'
+                        else 'IN_PROGRESS'
+                    end
+                from deleted d
+                where e.id = d.epic_id
+                returning e.id, e.name, e.description, e.status
+            )
+            select d.id as id,
+                   d.name as name,
+                   d.description as description,
+                   d.status as status,
+                   e.id as e_id,
+                   e.name as e_name,
+                   e.description as e_desc,
+                   e.status as e_status
+            from deleted d
+                     left join epic e on e.id = d.epic_id
+            """;
+    /**
+     * Удаление задач по списку ID с возвратом удалённых строк для PostgreSQL
+     */
+    private static final String DELETE_ALL_RETURNING = """
+            delete from tasks
+            where type = ? and id = any(?)
+            returning id, name, description, status
+            """;
+    /**
+     * Удаление задач по списку ID с возвратом удалённых строк для H2, не поддерживающей RETURNING
+     */
+    private static final String DELETE_ALL_OLD_TABLE = """
+            select id, name, description, status
+            from old table (delete from tasks where type = ? and id = any(?))
+            """;
+    private static final String SELECT_BY_TYPE = "select id, name, description, status from tasks where type = ?";
+    private static final String SELECT_BY_TYPE_PAGE = SELECT_BY_TYPE + " and id > ? order by id limit ?";
+    /**
+     * Эпики вместе с подзадачами одним запросом: строки одного эпика идут подряд,
+     * у эпика без подзадач поля s_* пусты
+     */
+    private static final String SELECT_EPICS = """
+            select e.id, e.name, e.description, e.status,
+                   s.id s_id, s.name s_name, s.description s_desc, s.status s_status
+            from (%s) e
+            left join tasks s on s.epic_id = e.id
+            order by e.id, s.id
+            """;
+    private static final String SELECT_EPICS_ALL = SELECT_EPICS.formatted(SELECT_BY_TYPE);
+    private static final String SELECT_EPICS_PAGE = SELECT_EPICS.formatted(SELECT_BY_TYPE_PAGE);
+    private static final String SELECT_EPIC = SELECT_EPICS.formatted(SELECT_BY_TYPE + " and id = ?");
+    private static final String SELECT_SUBTASKS = """
+            select s.id, s.name, s.description, s.status, s.epic_id,
+                   e.name e_name, e.description e_desc, e.status e_status
+            from tasks s
+            join tasks e  on e.id = s.epic_id
+            """;
+    /**
+     * Задачи любых типов по списку ID одним запросом: у подзадачи поля e_* - её эпик, эпик повторяется
+     * в строке каждой своей подзадачи с полями s_*
+     */
+    private static final String SELECT_BY_IDS = """
+            select t.type as type,
+                   t.id as id,
+                   t.name as name,
+                   t.description as description,
+                   t.status as status,
+                   e.id as e_id,
+                   e.name as e_name,
+                   e.description as e_desc,
+                   e.status as e_status,
+                   s.id as s_id,
+                   s.name as s_name,
+                   s.description as s_desc,
+                   s.status as s_status
+            from tasks t
+                     left join tasks e on t.epic_id = e.id
+                     left join tasks s on t.type = 'EPIC' and s.epic_id = t.id
+            where t.id = any(?)
+            order by t.id, s.id
+            """;
+    private static final String SELECT_SUBTASKS_PAGE = SELECT_SUBTASKS + " where s.id > ? order by s.id limit ?";
+    /**
+     * Изменение счётчиков подзадач эпика на заданные величины. Статус эпика вычисляется в том же запросе
+     * по новым значениям счётчиков (выражения SET видят значения строки до обновления)
+     */
+    private static final String UPDATE_COUNTERS = """
+            update tasks set
+                new_count = new_count + ?,
+                in_progress_count = in_progress_count + ?,
+                done_count = done_count + ?,
+                status = case
+                    when in_progress_count + ? = 0 and done_count + ? = 0 then 'NEW'
+                    when new_count + ? = 0 and in_progress_count + ? = 0 then 'DONE'
+                    else 'IN_PROGRESS'
+                end
+            where id = ? and type = 'EPIC'
+            """;
+    /**
+     * Обновление подзадачи вместе со счётчиками и статусами её прежнего и нового эпика одним запросом
+     * для PostgreSQL. Подзадача переносится в заданный эпик, если он существует. Прежние статус и эпик
+     * подзадачи читаются из снимка таблицы на момент начала запроса, изменения счётчиков одного эпика
+     * складываются
+     */
+    private static final String UPDATE_SUBTASK_WITH_EPIC = """
+            with changed as (
+                update tasks t
+                set name = ?, description = ?, status = ?, viewed = false, epic_id = ?
+                from tasks old
+                where t.id = ? and t.type = 'SUBTASK' and old.id = t.id
+                  and exists (select 1 from tasks e where e.id = ? and e.type = 'EPIC')
+                returning old.epic_id as old_epic_id, t.epic_id as new_epic_id,
+                          old.status as old_status, t.status as new_status
+            ), delta as (
+                select epic_id, sum(dn) as dn, sum(dp) as dp, sum(dd) as dd
+                from (select old_epic_id as epic_id,
+                             -(old_status = 'NEW')::int as dn,
+                             -(old_status = 'IN_PROGRESS')::int as dp,
+                             -(old_status = 'DONE')::int as dd
+                      from changed
+                      union all
+                      select new_epic_id,
+                             (new_status = 'NEW')::int,
+                             (new_status = 'IN_PROGRESS')::int,
+                             (new_status = 'DONE')::int
+                      from changed) moves
+                group by epic_id
+            )
+            update tasks e set
+                new_count = e.new_count + d.dn,
+                in_progress_count = e.in_progress_count + d.dp,
+                done_count = e.done_count + d.dd,
+                status = case
+                    when e.in_progress_count + d.dp = 0 and e.done_count + d.dd = 0 then 'NEW'
+                    when e.new_count + d.dn = 0 and e.in_progress_count + d.dp = 0 then 'DONE'
+                    else 'IN_PROGRESS'
+                end
+            from delta d
+            where e.id = d.epic_id
+            """;
+    /**
+     * Обновление подзадачи с переносом в заданный эпик и возвратом её прежних эпика и статуса для H2,
+     * не поддерживающей изменяющие CTE
+     */
+    private static final String UPDATE_SUBTASK_OLD_TABLE = """
+            select epic_id, status
+            from old table (update tasks set name = ?, description = ?, status = ?, viewed = false, epic_id = ?
+                            where id = ? and type = 'SUBTASK'
+                              and exists (select 1 from tasks e where e.id = ? and e.type = 'EPIC'))
+            """;
+    /**
+     * Количество строк, получаемых драйвером за одно обращение к БД при потоковом чтении
+     */
+    private static final int FETCH_SIZE = 500;
     private final Connection connection;
+    private final ConnectionPool pool;
+    private volatile Boolean postgres;
     private static final Logger log = LoggerFactory.getLogger(DbTaskDao.class);
 
+    /**
+     * @param connection единственное соединение, используемое всеми операциями DAO
+     */
     public DbTaskDao(Connection connection) {
         this.connection = connection;
+        this.pool = null;
+    }
+
+    /**
+     * @param pool пул, из которого берётся соединение на каждую операцию или на транзакцию
+     */
+    public DbTaskDao(ConnectionPool pool) {
+        this.connection = null;
+        this.pool = pool;
     }
 
     @Override
     public Task addTask(Task task) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "INSERT INTO  tasks (name, description, viewed,status, type) VALUES (?, ?, ?, ?, ?)",
-                Statement.RETURN_GENERATED_KEYS)) {
-            ResultSet resultSet = setStatement(statement, task);
-            if (resultSet.next()) {
-                task.setId(resultSet.getInt(1));
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO  tasks (name, description, viewed,status, type) VALUES (?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ResultSet resultSet = setStatement(statement, task);
+                if (resultSet.next()) {
+                    task.setId(resultSet.getInt(1));
+                }
             }
-        } catch (SQLException e) {
-            log.error("Database connection failure: ", e);
-            throw new RuntimeException(e);
-        }
-        return task;
+            return task;
+        });
     }
 
     @Override
@@ -42,162 +263,90 @@ public class DbTaskDao implements TaskDao, AutoCloseable {
 
     @Override
     public List<Task> getTasks() {
-        List<Task> result = new ArrayList<>();
-        try (
-                PreparedStatement selectStmt = connection.prepareStatement(
-                        "SELECT * from tasks where type = ?")) {
-            selectStmt.setString(1, TASK.name());
-            ResultSet resultSet = selectStmt.executeQuery();
-            while (resultSet.next()) {
-                Task task = new Task(
-                        resultSet.getString("name"),
-                        resultSet.getString("description"),
-                        Status.valueOf(resultSet.getString("status")));
-                task.setId(resultSet.getInt(1));
-                result.add(task);
-            }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-        return result;
+        return query(SELECT_BY_TYPE, this::toTask, TASK.name());
     }
 
     @Override
     public Optional<Task> deleteTask(int id) {
-        try (PreparedStatement deleteSmt = connection.prepareStatement(
-                "delete from tasks where id = ? and type = ?")) {
-            Optional<Task> deleted = getTaskByIdAndType(id, TASK.name());
-            if (deleted.isPresent()) {
-                deleteSmt.setInt(1, id);
-                deleteSmt.setString(2, TASK.name());
-                deleteSmt.executeUpdate();
-            } else {
-                printMsg(deleted, id);
-            }
-            return deleted;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return deleteByIdAndType(id, TASK.name());
     }
 
     @Override
     public Optional<Task> updateTask(Task task) {
-        try {
-            return updateBy(task, TASK.name()) != 0 ? Optional.of(task) : Optional.empty();
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-
+        return updateBy(task, TASK.name()) != 0 ? Optional.of(task) : Optional.empty();
     }
 
     @Override
     public void deleteAllTasks() {
-        try {
-            deleteAllByType(TASK.name());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        deleteAllByType(TASK.name());
     }
 
     @Override
     public Epic addEpic(Epic epic) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "insert into  tasks(name, description, viewed, status, type) values (?, ?, ?, ?, ?)",
-                Statement.RETURN_GENERATED_KEYS)) {
-            ResultSet resultSet = setStatement(statement, epic);
-            if (resultSet.next()) {
-                epic.setId(resultSet.getInt(1));
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into  tasks(name, description, viewed, status, type) values (?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                ResultSet resultSet = setStatement(statement, epic);
+                if (resultSet.next()) {
+                    epic.setId(resultSet.getInt(1));
+                }
             }
-        } catch (SQLException e) {
-            log.error("Database connection failure : ", e);
-            throw new RuntimeException(e);
-        }
-        return epic;
+            return epic;
+        });
     }
 
     @Override
     public Optional<Epic> getEpic(int id) {
-        return getTaskByIdAndType(id, EPIC.name());
+        List<Epic> result = new ArrayList<>(1);
+        readEpics(SELECT_EPIC, result::add, false, EPIC.name(), id);
+        return result.stream().findFirst();
     }
 
     @Override
     public List<Epic> getEpics() {
         List<Epic> result = new ArrayList<>();
-        try (PreparedStatement statement = connection.prepareStatement(
-                "select * from tasks where type = ?")) {
-            statement.setObject(1, EPIC.name());
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                Epic epic = new Epic(
-                        resultSet.getString("name"),
-                        resultSet.getString("description"),
-                        Status.valueOf(resultSet.getString("status")));
-                epic.setId(resultSet.getInt("id"));
-                result.add(epic);
-            }
-            return result;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        readEpics(SELECT_EPICS_ALL, result::add, false, EPIC.name());
+        return result;
     }
 
     @Override
     public Optional<Epic> deleteEpic(int id) {
-        try (PreparedStatement deleteStmt = connection.prepareStatement(
-                "delete from tasks where id = ? and type = ?")) {
-            Optional<Epic> deleted = getTaskByIdAndType(id, EPIC.name());
-            if (deleted.isPresent()) {
-                deleteStmt.setInt(1, id);
-                deleteStmt.setString(2, EPIC.name());
-                deleteStmt.executeUpdate();
-            } else {
-                printMsg(deleted, id);
-            }
-            return deleted;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return deleteByIdAndType(id, EPIC.name());
     }
 
     @Override
     public void deleteAllEpics() {
-        try {
-            deleteAllByType(EPIC.name());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        deleteAllByType(EPIC.name());
     }
 
     @Override
     public Optional<Epic> updateEpic(Epic epic) {
-        try {
-            return updateBy(epic, EPIC.name()) != 0 ? Optional.of(epic) : Optional.empty();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+        return updateBy(epic, EPIC.name()) != 0 ? Optional.of(epic) : Optional.empty();
     }
 
     @Override
     public Subtask addSubtask(Subtask subtask) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "INSERT INTO tasks (name, description, viewed, status, type, epic_id) values (?, ?, ?, ?, ?, ?)",
-                Statement.RETURN_GENERATED_KEYS)) {
-            statement.setString(1, subtask.getName());
-            statement.setString(2, subtask.getDescription());
-            statement.setBoolean(3, subtask.isViewed());
-            statement.setObject(4, subtask.getStatus().name());
-            statement.setObject(5, subtask.getType().name());
-            statement.setInt(6, subtask.getEpic().getId());
-            statement.execute();
-            ResultSet resultSet = statement.getGeneratedKeys();
-            if (resultSet.next()) {
-                subtask.setId(resultSet.getInt(1));
+        return executeAtomically(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO tasks (name, description, viewed, status, type, epic_id) values (?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                statement.setString(1, subtask.getName());
+                statement.setString(2, subtask.getDescription());
+                statement.setBoolean(3, subtask.isViewed());
+                statement.setObject(4, subtask.getStatus().name());
+                statement.setObject(5, subtask.getType().name());
+                statement.setInt(6, subtask.getEpic().getId());
+                statement.execute();
+                ResultSet resultSet = statement.getGeneratedKeys();
+                if (resultSet.next()) {
+                    subtask.setId(resultSet.getInt(1));
+                }
             }
-
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-        return subtask;
+            updateCounters(connection, Map.of(subtask.getEpic().getId(), delta(null, subtask.getStatus())));
+            subtask.getEpic().addSubtask(subtask);
+            return subtask;
+        });
     }
 
     @Override
@@ -207,138 +356,637 @@ public class DbTaskDao implements TaskDao, AutoCloseable {
 
     @Override
     public List<Subtask> getSubtasks() {
-        List<Subtask> result = new ArrayList<>();
-        try (PreparedStatement selectStmt = connection.prepareStatement(
-                """
-                        select s.id, s.name, s.description, s.status, s.epic_id,
-                               e.name e_name, e.description e_desc, e.status e_status
-                        from tasks s
-                        join tasks e  on e.id = s.epic_id;
-                        """)) {
-            ResultSet resultSet = selectStmt.executeQuery();
-            while (resultSet.next()) {
-                Epic epic = new Epic(
-                        resultSet.getString("e_name"),
-                        resultSet.getString("e_desc"),
-                        Status.valueOf(resultSet.getString("e_status")));
-                epic.setId(resultSet.getInt("epic_id"));
-                Subtask subtask = new Subtask(
-                        resultSet.getString("name"),
-                        resultSet.getString("description"),
-                        Status.valueOf(resultSet.getString("status")), epic);
-                subtask.setId(resultSet.getInt("id"));
-                result.add(subtask);
+        return query(SELECT_SUBTASKS, subtaskMapper());
+    }
+
+    /**
+     * Удаляет подзадачу и обновляет счётчики и статус её эпика. В PostgreSQL - одним запросом,
+     * в H2 - удалением и обновлением эпика в одной транзакции
+     */
+    @Override
+    public Optional<Subtask> deleteSubtask(int id) {
+        return execute(connection -> {
+            if (isPostgres(connection)) {
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_SUBTASK_WITH_EPIC)) {
+                    statement.setInt(1, id);
+                    Optional<Subtask> deleted = readTask(statement.executeQuery(), SUBTASK.name());
+                    printMsg(deleted, id);
+                    return deleted;
+                }
+            }
+            return atomically(connection, current -> {
+                Optional<Subtask> deleted = deleteByIdAndType(current, id, SUBTASK.name());
+                if (deleted.isPresent()) {
+                    Subtask subtask = deleted.get();
+                    updateCounters(current, Map.of(subtask.getEpic().getId(), delta(subtask.getStatus(), null)));
+                }
+                return deleted;
+            });
+        });
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        executeAtomically(connection -> {
+            try (PreparedStatement deleteStmt = connection.prepareStatement("delete from tasks where type = ?");
+                 PreparedStatement resetStmt = connection.prepareStatement("""
+                         update tasks set new_count = 0, in_progress_count = 0, done_count = 0, status = 'NEW'
+                         where type = 'EPIC'
+                         """)) {
+                deleteStmt.setString(1, SUBTASK.name());
+                deleteStmt.executeUpdate();
+                return resetStmt.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Обновляет подзадачу и переносит её в эпик подзадачи вместе со счётчиками прежнего и нового эпика.
+     * В PostgreSQL - одним запросом, в H2 - запросом, возвращающим прежние эпик и статус, и запросом
+     * к строкам эпиков в одной транзакции. Подзадача не обновляется, если эпика подзадачи нет в БД
+     */
+    @Override
+    public Optional<Subtask> updateSubtask(Subtask subtask) {
+        return execute(connection -> {
+            if (isPostgres(connection)) {
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_SUBTASK_WITH_EPIC)) {
+                    setSubtaskUpdate(statement, subtask);
+                    return statement.executeUpdate() != 0 ? Optional.of(subtask) : Optional.empty();
+                }
+            }
+            return atomically(connection, current -> updateSubtaskOldTable(current, subtask));
+        });
+    }
+
+    @Override
+    public void updateEpicStatus(int epicId, Status status) {
+        execute(connection -> {
+            try (PreparedStatement updateStatement = connection.prepareStatement(
+                    "UPDATE tasks set status = ? where id = ?")) {
+                updateStatement.setString(1, status.name());
+                updateStatement.setInt(2, epicId);
+                return updateStatement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Читает счётчики подзадач из строки эпика
+     */
+    @Override
+    public EpicProgress getEpicProgress(int epicId) {
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "select new_count, in_progress_count, done_count from tasks where id = ? and type = ?")) {
+                statement.setInt(1, epicId);
+                statement.setString(2, EPIC.name());
+                ResultSet resultSet = statement.executeQuery();
+                if (!resultSet.next()) {
+                    return EpicProgress.EMPTY;
+                }
+                return new EpicProgress(
+                        resultSet.getInt("new_count"),
+                        resultSet.getInt("in_progress_count"),
+                        resultSet.getInt("done_count"));
+            }
+        });
+    }
+
+    /**
+     * Вычисляет статус эпика по счётчикам в строке эпика одним запросом
+     */
+    @Override
+    public void refreshEpicStatus(int epicId) {
+        execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    update tasks set status = case
+                        when in_progress_count = 0 and done_count = 0 then 'NEW'
+                        when new_count = 0 and in_progress_count = 0 then 'DONE'
+                        else 'IN_PROGRESS'
+                    end
+                    where id = ? and type = 'EPIC'
+                    """)) {
+                statement.setInt(1, epicId);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public List<Status> getEpicSubtasksStatuses(int epicId) {
+        return execute(connection -> {
+            List<Status> result = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "select status from tasks where type = ? and epic_id = ?")) {
+                statement.setString(1, SUBTASK.name());
+                statement.setInt(2, epicId);
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    result.add(Status.valueOf(resultSet.getString(1)));
+                }
             }
             return result;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+        });
+    }
+
+    @Override
+    public void renewAllStatuses(String type, String status) {
+        executeAtomically(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE tasks set status = ? where type = ?")) {
+                statement.setObject(1, status);
+                statement.setObject(2, type);
+                statement.execute();
+            }
+            if (SUBTASK.name().equals(type)) {
+                moveCountersTo(connection, status);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean existsById(int id, String type) {
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "select id from tasks where id = ? and type = ?")) {
+                statement.setInt(1, id);
+                statement.setString(2, type);
+                return statement.executeQuery().next();
+            }
+        });
+    }
+
+    /**
+     * Добавляет задачи одним пакетом запросов ({@link PreparedStatement#executeBatch()})
+     */
+    @Override
+    public List<Task> addTasks(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return tasks;
         }
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO  tasks (name, description, viewed,status, type) VALUES (?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Task task : tasks) {
+                    statement.setString(1, task.getName());
+                    statement.setString(2, task.getDescription());
+                    statement.setBoolean(3, task.isViewed());
+                    statement.setString(4, task.getStatus().name());
+                    statement.setString(5, task.getType().name());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                setGeneratedIds(statement, tasks);
+            }
+            return tasks;
+        });
     }
 
+    /**
+     * Добавляет подзадачи одним пакетом запросов, счётчики и статусы эпиков меняются вторым пакетом
+     */
     @Override
-    public boolean deleteSubtask(int id) {
-        try (PreparedStatement deleteStmt = connection.prepareStatement(
-                "DELETE  from tasks where id = ? and type = ?")) {
-            deleteStmt.setInt(1, id);
-            deleteStmt.setObject(2, SUBTASK.name());
-            return deleteStmt.executeUpdate() > 0;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    public List<Subtask> addSubtasks(List<Subtask> subtasks) {
+        if (subtasks.isEmpty()) {
+            return subtasks;
         }
+        return executeAtomically(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO tasks (name, description, viewed, status, type, epic_id) values (?, ?, ?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS)) {
+                for (Subtask subtask : subtasks) {
+                    statement.setString(1, subtask.getName());
+                    statement.setString(2, subtask.getDescription());
+                    statement.setBoolean(3, subtask.isViewed());
+                    statement.setObject(4, subtask.getStatus().name());
+                    statement.setObject(5, subtask.getType().name());
+                    statement.setInt(6, subtask.getEpic().getId());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                setGeneratedIds(statement, subtasks);
+            }
+            Map<Integer, int[]> deltas = new HashMap<>();
+            for (Subtask subtask : subtasks) {
+                int[] epicDelta = deltas.computeIfAbsent(subtask.getEpic().getId(), key -> new int[3]);
+                epicDelta[subtask.getStatus().ordinal()]++;
+            }
+            updateCounters(connection, deltas);
+            subtasks.forEach(subtask -> subtask.getEpic().addSubtask(subtask));
+            return subtasks;
+        });
     }
 
+    /**
+     * Обновляет задачи одним пакетом запросов
+     */
     @Override
-    public void deleteAllSubtasks() {
-        try {
-            deleteAllByType(SUBTASK.name());
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    public List<Task> updateTasks(List<Task> tasks) {
+        List<Task> result = new ArrayList<>();
+        if (tasks.isEmpty()) {
+            return result;
         }
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE tasks set name = ?, description = ?, status = ?, viewed = ? where id = ? and type = ?")) {
+                for (Task task : tasks) {
+                    statement.setString(1, task.getName());
+                    statement.setString(2, task.getDescription());
+                    statement.setObject(3, task.getStatus().name());
+                    statement.setBoolean(4, false);
+                    statement.setInt(5, task.getId());
+                    statement.setString(6, TASK.name());
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                        result.add(tasks.get(i));
+                    }
+                }
+            }
+            return result;
+        });
     }
 
+    /**
+     * Обновляет подзадачи выборкой прежних статусов и эпиков, одним пакетом запросов обновления
+     * и пакетом изменений счётчиков эпиков. Подзадача переносится в свой эпик, если он существует
+     */
     @Override
-    public Optional<Subtask> updateSubtask(Subtask subtask) {
-        try {
-            return updateBy(subtask, SUBTASK.name()) != 0 ? Optional.of(subtask) : Optional.empty();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    public List<Subtask> updateSubtasks(List<Subtask> subtasks) {
+        List<Subtask> result = new ArrayList<>();
+        if (subtasks.isEmpty()) {
+            return result;
         }
+        return executeAtomically(connection -> {
+            Map<Integer, Status> previous = new HashMap<>();
+            Map<Integer, Integer> epicIds = new HashMap<>();
+            try (PreparedStatement selectStmt = connection.prepareStatement(
+                    "select id, epic_id, status from tasks where type = ? and id = any(?)")) {
+                selectStmt.setString(1, SUBTASK.name());
+                selectStmt.setArray(2, connection.createArrayOf("INTEGER",
+                        subtasks.stream().map(Subtask::getId).toArray()));
+                ResultSet resultSet = selectStmt.executeQuery();
+                while (resultSet.next()) {
+                    previous.put(resultSet.getInt("id"), Status.valueOf(resultSet.getString("status")));
+                    epicIds.put(resultSet.getInt("id"), resultSet.getInt("epic_id"));
+                }
+            }
+            List<Subtask> batch = new ArrayList<>();
+            try (PreparedStatement statement = connection.prepareStatement("""
+                    update tasks set name = ?, description = ?, status = ?, viewed = false, epic_id = ?
+                    where id = ? and type = 'SUBTASK'
+                      and exists (select 1 from tasks e where e.id = ? and e.type = 'EPIC')
+                    """)) {
+                for (Subtask subtask : subtasks) {
+                    if (!previous.containsKey(subtask.getId())) {
+                        continue;
+                    }
+                    setSubtaskUpdate(statement, subtask);
+                    statement.addBatch();
+                    batch.add(subtask);
+                }
+                int[] counts = statement.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] != 0) {
+                        result.add(batch.get(i));
+                    }
+                }
+            }
+            Map<Integer, int[]> deltas = new HashMap<>();
+            for (Subtask subtask : result) {
+                move(deltas, epicIds.get(subtask.getId()), previous.get(subtask.getId()), subtask);
+                previous.put(subtask.getId(), subtask.getStatus());
+                epicIds.put(subtask.getId(), subtask.getEpic().getId());
+            }
+            if (!deltas.isEmpty()) {
+                updateCounters(connection, deltas);
+            }
+            return result;
+        });
     }
 
+    /**
+     * Удаляет задачи по массиву ID одним запросом, возвращающим удалённые строки:
+     * DELETE ... RETURNING в PostgreSQL, OLD TABLE (DELETE ...) в H2
+     */
     @Override
-    public void updateEpicStatus(int epicId, Status status) {
-        try (
-                PreparedStatement updateStatement = connection.prepareStatement(
-                        "UPDATE tasks set status = ? where id = ?")) {
-            updateStatement.setString(1, status.name());
-            updateStatement.setInt(2, epicId);
-            updateStatement.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    public List<Task> deleteTasks(int... ids) {
+        List<Task> result = new ArrayList<>();
+        if (ids.length == 0) {
+            return result;
         }
+        return execute(connection -> {
+            Array idArray = connection.createArrayOf("INTEGER", Arrays.stream(ids).boxed().toArray());
+            try (PreparedStatement deleteStmt = connection.prepareStatement(
+                    isPostgres(connection) ? DELETE_ALL_RETURNING : DELETE_ALL_OLD_TABLE)) {
+                deleteStmt.setString(1, TASK.name());
+                deleteStmt.setArray(2, idArray);
+                ResultSet resultSet = deleteStmt.executeQuery();
+                while (resultSet.next()) {
+                    result.add(toTask(resultSet));
+                }
+            } finally {
+                idArray.free();
+            }
+            return result;
+        });
     }
 
     @Override
-    public List<Status> getEpicSubtasksStatuses(int epicId) {
-        List<Status> result = new ArrayList<>();
-        try (PreparedStatement statement = connection.prepareStatement(
-                "select status from tasks where type = ? and epic_id = ?")) {
-            statement.setString(1, SUBTASK.name());
-            statement.setInt(2, epicId);
-            ResultSet resultSet = statement.executeQuery();
-            while (resultSet.next()) {
-                result.add(Status.valueOf(resultSet.getString(1)));
+    public List<Task> getTasks(int afterId, int limit) {
+        return query(SELECT_BY_TYPE_PAGE, this::toTask, TASK.name(), afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        List<Epic> result = new ArrayList<>();
+        readEpics(SELECT_EPICS_PAGE, result::add, false, EPIC.name(), afterId, limit);
+        return result;
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return query(SELECT_SUBTASKS_PAGE, subtaskMapper(), afterId, limit);
+    }
+
+    /**
+     * Читает задачи одним запросом {@link #SELECT_BY_IDS} вместе с подзадачами эпиков
+     */
+    @Override
+    public List<Task> getByIds(int[] ids, TaskType[] types) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Task> found = new HashMap<>();
+        execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_BY_IDS)) {
+                statement.setArray(1, connection.createArrayOf("INTEGER", Arrays.stream(ids).boxed().toArray()));
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    Task task = found.get(resultSet.getInt("id"));
+                    if (task == null) {
+                        task = mapTask(resultSet, TaskType.valueOf(resultSet.getString("type")));
+                        found.put(task.getId(), task);
+                    }
+                    int subtaskId = resultSet.getInt("s_id");
+                    if (!resultSet.wasNull() && task instanceof Epic epic) {
+                        Subtask subtask = new Subtask(
+                                resultSet.getString("s_name"),
+                                resultSet.getString("s_desc"),
+                                Status.valueOf(resultSet.getString("s_status")), epic);
+                        subtask.setId(subtaskId);
+                        epic.attachSubtask(subtask);
+                    }
+                }
+            }
+            return null;
+        });
+        List<Task> result = new ArrayList<>(found.size());
+        for (int i = 0; i < ids.length; i++) {
+            Task task = found.get(ids[i]);
+            if (task != null && task.getType() == types[i]) {
+                result.add(task);
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
         }
         return result;
     }
 
+    /**
+     * Читает задачи курсором по {@link #FETCH_SIZE} строк. Соединение занято до окончания обработки
+     */
     @Override
-    public void renewAllStatuses(String type, String status) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "UPDATE tasks set status = ? where type = ?")) {
-            statement.setObject(1, status);
-            statement.setObject(2, type);
-            statement.execute();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+    public void forEachTask(Consumer<? super Task> consumer) {
+        stream(SELECT_BY_TYPE, this::toTask, consumer, TASK.name());
     }
 
     @Override
-    public boolean existsById(int id, String type) {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "select id from tasks where id = ? and type = ?")) {
-            statement.setInt(1, id);
-            statement.setString(2, type);
-            return statement.executeQuery().next();
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
+    public void forEachEpic(Consumer<? super Epic> consumer) {
+        readEpics(SELECT_EPICS_ALL, consumer, true, EPIC.name());
+    }
+
+    @Override
+    public void forEachSubtask(Consumer<? super Subtask> consumer) {
+        stream(SELECT_SUBTASKS, subtaskMapper(), consumer);
     }
 
+    /**
+     * Закрывает соединение DAO. Пул соединений DAO не закрывает - им владеет создавший его код.
+     */
     @Override
     public void close() throws Exception {
-        connection.close();
+        if (connection != null) {
+            connection.close();
+        }
     }
 
     @Override
     public void begin() {
-        DbUtils.setAutoCommit(connection, false);
+        if (pool == null) {
+            DbUtils.setAutoCommit(connection, false);
+            return;
+        }
+        DbUtils.begin(pool);
     }
 
     @Override
     public void rollback() {
-        DbUtils.rollback(connection);
-        DbUtils.setAutoCommit(connection, true);
+        if (pool == null) {
+            DbUtils.rollback(connection);
+            DbUtils.setAutoCommit(connection, true);
+            return;
+        }
+        DbUtils.rollback(pool);
     }
 
     @Override
     public void commit() {
-        DbUtils.commit(connection);
-        DbUtils.setAutoCommit(connection, true);
+        if (pool == null) {
+            DbUtils.commit(connection);
+            DbUtils.setAutoCommit(connection, true);
+            return;
+        }
+        DbUtils.commit(pool);
+    }
+
+    /**
+     * Выполняет операцию на соединении DAO либо на соединении из пула.
+     * Соединение из пула возвращается в пул после операции, внутри транзакции используется соединение транзакции.
+     *
+     * @param action операция над соединением
+     * @param <T>    тип результата операции
+     * @return результат операции
+     */
+    private <T> T execute(SqlFunction<T> action) {
+        try {
+            if (pool == null) {
+                return action.apply(connection);
+            }
+            try (Connection borrowed = pool.getConnection()) {
+                return action.apply(borrowed);
+            }
+        } catch (SQLException e) {
+            log.error("Database connection failure: ", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Выполняет запрос и собирает все строки выборки в список
+     *
+     * @param sql    текст запроса
+     * @param mapper преобразование строки выборки в задачу
+     * @param params параметры запроса
+     * @param <T>    дженерик включающий Task и его наследников
+     * @return задачи выборки
+     */
+    private <T extends Task> List<T> query(String sql, RowMapper<T> mapper, Object... params) {
+        List<T> result = new ArrayList<>();
+        read(sql, resultSet -> result.add(mapper.map(resultSet)), false, params);
+        return result;
+    }
+
+    private <T extends Task> void stream(String sql, RowMapper<T> mapper, Consumer<? super T> consumer,
+                                         Object... params) {
+        read(sql, resultSet -> consumer.accept(mapper.map(resultSet)), true, params);
+    }
+
+    /**
+     * Передаёт строки выборки обработчику строк по мере чтения.
+     * В потоковом режиме задаёт размер выборки {@link #FETCH_SIZE}. Драйвер PostgreSQL читает строки
+     * курсором только вне режима автофиксации, поэтому вне транзакции запрос выполняется в отдельной
+     * транзакции, которая фиксируется после чтения.
+     *
+     * @param sql       текст запроса
+     * @param handler   обработчик текущей строки выборки
+     * @param streaming читать выборку курсором
+     * @param params    параметры запроса
+     */
+    private void read(String sql, RowHandler handler, boolean streaming, Object... params) {
+        execute(connection -> {
+            boolean autoCommit = streaming && connection.getAutoCommit();
+            if (autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                if (streaming) {
+                    statement.setFetchSize(FETCH_SIZE);
+                }
+                for (int i = 0; i < params.length; i++) {
+                    statement.setObject(i + 1, params[i]);
+                }
+                ResultSet resultSet = statement.executeQuery();
+                while (resultSet.next()) {
+                    handler.handle(resultSet);
+                }
+            } finally {
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+    }
+
+    private Task toTask(ResultSet resultSet) throws SQLException {
+        Task task = new Task(
+                resultSet.getString("name"),
+                resultSet.getString("description"),
+                Status.valueOf(resultSet.getString("status")));
+        task.setId(resultSet.getInt("id"));
+        return task;
+    }
+
+    private Epic toEpic(ResultSet resultSet) throws SQLException {
+        Epic epic = new Epic(
+                resultSet.getString("name"),
+                resultSet.getString("description"),
+                Status.valueOf(resultSet.getString("status")));
+        epic.setId(resultSet.getInt("id"));
+        return epic;
+    }
+
+    /**
+     * Преобразование строк выборки подзадач с полями эпика e_*. Подзадачи одного эпика получают общий
+     * экземпляр эпика, в список подзадач которого добавляются прочитанные подзадачи.
+     * Новый преобразователь создаётся на каждый запрос
+     */
+    private RowMapper<Subtask> subtaskMapper() {
+        Map<Integer, Epic> epics = new HashMap<>();
+        return resultSet -> {
+            int epicId = resultSet.getInt("epic_id");
+            Epic epic = epics.get(epicId);
+            if (epic == null) {
+                epic = new Epic(
+                        resultSet.getString("e_name"),
+                        resultSet.getString("e_desc"),
+                        Status.valueOf(resultSet.getString("e_status")));
+                epic.setId(epicId);
+                epics.put(epicId, epic);
+            }
+            Subtask subtask = new Subtask(
+                    resultSet.getString("name"),
+                    resultSet.getString("description"),
+                    Status.valueOf(resultSet.getString("status")), epic);
+            subtask.setId(resultSet.getInt("id"));
+            epic.attachSubtask(subtask);
+            return subtask;
+        };
+    }
+
+    /**
+     * Читает эпики вместе с подзадачами из выборки {@link #SELECT_EPICS}, сгруппированной по эпику.
+     * Эпик передаётся обработчику после чтения всех его строк. Статус эпика берётся из БД и не пересчитывается
+     *
+     * @param sql       запрос на основе {@link #SELECT_EPICS}
+     * @param consumer  обработчик эпиков
+     * @param streaming читать выборку курсором
+     * @param params    параметры запроса
+     */
+    private void readEpics(String sql, Consumer<? super Epic> consumer, boolean streaming, Object... params) {
+        Epic[] current = new Epic[1];
+        read(sql, resultSet -> {
+            int id = resultSet.getInt("id");
+            Epic epic = current[0];
+            if (epic == null || epic.getId() != id) {
+                if (epic != null) {
+                    consumer.accept(epic);
+                }
+                epic = toEpic(resultSet);
+                current[0] = epic;
+            }
+            int subtaskId = resultSet.getInt("s_id");
+            if (!resultSet.wasNull()) {
+                Subtask subtask = new Subtask(
+                        resultSet.getString("s_name"),
+                        resultSet.getString("s_desc"),
+                        Status.valueOf(resultSet.getString("s_status")), epic);
+                subtask.setId(subtaskId);
+                epic.attachSubtask(subtask);
+            }
+        }, streaming, params);
+        if (current[0] != null) {
+            consumer.accept(current[0]);
+        }
+    }
+
+    /**
+     * Преобразование строки выборки в объект
+     */
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Обработка текущей строки выборки
+     */
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet resultSet) throws SQLException;
     }
 
     /**
@@ -351,13 +999,16 @@ public class DbTaskDao implements TaskDao, AutoCloseable {
      * @return Optional искомой задачи
      * @see #getTask(int)
      * @see #deleteTask(int)
-     * @see #getEpic(int)
      * @see #deleteEpic(int)
      * @see #getSubtask(int)
      * @see #deleteSubtask(int)
      */
     private <T extends Task> Optional<T> getTaskByIdAndType(int id, String type) {
+        return execute(connection -> getTaskByIdAndType(connection, id, type));
+    }
 
+    private <T extends Task> Optional<T> getTaskByIdAndType(Connection connection, int id, String type)
+            throws SQLException {
         try (PreparedStatement selectStmt = connection.prepareStatement("""
                 select t.type as type,
                        t.id as id,
@@ -374,46 +1025,230 @@ public class DbTaskDao implements TaskDao, AutoCloseable {
                 """)) {
             selectStmt.setInt(1, id);
             selectStmt.setString(2, type);
-            ResultSet resultSet = selectStmt.executeQuery();
-            if (resultSet.next()) {
-                TaskType taskType = TaskType.valueOf(type);
-                switch (taskType) {
-                    case TASK -> {
-                        Task task = new Task(
-                                resultSet.getString("name"),
-                                resultSet.getString("description"),
-                                Status.valueOf(resultSet.getString("status")));
-                        task.setId(id);
-                        return Optional.ofNullable((T) task);
-                    }
-                    case EPIC -> {
-                        Epic epic = new Epic(
-                                resultSet.getString("name"),
-                                resultSet.getString("description"),
-                                Status.valueOf(resultSet.getString("status")));
-                        epic.setId(id);
-                        return Optional.ofNullable((T) epic);
-                    }
+            return readTask(selectStmt.executeQuery(), type);
+        }
+    }
 
-                    case SUBTASK -> {
-                        Epic epic = new Epic(
-                                resultSet.getString("e_name"),
-                                resultSet.getString("e_desc"),
-                                Status.valueOf(resultSet.getString("e_status")));
-                        epic.setId(resultSet.getInt("e_id"));
-                        Subtask subtask = new Subtask(
-                                resultSet.getString("name"),
-                                resultSet.getString("description"),
-                                Status.valueOf(resultSet.getString("status")), epic);
-                        subtask.setId(id);
-                        return Optional.ofNullable((T) subtask);
-                    }
+    /**
+     * Читает задачу необходимого типа из первой строки выборки.
+     * Выборка содержит поля задачи и поля её эпика с префиксом e_
+     *
+     * @param resultSet выборка
+     * @param type      тип задачи
+     * @param <T>       дженерик включающий Task и его наследников
+     * @return Optional прочитанной задачи, пустой - если выборка пуста
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Task> Optional<T> readTask(ResultSet resultSet, String type) throws SQLException {
+        if (!resultSet.next()) {
+            return Optional.empty();
+        }
+        return Optional.of((T) mapTask(resultSet, TaskType.valueOf(type)));
+    }
+
+    /**
+     * Преобразует текущую строку выборки в задачу заданного типа.
+     * Строка содержит поля задачи и поля её эпика с префиксом e_
+     */
+    private Task mapTask(ResultSet resultSet, TaskType type) throws SQLException {
+        int id = resultSet.getInt("id");
+        Task result = switch (type) {
+            case TASK -> new Task(
+                    resultSet.getString("name"),
+                    resultSet.getString("description"),
+                    Status.valueOf(resultSet.getString("status")));
+            case EPIC -> new Epic(
+                    resultSet.getString("name"),
+                    resultSet.getString("description"),
+                    Status.valueOf(resultSet.getString("status")));
+            case SUBTASK -> {
+                Epic epic = new Epic(
+                        resultSet.getString("e_name"),
+                        resultSet.getString("e_desc"),
+                        Status.valueOf(resultSet.getString("e_status")));
+                epic.setId(resultSet.getInt("e_id"));
+                yield new Subtask(
+                        resultSet.getString("name"),
+                        resultSet.getString("description"),
+                        Status.valueOf(resultSet.getString("status")), epic);
+            }
+        };
+        result.setId(id);
+        return result;
+    }
+
+    /**
+     * Вспомогательный метод.
+     * Служит для удаления Задачи необходимого типа одним запросом, возвращающим удалённую строку:
+     * DELETE ... RETURNING в PostgreSQL, OLD TABLE (DELETE ...) в H2
+     *
+     * @param id   айди удаляемой Задачи
+     * @param type тип удаляемой Задачи
+     * @param <T>  дженерик включающий Task и его наследников
+     * @return Optional удалённой задачи
+     * @see #deleteTask(int)
+     * @see #deleteEpic(int)
+     * @see #deleteSubtask(int)
+     */
+    private <T extends Task> Optional<T> deleteByIdAndType(int id, String type) {
+        return execute(connection -> deleteByIdAndType(connection, id, type));
+    }
+
+    private <T extends Task> Optional<T> deleteByIdAndType(Connection connection, int id, String type)
+            throws SQLException {
+        try (PreparedStatement deleteStmt = connection.prepareStatement(
+                isPostgres(connection) ? DELETE_RETURNING : DELETE_OLD_TABLE)) {
+            deleteStmt.setInt(1, id);
+            deleteStmt.setString(2, type);
+            Optional<T> deleted = readTask(deleteStmt.executeQuery(), type);
+            printMsg(deleted, id);
+            return deleted;
+        }
+    }
+
+    private Optional<Subtask> updateSubtaskOldTable(Connection connection, Subtask subtask) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_SUBTASK_OLD_TABLE)) {
+            setSubtaskUpdate(statement, subtask);
+            ResultSet resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                return Optional.empty();
+            }
+            Map<Integer, int[]> deltas = new HashMap<>();
+            move(deltas, resultSet.getInt("epic_id"), Status.valueOf(resultSet.getString("status")), subtask);
+            updateCounters(connection, deltas);
+            return Optional.of(subtask);
+        }
+    }
+
+    private static void setSubtaskUpdate(PreparedStatement statement, Subtask subtask) throws SQLException {
+        statement.setString(1, subtask.getName());
+        statement.setString(2, subtask.getDescription());
+        statement.setString(3, subtask.getStatus().name());
+        statement.setInt(4, subtask.getEpic().getId());
+        statement.setInt(5, subtask.getId());
+        statement.setInt(6, subtask.getEpic().getId());
+    }
+
+    /**
+     * Учитывает в изменениях счётчиков перенос подзадачи: прежний статус убирается из прежнего эпика,
+     * новый статус добавляется в эпик подзадачи
+     */
+    private static void move(Map<Integer, int[]> deltas, int previousEpicId, Status previous, Subtask subtask) {
+        int[] removed = deltas.computeIfAbsent(previousEpicId, key -> new int[Status.values().length]);
+        removed[previous.ordinal()]--;
+        int[] added = deltas.computeIfAbsent(subtask.getEpic().getId(), key -> new int[Status.values().length]);
+        added[subtask.getStatus().ordinal()]++;
+    }
+
+    /**
+     * Выполняет операцию из нескольких запросов атомарно на соединении DAO либо на соединении из пула
+     *
+     * @see #atomically(Connection, SqlFunction)
+     */
+    private <T> T executeAtomically(SqlFunction<T> action) {
+        return execute(connection -> atomically(connection, action));
+    }
+
+    /**
+     * Выполняет операцию из нескольких запросов атомарно. Вне транзакции операция выполняется в отдельной
+     * транзакции, которая фиксируется после операции и откатывается при ошибке
+     *
+     * @param connection соединение текущей операции
+     * @param action     операция над соединением
+     * @param <T>        тип результата операции
+     * @return результат операции
+     */
+    private static <T> T atomically(Connection connection, SqlFunction<T> action) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            return action.apply(connection);
+        }
+        connection.setAutoCommit(false);
+        try {
+            T result = action.apply(connection);
+            connection.commit();
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Меняет счётчики подзадач эпиков и пересчитывает их статусы, по запросу {@link #UPDATE_COUNTERS} на эпик
+     *
+     * @param connection соединение текущей операции
+     * @param deltas     изменения счётчиков по ID эпика, индекс - порядковый номер статуса
+     */
+    private void updateCounters(Connection connection, Map<Integer, int[]> deltas) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_COUNTERS)) {
+            for (Map.Entry<Integer, int[]> entry : deltas.entrySet()) {
+                int[] delta = entry.getValue();
+                statement.setInt(1, delta[0]);
+                statement.setInt(2, delta[1]);
+                statement.setInt(3, delta[2]);
+                statement.setInt(4, delta[1]);
+                statement.setInt(5, delta[2]);
+                statement.setInt(6, delta[0]);
+                statement.setInt(7, delta[1]);
+                statement.setInt(8, entry.getKey());
+                if (deltas.size() == 1) {
+                    statement.executeUpdate();
+                    return;
                 }
+                statement.addBatch();
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            statement.executeBatch();
+        }
+    }
+
+    /**
+     * @param removed статус убранной подзадачи, null - если подзадача добавлена
+     * @param added   статус добавленной подзадачи, null - если подзадача удалена
+     * @return изменение счётчиков эпика, индекс - порядковый номер статуса
+     */
+    private static int[] delta(Status removed, Status added) {
+        int[] result = new int[Status.values().length];
+        if (removed != null) {
+            result[removed.ordinal()]--;
+        }
+        if (added != null) {
+            result[added.ordinal()]++;
+        }
+        return result;
+    }
+
+    /**
+     * Переносит все подзадачи эпиков в счётчик заданного статуса после смены статуса всех подзадач
+     */
+    private void moveCountersTo(Connection connection, String status) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("""
+                update tasks set
+                    new_count = case when ? = 'NEW' then new_count + in_progress_count + done_count else 0 end,
+                    in_progress_count = case when ? = 'IN_PROGRESS'
+                        then new_count + in_progress_count + done_count else 0 end,
+                    done_count = case when ? = 'DONE' then new_count + in_progress_count + done_count else 0 end,
+                    status = case when new_count + in_progress_count + done_count = 0 then 'NEW' else ? end
+                where type = 'EPIC'
+                """)) {
+            for (int i = 1; i <= 4; i++) {
+                statement.setString(i, status);
+            }
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * Определяет СУБД по первому соединению. Результат кэшируется: все соединения DAO ведут к одной БД
+     */
+    private boolean isPostgres(Connection connection) throws SQLException {
+        Boolean result = postgres;
+        if (result == null) {
+            result = "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+            postgres = result;
         }
-        return Optional.empty();
+        return result;
     }
 
     /**
@@ -426,12 +1261,14 @@ public class DbTaskDao implements TaskDao, AutoCloseable {
      * @see #deleteAllSubtasks()
      *
      */
-    private void deleteAllByType(String type) throws SQLException {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "delete from tasks where type = ?")) {
-            statement.setString(1, type);
-            statement.execute();
-        }
+    private void deleteAllByType(String type) {
+        execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "delete from tasks where type = ?")) {
+                statement.setString(1, type);
+                return statement.execute();
+            }
+        });
     }
 
     /**
@@ -459,16 +1296,34 @@ public class DbTaskDao implements TaskDao, AutoCloseable {
      * @see #updateEpic(Epic)
      * @see #updateSubtask(Subtask)
      */
-    private int updateBy(Task task, String type) throws SQLException {
-        try (PreparedStatement statement = connection.prepareStatement(
-                "UPDATE tasks set name = ?, description = ?, status = ?, viewed = ? where id = ? and type = ?")) {
-            statement.setString(1, task.getName());
-            statement.setString(2, task.getDescription());
-            statement.setObject(3, task.getStatus().name());
-            statement.setBoolean(4, false);
-            statement.setInt(5, task.getId());
-            statement.setString(6, type);
-            return statement.executeUpdate();
+    private int updateBy(Task task, String type) {
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "UPDATE tasks set name = ?, description = ?, status = ?, viewed = ? where id = ? and type = ?")) {
+                statement.setString(1, task.getName());
+                statement.setString(2, task.getDescription());
+                statement.setObject(3, task.getStatus().name());
+                statement.setBoolean(4, false);
+                statement.setInt(5, task.getId());
+                statement.setString(6, type);
+                return statement.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Присваивает задачам ID, сгенерированные БД при пакетной вставке, в порядке добавления в пакет
+     *
+     * @param statement выполненный пакетный запрос
+     * @param tasks     задачи в порядке добавления в пакет
+     */
+    private void setGeneratedIds(PreparedStatement statement, List<? extends Task> tasks) throws SQLException {
+        ResultSet resultSet = statement.getGeneratedKeys();
+        for (Task task : tasks) {
+            if (!resultSet.next()) {
+                break;
+            }
+            task.setId(resultSet.getInt(1));
         }
     }
 
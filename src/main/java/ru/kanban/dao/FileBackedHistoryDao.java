@@ -1,34 +1,142 @@
 package ru.kanban.dao;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.kanban.configurations.StorageOptions;
 import ru.kanban.exceptions.ManagerSaveException;
 import ru.kanban.model.Subtask;
 import ru.kanban.model.Task;
 import ru.kanban.model.TaskType;
+import ru.kanban.storage.BinaryTaskCodec;
+import ru.kanban.storage.Durability;
+import ru.kanban.storage.HistoryRing;
+import ru.kanban.storage.RecordAppender;
+import ru.kanban.storage.TaskFormat;
+import ru.kanban.storage.TaskRecord;
 
 import static ru.kanban.model.TaskType.SUBTASK;
+import static ru.kanban.utils.Constants.HISTORY_SIZE;
 
-public class FileBackedHistoryDao extends InMemoryHistoryDao {
+public class FileBackedHistoryDao extends InMemoryHistoryDao implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(FileBackedHistoryDao.class);
     private final String historyFile;
+    private final RecordAppender appender;
+    private final TaskFormat format;
+    private final HistoryRing ring;
+    private boolean headerWritten;
 
+    /**
+     * @param path путь к файлу истории. Каждый просмотр сразу пишется в файл без сброса на диск
+     *             ({@link Durability#WRITE_THROUGH})
+     */
     public FileBackedHistoryDao(String path) {
+        this(path, Durability.WRITE_THROUGH);
+    }
+
+    public FileBackedHistoryDao(String path, Durability durability) {
+        this(path, durability, TaskFormat.CSV);
+    }
+
+    /**
+     * @param path       путь к файлу истории
+     * @param durability гарантии сохранности записей истории
+     * @param format     формат нового файла истории. Существующий непустой файл сохраняет свой формат
+     */
+    public FileBackedHistoryDao(String path, Durability durability, TaskFormat format) {
+        this(path, durability, format, openRing(path, HistoryRing.isRing(Path.of(path)), HISTORY_SIZE,
+                HistoryRing.DEFAULT_SLOT_SIZE, durability), HISTORY_SIZE);
+    }
+
+    /**
+     * @param path    путь к файлу истории
+     * @param options настройки хранилища: гарантии сохранности, формат, режим файла и ёмкость истории.
+     *                Существующий непустой файл сохраняет свой формат и режим, файл фиксированного размера -
+     *                и свою ёмкость
+     */
+    public FileBackedHistoryDao(String path, StorageOptions options) {
+        this(path, options.getDurability(), options.getFormat(),
+                openRing(path, HistoryRing.isRing(Path.of(path)) || options.isHistoryRing() && isEmpty(Path.of(path)),
+                        options.getHistoryCapacity(), options.getHistorySlotSize(), options.getDurability()),
+                options.getHistoryCapacity());
+    }
+
+    private FileBackedHistoryDao(String path, Durability durability, TaskFormat format, HistoryRing ring,
+                                 int capacity) {
+        super(ring != null ? ring.getCapacity() : capacity);
         this.historyFile = path;
+        this.appender = new RecordAppender(Path.of(path), durability);
+        this.ring = ring;
+        this.format = ring != null ? TaskFormat.BINARY : BinaryTaskCodec.detect(Path.of(path), format);
+        this.headerWritten = ring == null && BinaryTaskCodec.isBinary(Path.of(path));
     }
 
     @Override
     public void addToHistory(Task task) {
         super.addToHistory(task);
-        try (PrintWriter historyWriter = new PrintWriter(new OutputStreamWriter(
-                new FileOutputStream(historyFile, true))
-        )) {
-            historyWriter.println(toString(task));
-        } catch (IOException e) {
-            log.error("File is missing.");
-            throw new ManagerSaveException("File writing exception");
+        if (ring != null) {
+            ring.put(task);
+            return;
+        }
+        if (format == TaskFormat.CSV) {
+            appender.append(toString(task));
+            return;
+        }
+        if (!headerWritten) {
+            appender.append(BinaryTaskCodec.header());
+            headerWritten = true;
+        }
+        appender.append(BinaryTaskCodec.encode(task));
+    }
+
+    @Override
+    protected void onRemoved(int id) {
+        super.onRemoved(id);
+        if (ring != null) {
+            ring.remove(id);
+        }
+    }
+
+    public TaskFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return true - история хранится в файле фиксированного размера {@link HistoryRing}
+     */
+    public boolean isRing() {
+        return ring != null;
+    }
+
+    /**
+     * Восстанавливает историю из файла фиксированного размера, без повторной записи в файл
+     *
+     * @param mapper преобразует запись просмотра в задачу
+     */
+    public void loadRing(Function<TaskRecord, Task> mapper) {
+        ring.read(record -> addWithoutWrite(mapper.apply(record)));
+    }
+
+    /**
+     * Дожидается записи в файл всех просмотров, ожидающих в очереди
+     */
+    public void flush() {
+        if (ring != null) {
+            ring.flush();
+        }
+        appender.sync();
+    }
+
+    @Override
+    public void close() {
+        if (ring != null) {
+            ring.close();
         }
+        appender.close();
     }
 
     public void addWithoutWrite(Task task) {
@@ -39,6 +147,20 @@ public class FileBackedHistoryDao extends InMemoryHistoryDao {
         return new File(historyFile);
     }
 
+    private static HistoryRing openRing(String path, boolean ring, int capacity, int slotSize,
+                                        Durability durability) {
+        return ring ? new HistoryRing(Path.of(path), capacity, slotSize, durability) : null;
+    }
+
+    private static boolean isEmpty(Path path) {
+        try {
+            return !Files.exists(path) || Files.size(path) == 0;
+        } catch (IOException e) {
+            log.error("File {} can't be read.", path);
+            throw new ManagerSaveException("File reading exception");
+        }
+    }
+
     /**
      * Вспомогательный метод {@link #addToHistory(Task)} - для сериализации задачи
      * @param task задача
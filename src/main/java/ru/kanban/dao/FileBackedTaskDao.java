@@ -8,145 +8,307 @@ import java.util.List;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.kanban.configurations.StorageOptions;
 import ru.kanban.exceptions.ManagerSaveException;
 import ru.kanban.model.*;
+import ru.kanban.storage.BinaryTaskCodec;
+import ru.kanban.storage.CsvTaskParser;
+import ru.kanban.storage.DurableFiles;
+import ru.kanban.storage.JournalOperation;
+import ru.kanban.storage.RecordAppender;
+import ru.kanban.storage.SnapshotCompactor;
+import ru.kanban.storage.TaskFormat;
+import ru.kanban.storage.TaskJournal;
+import ru.kanban.storage.TaskRecord;
 
-import static ru.kanban.model.Status.*;
 import static ru.kanban.model.TaskType.*;
 import static ru.kanban.utils.Constants.HEADER;
+import static ru.kanban.utils.Constants.JOURNAL_EXTENSION;
 
-public class FileBackedTaskDao extends InMemoryTaskDao {
+public class FileBackedTaskDao extends InMemoryTaskDao implements AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(FileBackedTaskDao.class);
     private final String filePath;
+    private final TaskJournal journal;
+    private final StorageOptions options;
+    private final SnapshotCompactor compactor;
+    private final RecordAppender appender;
+    private final TaskFormat format;
+    private long snapshotVersion;
+    private boolean headerWritten;
 
     public FileBackedTaskDao(String path) {
+        this(path, new StorageOptions());
+    }
+
+    /**
+     * @param path    путь к файлу со снимком состояния хранилища
+     * @param options настройки хранилища. В режиме журнала изменения дописываются в файл
+     *                {@code path + }{@link ru.kanban.utils.Constants#JOURNAL_EXTENSION}
+     */
+    public FileBackedTaskDao(String path, StorageOptions options) {
         super();
         this.filePath = path;
+        this.options = options;
+        this.format = BinaryTaskCodec.detect(Path.of(path), options.getFormat());
+        this.journal = options.isJournaled()
+                ? new TaskJournal(Path.of(path + JOURNAL_EXTENSION), options.getDurability(), format)
+                : null;
+        this.appender = options.isJournaled() ? null : new RecordAppender(Path.of(path), options.getDurability());
+        if (journal != null && isSnapshotEmpty()) {
+            writeHeader();
+        }
+        this.headerWritten = !isSnapshotEmpty();
+        this.compactor = options.isCompactionEnabled()
+                ? new SnapshotCompactor(this::compact, options.getCompactionInterval())
+                : null;
     }
 
     @Override
-    public Task addTask(Task task) {
+    public synchronized Task addTask(Task task) {
         super.addTask(task);
-        writeToFile(task);
+        persistAdded(task);
         return task;
     }
 
     @Override
-    public Optional<Task> deleteTask(int id) {
+    public synchronized Optional<Task> deleteTask(int id) {
         Optional<Task> res = super.deleteTask(id);
-        save();
+        persistDeleted(res.isPresent(), id, TASK);
         return res;
     }
 
     @Override
-    public void deleteAllTasks() {
+    public synchronized void deleteAllTasks() {
         super.deleteAllTasks();
-        save();
+        persistCleared(TASK);
     }
 
     @Override
-    public Epic addEpic(Epic epic) {
+    public synchronized Epic addEpic(Epic epic) {
         super.addEpic(epic);
-        writeToFile(epic);
+        persistAdded(epic);
         return epic;
     }
 
     @Override
-    public Optional<Epic> deleteEpic(int id) {
+    public synchronized Optional<Epic> deleteEpic(int id) {
         Optional<Epic> res = super.deleteEpic(id);
-        save();
+        persistDeleted(res.isPresent(), id, EPIC);
         return res;
     }
 
     @Override
-    public void deleteAllEpics() {
+    public synchronized void deleteAllEpics() {
         super.deleteAllEpics();
-        save();
+        persistCleared(EPIC);
     }
 
     @Override
-    public Optional<Epic> updateEpic(Epic epic) {
+    public synchronized Optional<Epic> updateEpic(Epic epic) {
         Optional<Epic> res = super.updateEpic(epic);
-        save();
+        res.ifPresent(this::persistUpdated);
         return res;
     }
 
     @Override
-    public Subtask addSubtask(Subtask subtask) {
+    public synchronized Subtask addSubtask(Subtask subtask) {
         super.addSubtask(subtask);
-        writeToFile(subtask);
+        persistAdded(subtask);
         return subtask;
     }
 
     @Override
-    public boolean deleteSubtask(int id) {
-        boolean res = super.deleteSubtask(id);
-        save();
+    public synchronized Optional<Subtask> deleteSubtask(int id) {
+        Optional<Subtask> res = super.deleteSubtask(id);
+        persistDeleted(res.isPresent(), id, SUBTASK);
         return res;
     }
 
     @Override
-    public void deleteAllSubtasks() {
+    public synchronized void deleteAllSubtasks() {
         super.deleteAllSubtasks();
-        save();
+        persistCleared(SUBTASK);
     }
 
     @Override
-    public Optional<Subtask> updateSubtask(Subtask subtask) {
+    public synchronized Optional<Subtask> updateSubtask(Subtask subtask) {
         Optional<Subtask> res = super.updateSubtask(subtask);
-        save();
+        res.ifPresent(this::persistUpdated);
         return res;
     }
 
     @Override
-    public Optional<Task> updateTask(Task task) {
+    public synchronized Optional<Task> updateTask(Task task) {
         Optional<Task> res = super.updateTask(task);
-        save();
+        res.ifPresent(this::persistUpdated);
+        return res;
+    }
+
+    @Override
+    public synchronized List<Task> addTasks(List<Task> tasks) {
+        tasks.forEach(super::addTask);
+        persistAddedAll(tasks);
+        return tasks;
+    }
+
+    @Override
+    public synchronized List<Subtask> addSubtasks(List<Subtask> subtasks) {
+        subtasks.forEach(super::addSubtask);
+        persistAddedAll(subtasks);
+        return subtasks;
+    }
+
+    @Override
+    public synchronized List<Task> updateTasks(List<Task> tasks) {
+        List<Task> res = super.updateTasks(tasks);
+        if (journal != null) {
+            appendToJournal(JournalOperation.UPDATE, res.stream().map(TaskRecord::of).toList());
+        } else if (!res.isEmpty()) {
+            save();
+        }
         return res;
     }
 
+    @Override
+    public synchronized List<Task> deleteTasks(int... ids) {
+        List<Task> res = super.deleteTasks(ids);
+        if (journal != null) {
+            appendToJournal(JournalOperation.DELETE, res.stream().map(TaskRecord::of).toList());
+        } else if (!res.isEmpty()) {
+            save();
+        }
+        return res;
+    }
+
+    @Override
+    public synchronized void updateEpicStatus(int id, Status status) {
+        super.updateEpicStatus(id, status);
+        if (journal != null) {
+            appendToJournal(JournalOperation.UPDATE, TaskRecord.of(super.getEpic(id).get()));
+        }
+    }
+
+    @Override
+    public synchronized void renewAllStatuses(String type, String status) {
+        super.renewAllStatuses(type, status);
+        if (journal != null) {
+            appendToJournal(JournalOperation.STATUS,
+                    journalRecord(TaskType.valueOf(type), 0, Status.valueOf(status)));
+        }
+    }
+
+    public boolean isJournaled() {
+        return journal != null;
+    }
+
     /**
-     * Метод используется во всех CRUD операциях и актуализирует состояние хранилища в файле, переданном в
-     * {@link #filePath}
-     * При первой записи в файл - так же создает Заголовок - {@link ru.kanban.utils.Constants#HEADER}
+     * Сжимает журнал: записывает снимок текущего состояния во временный файл, атомарно подменяет им
+     * основной файл и удаляет из журнала учтённые в снимке записи.
+     * Хранилище блокируется только на время копирования состояния и подмены файлов, запись временного
+     * файла выполняется без блокировки. Временный файл сбрасывается на диск до подмены ({@link DurableFiles}).
+     * Если процесс прервётся между подменой снимка и обрезкой журнала, при загрузке уже учтённые в снимке
+     * записи журнала будут применены повторно (см. {@link #applyJournalRecord(JournalOperation, TaskRecord)}).
      */
-    public void save() {
-        try (PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(
-                        new FileOutputStream(filePath), StandardCharsets.UTF_8))
-        ) {
-            writer.println(HEADER);
-            for (Task task : getTasks()) {
-                writer.println(toString(task));
+    public void compact() {
+        if (journal == null) {
+            return;
+        }
+        byte[] snapshot;
+        long mark;
+        long version;
+        synchronized (this) {
+            snapshot = snapshotBytes();
+            mark = journal.getBytes();
+            version = snapshotVersion;
+        }
+        Path temp;
+        try {
+            temp = DurableFiles.writeTemp(Path.of(filePath), snapshot);
+        } catch (IOException e) {
+            log.error("Snapshot can't be written.");
+            throw new ManagerSaveException("Snapshot writing exception");
+        }
+        synchronized (this) {
+            if (version != snapshotVersion) {
+                deleteQuietly(temp);
+                return;
             }
-
-            for (Epic epic : getEpics()) {
-                writer.println(toString(epic));
+            try {
+                DurableFiles.replace(temp, Path.of(filePath));
+            } catch (IOException e) {
+                log.error("Snapshot can't be replaced.");
+                throw new ManagerSaveException("Snapshot writing exception");
             }
+            journal.truncate(mark);
+            snapshotVersion++;
+        }
+        log.debug("Journal compacted into snapshot {}", filePath);
+    }
 
-            for (Subtask subtask : getSubtasks()) {
-                writer.println(toString(subtask));
-            }
+    /**
+     * Дожидается записи в файлы всех изменений, ожидающих в очереди.
+     */
+    public void flush() {
+        if (journal != null) {
+            journal.sync();
+        } else {
+            appender.sync();
+        }
+    }
+
+    /**
+     * Останавливает фоновое сжатие журнала, если оно было включено, дописывает ожидающие изменения
+     * и закрывает файлы.
+     */
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.close();
+        }
+        if (journal != null) {
+            journal.close();
+        } else {
+            appender.close();
+        }
+    }
+
+    /**
+     * Метод используется во всех CRUD операциях и актуализирует состояние хранилища в файле, переданном в
+     * {@link #filePath}
+     * При первой записи в файл - так же создает Заголовок - {@link ru.kanban.utils.Constants#HEADER}
+     * В режиме журнала записывает снимок состояния и очищает журнал, так как все его записи уже учтены в снимке.
+     */
+    public synchronized void save() {
+        if (appender != null) {
+            appender.sync();
+        }
+        try {
+            Files.write(Path.of(filePath), snapshotBytes());
         } catch (IOException e) {
             log.error("File is missing.");
             throw new ManagerSaveException("File writing exception");
         }
+        if (journal != null) {
+            journal.clear();
+        }
+        snapshotVersion++;
+        headerWritten = true;
     }
 
+    /**
+     * Дописывает задачу в конец файла через {@link RecordAppender}, не открывая файл заново.
+     * При первой записи в пустой файл - так же записывает Заголовок - {@link ru.kanban.utils.Constants#HEADER}
+     */
     public void writeToFile(Task task) {
-        try (PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(
-                        new FileOutputStream(filePath, true), StandardCharsets.UTF_8)
-        )
-        ) {
-            if (Files.size(Path.of(filePath)) == 0) {
-                writer.println(HEADER);
-            }
-            writer.println(toString(task));
-        } catch (IOException e) {
-            log.error("File is missing.");
-            throw new ManagerSaveException("File writing exception");
+        if (!headerWritten) {
+            appender.append(headerBytes());
+            headerWritten = true;
         }
+        appender.append(encode(task));
+    }
+
+    public TaskFormat getFormat() {
+        return format;
     }
 
     public String toString(Task task) {
@@ -196,6 +358,24 @@ public class FileBackedTaskDao extends InMemoryTaskDao {
         }
     }
 
+    /**
+     * Создаёт задачу с соответствующим типом из прочитанной записи файла
+     *
+     * @param record поля записи
+     * @return Task / Epic / Subtask
+     */
+    public Task fromRecord(TaskRecord record) {
+        Task task;
+        switch (record.getType()) {
+            case EPIC -> task = new Epic(record.getName(), record.getDescription(), record.getStatus());
+            case SUBTASK -> task = new Subtask(record.getName(), record.getDescription(), record.getStatus(),
+                    super.getEpic(record.getEpicId()).get());
+            default -> task = new Task(record.getName(), record.getDescription(), record.getStatus());
+        }
+        task.setId(record.getId());
+        return task;
+    }
+
     /**
      * Метод загружает из файлов задачи в основное хранилище и хранилище истории
      *
@@ -204,60 +384,63 @@ public class FileBackedTaskDao extends InMemoryTaskDao {
      * @throws FileNotFoundException при отсутствии необходимых файлов
      */
     public static FileBackedTaskDao loadFromFile(String[] args) throws FileNotFoundException {
+        validateArgs(args);
+        StorageOptions options = new StorageOptions();
+        options.setJournaled(Files.exists(Path.of(args[0] + JOURNAL_EXTENSION)));
+        return loadFromFile(args, options);
+    }
+
+    /**
+     * Метод загружает из файлов задачи в основное хранилище и хранилище истории.
+     * Если рядом с файлом задач есть журнал изменений, он применяется поверх снимка состояния.
+     *
+     * @param args    пути к файлам задач (под [0] индексом) и истории (под [1] индексом)
+     * @param options настройки создаваемого хранилища
+     * @return Дао со всеми загруженными в память задачами
+     * @throws FileNotFoundException при отсутствии необходимых файлов
+     */
+    public static FileBackedTaskDao loadFromFile(String[] args, StorageOptions options) throws FileNotFoundException {
         validateArgs(args);
         String taskPath = args[0];
         String historyPath = args[1];
-        FileBackedHistoryDao historyManager = new FileBackedHistoryDao(historyPath);
         FileBackedTaskDao fileBackedTaskManager = new FileBackedTaskDao(
-                taskPath
+                taskPath, options
         );
-        try (BufferedReader taskReader = new BufferedReader(
-                new InputStreamReader(
-                        new FileInputStream(taskPath), StandardCharsets.UTF_8
-                ));
-             BufferedReader historyReader = new BufferedReader(new InputStreamReader(
-                     new FileInputStream(historyPath), StandardCharsets.UTF_8
-             ))
-        ) {
-            List<String> tasks = taskReader.lines().toList();
-            List<String> history = historyReader.lines().toList();
-            if (!tasks.get(0).equals(HEADER)) {
-                log.error("File contains incorrect HEADER.");
-                throw new IllegalArgumentException("Must be: id,type,name,status,description,epic id");
+        try (FileBackedHistoryDao historyManager = new FileBackedHistoryDao(historyPath, options)) {
+            synchronized (fileBackedTaskManager) {
+                fileBackedTaskManager.load(taskPath, historyPath, historyManager);
             }
-            tasks.stream()
-                    .skip(1)
-                    .forEach(string -> {
-                                validateFormat(string);
-                                Task task = fileBackedTaskManager.fromString(string);
-                                if (task.getType().equals(EPIC)) {
-                                    fileBackedTaskManager.addEpicWithoutFileSaving((Epic) task);
-                                    return;
-                                }
-                                if (task.getType().equals(SUBTASK)) {
-                                    fileBackedTaskManager.addSubtaskWithoutSaving((Subtask) task);
-                                } else {
-                                    fileBackedTaskManager.addTaskWithoutFileSaving(task);
-                                }
-                            }
-                    );
-            history.stream()
-                    .filter(string -> !string.isEmpty())
-                    .forEach(string -> {
-                                validateFormat(string);
-                                Task task = fileBackedTaskManager.fromString(string);
-                                if (task != null) {
-                                    historyManager.addWithoutWrite(task);
-                                }
-                            }
-                    );
-        } catch (IOException e) {
-            log.error("File is missing");
-            throw new ManagerSaveException("File writing exception");
         }
         return fileBackedTaskManager;
     }
 
+    /**
+     * Загружает снимок, журнал и историю. Выполняется под блокировкой хранилища, чтобы фоновое сжатие
+     * не записало снимок частично загруженного состояния.
+     */
+    private void load(String taskPath, String historyPath, FileBackedHistoryDao historyManager) {
+        if (options.getLoadParallelism() > 1) {
+            restoreAll(format == TaskFormat.BINARY
+                    ? BinaryTaskCodec.readParallel(Path.of(taskPath), options.getLoadParallelism())
+                    : CsvTaskParser.readParallel(Path.of(taskPath), true, false, options.getLoadParallelism()));
+        } else if (format == TaskFormat.BINARY) {
+            BinaryTaskCodec.read(Path.of(taskPath), record -> restore(fromRecord(record)));
+        } else {
+            CsvTaskParser.read(Path.of(taskPath), true, false, record -> restore(fromRecord(record)));
+        }
+        new TaskJournal(Path.of(taskPath + JOURNAL_EXTENSION), options.getDurability(), format)
+                .replay(this::applyJournalRecord);
+        if (historyManager.isRing()) {
+            historyManager.loadRing(this::fromRecord);
+        } else if (BinaryTaskCodec.isBinary(Path.of(historyPath))) {
+            BinaryTaskCodec.read(Path.of(historyPath),
+                    record -> historyManager.addWithoutWrite(fromRecord(record)));
+        } else {
+            CsvTaskParser.read(Path.of(historyPath), false, true,
+                    record -> historyManager.addWithoutWrite(fromRecord(record)));
+        }
+    }
+
     /**
      * Вспомогательный метод для валидации переданных параметров в {@link #loadFromFile(String[])}
      * @param args подразумевает пути к файлам в которых хранятся задачи(под [0] индексом) и история (под [1] индексом)
@@ -269,9 +452,9 @@ public class FileBackedTaskDao extends InMemoryTaskDao {
                     "Not enough arguments, for execute. Enter paths: to TaskManager and History"
             );
         }
-        if (!args[0].endsWith(".csv") || !args[1].endsWith(".csv")) {
-            log.error("Illegal file extension. Expected : .csv");
-            throw new IllegalArgumentException("Illegal file extension. Expected : .csv");
+        if (!hasSupportedExtension(args[0]) || !hasSupportedExtension(args[1])) {
+            log.error("Illegal file extension. Expected : .csv or .bin");
+            throw new IllegalArgumentException("Illegal file extension. Expected : .csv or .bin");
         }
         if (!Files.exists(Path.of(args[0]))) {
             log.error("Illegal file extension. Expected : .csv");
@@ -284,74 +467,235 @@ public class FileBackedTaskDao extends InMemoryTaskDao {
         }
     }
 
+    private static boolean hasSupportedExtension(String path) {
+        return path.endsWith(".csv") || path.endsWith(".bin");
+    }
+
+    /**
+     * Применяет запись журнала к хранилищу в памяти, без повторной записи в файлы.
+     * Журнал может содержать записи, уже учтённые в снимке (сбой между подменой снимка и обрезкой журнала),
+     * поэтому каждая запись задаёт итоговое значение, а не приращение: ADD уже существующей задачи
+     * применяется как UPDATE и сохраняет экземпляр эпика вместе с его подзадачами, а ADD / UPDATE подзадачи
+     * удалённого эпика пропускается - эпик удалён более поздней записью журнала.
+     *
+     * @param operation тип записи
+     * @param fields    поля записи
+     */
+    private void applyJournalRecord(JournalOperation operation, TaskRecord fields) {
+        switch (operation) {
+            case ADD, UPDATE -> {
+                if (fields.getType() == SUBTASK && !super.existsById(fields.getEpicId(), EPIC.name())) {
+                    log.warn("Journal record of subtask {} with missing epic {} is skipped",
+                            fields.getId(), fields.getEpicId());
+                    return;
+                }
+                Task task = fromRecord(fields);
+                if (operation == JournalOperation.ADD && !super.existsById(task.getId(), task.getType().name())) {
+                    restore(task);
+                } else {
+                    applyUpdate(task);
+                }
+            }
+            case DELETE -> {
+                int id = fields.getId();
+                switch (fields.getType()) {
+                    case TASK -> super.deleteTask(id);
+                    case EPIC -> super.deleteEpic(id);
+                    case SUBTASK -> super.deleteSubtask(id);
+                }
+            }
+            case CLEAR -> {
+                switch (fields.getType()) {
+                    case TASK -> super.deleteAllTasks();
+                    case EPIC -> super.deleteAllEpics();
+                    case SUBTASK -> super.deleteAllSubtasks();
+                }
+            }
+            case STATUS -> super.renewAllStatuses(fields.getType().name(), fields.getStatus().name());
+        }
+    }
+
+    /**
+     * Восстанавливает записи, прочитанные параллельно: сначала задачи и эпики, затем подзадачи,
+     * поэтому подзадача может находиться в файле раньше своего эпика.
+     *
+     * @param chunks записи частей файла в порядке следования частей
+     */
+    private void restoreAll(List<List<TaskRecord>> chunks) {
+        for (List<TaskRecord> chunk : chunks) {
+            for (TaskRecord record : chunk) {
+                if (record.getType() != SUBTASK) {
+                    restore(fromRecord(record));
+                }
+            }
+        }
+        for (List<TaskRecord> chunk : chunks) {
+            for (TaskRecord record : chunk) {
+                if (record.getType() == SUBTASK) {
+                    restore(fromRecord(record));
+                }
+            }
+        }
+    }
+
     /**
-     * Вспомогательный метод {@link #loadFromFile(String[])} для валидации формата записи (csv),
-     * наличия заголовка, и корректного описания всех полей для дальнейшей десериализации
-     * @param string строка описывающая заголовок или задачу
+     * Запись журнала без данных задачи (DELETE, CLEAR, STATUS)
      */
-    private static void validateFormat(String string) {
-        String[] parts = string.split(",");
-        if (parts.length < 5 || parts.length > 6) {
-            log.error("Must be: id,type,name,status,description,epic id");
-            throw new IllegalArgumentException("Must be: id,type,name,status,description,epic id");
+    private static TaskRecord journalRecord(TaskType type, int id, Status status) {
+        TaskRecord record = new TaskRecord();
+        record.setType(type);
+        record.setId(id);
+        record.setStatus(status);
+        return record;
+    }
+
+    private void applyUpdate(Task task) {
+        switch (task.getType()) {
+            case TASK -> super.updateTask(task);
+            case EPIC -> super.getEpic(task.getId()).ifPresent(epic -> {
+                epic.setName(task.getName());
+                epic.setDescription(task.getDescription());
+                epic.setStatus(task.getStatus());
+            });
+            case SUBTASK -> {
+                if (super.existsById(task.getId(), SUBTASK.name())) {
+                    super.updateSubtask((Subtask) task);
+                }
+            }
+        }
+    }
+
+    private void restore(Task task) {
+        switch (task.getType()) {
+            case EPIC -> restoreEpic((Epic) task);
+            case SUBTASK -> restoreSubtask((Subtask) task);
+            default -> restoreTask(task);
+        }
+    }
+
+    private byte[] snapshotBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(headerBytes());
+        for (Task task : getTasks()) {
+            out.writeBytes(encode(task));
+        }
+        for (Epic epic : getStoredEpics()) {
+            out.writeBytes(encode(epic));
         }
+        for (Subtask subtask : getSubtasks()) {
+            out.writeBytes(encode(subtask));
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] headerBytes() {
+        return format == TaskFormat.BINARY
+                ? BinaryTaskCodec.header()
+                : (HEADER + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(Task task) {
+        return format == TaskFormat.BINARY
+                ? BinaryTaskCodec.encode(task)
+                : (toString(task) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void deleteQuietly(Path path) {
         try {
-            Integer.parseInt(parts[0]);
-        } catch (NumberFormatException e) {
-            log.error("Task ID is missing.");
-            throw new IllegalArgumentException("Task ID is missing.");
-        }
-        boolean correctType = parts[1].equals(TASK.name())
-                || parts[1].equals(EPIC.name())
-                || parts[1].equals(SUBTASK.name());
-        boolean correctName = !parts[2].isBlank();
-        boolean correctStatus = parts[3].equals(NEW.name())
-                || parts[3].equals(IN_PROGRESS.name())
-                || parts[3].equals(DONE.name());
-        boolean correctDescription = !parts[4].isBlank();
-
-        if (!correctType) {
-            log.error("Illegal task type.");
-            throw new IllegalArgumentException("Illegal task type.");
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Temporary file {} can't be deleted.", path);
         }
-        if (!correctName) {
-            log.error("Task name is missing");
-            throw new IllegalArgumentException("Task name is missing");
+    }
+
+    private void appendToJournal(JournalOperation operation, TaskRecord record) {
+        journal.append(operation, record);
+        if (compactor != null && isCompactionDue()) {
+            compactor.requestCompaction();
         }
-        if (!correctStatus) {
-            log.error("Illegal status provided");
-            throw new IllegalArgumentException("Illegal status provided");
+    }
+
+    private void appendToJournal(JournalOperation operation, List<TaskRecord> records) {
+        journal.appendAll(operation, records);
+        if (compactor != null && isCompactionDue()) {
+            compactor.requestCompaction();
         }
+    }
+
+    private boolean isCompactionDue() {
+        return options.getCompactionJournalBytes() > 0 && journal.getBytes() >= options.getCompactionJournalBytes()
+                || options.getCompactionJournalRecords() > 0
+                && journal.getRecords() >= options.getCompactionJournalRecords();
+    }
 
-        if (!correctDescription) {
-            log.error("Description is missing");
-            throw new IllegalArgumentException("Description is missing");
+    private void persistAdded(Task task) {
+        if (journal != null) {
+            appendToJournal(JournalOperation.ADD, TaskRecord.of(task));
+        } else {
+            writeToFile(task);
         }
+    }
 
-        if (parts[1].equals(SUBTASK.name())) {
-            try {
-                String epicId = parts[5];
-                Integer.parseInt(epicId);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                log.error("Epic ID at subtask: {}, is missing", parts[2]);
-                throw new IllegalArgumentException("Epic ID at subtask: " + parts[2] + " is missing");
-            } catch (NumberFormatException e) {
-                log.error("Epic ID at subtask: {}, is invalid", parts[2]);
-                throw new IllegalArgumentException("Epic ID at subtask: " + parts[2] + " is invalid");
-            }
+    /**
+     * Записывает добавленные задачи одной записью в файл (журнал или снимок)
+     */
+    private void persistAddedAll(List<? extends Task> added) {
+        if (added.isEmpty()) {
+            return;
         }
+        if (journal != null) {
+            appendToJournal(JournalOperation.ADD, added.stream().map(TaskRecord::of).toList());
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!headerWritten) {
+            out.writeBytes(headerBytes());
+            headerWritten = true;
+        }
+        added.forEach(task -> out.writeBytes(encode(task)));
+        appender.append(out.toByteArray());
     }
 
-    private void addTaskWithoutFileSaving(Task task) {
-        super.addTask(task);
+    private void persistUpdated(Task task) {
+        if (journal != null) {
+            appendToJournal(JournalOperation.UPDATE, TaskRecord.of(task));
+        } else {
+            save();
+        }
     }
 
-    private void addEpicWithoutFileSaving(Epic epic) {
-        super.addEpic(epic);
+    private void persistDeleted(boolean deleted, int id, TaskType type) {
+        if (journal == null) {
+            save();
+        } else if (deleted) {
+            appendToJournal(JournalOperation.DELETE, journalRecord(type, id, null));
+        }
     }
 
-    private void addSubtaskWithoutSaving(Subtask subtask) {
-        super.addSubtask(subtask);
+    private void persistCleared(TaskType type) {
+        if (journal != null) {
+            appendToJournal(JournalOperation.CLEAR, journalRecord(type, 0, null));
+        } else {
+            save();
+        }
+    }
+
+    private void writeHeader() {
+        try {
+            Files.write(Path.of(filePath), headerBytes());
+        } catch (IOException e) {
+            log.error("File is missing.");
+            throw new ManagerSaveException("File writing exception");
+        }
+    }
+
+    private boolean isSnapshotEmpty() {
+        try {
+            return !Files.exists(Path.of(filePath)) || Files.size(Path.of(filePath)) == 0;
+        } catch (IOException e) {
+            log.error("File is missing.");
+            throw new ManagerSaveException("File reading exception");
+        }
     }
 
 }
@@ -3,6 +3,12 @@ package ru.kanban.dao;
 import java.util.List;
 import ru.kanban.model.Task;
 
+/**
+ * Хранилище истории просмотров. Методы с ID пользователя работают с историей этого пользователя,
+ * методы без него - с общей историей ({@link ru.kanban.utils.Constants#DEFAULT_USER_ID}).
+ * Удаление задач из истории ({@link #remove(int)}, {@link #deleteAllByType(String)}) действует на историю всех
+ * пользователей. Хранилища без истории по пользователям по умолчанию ведут одну общую историю для всех.
+ */
 public interface HistoryDao {
     void setToViewed(Task task);
 
@@ -16,4 +22,15 @@ public interface HistoryDao {
 
     void deleteAllByType(String type);
 
+    default void addToHistory(int userId, Task task) {
+        addToHistory(task);
+    }
+
+    default List<Task> getViewedTasks(int userId) {
+        return getViewedTasks();
+    }
+
+    default void addAll(int userId, List<? extends Task> tasks) {
+        addAll(tasks);
+    }
 }
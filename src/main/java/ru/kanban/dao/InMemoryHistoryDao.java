@@ -1,15 +1,71 @@
 package ru.kanban.dao;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import ru.kanban.model.Task;
-import ru.kanban.utils.CustomLinkedList;
-import ru.kanban.utils.Node;
+import ru.kanban.model.TaskType;
+import ru.kanban.utils.IntMap;
+import ru.kanban.utils.LruRing;
 
+import static ru.kanban.utils.Constants.HISTORY_SIZE;
+
+/**
+ * История просмотров в памяти. Хранит ID и типы последних {@code capacity} просмотренных задач в {@link LruRing}:
+ * повторный просмотр переносит задачу в конец истории за O(1) без создания объектов, запись истории занимает
+ * постоянный объём независимо от размера задачи. Записи одного типа связаны в отдельную цепочку, поэтому
+ * {@link #deleteAllByType(String)} удаляет только записи этого типа, не просматривая остальную историю.
+ * История с хранилищем задач ({@link #InMemoryHistoryDao(TaskDao, int)}) не хранит сами задачи:
+ * {@link #getViewedTasks()} получает актуальные задачи из хранилища одним вызовом
+ * {@link TaskDao#getByIds(int[], TaskType[])}, удалённые из хранилища задачи пропускаются.
+ * История без хранилища задач хранит ссылки на просмотренные задачи (например, файловая история,
+ * которая сохраняет сами задачи в файл истории).
+ */
 public class InMemoryHistoryDao implements HistoryDao {
-    private final Map<Integer, Node<Task>> historyMap = new HashMap<>();
-    private final CustomLinkedList<Task> viewedTasks = new CustomLinkedList<>();
+    private static final Logger log = LoggerFactory.getLogger(InMemoryHistoryDao.class);
+    private final LruRing<TaskType> viewedTasks;
+    private final TaskDao taskDao;
+    /**
+     * Просмотренные задачи по ID, только для истории без хранилища задач
+     */
+    private final IntMap<Task> detached;
+
+    public InMemoryHistoryDao() {
+        this(HISTORY_SIZE);
+    }
+
+    /**
+     * @param capacity максимальное количество задач в истории
+     */
+    public InMemoryHistoryDao(int capacity) {
+        this(null, capacity);
+    }
+
+    /**
+     * @param taskDao хранилище, из которого читаются задачи истории
+     */
+    public InMemoryHistoryDao(TaskDao taskDao) {
+        this(taskDao, HISTORY_SIZE);
+    }
+
+    /**
+     * @param taskDao  хранилище, из которого читаются задачи истории, null - история хранит сами задачи
+     * @param capacity максимальное количество задач в истории
+     */
+    public InMemoryHistoryDao(TaskDao taskDao, int capacity) {
+        if (capacity <= 0) {
+            log.error("Illegal history capacity: {}", capacity);
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.viewedTasks = new LruRing<>(capacity, TaskType.values().length);
+        this.taskDao = taskDao;
+        this.detached = taskDao == null ? new IntMap<>() : null;
+    }
+
+    public int getCapacity() {
+        return viewedTasks.getCapacity();
+    }
 
     @Override
     public void setToViewed(Task task) {
@@ -18,26 +74,38 @@ public class InMemoryHistoryDao implements HistoryDao {
 
     @Override
     public void addToHistory(Task task) {
-        if (historyMap.containsKey(task.getId())) {
-            viewedTasks.removeNode(historyMap.get(task.getId()));
-        }
-        if (historyMap.size() >= 10) {
-            historyMap.remove(removeFirstTask());
+        if (detached != null) {
+            if (viewedTasks.size() == viewedTasks.getCapacity() && !viewedTasks.contains(task.getId())) {
+                detached.remove(viewedTasks.eldestKey());
+            }
+            detached.put(task.getId(), task);
         }
-        Node<Task> lastViewed = viewedTasks.linkLast(task);
-        historyMap.put(task.getId(), lastViewed);
+        viewedTasks.put(task.getId(), task.getType(), task.getType().ordinal());
     }
 
     @Override
     public void remove(int id) {
-        if (historyMap.containsKey(id)) {
-            viewedTasks.removeNode(historyMap.remove(id));
-        }
+        viewedTasks.remove(id);
+        onRemoved(id);
     }
 
     @Override
     public List<Task> getViewedTasks() {
-        return viewedTasks.getTasks();
+        int[] ids = new int[viewedTasks.size()];
+        TaskType[] types = new TaskType[ids.length];
+        int[] position = new int[1];
+        viewedTasks.forEachEntry((id, type) -> {
+            ids[position[0]] = id;
+            types[position[0]++] = type;
+        });
+        if (taskDao != null) {
+            return taskDao.getByIds(ids, types);
+        }
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(detached.get(id));
+        }
+        return result;
     }
 
     @Override
@@ -50,15 +118,17 @@ public class InMemoryHistoryDao implements HistoryDao {
 
     @Override
     public void deleteAllByType(String type) {
-        List<Task> test = getViewedTasks();
-        test.stream().filter(value -> value.getType().name().equals(type))
-                .map(Task::getId)
-                .forEach(this::remove);
+        viewedTasks.removeGroup(TaskType.valueOf(type).ordinal(), this::onRemoved);
     }
 
-    private  int removeFirstTask() {
-        Task task = viewedTasks.getHead().item;
-        viewedTasks.removeNode(viewedTasks.getHead());
-        return task.getId();
+    /**
+     * Вызывается после удаления задачи из истории через {@link #remove(int)} или {@link #deleteAllByType(String)}
+     *
+     * @param id ID удалённой задачи
+     */
+    protected void onRemoved(int id) {
+        if (detached != null) {
+            detached.remove(id);
+        }
     }
 }
@@ -1,19 +1,28 @@
 package ru.kanban.dao;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import ru.kanban.model.*;
+import ru.kanban.utils.ConcurrentIntMap;
 
 import static ru.kanban.model.Status.NEW;
 
+/**
+ * Хранилище задач в памяти, допускающее обращения из нескольких потоков.
+ * Задачи хранятся в конкурентных словарях с ключами-примитивами ({@link ConcurrentIntMap}), ID выдаются
+ * атомарным счётчиком.
+ * Изменения подзадач выполняются под блокировкой их эпика (см. {@link Epic}), поэтому состав подзадач эпика,
+ * его счётчики и словарь подзадач согласованы при параллельной записи.
+ */
 public class InMemoryTaskDao implements TaskDao {
-    private Map<Integer, Task> tasks = new HashMap<>();
-    private Map<Integer, Epic> epics = new HashMap<>();
-    private Map<Integer, Subtask> subtasks = new HashMap<>();
-    private int ids = 1;
+    private final ConcurrentIntMap<Task> tasks = new ConcurrentIntMap<>();
+    private final ConcurrentIntMap<Epic> epics = new ConcurrentIntMap<>();
+    private final ConcurrentIntMap<Subtask> subtasks = new ConcurrentIntMap<>();
+    private final AtomicInteger ids = new AtomicInteger(1);
 
     @Override
     public Task addTask(Task task) {
-        task.setId(ids++);
+        task.setId(ids.getAndIncrement());
         tasks.put(task.getId(), task);
         return task;
     }
@@ -26,7 +35,7 @@ public class InMemoryTaskDao implements TaskDao {
 
     @Override
     public List<Task> getTasks() {
-        return new ArrayList<>(tasks.values());
+        return tasks.values();
     }
 
     @Override
@@ -36,10 +45,7 @@ public class InMemoryTaskDao implements TaskDao {
 
     @Override
     public Optional<Task> updateTask(Task task) {
-        if (tasks.containsKey(task.getId())) {
-            tasks.put(task.getId(), task);
-        }
-        return Optional.of(task);
+        return tasks.replace(task.getId(), task) != null ? Optional.of(task) : Optional.empty();
     }
 
     @Override
@@ -47,9 +53,25 @@ public class InMemoryTaskDao implements TaskDao {
         this.tasks.clear();
     }
 
+    @Override
+    public List<Task> getByIds(int[] ids, TaskType[] types) {
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Task task = switch (types[i]) {
+                case TASK -> tasks.get(ids[i]);
+                case EPIC -> epics.get(ids[i]);
+                case SUBTASK -> subtasks.get(ids[i]);
+            };
+            if (task != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
     @Override
     public Epic addEpic(Epic epic) {
-        epic.setId(ids++);
+        epic.setId(ids.getAndIncrement());
         epics.put(epic.getId(), epic);
         return epic;
     }
@@ -62,19 +84,25 @@ public class InMemoryTaskDao implements TaskDao {
 
     @Override
     public List<Epic> getEpics() {
-        List<Epic> result = new ArrayList<>(epics.values());
+        List<Epic> result = epics.values();
         result.forEach(Epic -> Epic.setViewed(true));
         return result;
     }
 
     @Override
     public Optional<Epic> deleteEpic(int id) {
-        Epic deleted = epics.remove(id);
-        if (deleted != null) {
+        Epic deleted = epics.get(id);
+        if (deleted == null) {
+            return Optional.empty();
+        }
+        synchronized (deleted) {
+            if (!epics.remove(id, deleted)) {
+                return Optional.empty();
+            }
             deleted.getSubtasks()
                     .forEach(subtask -> subtasks.remove(subtask.getId()));
         }
-        return Optional.ofNullable(deleted);
+        return Optional.of(deleted);
     }
 
     @Override
@@ -85,16 +113,17 @@ public class InMemoryTaskDao implements TaskDao {
 
     @Override
     public Optional<Epic> updateEpic(Epic epic) {
-        epics.put(epic.getId(), epic);
-        return Optional.of(epic);
+        return epics.replace(epic.getId(), epic) != null ? Optional.of(epic) : Optional.empty();
     }
 
     @Override
     public Subtask addSubtask(Subtask subtask) {
         Epic epic = subtask.getEpic();
-        subtask.setId(ids++);
-        subtasks.put(subtask.getId(), subtask);
-        epic.addSubtask(subtask);
+        synchronized (epic) {
+            subtask.setId(ids.getAndIncrement());
+            subtasks.put(subtask.getId(), subtask);
+            epic.addSubtask(subtask);
+        }
         return subtask;
     }
 
@@ -106,35 +135,75 @@ public class InMemoryTaskDao implements TaskDao {
 
     @Override
     public List<Subtask> getSubtasks() {
-        return new ArrayList<>(subtasks.values());
+        return subtasks.values();
     }
 
     @Override
-    public boolean deleteSubtask(int id) {
-        Subtask subtask = subtasks.remove(id);
-        if (subtask != null) {
-            Epic epicOfSubtask = subtask.getEpic();
-            epicOfSubtask.getSubtasks().remove(subtask);
+    public Optional<Subtask> deleteSubtask(int id) {
+        Subtask subtask = subtasks.get(id);
+        if (subtask == null) {
+            return Optional.empty();
         }
-        return subtask != null;
+        Epic epicOfSubtask = subtask.getEpic();
+        synchronized (epicOfSubtask) {
+            if (!subtasks.remove(id, subtask)) {
+                return Optional.empty();
+            }
+            epicOfSubtask.removeSubtask(subtask);
+        }
+        return Optional.of(subtask);
     }
 
+    /**
+     * Удаляет подзадачи каждого эпика и обнуляет его счётчики под блокировкой этого эпика.
+     * Обходятся сохранённые эпики и эпики, на которые ссылаются подзадачи: после замены эпика
+     * его подзадачи могут ссылаться на прежний экземпляр
+     */
     @Override
     public void deleteAllSubtasks() {
-        subtasks.clear();
+        Set<Epic> owners = Collections.newSetFromMap(new IdentityHashMap<>());
+        owners.addAll(epics.values());
+        subtasks.values().forEach(subtask -> owners.add(subtask.getEpic()));
+        for (Epic epic : owners) {
+            synchronized (epic) {
+                epic.getSubtasks().forEach(subtask -> subtasks.remove(subtask.getId(), subtask));
+                epic.clearSubtasks();
+            }
+        }
     }
 
+    /**
+     * Заменяет подзадачу под блокировками прежнего и нового эпика, блокировки берутся в порядке ID эпиков.
+     * Если подзадачу параллельно удалили или заменили, замена повторяется с актуальной подзадачей.
+     * Если нового эпика подзадачи нет в хранилище, подзадача не меняется
+     */
     @Override
     public Optional<Subtask> updateSubtask(Subtask subtask) {
-        subtasks.put(subtask.getId(), subtask);
-        Epic epicOfSubtask = epics.get(subtask.getEpic().getId());
-        for (int i = 0; i < epicOfSubtask.getSubtasks().size(); i++) {
-            if (epicOfSubtask.getSubtasks().get(i).getId() == subtask.getId()) {
-                epicOfSubtask.getSubtasks().set(i, subtask);
-                break;
+        while (true) {
+            Subtask previous = subtasks.get(subtask.getId());
+            if (previous == null) {
+                return Optional.empty();
+            }
+            Epic previousEpic = epics.get(previous.getEpic().getId());
+            Epic epic = epics.get(subtask.getEpic().getId());
+            if (epic == null) {
+                return Optional.empty();
+            }
+            Epic first = previousEpic == null || previousEpic.getId() > epic.getId() ? epic : previousEpic;
+            Epic second = first == epic ? previousEpic : epic;
+            synchronized (first) {
+                synchronized (second == null ? first : second) {
+                    if (!subtasks.replace(subtask.getId(), previous, subtask)) {
+                        continue;
+                    }
+                    if (previousEpic != null && previousEpic != epic) {
+                        previousEpic.removeSubtask(previous);
+                    }
+                    epic.replaceSubtask(subtask);
+                    return Optional.of(subtask);
+                }
             }
         }
-        return Optional.of(subtask);
     }
 
     @Override
@@ -152,7 +221,7 @@ public class InMemoryTaskDao implements TaskDao {
                     .forEach(epic -> {
                         epic.setStatus(Status.valueOf(status));
                         if (status.equals(NEW.name())) {
-                            epic.getSubtasks().clear();
+                            epic.clearSubtasks();
                         }
                     });
 
@@ -186,4 +255,84 @@ public class InMemoryTaskDao implements TaskDao {
                 .toList();
     }
 
+    @Override
+    public EpicProgress getEpicProgress(int epicId) {
+        return epics.get(epicId).getProgress();
+    }
+
+    @Override
+    public List<Task> updateTasks(List<Task> updated) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : updated) {
+            if (tasks.replace(task.getId(), task) != null) {
+                result.add(task);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> deleteTasks(int... taskIds) {
+        List<Task> result = new ArrayList<>();
+        for (int id : taskIds) {
+            Task deleted = tasks.remove(id);
+            if (deleted != null) {
+                result.add(deleted);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return tasks.page(afterId, limit);
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        List<Epic> result = epics.page(afterId, limit);
+        result.forEach(epic -> epic.setViewed(true));
+        return result;
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return subtasks.page(afterId, limit);
+    }
+
+    /**
+     * Восстанавливает задачу в хранилище с уже присвоенным ID (при загрузке из файла).
+     * Повторное восстановление задачи с тем же ID заменяет её.
+     *
+     * @param task задача с сохранённым ID
+     */
+    protected void restoreTask(Task task) {
+        tasks.put(task.getId(), task);
+        moveIdsAfter(task.getId());
+    }
+
+    protected void restoreEpic(Epic epic) {
+        epics.put(epic.getId(), epic);
+        moveIdsAfter(epic.getId());
+    }
+
+    protected void restoreSubtask(Subtask subtask) {
+        synchronized (subtask.getEpic()) {
+            subtasks.put(subtask.getId(), subtask);
+            subtask.getEpic().addSubtask(subtask);
+        }
+        moveIdsAfter(subtask.getId());
+    }
+
+    /**
+     * @return все эпики хранилища без отметки о просмотре (для сериализации в снимок)
+     */
+    protected List<Epic> getStoredEpics() {
+        return epics.values();
+    }
+
+    private void moveIdsAfter(int id) {
+        ids.accumulateAndGet(id + 1, Math::max);
+    }
+
 }
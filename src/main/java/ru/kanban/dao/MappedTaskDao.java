@@ -0,0 +1,648 @@
+package ru.kanban.dao;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.IntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.exceptions.ManagerSaveException;
+import ru.kanban.model.*;
+import ru.kanban.utils.IntMap;
+
+import static ru.kanban.model.TaskType.*;
+
+/**
+ * Хранилище задач в файле, отображённом в память.
+ * Файл начинается с заголовка {@link #FILE_HEADER_SIZE} байт: {@link #MAGIC}, версия, следующий ID и
+ * позиция конца записей. Каждая запись состоит из заголовка фиксированного размера {@link #RECORD_HEADER_SIZE}
+ * (ID, тип, статус, флаг занятости, ID эпика, ёмкость, длины названия и описания) и области данных заданной ёмкости
+ * с названием и описанием в UTF-8.
+ * В памяти хранится только индекс ID -> позиция записи ({@link IntMap}), задачи читаются напрямую из отображения.
+ * Чтение задачи декодирует только её запись: эпик подзадачи читается без подзадач, подзадачи эпика
+ * читаются при первом обращении к ним ({@link Epic#setSubtaskLoader}).
+ * Обновление перезаписывает запись на месте, если данные помещаются в её ёмкость, иначе запись переносится
+ * в свободную запись подходящей ёмкости или в конец файла. При открытии файл не разбирается:
+ * индекс строится проходом по заголовкам записей.
+ * Размер файла ограничен 2 ГБ (размер одного {@link MappedByteBuffer}).
+ */
+public class MappedTaskDao implements TaskDao, AutoCloseable {
+    static final int MAGIC = 0x4B4E4D50;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 32;
+    static final int RECORD_HEADER_SIZE = 24;
+    private static final Logger log = LoggerFactory.getLogger(MappedTaskDao.class);
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int NEXT_ID_OFFSET = 8;
+    private static final int END_OFFSET = 16;
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+    private static final TaskType[] TYPES = {TASK, EPIC, SUBTASK};
+    private static final Status[] STATUSES = {Status.NEW, Status.IN_PROGRESS, Status.DONE};
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private final IntMap<Integer> tasks = new IntMap<>();
+    private final IntMap<Integer> epics = new IntMap<>();
+    private final IntMap<Integer> subtasks = new IntMap<>();
+    private final IntMap<Set<Integer>> epicSubtasks = new IntMap<>();
+    /**
+     * Счётчики подзадач эпиков по статусам, поддерживаются при каждом изменении подзадач
+     */
+    private final IntMap<int[]> epicCounters = new IntMap<>();
+    private final TreeMap<Integer, Deque<Integer>> freeRecords = new TreeMap<>();
+    private int nextId;
+    private int end;
+
+    /**
+     * Открывает существующий файл хранилища или создаёт новый
+     *
+     * @param path путь к файлу хранилища
+     */
+    public MappedTaskDao(String path) {
+        try {
+            this.channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                this.nextId = 1;
+                this.end = FILE_HEADER_SIZE;
+                writeFileHeader();
+            } else {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                open();
+            }
+        } catch (IllegalArgumentException e) {
+            closeQuietly();
+            throw e;
+        } catch (IOException e) {
+            log.error("Mapped file {} can't be opened.", path);
+            throw new ManagerSaveException("Mapped file opening exception");
+        }
+    }
+
+    @Override
+    public synchronized Task addTask(Task task) {
+        task.setId(nextId++);
+        tasks.put(task.getId(), insert(task, 0));
+        return task;
+    }
+
+    @Override
+    public synchronized Optional<Task> getTask(int id) {
+        Integer offset = tasks.get(id);
+        return offset == null ? Optional.empty() : Optional.of(readTask(offset));
+    }
+
+    @Override
+    public synchronized List<Task> getTasks() {
+        List<Task> result = new ArrayList<>(tasks.size());
+        tasks.forEach((id, offset) -> result.add(readTask(offset)));
+        return result;
+    }
+
+    @Override
+    public synchronized Optional<Task> deleteTask(int id) {
+        Optional<Task> deleted = getTask(id);
+        deleted.ifPresent(task -> free(tasks.remove(id)));
+        return deleted;
+    }
+
+    @Override
+    public synchronized Optional<Task> updateTask(Task task) {
+        return update(tasks, task) ? Optional.of(task) : Optional.empty();
+    }
+
+    @Override
+    public synchronized void deleteAllTasks() {
+        tasks.forEach((id, offset) -> free(offset));
+        tasks.clear();
+    }
+
+    @Override
+    public synchronized Epic addEpic(Epic epic) {
+        epic.setId(nextId++);
+        epics.put(epic.getId(), insert(epic, 0));
+        return epic;
+    }
+
+    @Override
+    public synchronized Optional<Epic> getEpic(int id) {
+        Integer offset = epics.get(id);
+        return offset == null ? Optional.empty() : Optional.of(readEpic(offset, null));
+    }
+
+    @Override
+    public synchronized List<Epic> getEpics() {
+        List<Epic> result = new ArrayList<>(epics.size());
+        epics.forEach((id, offset) -> result.add(readEpic(offset, null)));
+        return result;
+    }
+
+    @Override
+    public synchronized Optional<Epic> deleteEpic(int id) {
+        Optional<Epic> deleted = getEpic(id);
+        if (deleted.isPresent()) {
+            free(epics.remove(id));
+            Set<Integer> children = epicSubtasks.remove(id);
+            epicCounters.remove(id);
+            if (children != null) {
+                children.forEach(subtaskId -> free(subtasks.remove(subtaskId)));
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized void deleteAllEpics() {
+        epics.forEach((id, offset) -> free(offset));
+        subtasks.forEach((id, offset) -> free(offset));
+        epics.clear();
+        subtasks.clear();
+        epicSubtasks.clear();
+        epicCounters.clear();
+    }
+
+    @Override
+    public synchronized Optional<Epic> updateEpic(Epic epic) {
+        return update(epics, epic) ? Optional.of(epic) : Optional.empty();
+    }
+
+    /**
+     * Подзадача добавляется в экземпляр эпика вне блокировки хранилища: эпик, прочитанный из хранилища,
+     * читает свои подзадачи под своей блокировкой, а затем под блокировкой хранилища
+     */
+    @Override
+    public Subtask addSubtask(Subtask subtask) {
+        int epicId = subtask.getEpic().getId();
+        synchronized (this) {
+            subtask.setId(nextId++);
+            subtasks.put(subtask.getId(), insert(subtask, epicId));
+            Set<Integer> children = epicSubtasks.get(epicId);
+            if (children == null) {
+                children = new LinkedHashSet<>();
+                epicSubtasks.put(epicId, children);
+            }
+            children.add(subtask.getId());
+            count(epicId, subtask.getStatus().ordinal(), 1);
+        }
+        subtask.getEpic().addSubtask(subtask);
+        return subtask;
+    }
+
+    @Override
+    public synchronized Optional<Subtask> getSubtask(int id) {
+        Integer offset = subtasks.get(id);
+        return offset == null ? Optional.empty() : Optional.of(readSubtask(offset, new IntMap<>()));
+    }
+
+    @Override
+    public synchronized List<Subtask> getSubtasks() {
+        List<Subtask> result = new ArrayList<>(subtasks.size());
+        IntFunction<Subtask> reader = subtaskReader();
+        subtasks.forEach((id, offset) -> result.add(reader.apply(offset)));
+        return result;
+    }
+
+    @Override
+    public synchronized Optional<Subtask> deleteSubtask(int id) {
+        Integer offset = subtasks.remove(id);
+        if (offset == null) {
+            return Optional.empty();
+        }
+        Subtask deleted = readSubtask(offset, new IntMap<>());
+        int epicId = buffer.getInt(offset + 8);
+        Set<Integer> siblings = epicSubtasks.get(epicId);
+        if (siblings != null) {
+            siblings.remove(id);
+        }
+        count(epicId, buffer.get(offset + 5), -1);
+        free(offset);
+        return Optional.of(deleted);
+    }
+
+    @Override
+    public synchronized void deleteAllSubtasks() {
+        subtasks.forEach((id, offset) -> free(offset));
+        subtasks.clear();
+        epicSubtasks.clear();
+        epicCounters.clear();
+    }
+
+    /**
+     * Обновляет подзадачу и переносит её в эпик подзадачи, пересчитывая счётчики и статусы прежнего и нового эпика
+     */
+    @Override
+    public synchronized Optional<Subtask> updateSubtask(Subtask subtask) {
+        int epicId = subtask.getEpic().getId();
+        Integer offset = subtasks.get(subtask.getId());
+        if (offset == null || !epics.containsKey(epicId)) {
+            return Optional.empty();
+        }
+        int previousEpicId = buffer.getInt(offset + 8);
+        count(previousEpicId, buffer.get(offset + 5), -1);
+        update(subtasks, subtask);
+        buffer.putInt(subtasks.get(subtask.getId()) + 8, epicId);
+        if (previousEpicId != epicId) {
+            Set<Integer> previousChildren = epicSubtasks.get(previousEpicId);
+            if (previousChildren != null) {
+                previousChildren.remove(subtask.getId());
+            }
+            Set<Integer> children = epicSubtasks.get(epicId);
+            if (children == null) {
+                children = new LinkedHashSet<>();
+                epicSubtasks.put(epicId, children);
+            }
+            children.add(subtask.getId());
+        }
+        count(epicId, subtask.getStatus().ordinal(), 1);
+        settleEpicStatus(previousEpicId);
+        settleEpicStatus(epicId);
+        return Optional.of(subtask);
+    }
+
+    @Override
+    public synchronized void updateEpicStatus(int id, Status status) {
+        Integer offset = epics.get(id);
+        if (offset != null) {
+            buffer.put(offset + 5, (byte) status.ordinal());
+        }
+    }
+
+    @Override
+    public synchronized void renewAllStatuses(String type, String status) {
+        byte code = (byte) Status.valueOf(status).ordinal();
+        offsets(TaskType.valueOf(type)).forEach((id, offset) -> buffer.put(offset + 5, code));
+        if (TaskType.valueOf(type) == SUBTASK) {
+            epicCounters.forEach((epicId, counters) -> {
+                int total = Arrays.stream(counters).sum();
+                Arrays.fill(counters, 0);
+                counters[code] = total;
+            });
+        }
+    }
+
+    @Override
+    public synchronized List<Task> getTasks(int afterId, int limit) {
+        return page(tasks, afterId, limit, this::readTask);
+    }
+
+    @Override
+    public synchronized List<Epic> getEpics(int afterId, int limit) {
+        return page(epics, afterId, limit, offset -> readEpic(offset, null));
+    }
+
+    @Override
+    public synchronized List<Subtask> getSubtasks(int afterId, int limit) {
+        return page(subtasks, afterId, limit, subtaskReader());
+    }
+
+    @Override
+    public synchronized List<Status> getEpicSubtasksStatuses(int epicId) {
+        Set<Integer> children = epicSubtasks.get(epicId);
+        if (children == null) {
+            return List.of();
+        }
+        List<Status> result = new ArrayList<>(children.size());
+        children.forEach(id -> result.add(STATUSES[buffer.get(subtasks.get(id) + 5)]));
+        return result;
+    }
+
+    @Override
+    public synchronized EpicProgress getEpicProgress(int epicId) {
+        int[] counters = epicCounters.get(epicId);
+        if (counters == null) {
+            return EpicProgress.EMPTY;
+        }
+        return new EpicProgress(counters[0], counters[1], counters[2]);
+    }
+
+    @Override
+    public synchronized boolean existsById(int id, String type) {
+        return offsets(TaskType.valueOf(type)).containsKey(id);
+    }
+
+    /**
+     * Сбрасывает изменённые страницы отображения на диск
+     */
+    public synchronized void force() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.error("Mapped file can't be closed.");
+            throw new ManagerSaveException("Mapped file closing exception");
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Mapped file can't be closed.");
+        }
+    }
+
+    /**
+     * Строит индекс по заголовкам записей существующего файла
+     */
+    private void open() {
+        if (buffer.capacity() < FILE_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            log.error("File is not a mapped task storage.");
+            throw new IllegalArgumentException("Illegal mapped file header.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            log.error("Unsupported mapped file version: {}", buffer.getInt(4));
+            throw new IllegalArgumentException("Unsupported mapped file version: " + buffer.getInt(4));
+        }
+        nextId = buffer.getInt(NEXT_ID_OFFSET);
+        long storedEnd = buffer.getLong(END_OFFSET);
+        if (storedEnd < FILE_HEADER_SIZE || storedEnd > buffer.capacity()) {
+            log.error("Mapped file is truncated.");
+            throw new IllegalArgumentException("Mapped file is truncated.");
+        }
+        end = (int) storedEnd;
+        int offset = FILE_HEADER_SIZE;
+        while (offset < end) {
+            int capacity = buffer.getInt(offset + 12);
+            if (buffer.get(offset + 6) == LIVE) {
+                int id = buffer.getInt(offset);
+                TaskType type = TYPES[buffer.get(offset + 4)];
+                offsets(type).put(id, offset);
+                if (type == SUBTASK) {
+                    int epicId = buffer.getInt(offset + 8);
+                    Set<Integer> children = epicSubtasks.get(epicId);
+                    if (children == null) {
+                        children = new LinkedHashSet<>();
+                        epicSubtasks.put(epicId, children);
+                    }
+                    children.add(id);
+                    count(epicId, buffer.get(offset + 5), 1);
+                }
+            } else {
+                freeRecords.computeIfAbsent(capacity, key -> new ArrayDeque<>()).add(offset);
+            }
+            offset += RECORD_HEADER_SIZE + capacity;
+        }
+    }
+
+    private void count(int epicId, int status, int delta) {
+        int[] counters = epicCounters.get(epicId);
+        if (counters == null) {
+            counters = new int[STATUSES.length];
+            epicCounters.put(epicId, counters);
+        }
+        counters[status] += delta;
+    }
+
+    /**
+     * Записывает статус эпика, вычисленный по счётчикам его подзадач
+     */
+    private void settleEpicStatus(int epicId) {
+        Integer offset = epics.get(epicId);
+        if (offset != null) {
+            buffer.put(offset + 5, (byte) getEpicProgress(epicId).status().ordinal());
+        }
+    }
+
+    private IntMap<Integer> offsets(TaskType type) {
+        return switch (type) {
+            case EPIC -> epics;
+            case SUBTASK -> subtasks;
+            default -> tasks;
+        };
+    }
+
+    /**
+     * Записывает задачу в свободную запись подходящей ёмкости или в конец файла
+     *
+     * @return позиция записи
+     */
+    private int insert(Task task, int epicId) {
+        byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int length = name.length + description.length;
+        int offset = allocate(length);
+        buffer.putInt(offset, task.getId());
+        buffer.put(offset + 4, (byte) task.getType().ordinal());
+        buffer.putInt(offset + 8, epicId);
+        writeData(offset, task.getStatus(), name, description);
+        buffer.put(offset + 6, LIVE);
+        writeFileHeader();
+        return offset;
+    }
+
+    /**
+     * Обновляет название, описание и статус задачи. Запись переносится, если новые данные не помещаются
+     *
+     * @return false - задачи с таким ID и типом нет
+     */
+    private boolean update(IntMap<Integer> index, Task task) {
+        Integer offset = index.get(task.getId());
+        if (offset == null) {
+            return false;
+        }
+        byte[] name = task.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        if (name.length + description.length <= buffer.getInt(offset + 12)) {
+            writeData(offset, task.getStatus(), name, description);
+            return true;
+        }
+        int epicId = buffer.getInt(offset + 8);
+        free(offset);
+        int relocated = allocate(name.length + description.length);
+        buffer.putInt(relocated, task.getId());
+        buffer.put(relocated + 4, (byte) task.getType().ordinal());
+        buffer.putInt(relocated + 8, epicId);
+        writeData(relocated, task.getStatus(), name, description);
+        buffer.put(relocated + 6, LIVE);
+        index.put(task.getId(), relocated);
+        writeFileHeader();
+        return true;
+    }
+
+    private void writeData(int offset, Status status, byte[] name, byte[] description) {
+        buffer.put(offset + 5, (byte) status.ordinal());
+        buffer.putInt(offset + 16, name.length);
+        buffer.putInt(offset + 20, description.length);
+        buffer.put(offset + RECORD_HEADER_SIZE, name);
+        buffer.put(offset + RECORD_HEADER_SIZE + name.length, description);
+    }
+
+    /**
+     * Подбирает запись для данных заданной длины: свободную запись, ёмкость которой не больше чем вдвое
+     * превышает необходимую, либо новую запись в конце файла с запасом ёмкости для последующих обновлений.
+     */
+    private int allocate(int length) {
+        Map.Entry<Integer, Deque<Integer>> free = freeRecords.ceilingEntry(length);
+        if (free != null && free.getKey() <= Math.max(length * 2, 64)) {
+            int offset = free.getValue().poll();
+            if (free.getValue().isEmpty()) {
+                freeRecords.remove(free.getKey());
+            }
+            return offset;
+        }
+        int capacity = align(Math.max(length + length / 4, 16));
+        int offset = end;
+        ensureCapacity((long) offset + RECORD_HEADER_SIZE + capacity);
+        buffer.putInt(offset + 12, capacity);
+        end = offset + RECORD_HEADER_SIZE + capacity;
+        return offset;
+    }
+
+    private void free(int offset) {
+        buffer.put(offset + 6, FREE);
+        freeRecords.computeIfAbsent(buffer.getInt(offset + 12), key -> new ArrayDeque<>()).add(offset);
+    }
+
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long size = Math.max(required, (long) buffer.capacity() * 2);
+        if (size > Integer.MAX_VALUE) {
+            if (required > Integer.MAX_VALUE) {
+                log.error("Mapped file size limit exceeded.");
+                throw new ManagerSaveException("Mapped file size limit exceeded");
+            }
+            size = Integer.MAX_VALUE;
+        }
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            log.error("Mapped file can't be extended.");
+            throw new ManagerSaveException("Mapped file writing exception");
+        }
+    }
+
+    private void writeFileHeader() {
+        buffer.putInt(NEXT_ID_OFFSET, nextId);
+        buffer.putLong(END_OFFSET, end);
+    }
+
+    /**
+     * Выбирает страницу по индексу и читает из отображения только записи страницы
+     */
+    private <T extends Task> List<T> page(IntMap<Integer> index, int afterId, int limit, IntFunction<T> reader) {
+        List<Integer> offsets = index.page(afterId, limit);
+        List<T> result = new ArrayList<>(offsets.size());
+        for (int offset : offsets) {
+            result.add(reader.apply(offset));
+        }
+        return result;
+    }
+
+    private Task readTask(int offset) {
+        Task task = new Task(readName(offset), readDescription(offset), STATUSES[buffer.get(offset + 5)]);
+        task.setId(buffer.getInt(offset));
+        return task;
+    }
+
+    /**
+     * Декодирует только запись эпика. Подзадачи читаются из хранилища при первом обращении к ним
+     *
+     * @param known уже прочитанные подзадачи эпика по ID, которые попадут в эпик вместо повторного чтения,
+     *              null - таких нет
+     */
+    private Epic readEpic(int offset, IntMap<Subtask> known) {
+        Epic epic = new Epic(readName(offset), readDescription(offset), STATUSES[buffer.get(offset + 5)]);
+        epic.setId(buffer.getInt(offset));
+        epic.setSubtaskLoader(loaded -> loadSubtasks(loaded, known));
+        return epic;
+    }
+
+    private synchronized void loadSubtasks(Epic epic, IntMap<Subtask> known) {
+        Set<Integer> children = epicSubtasks.get(epic.getId());
+        if (children == null) {
+            return;
+        }
+        for (int childId : children) {
+            Integer childOffset = subtasks.get(childId);
+            if (childOffset == null) {
+                continue;
+            }
+            Subtask subtask = known == null ? null : known.get(childId);
+            epic.attachSubtask(subtask != null ? subtask : readSubtask(childOffset, epic));
+        }
+    }
+
+    /**
+     * Декодирует подзадачу и запись её эпика
+     *
+     * @param known прочитанные подзадачи эпика этой подзадачи, подзадача добавляется в них
+     */
+    private Subtask readSubtask(int offset, IntMap<Subtask> known) {
+        int epicId = buffer.getInt(offset + 8);
+        Integer epicOffset = epics.get(epicId);
+        Epic epic;
+        if (epicOffset != null) {
+            epic = readEpic(epicOffset, known);
+        } else {
+            epic = new Epic(null, null, Status.NEW);
+            epic.setId(epicId);
+        }
+        Subtask subtask = readSubtask(offset, epic);
+        known.put(subtask.getId(), subtask);
+        return subtask;
+    }
+
+    private Subtask readSubtask(int offset, Epic epic) {
+        Subtask subtask = new Subtask(readName(offset), readDescription(offset),
+                STATUSES[buffer.get(offset + 5)], epic);
+        subtask.setId(buffer.getInt(offset));
+        return subtask;
+    }
+
+    /**
+     * Чтение подзадач для одного запроса: запись эпика декодируется один раз на все его подзадачи запроса,
+     * подзадачи одного эпика ссылаются на один экземпляр эпика
+     */
+    private IntFunction<Subtask> subtaskReader() {
+        IntMap<Epic> loadedEpics = new IntMap<>();
+        IntMap<IntMap<Subtask>> loadedSubtasks = new IntMap<>();
+        return offset -> {
+            int epicId = buffer.getInt(offset + 8);
+            IntMap<Subtask> known = loadedSubtasks.get(epicId);
+            if (known == null) {
+                known = new IntMap<>();
+                loadedSubtasks.put(epicId, known);
+                Subtask subtask = readSubtask(offset, known);
+                loadedEpics.put(epicId, subtask.getEpic());
+                return subtask;
+            }
+            Subtask subtask = readSubtask(offset, loadedEpics.get(epicId));
+            known.put(subtask.getId(), subtask);
+            return subtask;
+        };
+    }
+
+    private String readName(int offset) {
+        return readString(offset + RECORD_HEADER_SIZE, buffer.getInt(offset + 16));
+    }
+
+    private String readDescription(int offset) {
+        return readString(offset + RECORD_HEADER_SIZE + buffer.getInt(offset + 16), buffer.getInt(offset + 20));
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int value) {
+        return (value + 7) & ~7;
+    }
+}
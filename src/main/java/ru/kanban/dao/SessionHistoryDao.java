@@ -0,0 +1,176 @@
+package ru.kanban.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.model.Task;
+import ru.kanban.model.TaskType;
+import ru.kanban.utils.LruRing;
+
+import static ru.kanban.utils.Constants.DEFAULT_USER_ID;
+
+/**
+ * История просмотров в памяти по пользователям (сессиям) с общим ограничением памяти.
+ * История пользователя - {@link LruRing} ID и типов {@code capacity} задач, массивы которого создаются сразу, поэтому
+ * сессия занимает фиксированный объём {@link #getSessionBytes()}, а количество сессий ограничено
+ * {@code memoryBudget / sessionBytes}. При превышении вытесняется сессия, к которой дольше всех не обращались.
+ * Пустая сессия создаётся только при просмотре, чтение истории неизвестного пользователя сессию не создаёт.
+ * Сессии не хранят сами задачи: история пользователя читается из хранилища задач одним вызовом
+ * {@link TaskDao#getByIds(int[], TaskType[])}. Удаление задач из истории проходит по всем сессиям.
+ * Методы синхронизированы.
+ */
+public class SessionHistoryDao implements HistoryDao {
+    private static final Logger log = LoggerFactory.getLogger(SessionHistoryDao.class);
+    /**
+     * Запись сессии в словаре сессий: узел LinkedHashMap, ключ Integer и ячейки таблицы с запасом на расширение
+     */
+    private static final long SESSION_ENTRY_BYTES = 88;
+    private final TaskDao taskDao;
+    private final int capacity;
+    private final long sessionBytes;
+    private final int maxSessions;
+    private final Map<Integer, LruRing<TaskType>> sessions;
+    private long evictedSessions;
+
+    /**
+     * @param taskDao      хранилище, из которого читаются задачи истории
+     * @param capacity     максимальное количество задач в истории одного пользователя
+     * @param memoryBudget ограничение памяти всех сессий в байтах
+     */
+    public SessionHistoryDao(TaskDao taskDao, int capacity, long memoryBudget) {
+        if (capacity <= 0) {
+            log.error("Illegal history capacity: {}", capacity);
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.taskDao = taskDao;
+        this.capacity = capacity;
+        this.sessionBytes = LruRing.estimateBytes(capacity) + SESSION_ENTRY_BYTES;
+        long sessionsInBudget = memoryBudget / sessionBytes;
+        if (sessionsInBudget <= 0) {
+            log.error("History memory budget {} is less than one session of {} bytes", memoryBudget, sessionBytes);
+            throw new IllegalArgumentException("History memory budget must fit at least one session");
+        }
+        this.maxSessions = (int) Math.min(sessionsInBudget, Integer.MAX_VALUE);
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, LruRing<TaskType>> eldest) {
+                if (size() > maxSessions) {
+                    evictedSessions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return оценка памяти одной сессии в байтах
+     */
+    public long getSessionBytes() {
+        return sessionBytes;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    public synchronized int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return количество сессий, вытесненных из-за ограничения памяти
+     */
+    public synchronized long getEvictedSessions() {
+        return evictedSessions;
+    }
+
+    @Override
+    public void setToViewed(Task task) {
+        task.setViewed(true);
+    }
+
+    @Override
+    public void addToHistory(Task task) {
+        addToHistory(DEFAULT_USER_ID, task);
+    }
+
+    @Override
+    public synchronized void addToHistory(int userId, Task task) {
+        session(userId).put(task.getId(), task.getType());
+    }
+
+    @Override
+    public synchronized void remove(int id) {
+        for (LruRing<TaskType> session : sessions.values()) {
+            session.remove(id);
+        }
+    }
+
+    @Override
+    public List<Task> getViewedTasks() {
+        return getViewedTasks(DEFAULT_USER_ID);
+    }
+
+    /**
+     * Задачи читаются из хранилища вне блокировки сессий
+     */
+    @Override
+    public List<Task> getViewedTasks(int userId) {
+        int[] ids;
+        TaskType[] types;
+        synchronized (this) {
+            LruRing<TaskType> session = sessions.get(userId);
+            if (session == null) {
+                return new ArrayList<>();
+            }
+            ids = new int[session.size()];
+            types = new TaskType[ids.length];
+            int[] position = new int[1];
+            session.forEachEntry((id, type) -> {
+                ids[position[0]] = id;
+                types[position[0]++] = type;
+            });
+        }
+        return taskDao.getByIds(ids, types);
+    }
+
+    @Override
+    public void addAll(List<? extends Task> tasks) {
+        addAll(DEFAULT_USER_ID, tasks);
+    }
+
+    @Override
+    public synchronized void addAll(int userId, List<? extends Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        LruRing<TaskType> session = session(userId);
+        for (Task task : tasks) {
+            task.setViewed(true);
+            session.put(task.getId(), task.getType());
+        }
+    }
+
+    @Override
+    public synchronized void deleteAllByType(String type) {
+        TaskType deleted = TaskType.valueOf(type);
+        List<Integer> ids = new ArrayList<>();
+        for (LruRing<TaskType> session : sessions.values()) {
+            session.forEachEntry((id, taskType) -> {
+                if (taskType == deleted) {
+                    ids.add(id);
+                }
+            });
+            ids.forEach(session::remove);
+            ids.clear();
+        }
+    }
+
+    private LruRing<TaskType> session(int userId) {
+        return sessions.computeIfAbsent(userId, id -> new LruRing<>(capacity));
+    }
+}
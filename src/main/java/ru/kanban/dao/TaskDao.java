@@ -1,11 +1,16 @@
 package ru.kanban.dao;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import ru.kanban.model.Epic;
+import ru.kanban.model.EpicProgress;
 import ru.kanban.model.Status;
 import ru.kanban.model.Subtask;
 import ru.kanban.model.Task;
+import ru.kanban.model.TaskType;
 
 public interface TaskDao {
     Task addTask(Task task);
@@ -38,10 +43,17 @@ public interface TaskDao {
 
     List<Subtask> getSubtasks();
 
-    boolean deleteSubtask(int id);
+    Optional<Subtask> deleteSubtask(int id);
 
     void deleteAllSubtasks();
 
+    /**
+     * Обновляет подзадачу вместе со счётчиками и статусом её эпика. Подзадача переносится в эпик
+     * {@link Subtask#getEpic()}, счётчики и статус прежнего эпика тоже пересчитываются
+     *
+     * @param subtask обновлённая подзадача
+     * @return подзадача, если она и её эпик найдены, иначе пустой Optional
+     */
     Optional<Subtask> updateSubtask(Subtask subtask);
 
     void updateEpicStatus(int id, Status status);
@@ -52,6 +64,160 @@ public interface TaskDao {
 
     boolean existsById(int id, String type);
 
+    /**
+     * Счётчики подзадач эпика по статусам. По умолчанию считаются по списку статусов подзадач,
+     * хранилища переопределяют метод, поддерживая счётчики при каждом изменении подзадач
+     *
+     * @param epicId ID эпика
+     * @return счётчики подзадач эпика
+     */
+    default EpicProgress getEpicProgress(int epicId) {
+        int[] counters = new int[Status.values().length];
+        getEpicSubtasksStatuses(epicId).forEach(status -> counters[status.ordinal()]++);
+        return new EpicProgress(
+                counters[Status.NEW.ordinal()],
+                counters[Status.IN_PROGRESS.ordinal()],
+                counters[Status.DONE.ordinal()]);
+    }
+
+    /**
+     * Приводит статус эпика в соответствие со счётчиками его подзадач
+     *
+     * @param epicId ID эпика
+     */
+    default void refreshEpicStatus(int epicId) {
+        updateEpicStatus(epicId, getEpicProgress(epicId).status());
+    }
+
+    /**
+     * Добавляет задачи одной операцией хранилища. ID присваиваются в порядке списка
+     *
+     * @param tasks задачи для добавления
+     * @return добавленные задачи с присвоенными ID
+     */
+    default List<Task> addTasks(List<Task> tasks) {
+        tasks.forEach(this::addTask);
+        return tasks;
+    }
+
+    /**
+     * Добавляет подзадачи одной операцией хранилища. Статусы эпиков не пересчитываются
+     *
+     * @param subtasks подзадачи для добавления
+     * @return добавленные подзадачи с присвоенными ID
+     */
+    default List<Subtask> addSubtasks(List<Subtask> subtasks) {
+        subtasks.forEach(this::addSubtask);
+        return subtasks;
+    }
+
+    /**
+     * Обновляет задачи одной операцией хранилища
+     *
+     * @param tasks обновлённые задачи
+     * @return задачи, которые были найдены и обновлены
+     */
+    default List<Task> updateTasks(List<Task> tasks) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : tasks) {
+            updateTask(task).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Обновляет подзадачи одной операцией хранилища, как {@link #updateSubtask(Subtask)}
+     *
+     * @param subtasks обновлённые подзадачи
+     * @return подзадачи, которые были найдены и обновлены
+     */
+    default List<Subtask> updateSubtasks(List<Subtask> subtasks) {
+        List<Subtask> result = new ArrayList<>();
+        for (Subtask subtask : subtasks) {
+            updateSubtask(subtask).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет задачи одной операцией хранилища
+     *
+     * @param ids ID удаляемых задач
+     * @return удалённые задачи. Отсутствующие ID пропускаются
+     */
+    default List<Task> deleteTasks(int... ids) {
+        List<Task> result = new ArrayList<>();
+        for (int id : ids) {
+            deleteTask(id).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Получение задач разных типов по ID одним обращением к хранилищу (для истории просмотров).
+     * Реализация по умолчанию читает задачи по одной
+     *
+     * @param ids   ID задач
+     * @param types типы задач, {@code types[i]} - тип задачи {@code ids[i]}
+     * @return найденные задачи в порядке {@code ids}, отсутствующие пропускаются
+     */
+    default List<Task> getByIds(int[] ids, TaskType[] types) {
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Optional<? extends Task> task = switch (types[i]) {
+                case TASK -> getTask(ids[i]);
+                case EPIC -> getEpic(ids[i]);
+                case SUBTASK -> getSubtask(ids[i]);
+            };
+            task.ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Страница задач в порядке возрастания ID (keyset-пагинация)
+     *
+     * @param afterId ID последней задачи предыдущей страницы, 0 - первая страница
+     * @param limit   максимальный размер страницы
+     * @return задачи с ID больше {@code afterId}
+     */
+    default List<Task> getTasks(int afterId, int limit) {
+        return page(getTasks(), afterId, limit);
+    }
+
+    default List<Epic> getEpics(int afterId, int limit) {
+        return page(getEpics(), afterId, limit);
+    }
+
+    default List<Subtask> getSubtasks(int afterId, int limit) {
+        return page(getSubtasks(), afterId, limit);
+    }
+
+    /**
+     * Передаёт все задачи обработчику по одной, не собирая их в список
+     *
+     * @param consumer обработчик задач
+     */
+    default void forEachTask(Consumer<? super Task> consumer) {
+        getTasks().forEach(consumer);
+    }
+
+    default void forEachEpic(Consumer<? super Epic> consumer) {
+        getEpics().forEach(consumer);
+    }
+
+    default void forEachSubtask(Consumer<? super Subtask> consumer) {
+        getSubtasks().forEach(consumer);
+    }
+
+    private static <T extends Task> List<T> page(List<T> all, int afterId, int limit) {
+        return all.stream()
+                .filter(task -> task.getId() > afterId)
+                .sorted(Comparator.comparingInt(Task::getId))
+                .limit(limit)
+                .toList();
+    }
+
     default void begin() {
 
     }
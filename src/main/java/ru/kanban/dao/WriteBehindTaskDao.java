@@ -0,0 +1,619 @@
+package ru.kanban.dao;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.configurations.WriteBehindOptions;
+import ru.kanban.model.*;
+
+import static ru.kanban.model.TaskType.EPIC;
+import static ru.kanban.model.TaskType.SUBTASK;
+import static ru.kanban.model.TaskType.TASK;
+
+/**
+ * Обёртка хранилища задач с отложенной записью обновлений задач и подзадач (write-behind).
+ * {@link #updateTask(Task)} и {@link #updateSubtask(Subtask)} не обращаются к хранилищу с обновлением, а сохраняют
+ * копию последнего состояния задачи в буфере: повторные обновления одной задачи объединяются. Буфер записывается
+ * пакетами {@link TaskDao#updateTasks(List)} и {@link TaskDao#updateSubtasks(List)} раз в
+ * {@link WriteBehindOptions#getFlushInterval()}, при достижении {@link WriteBehindOptions#getMaxPending()} задач,
+ * при {@link #flush()} и {@link #close()}. Поэтому при аварийном завершении теряется не больше
+ * {@code maxPending} задач и не больше одного интервала обновлений.
+ * Чтение задач и подзадач возвращает ожидающие записи состояния. Чтение эпиков и их счётчиков, а также
+ * остальные изменения сначала записывают буфер, так как статус эпика вычисляется хранилищем.
+ * Обновления внутри транзакции ({@link #begin()} - {@link #commit()}) копятся отдельно для потока транзакции
+ * и переносятся в общий буфер при {@link #commit()}, при {@link #rollback()} - отбрасываются. Поэтому повторные
+ * обновления одной задачи, каждое в своей транзакции сервиса, также объединяются в одну запись.
+ * {@link #refreshEpicStatus(int)} не записывает буфер: пакетное обновление подзадач само меняет счётчики
+ * и статусы их эпиков.
+ * Фоновая запись выполняется отдельным потоком, поэтому обёрнутое хранилище должно допускать обращения
+ * из нескольких потоков (например, {@link DbTaskDao} с пулом соединений).
+ */
+public class WriteBehindTaskDao implements TaskDao, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindTaskDao.class);
+    private final TaskDao delegate;
+    private final int maxPending;
+    private final Map<Integer, Task> pendingTasks = new LinkedHashMap<>();
+    private final Map<Integer, Subtask> pendingSubtasks = new LinkedHashMap<>();
+    /**
+     * Обновления, записываемые в хранилище в данный момент. Читаются, пока запись не завершена
+     */
+    private Map<Integer, Task> flushingTasks = Map.of();
+    private Map<Integer, Subtask> flushingSubtasks = Map.of();
+    private final Object flushLock = new Object();
+    /**
+     * Обновления транзакции текущего потока, null - вне транзакции
+     */
+    private final ThreadLocal<Staged> transaction = new ThreadLocal<>();
+    private final ScheduledExecutorService scheduler;
+
+    public WriteBehindTaskDao(TaskDao delegate) {
+        this(delegate, new WriteBehindOptions());
+    }
+
+    public WriteBehindTaskDao(TaskDao delegate, WriteBehindOptions options) {
+        Duration interval = options.getFlushInterval();
+        if (options.getMaxPending() <= 0 || interval == null || interval.isNegative() || interval.isZero()) {
+            log.error("Illegal write-behind options, max pending: {}, flush interval: {}",
+                    options.getMaxPending(), interval);
+            throw new IllegalArgumentException("Max pending and flush interval must be positive");
+        }
+        this.delegate = delegate;
+        this.maxPending = options.getMaxPending();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::scheduledFlush, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Записывает обновления, накопленные в буфере, в хранилище.
+     * Если запись завершилась ошибкой, обновления возвращаются в буфер, кроме заменённых более поздними
+     */
+    public void flush() {
+        Staged staged = transaction.get();
+        synchronized (flushLock) {
+            List<Task> tasks;
+            List<Subtask> subtasks;
+            synchronized (this) {
+                if (pendingTasks.isEmpty() && pendingSubtasks.isEmpty() && (staged == null || staged.isEmpty())) {
+                    return;
+                }
+                flushingTasks = new HashMap<>(pendingTasks);
+                flushingSubtasks = new HashMap<>(pendingSubtasks);
+                tasks = new ArrayList<>(pendingTasks.values());
+                subtasks = new ArrayList<>(pendingSubtasks.values());
+                pendingTasks.clear();
+                pendingSubtasks.clear();
+            }
+            boolean tasksWritten = false;
+            try {
+                if (staged != null) {
+                    write(merge(tasks, staged.tasks), merge(subtasks, staged.subtasks));
+                    staged.written(tasks, subtasks);
+                    return;
+                }
+                if (!tasks.isEmpty()) {
+                    delegate.updateTasks(tasks);
+                }
+                tasksWritten = true;
+                if (!subtasks.isEmpty()) {
+                    delegate.updateSubtasks(subtasks);
+                }
+                log.debug("Flushed {} tasks and {} subtasks", tasks.size(), subtasks.size());
+            } catch (RuntimeException e) {
+                restore(tasksWritten ? List.of() : tasks, subtasks);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    flushingTasks = Map.of();
+                    flushingSubtasks = Map.of();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return количество задач и подзадач с ожидающими записи обновлениями, включая записываемые в данный момент
+     */
+    public synchronized int getPendingCount() {
+        int count = pendingTasks.size() + pendingSubtasks.size();
+        for (Integer id : flushingTasks.keySet()) {
+            if (!pendingTasks.containsKey(id)) {
+                count++;
+            }
+        }
+        for (Integer id : flushingSubtasks.keySet()) {
+            if (!pendingSubtasks.containsKey(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Регистрирует запись буфера при завершении JVM
+     */
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "write-behind-shutdown"));
+    }
+
+    /**
+     * Останавливает фоновую запись, записывает буфер и закрывает обёрнутое хранилище, если оно закрываемое
+     */
+    @Override
+    public void close() throws Exception {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @Override
+    public Task addTask(Task task) {
+        return delegate.addTask(task);
+    }
+
+    @Override
+    public Optional<Task> getTask(int id) {
+        Task pending = lookup(TASK, id);
+        return pending != null ? Optional.of(pending) : delegate.getTask(id);
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return overlay(delegate.getTasks(), TASK);
+    }
+
+    @Override
+    public Optional<Task> deleteTask(int id) {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingTasks.remove(id);
+            }
+            unstage(staged -> staged.tasks.remove(id));
+            return delegate.deleteTask(id);
+        }
+    }
+
+    /**
+     * Сохраняет задачу в буфере. Существование задачи, которой нет в буфере, проверяется в хранилище
+     *
+     * @return задача, если она существует
+     */
+    @Override
+    public Optional<Task> updateTask(Task task) {
+        if (lookup(TASK, task.getId()) == null && !delegate.existsById(task.getId(), TASK.name())) {
+            return Optional.empty();
+        }
+        Task copy = copy(task);
+        Staged staged = transaction.get();
+        if (staged != null) {
+            staged.tasks.put(task.getId(), copy);
+            return Optional.of(task);
+        }
+        buffer(pendingTasks, copy);
+        return Optional.of(task);
+    }
+
+    @Override
+    public void deleteAllTasks() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingTasks.clear();
+            }
+            unstage(staged -> staged.tasks.clear());
+            delegate.deleteAllTasks();
+        }
+    }
+
+    @Override
+    public Epic addEpic(Epic epic) {
+        return delegate.addEpic(epic);
+    }
+
+    @Override
+    public Optional<Epic> getEpic(int id) {
+        flush();
+        return delegate.getEpic(id);
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        flush();
+        return delegate.getEpics();
+    }
+
+    @Override
+    public Optional<Epic> deleteEpic(int id) {
+        flush();
+        return delegate.deleteEpic(id);
+    }
+
+    @Override
+    public void deleteAllEpics() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingSubtasks.clear();
+            }
+            unstage(staged -> staged.subtasks.clear());
+            delegate.deleteAllEpics();
+        }
+    }
+
+    @Override
+    public Optional<Epic> updateEpic(Epic epic) {
+        flush();
+        return delegate.updateEpic(epic);
+    }
+
+    @Override
+    public Subtask addSubtask(Subtask subtask) {
+        return delegate.addSubtask(subtask);
+    }
+
+    @Override
+    public Optional<Subtask> getSubtask(int id) {
+        Subtask pending = (Subtask) lookup(SUBTASK, id);
+        return pending != null ? Optional.of(pending) : delegate.getSubtask(id);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks() {
+        return overlay(delegate.getSubtasks(), SUBTASK);
+    }
+
+    @Override
+    public Optional<Subtask> deleteSubtask(int id) {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingSubtasks.remove(id);
+            }
+            unstage(staged -> staged.subtasks.remove(id));
+            return delegate.deleteSubtask(id);
+        }
+    }
+
+    @Override
+    public void deleteAllSubtasks() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pendingSubtasks.clear();
+            }
+            unstage(staged -> staged.subtasks.clear());
+            delegate.deleteAllSubtasks();
+        }
+    }
+
+    /**
+     * Сохраняет подзадачу в буфере. Существование подзадачи, которой нет в буфере, и её эпика проверяется
+     * в хранилище. Счётчики и статус эпика меняются при записи буфера
+     *
+     * @return подзадача, если она и её эпик существуют
+     */
+    @Override
+    public Optional<Subtask> updateSubtask(Subtask subtask) {
+        if (lookup(SUBTASK, subtask.getId()) == null && !delegate.existsById(subtask.getId(), SUBTASK.name())
+                || !delegate.existsById(subtask.getEpic().getId(), EPIC.name())) {
+            return Optional.empty();
+        }
+        Subtask copy = copy(subtask);
+        Staged staged = transaction.get();
+        if (staged != null) {
+            staged.subtasks.put(subtask.getId(), copy);
+            return Optional.of(subtask);
+        }
+        buffer(pendingSubtasks, copy);
+        return Optional.of(subtask);
+    }
+
+    @Override
+    public void updateEpicStatus(int id, Status status) {
+        flush();
+        delegate.updateEpicStatus(id, status);
+    }
+
+    /**
+     * Пересчитывает статус по счётчикам, уже записанным в хранилище, не записывая буфер:
+     * счётчики и статус эпика ожидающих записи подзадач изменятся при записи буфера
+     */
+    @Override
+    public void refreshEpicStatus(int epicId) {
+        delegate.refreshEpicStatus(epicId);
+    }
+
+    @Override
+    public void renewAllStatuses(String type, String status) {
+        flush();
+        delegate.renewAllStatuses(type, status);
+    }
+
+    @Override
+    public List<Status> getEpicSubtasksStatuses(int epicId) {
+        flush();
+        return delegate.getEpicSubtasksStatuses(epicId);
+    }
+
+    @Override
+    public EpicProgress getEpicProgress(int epicId) {
+        flush();
+        return delegate.getEpicProgress(epicId);
+    }
+
+    @Override
+    public boolean existsById(int id, String type) {
+        return delegate.existsById(id, type);
+    }
+
+    /**
+     * Сначала записывает буфер: среди задач могут быть эпики, статус которых вычисляется хранилищем
+     */
+    @Override
+    public List<Task> getByIds(int[] ids, TaskType[] types) {
+        flush();
+        return delegate.getByIds(ids, types);
+    }
+
+    @Override
+    public List<Task> addTasks(List<Task> tasks) {
+        return delegate.addTasks(tasks);
+    }
+
+    @Override
+    public List<Subtask> addSubtasks(List<Subtask> subtasks) {
+        return delegate.addSubtasks(subtasks);
+    }
+
+    @Override
+    public List<Task> updateTasks(List<Task> tasks) {
+        List<Task> result = new ArrayList<>();
+        for (Task task : tasks) {
+            updateTask(task).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Subtask> updateSubtasks(List<Subtask> subtasks) {
+        List<Subtask> result = new ArrayList<>();
+        for (Subtask subtask : subtasks) {
+            updateSubtask(subtask).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    @Override
+    public List<Task> deleteTasks(int... ids) {
+        synchronized (flushLock) {
+            synchronized (this) {
+                Arrays.stream(ids).forEach(pendingTasks::remove);
+            }
+            unstage(staged -> Arrays.stream(ids).forEach(staged.tasks::remove));
+            return delegate.deleteTasks(ids);
+        }
+    }
+
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        return overlay(delegate.getTasks(afterId, limit), TASK);
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        flush();
+        return delegate.getEpics(afterId, limit);
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        return overlay(delegate.getSubtasks(afterId, limit), SUBTASK);
+    }
+
+    @Override
+    public void forEachTask(Consumer<? super Task> consumer) {
+        delegate.forEachTask(task -> consumer.accept(pendingOr(TASK, task)));
+    }
+
+    @Override
+    public void forEachEpic(Consumer<? super Epic> consumer) {
+        flush();
+        delegate.forEachEpic(consumer);
+    }
+
+    @Override
+    public void forEachSubtask(Consumer<? super Subtask> consumer) {
+        delegate.forEachSubtask(subtask -> consumer.accept(pendingOr(SUBTASK, subtask)));
+    }
+
+    /**
+     * Начинает транзакцию хранилища, буфер не записывается. Обновления в транзакции копятся отдельно
+     */
+    @Override
+    public void begin() {
+        delegate.begin();
+        transaction.set(new Staged());
+    }
+
+    /**
+     * Отменяет транзакцию хранилища и отбрасывает её обновления. Общий буфер, записанный внутри транзакции,
+     * возвращается в буфер
+     */
+    @Override
+    public void rollback() {
+        Staged staged = transaction.get();
+        transaction.remove();
+        try {
+            delegate.rollback();
+        } finally {
+            if (staged != null) {
+                restore(staged.flushedTasks, staged.flushedSubtasks);
+            }
+        }
+    }
+
+    /**
+     * Фиксирует транзакцию хранилища и переносит обновления транзакции в общий буфер
+     */
+    @Override
+    public void commit() {
+        Staged staged = transaction.get();
+        delegate.commit();
+        transaction.remove();
+        if (staged == null || staged.isEmpty()) {
+            return;
+        }
+        boolean full;
+        synchronized (this) {
+            pendingTasks.putAll(staged.tasks);
+            pendingSubtasks.putAll(staged.subtasks);
+            full = pendingTasks.size() + pendingSubtasks.size() >= maxPending;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    private <T extends Task> void buffer(Map<Integer, T> pending, T task) {
+        boolean full;
+        synchronized (this) {
+            pending.put(task.getId(), task);
+            full = pendingTasks.size() + pendingSubtasks.size() >= maxPending;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Копия задачи для буфера: изменение переданной задачи вызывающим кодом после обновления
+     * не меняет ожидающее записи состояние
+     */
+    private static Task copy(Task task) {
+        Task result = new Task(task.getName(), task.getDescription(), task.getStatus());
+        result.setId(task.getId());
+        result.setViewed(task.isViewed());
+        return result;
+    }
+
+    /**
+     * Копия подзадачи для буфера. Копия ссылается на тот же эпик, но не добавляется в его подзадачи
+     */
+    private static Subtask copy(Subtask subtask) {
+        Subtask result = new Subtask(subtask.getName(), subtask.getDescription(), subtask.getStatus(),
+                subtask.getEpic());
+        result.setId(subtask.getId());
+        result.setViewed(subtask.isViewed());
+        return result;
+    }
+
+    /**
+     * @return ожидающее записи или записываемое состояние задачи, null - если обновлений нет
+     */
+    private synchronized Task lookup(TaskType type, int id) {
+        Staged staged = transaction.get();
+        if (staged != null) {
+            Task task = type == TASK ? staged.tasks.get(id) : staged.subtasks.get(id);
+            if (task != null) {
+                return task;
+            }
+        }
+        Task task = type == TASK ? pendingTasks.get(id) : pendingSubtasks.get(id);
+        if (task != null) {
+            return task;
+        }
+        return type == TASK ? flushingTasks.get(id) : flushingSubtasks.get(id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Task> T pendingOr(TaskType type, T task) {
+        Task pending = lookup(type, task.getId());
+        return pending != null ? (T) pending : task;
+    }
+
+    /**
+     * Заменяет задачи списка ожидающими записи состояниями
+     */
+    private <T extends Task> List<T> overlay(List<T> tasks, TaskType type) {
+        List<T> result = new ArrayList<>(tasks.size());
+        for (T task : tasks) {
+            result.add(pendingOr(type, task));
+        }
+        return result;
+    }
+
+    private synchronized void restore(List<Task> tasks, List<Subtask> subtasks) {
+        tasks.forEach(task -> pendingTasks.putIfAbsent(task.getId(), task));
+        subtasks.forEach(subtask -> pendingSubtasks.putIfAbsent(subtask.getId(), subtask));
+    }
+
+    /**
+     * Записывает обновления в хранилище внутри транзакции текущего потока
+     */
+    private void write(List<Task> tasks, List<Subtask> subtasks) {
+        if (!tasks.isEmpty()) {
+            delegate.updateTasks(tasks);
+        }
+        if (!subtasks.isEmpty()) {
+            delegate.updateSubtasks(subtasks);
+        }
+        log.debug("Flushed {} tasks and {} subtasks in transaction", tasks.size(), subtasks.size());
+    }
+
+    /**
+     * @return обновления буфера, заменённые более поздними обновлениями транзакции, и обновления транзакции
+     */
+    private static <T extends Task> List<T> merge(List<T> pending, Map<Integer, T> staged) {
+        Map<Integer, T> result = new LinkedHashMap<>();
+        pending.forEach(task -> result.put(task.getId(), task));
+        result.putAll(staged);
+        return new ArrayList<>(result.values());
+    }
+
+    private void unstage(Consumer<Staged> action) {
+        Staged staged = transaction.get();
+        if (staged != null) {
+            action.accept(staged);
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Write-behind flush failed, {} updates kept pending: ", getPendingCount(), e);
+        }
+    }
+
+    /**
+     * Обновления транзакции одного потока
+     */
+    private static final class Staged {
+        private final Map<Integer, Task> tasks = new LinkedHashMap<>();
+        private final Map<Integer, Subtask> subtasks = new LinkedHashMap<>();
+        /**
+         * Обновления общего буфера, записанные внутри транзакции. При откате возвращаются в буфер
+         */
+        private final List<Task> flushedTasks = new ArrayList<>();
+        private final List<Subtask> flushedSubtasks = new ArrayList<>();
+
+        private boolean isEmpty() {
+            return tasks.isEmpty() && subtasks.isEmpty();
+        }
+
+        private void written(List<Task> pendingTasks, List<Subtask> pendingSubtasks) {
+            flushedTasks.addAll(pendingTasks);
+            flushedSubtasks.addAll(pendingSubtasks);
+            tasks.clear();
+            subtasks.clear();
+        }
+    }
+}
@@ -1,11 +1,26 @@
 package ru.kanban.model;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
 
+/**
+ * Эпик - задача, состоящая из подзадач. Состав подзадач, счётчики и статус эпика меняются под блокировкой
+ * экземпляра эпика, поэтому подзадачи одного эпика можно добавлять и менять из нескольких потоков.
+ */
 public class Epic extends Task {
-    private List<Subtask> subtasks = new ArrayList<>();
+    private Map<Integer, Subtask> subtasks = new LinkedHashMap<>();
+    /**
+     * Количество подзадач эпика по статусам, индекс - порядковый номер статуса
+     */
+    private final int[] counters = new int[Status.values().length];
+    /**
+     * Загрузчик подзадач эпика, прочитанного хранилищем без подзадач, null - подзадачи уже загружены
+     */
+    private Consumer<Epic> subtaskLoader;
     private TaskType type;
 
     public Epic(String name, String description, Status status) {
@@ -23,18 +38,89 @@ public class Epic extends Task {
         this.type = type;
     }
 
-    public List<Subtask> getSubtasks() {
-        return subtasks;
+    /**
+     * @return подзадачи эпика в порядке добавления. Список только для чтения,
+     * состав подзадач меняется методами эпика
+     */
+    public synchronized List<Subtask> getSubtasks() {
+        loadSubtasks();
+        return List.copyOf(subtasks.values());
+    }
+
+    /**
+     * Откладывает чтение подзадач эпика до первого обращения к подзадачам или счётчикам.
+     * Загрузчик вызывается один раз под блокировкой эпика и добавляет подзадачи через {@link #attachSubtask(Subtask)}
+     *
+     * @param subtaskLoader загрузчик подзадач хранилища
+     */
+    public synchronized void setSubtaskLoader(Consumer<Epic> subtaskLoader) {
+        this.subtaskLoader = subtaskLoader;
+    }
+
+    /**
+     * Добавляет подзадачу и обновляет статус эпика. Подзадача с уже добавленным ID не добавляется
+     */
+    public synchronized void addSubtask(Subtask subtask) {
+        loadSubtasks();
+        if (subtasks.containsKey(subtask.getId())) {
+            return;
+        }
+        attachSubtask(subtask);
+        updateStatus();
     }
 
-    public void addSubtask(Subtask subtask) {
-        if (subtasks.contains(subtask)) {
+    /**
+     * Заменяет подзадачу с тем же ID (или добавляет новую) и обновляет статус эпика
+     */
+    public synchronized void replaceSubtask(Subtask subtask) {
+        loadSubtasks();
+        attachSubtask(subtask);
+        updateStatus();
+    }
+
+    /**
+     * Добавляет подзадачу, прочитанную из хранилища, без пересчёта статуса эпика:
+     * статус берётся из хранилища, а эпик может быть прочитан не со всеми подзадачами
+     */
+    public synchronized void attachSubtask(Subtask subtask) {
+        loadSubtasks();
+        Subtask previous = subtasks.put(subtask.getId(), subtask);
+        if (previous == subtask) {
             return;
         }
-        subtasks.add(subtask);
+        if (previous != null) {
+            counters[previous.getStatus().ordinal()]--;
+        }
+        counters[subtask.getStatus().ordinal()]++;
+    }
+
+    public synchronized void removeSubtask(Subtask subtask) {
+        loadSubtasks();
+        Subtask removed = subtasks.remove(subtask.getId());
+        if (removed != null) {
+            counters[removed.getStatus().ordinal()]--;
+            updateStatus();
+        }
+    }
+
+    public synchronized void clearSubtasks() {
+        subtaskLoader = null;
+        subtasks.clear();
+        Arrays.fill(counters, 0);
         updateStatus();
     }
 
+    /**
+     * @return счётчики подзадач по статусам
+     */
+    public synchronized EpicProgress getProgress() {
+        loadSubtasks();
+        return new EpicProgress(
+                counters[Status.NEW.ordinal()],
+                counters[Status.IN_PROGRESS.ordinal()],
+                counters[Status.DONE.ordinal()]);
+    }
+
     /**
      * Метод обновляет статус Эпика в зависимости от статусов подзадач принадлежащих
      * конкретному Эпику
@@ -42,43 +128,57 @@ public class Epic extends Task {
      * статус Эпика обновится на NEW,
      * Если статус у подзадач разный, то статус обновится на IN_Progress.
      * Если статус подзадач Done - статус Эпика установится в аналогичное значение.
+     * Статус вычисляется по счётчикам подзадач за O(1)
      */
-    public void updateStatus() {
-        boolean allNew = true;
-        boolean allDone = true;
-        for (Subtask subtask : this.getSubtasks()) {
-            if (subtask.getStatus() != Status.NEW) {
-                allNew = false;
-            }
-            if (subtask.getStatus() != Status.DONE) {
-                allDone = false;
-            }
-        }
-        if (this.getSubtasks().isEmpty() || allNew) {
-            this.setStatus(Status.NEW);
-        } else if (allDone) {
-            this.setStatus(Status.DONE);
-        } else {
-            this.setStatus(Status.IN_PROGRESS);
+    public synchronized void updateStatus() {
+        this.setStatus(getProgress().status());
+    }
+
+    /**
+     * Учитывает смену статуса подзадачи эпика. Вызывается из {@link Subtask#setStatus(Status)}
+     *
+     * @param subtask подзадача со сменённым статусом
+     * @param previous статус подзадачи до смены
+     */
+    synchronized void onSubtaskStatusChanged(Subtask subtask, Status previous) {
+        loadSubtasks();
+        if (subtasks.get(subtask.getId()) != subtask || previous == subtask.getStatus()) {
+            return;
         }
+        counters[previous.ordinal()]--;
+        counters[subtask.getStatus().ordinal()]++;
+        updateStatus();
     }
 
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         Epic epic = (Epic) o;
-        return super.equals(o) && Objects.equals(subtasks, epic.subtasks);
+        return super.equals(o) && Objects.equals(subtaskMap(), epic.subtaskMap());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), subtasks);
+        return Objects.hash(super.hashCode(), subtaskMap());
     }
 
     @Override
     public String toString() {
         String ln = System.lineSeparator();
-        return "Epic {" + " ID: " + getId() + ", Name: '" + getName() + "', Description: '" + getDescription() + "'" + " Status: '" + getStatus() + "' }" + ln + "Subtasks: " + subtasks.stream().map(Task::getId).toList() + '}';
+        return "Epic {" + " ID: " + getId() + ", Name: '" + getName() + "', Description: '" + getDescription() + "'" + " Status: '" + getStatus() + "' }" + ln + "Subtasks: " + subtaskMap().keySet().stream().toList() + '}';
+    }
+
+    private synchronized Map<Integer, Subtask> subtaskMap() {
+        loadSubtasks();
+        return subtasks;
+    }
+
+    private void loadSubtasks() {
+        Consumer<Epic> loader = subtaskLoader;
+        if (loader != null) {
+            subtaskLoader = null;
+            loader.accept(this);
+        }
     }
 
 }
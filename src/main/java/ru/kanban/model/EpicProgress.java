@@ -0,0 +1,42 @@
+package ru.kanban.model;
+
+import static ru.kanban.model.Status.*;
+
+/**
+ * Счётчики подзадач эпика по статусам.
+ * Статус эпика и процент выполнения вычисляются по счётчикам за O(1), без обхода подзадач.
+ *
+ * @param newCount        количество подзадач в статусе NEW
+ * @param inProgressCount количество подзадач в статусе IN_PROGRESS
+ * @param doneCount       количество подзадач в статусе DONE
+ */
+public record EpicProgress(int newCount, int inProgressCount, int doneCount) {
+
+    public static final EpicProgress EMPTY = new EpicProgress(0, 0, 0);
+
+    public int total() {
+        return newCount + inProgressCount + doneCount;
+    }
+
+    /**
+     * @return NEW - если подзадач нет или все подзадачи NEW, DONE - если все подзадачи DONE,
+     * иначе IN_PROGRESS
+     */
+    public Status status() {
+        if (newCount == total()) {
+            return NEW;
+        }
+        if (doneCount == total()) {
+            return DONE;
+        }
+        return IN_PROGRESS;
+    }
+
+    /**
+     * @return доля подзадач в статусе DONE в процентах, 0 - если подзадач нет
+     */
+    public int percent() {
+        int total = total();
+        return total == 0 ? 0 : doneCount * 100 / total;
+    }
+}
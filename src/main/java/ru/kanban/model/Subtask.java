@@ -26,6 +26,24 @@ public class Subtask extends Task {
         return epic;
     }
 
+    /**
+     * Меняет статус подзадачи и счётчики статусов её эпика под блокировкой эпика
+     */
+    @Override
+    public void setStatus(Status status) {
+        if (epic == null) {
+            super.setStatus(status);
+            return;
+        }
+        synchronized (epic) {
+            Status previous = getStatus();
+            super.setStatus(status);
+            if (previous != null) {
+                epic.onSubtaskStatusChanged(this, previous);
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
@@ -6,7 +6,7 @@ public class Task {
     private String name;
     private String description;
     private int id;
-    private Status status;
+    private volatile Status status;
     private boolean isViewed;
     private TaskType type;
 
@@ -15,4 +15,10 @@ public interface HistoryService {
     void addAll(List<? extends  Task> tasks);
 
     void deleteAllByType(String type);
+
+    void addToHistory(int userId, Task task);
+
+    List<Task> getViewedTasks(int userId);
+
+    void addAll(int userId, List<? extends Task> tasks);
 }
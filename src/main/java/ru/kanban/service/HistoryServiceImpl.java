@@ -46,4 +46,22 @@ public class HistoryServiceImpl implements HistoryService {
         historyDao.deleteAllByType(type);
     }
 
+    @Override
+    public void addToHistory(int userId, Task task) {
+        if (task != null) {
+            historyDao.setToViewed(task);
+            historyDao.addToHistory(userId, task);
+        }
+    }
+
+    @Override
+    public List<Task> getViewedTasks(int userId) {
+        return historyDao.getViewedTasks(userId);
+    }
+
+    @Override
+    public void addAll(int userId, List<? extends Task> tasks) {
+        historyDao.addAll(userId, tasks);
+    }
+
 }
@@ -2,6 +2,7 @@ package ru.kanban.service;
 
 import java.util.List;
 import ru.kanban.model.Epic;
+import ru.kanban.model.EpicProgress;
 import ru.kanban.model.Status;
 import ru.kanban.model.Subtask;
 import ru.kanban.model.Task;
@@ -45,6 +46,36 @@ public interface TaskService {
 
     Subtask updateSubtask(Subtask subtask);
 
+    List<Task> getTasks(int afterId, int limit);
+
+    List<Epic> getEpics(int afterId, int limit);
+
+    List<Subtask> getSubtasks(int afterId, int limit);
+
+    List<Task> addTasks(List<Task> tasks);
+
+    List<Subtask> addSubtasks(List<Subtask> subtasks);
+
+    List<Task> updateTasks(List<Task> tasks);
+
+    List<Task> deleteTasks(int... ids);
+
+    EpicProgress getEpicProgress(int epicId);
+
     Status checkEpicStatus(List<Status> statuses);
 
+    /**
+     * @return история просмотров пользователя
+     */
+    List<Task> getHistory(int userId);
+
+    /**
+     * Получает задачу и добавляет её в историю пользователя
+     */
+    Task getTask(int userId, int id);
+
+    Epic getEpic(int userId, int id);
+
+    Subtask getSubtask(int userId, int id);
+
 }
@@ -1,6 +1,6 @@
 package ru.kanban.service;
 
-import java.util.List;
+import java.util.*;
 import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +12,7 @@ import ru.kanban.validator.TaskValidator;
 
 import static ru.kanban.model.Status.*;
 import static ru.kanban.model.TaskType.*;
+import static ru.kanban.utils.Constants.DEFAULT_USER_ID;
 
 public class TaskServiceImpl implements TaskService {
     private static final Logger log = LoggerFactory.getLogger(TaskServiceImpl.class);
@@ -31,6 +32,11 @@ public class TaskServiceImpl implements TaskService {
         return historyService.getViewedTasks();
     }
 
+    @Override
+    public List<Task> getHistory(int userId) {
+        return historyService.getViewedTasks(userId);
+    }
+
     @Override
     public Task addTask(Task task) {
         validator.validateTaskByType(task, TASK);
@@ -41,10 +47,15 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public Task getTask(int id) {
+        return getTask(DEFAULT_USER_ID, id);
+    }
+
+    @Override
+    public Task getTask(int userId, int id) {
         validator.validateId(id);
         return wrapTransaction(() -> {
             Task task = checkExists(id, TASK);
-            addToHistory(task);
+            addToHistory(userId, task);
             return task;
         });
     }
@@ -62,8 +73,7 @@ public class TaskServiceImpl implements TaskService {
     public Task deleteTask(int id) {
         validator.validateId(id);
         return wrapTransaction(() -> {
-            Task result = checkExists(id, TASK);
-            taskDao.deleteTask(id);
+            Task result = taskDao.deleteTask(id).orElseThrow(() -> notFound(id, TASK));
             historyService.remove(id);
             log.info("Task with ID : {} deleted.", id);
             return result;
@@ -74,8 +84,7 @@ public class TaskServiceImpl implements TaskService {
     public Task updateTask(Task task) {
         validator.validateTaskByType(task, TASK);
         return wrapTransaction(() -> {
-            checkExists(task.getId(), TASK);
-            taskDao.updateTask(task);
+            taskDao.updateTask(task).orElseThrow(() -> notFound(task.getId(), TASK));
             historyRemoveIfViewed(task.isViewed(), task.getId());
             log.info("Task with ID: {} was changed. Actual name: {}, status: {}",
                     task.getId(),
@@ -105,10 +114,15 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public Epic getEpic(int id) {
+        return getEpic(DEFAULT_USER_ID, id);
+    }
+
+    @Override
+    public Epic getEpic(int userId, int id) {
         validator.validateId(id);
         return wrapTransaction(() -> {
             Epic res = (Epic) checkExists(id, EPIC);
-            addToHistory(res);
+            addToHistory(userId, res);
             return res;
         });
     }
@@ -126,8 +140,7 @@ public class TaskServiceImpl implements TaskService {
     public Epic deleteEpic(int id) {
         validator.validateId(id);
         return wrapTransaction(() -> {
-            Epic res = (Epic) checkExists(id, EPIC);
-            taskDao.deleteEpic(id);
+            Epic res = taskDao.deleteEpic(id).orElseThrow(() -> notFound(id, EPIC));
             historyService.remove(id);
             log.info("Epic with ID: {}, deleted.", id);
             return res;
@@ -149,8 +162,7 @@ public class TaskServiceImpl implements TaskService {
     public Epic updateEpic(Epic epic) {
         validator.validateTaskByType(epic, EPIC);
         return wrapTransaction(() -> {
-            checkExists(epic.getId(), EPIC);
-            taskDao.updateEpic(epic);
+            taskDao.updateEpic(epic).orElseThrow(() -> notFound(epic.getId(), EPIC));
             historyRemoveIfViewed(epic.isViewed(), epic.getId());
             updateEpicStatus(epic.getId());
             log.info("Epic with ID: {} was changed. Actual name: {}, status: {}",
@@ -166,9 +178,8 @@ public class TaskServiceImpl implements TaskService {
     public Subtask addSubtask(Subtask subtask) {
         validator.validateTaskByType(subtask, SUBTASK);
         return wrapTransaction(() -> {
-            checkEpicExists(subtask.getEpic().getId(), EPIC);
+            checkExistsById(subtask.getEpic().getId(), EPIC);
             taskDao.addSubtask(subtask);
-            updateEpicStatus(subtask.getEpic().getId());
             log.info("Subtask with ID: {}, added.", subtask.getId());
             return subtask;
         });
@@ -176,10 +187,15 @@ public class TaskServiceImpl implements TaskService {
 
     @Override
     public Subtask getSubtask(int id) {
+        return getSubtask(DEFAULT_USER_ID, id);
+    }
+
+    @Override
+    public Subtask getSubtask(int userId, int id) {
         validator.validateId(id);
         return wrapTransaction(() -> {
             Subtask result = (Subtask) checkExists(id, SUBTASK);
-            addToHistory(result);
+            addToHistory(userId, result);
             return result;
         });
     }
@@ -197,10 +213,7 @@ public class TaskServiceImpl implements TaskService {
     public Subtask deleteSubtask(int id) {
         validator.validateId(id);
         return wrapTransaction(() -> {
-            Subtask result = (Subtask) checkExists(id, SUBTASK);
-            Epic current = result.getEpic();
-            taskDao.deleteSubtask(id);
-            updateEpicStatus(current.getId());
+            Subtask result = taskDao.deleteSubtask(id).orElseThrow(() -> notFound(id, SUBTASK));
             historyService.remove(id);
             log.info("Subtask with ID: {}, deleted.", id);
             return result;
@@ -222,11 +235,11 @@ public class TaskServiceImpl implements TaskService {
     public Subtask updateSubtask(Subtask subtask) {
         validator.validateTaskByType(subtask, SUBTASK);
         return wrapTransaction(() -> {
-            checkExists(subtask.getId(), SUBTASK);
-            checkEpicExists(subtask.getEpic().getId(), EPIC);
-            taskDao.updateSubtask(subtask);
+            if (taskDao.updateSubtask(subtask).isEmpty()) {
+                checkExistsById(subtask.getId(), SUBTASK);
+                throw notFound(subtask.getEpic().getId(), EPIC);
+            }
             historyRemoveIfViewed(subtask.isViewed(), subtask.getId());
-            updateEpicStatus(subtask.getEpic().getId());
             log.info("Subtask with ID: {} was changed. Actual name: {}, status: {}",
                     subtask.getId(),
                     subtask.getName(),
@@ -235,6 +248,135 @@ public class TaskServiceImpl implements TaskService {
         });
     }
 
+    /**
+     * Страница задач в порядке возрастания ID. Задачи страницы попадают в историю
+     * @param afterId ID последней задачи предыдущей страницы, 0 - первая страница
+     * @param limit максимальный размер страницы
+     * @return задачи с ID больше {@code afterId}
+     */
+    @Override
+    public List<Task> getTasks(int afterId, int limit) {
+        validator.validatePage(afterId, limit);
+        return wrapTransaction(() -> {
+            List<Task> result = taskDao.getTasks(afterId, limit);
+            historyService.addAll(result);
+            return result;
+        });
+    }
+
+    @Override
+    public List<Epic> getEpics(int afterId, int limit) {
+        validator.validatePage(afterId, limit);
+        return wrapTransaction(() -> {
+            List<Epic> result = taskDao.getEpics(afterId, limit);
+            historyService.addAll(result);
+            return result;
+        });
+    }
+
+    @Override
+    public List<Subtask> getSubtasks(int afterId, int limit) {
+        validator.validatePage(afterId, limit);
+        return wrapTransaction(() -> {
+            List<Subtask> result = taskDao.getSubtasks(afterId, limit);
+            historyService.addAll(result);
+            return result;
+        });
+    }
+
+    /**
+     * Добавляет задачи одной операцией хранилища в рамках одной транзакции
+     * @param tasks задачи для добавления
+     * @return добавленные задачи с присвоенными ID
+     */
+    @Override
+    public List<Task> addTasks(List<Task> tasks) {
+        tasks.forEach(task -> validator.validateTaskByType(task, TASK));
+        return wrapTransaction(() -> {
+            List<Task> result = taskDao.addTasks(tasks);
+            log.info("{} Tasks added.", result.size());
+            return result;
+        });
+    }
+
+    /**
+     * Добавляет подзадачи одной операцией хранилища. Счётчики и статусы эпиков пересчитывает хранилище
+     * @param subtasks подзадачи для добавления
+     * @return добавленные подзадачи с присвоенными ID
+     */
+    @Override
+    public List<Subtask> addSubtasks(List<Subtask> subtasks) {
+        subtasks.forEach(subtask -> validator.validateTaskByType(subtask, SUBTASK));
+        Set<Integer> epicIds = new LinkedHashSet<>();
+        subtasks.forEach(subtask -> epicIds.add(subtask.getEpic().getId()));
+        return wrapTransaction(() -> {
+            checkEpicsExist(epicIds);
+            List<Subtask> result = taskDao.addSubtasks(subtasks);
+            log.info("{} Subtasks added.", result.size());
+            return result;
+        });
+    }
+
+    /**
+     * Обновляет задачи одной операцией хранилища. Если хотя бы одна задача не найдена,
+     * ни одна задача не обновляется
+     * @param tasks обновлённые задачи
+     * @return обновлённые задачи
+     */
+    @Override
+    public List<Task> updateTasks(List<Task> tasks) {
+        tasks.forEach(task -> validator.validateTaskByType(task, TASK));
+        int[] ids = tasks.stream().mapToInt(Task::getId).distinct().toArray();
+        return wrapTransaction(() -> {
+            checkAllExist(ids, TASK);
+            List<Task> result = taskDao.updateTasks(tasks);
+            if (result.size() != tasks.size()) {
+                throw notFound(ids, result, TASK);
+            }
+            result.forEach(task -> historyRemoveIfViewed(task.isViewed(), task.getId()));
+            log.info("{} Tasks were changed.", result.size());
+            return result;
+        });
+    }
+
+    /**
+     * Удаляет задачи одной операцией хранилища. Если хотя бы одна задача не найдена,
+     * ни одна задача не удаляется
+     * @param ids ID удаляемых задач
+     * @return удалённые задачи
+     */
+    @Override
+    public List<Task> deleteTasks(int... ids) {
+        for (int id : ids) {
+            validator.validateId(id);
+        }
+        int[] unique = Arrays.stream(ids).distinct().toArray();
+        return wrapTransaction(() -> {
+            checkAllExist(unique, TASK);
+            List<Task> result = taskDao.deleteTasks(unique);
+            if (result.size() != unique.length) {
+                throw notFound(unique, result, TASK);
+            }
+            result.forEach(task -> historyService.remove(task.getId()));
+            log.info("{} Tasks deleted.", result.size());
+            return result;
+        });
+    }
+
+    /**
+     * Счётчики подзадач эпика по статусам и процент выполнения. Чтение не попадает в историю
+     * @param epicId ID эпика
+     * @return счётчики подзадач эпика
+     */
+    @Override
+    public EpicProgress getEpicProgress(int epicId) {
+        validator.validateId(epicId);
+        return wrapTransaction(() -> {
+            checkExistsById(epicId, EPIC);
+            return taskDao.getEpicProgress(epicId);
+        });
+    }
+
     /**
      * Метод пересчитывает статусы подзадач Эпика и возвращает актуальный статус для конкретного Эпика
      * @param statuses список статусов подзадач
@@ -270,20 +412,15 @@ public class TaskServiceImpl implements TaskService {
      * Вспомогательный метод для корректного обновления статуса эпика
      * @param id эпика для обновления статуса
      * @see #updateEpic(Epic)
-     * @see #addSubtask(Subtask)
-     * @see #deleteSubtask(int)
-     * @see #updateSubtask(Subtask)
      */
     private void updateEpicStatus(int id) {
-        var actualSubStatuses = taskDao.getEpicSubtasksStatuses(id);
-        Status updatedStatus = this.checkEpicStatus(actualSubStatuses);
-        taskDao.updateEpicStatus(id, updatedStatus);
-        log.info("Epic with ID : {}, status updated to : {}", id, updatedStatus);
+        taskDao.refreshEpicStatus(id);
+        log.info("Epic with ID : {}, status updated", id);
     }
 
-    private void addToHistory(Task task) {
+    private void addToHistory(int userId, Task task) {
         historyService.setToViewed(task);
-        historyService.addToHistory(task);
+        historyService.addToHistory(userId, task);
     }
 
     /**
@@ -309,12 +446,58 @@ public class TaskServiceImpl implements TaskService {
         }
     }
 
-    private void checkEpicExists(int id, TaskType type) {
+    /**
+     * Проверяет существование задачи заданного типа, не читая её
+     */
+    private void checkExistsById(int id, TaskType type) {
         if (!taskDao.existsById(id, type.name())) {
-            throw new TaskNotFoundException(type.name() + " with id: " + id + " not found");
+            throw notFound(id, type);
+        }
+    }
+
+    /**
+     * Проверяет одним чтением хранилища, что все эпики пакета подзадач существуют
+     */
+    private void checkEpicsExist(Set<Integer> epicIds) {
+        int[] ids = epicIds.stream().mapToInt(Integer::intValue).toArray();
+        TaskType[] types = new TaskType[ids.length];
+        Arrays.fill(types, EPIC);
+        Set<Integer> found = new HashSet<>();
+        taskDao.getByIds(ids, types).forEach(epic -> found.add(epic.getId()));
+        for (int id : ids) {
+            if (!found.contains(id)) {
+                throw notFound(id, EPIC);
+            }
+        }
+    }
+
+    private TaskNotFoundException notFound(int id, TaskType type) {
+        return new TaskNotFoundException(type + " with id: " + id + " not found");
+    }
+
+    /**
+     * Проверяет одним чтением хранилища, что все задачи пакета существуют, до изменения пакета:
+     * хранилища в памяти и файловые хранилища не откатывают уже выполненную часть пакета
+     */
+    private void checkAllExist(int[] ids, TaskType type) {
+        TaskType[] types = new TaskType[ids.length];
+        Arrays.fill(types, type);
+        List<Task> found = taskDao.getByIds(ids, types);
+        if (found.size() != ids.length) {
+            throw notFound(ids, found, type);
         }
     }
 
+    private TaskNotFoundException notFound(int[] ids, List<Task> found, TaskType type) {
+        Set<Integer> foundIds = new HashSet<>();
+        found.forEach(task -> foundIds.add(task.getId()));
+        List<Integer> missing = Arrays.stream(ids)
+                .filter(id -> !foundIds.contains(id))
+                .boxed()
+                .toList();
+        return new TaskNotFoundException(type + " with ids: " + missing + " not found");
+    }
+
     private void historyRemoveIfViewed(boolean viewed, int id) {
         if (!viewed) {
             historyService.remove(id);
@@ -323,14 +506,9 @@ public class TaskServiceImpl implements TaskService {
 
     private Task checkExists(int id, TaskType type) {
         return switch (type) {
-            case TASK -> taskDao.getTask(id)
-                    .orElseThrow(() -> new TaskNotFoundException(type + " with id: " + id + " not found"));
-
-            case EPIC -> taskDao.getEpic(id)
-                    .orElseThrow(() -> new TaskNotFoundException(type + " with id: " + id + " not found"));
-
-            case SUBTASK -> taskDao.getSubtask(id)
-                    .orElseThrow(() -> new TaskNotFoundException(type + " with id: " + id + " not found"));
+            case TASK -> taskDao.getTask(id).orElseThrow(() -> notFound(id, type));
+            case EPIC -> taskDao.getEpic(id).orElseThrow(() -> notFound(id, type));
+            case SUBTASK -> taskDao.getSubtask(id).orElseThrow(() -> notFound(id, type));
         };
     }
 }
@@ -0,0 +1,474 @@
+package ru.kanban.storage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.exceptions.ManagerSaveException;
+import ru.kanban.model.Status;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.model.TaskType;
+
+/**
+ * Двоичный формат файлов задач и истории.
+ * Файл начинается с заголовка: 4 байта {@link #MAGIC} и байт версии {@link #VERSION}.
+ * Каждая запись: длина данных (varint), данные, CRC32 данных (4 байта).
+ * Данные записи: тип (1 байт), статус (1 байт), ID (varint), ID эпика для подзадачи (varint),
+ * название и описание (длина в байтах varint + UTF-8).
+ * Журнал изменений двоичного хранилища состоит из таких же записей без заголовка файла
+ * (см. {@link #encodeJournal(JournalOperation, TaskRecord)}).
+ */
+public final class BinaryTaskCodec {
+    public static final byte[] MAGIC = {'K', 'N', 'B', 'N'};
+    public static final byte VERSION = 1;
+    private static final Logger log = LoggerFactory.getLogger(BinaryTaskCodec.class);
+    private static final TaskType[] TYPES = {TaskType.TASK, TaskType.EPIC, TaskType.SUBTASK};
+    private static final Status[] STATUSES = {Status.NEW, Status.IN_PROGRESS, Status.DONE};
+    private static final JournalOperation[] OPERATIONS = JournalOperation.values();
+
+    private BinaryTaskCodec() {
+
+    }
+
+    /**
+     * @return заголовок двоичного файла
+     */
+    public static byte[] header() {
+        byte[] header = Arrays.copyOf(MAGIC, MAGIC.length + 1);
+        header[MAGIC.length] = VERSION;
+        return header;
+    }
+
+    /**
+     * Проверяет, записан ли файл в двоичном формате
+     *
+     * @param path путь к файлу
+     * @return true - файл начинается с {@link #MAGIC}
+     * @throws IllegalArgumentException если версия формата не поддерживается
+     */
+    public static boolean isBinary(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        byte[] header = new byte[MAGIC.length + 1];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read = in.readNBytes(header, 0, header.length);
+            if (read < MAGIC.length || !Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.error("File {} can't be read.", path);
+            throw new ManagerSaveException("File reading exception");
+        }
+        if (header[MAGIC.length] != VERSION) {
+            log.error("Unsupported binary format version: {}", header[MAGIC.length]);
+            throw new IllegalArgumentException("Unsupported binary format version: " + header[MAGIC.length]);
+        }
+        return true;
+    }
+
+    /**
+     * Формат существующего файла. Для отсутствующего или пустого файла возвращается {@code defaultFormat}
+     *
+     * @param path          путь к файлу
+     * @param defaultFormat формат нового файла
+     * @return формат файла
+     */
+    public static TaskFormat detect(Path path, TaskFormat defaultFormat) {
+        try {
+            if (!Files.exists(path) || Files.size(path) == 0) {
+                return defaultFormat;
+            }
+        } catch (IOException e) {
+            log.error("File {} can't be read.", path);
+            throw new ManagerSaveException("File reading exception");
+        }
+        return isBinary(path) ? TaskFormat.BINARY : TaskFormat.CSV;
+    }
+
+    /**
+     * Кодирует задачу в запись двоичного формата
+     *
+     * @param task задача
+     * @return запись вместе с длиной и контрольной суммой
+     */
+    public static byte[] encode(Task task) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        writeTask(payload, task.getType(), task.getStatus(), task.getId(),
+                task.getType() == TaskType.SUBTASK ? ((Subtask) task).getEpic().getId() : 0,
+                task.getName(), task.getDescription());
+        return frame(payload.toByteArray());
+    }
+
+    /**
+     * Кодирует запись журнала изменений. Данные записи: операция (1 байт), далее для ADD / UPDATE - данные
+     * задачи в формате записи файла задач, для DELETE - тип и ID (varint), для CLEAR - тип,
+     * для STATUS - тип и статус
+     *
+     * @param operation тип записи журнала
+     * @param record    поля записи, используемые операцией
+     * @return запись вместе с длиной и контрольной суммой
+     */
+    public static byte[] encodeJournal(JournalOperation operation, TaskRecord record) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(64);
+        payload.write(operation.ordinal());
+        switch (operation) {
+            case ADD, UPDATE -> writeTask(payload, record.getType(), record.getStatus(), record.getId(),
+                    record.getEpicId(), record.getName(), record.getDescription());
+            case DELETE -> {
+                payload.write(record.getType().ordinal());
+                writeVarint(payload, record.getId());
+            }
+            case CLEAR -> payload.write(record.getType().ordinal());
+            case STATUS -> {
+                payload.write(record.getType().ordinal());
+                payload.write(record.getStatus().ordinal());
+            }
+        }
+        return frame(payload.toByteArray());
+    }
+
+    /**
+     * Последовательно читает записи журнала изменений двоичного хранилища.
+     * Незавершённая последняя запись (прерванная запись в файл) пропускается.
+     *
+     * @param path    путь к журналу
+     * @param handler получает операцию и поля каждой записи. Объект записи переиспользуется между вызовами
+     * @throws IllegalArgumentException при повреждённой записи
+     */
+    public static void readJournal(Path path, BiConsumer<JournalOperation, TaskRecord> handler) {
+        TaskRecord record = new TaskRecord();
+        readFrames(path, 0, (data, length) -> handler.accept(decodeJournal(data, length, record), record));
+    }
+
+    /**
+     * Последовательно читает записи двоичного файла.
+     * Незавершённая последняя запись (прерванная запись в файл) пропускается.
+     *
+     * @param path    путь к файлу
+     * @param handler получает каждую запись. Объект записи переиспользуется между вызовами
+     * @throws IllegalArgumentException при повреждённой записи
+     */
+    public static void read(Path path, Consumer<TaskRecord> handler) {
+        TaskRecord record = new TaskRecord();
+        readFrames(path, MAGIC.length + 1, (data, length) -> {
+            decode(data, 0, length, record);
+            handler.accept(record);
+        });
+    }
+
+    private static void readFrames(Path path, int skip, FrameHandler handler) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            in.skipNBytes(skip);
+            byte[] buffer = new byte[256];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = readVarint(in);
+                    if (length < 0) {
+                        return;
+                    }
+                    if (buffer.length < length) {
+                        buffer = new byte[Math.max(length, buffer.length * 2)];
+                    }
+                    in.readFully(buffer, 0, length);
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    log.warn("Incomplete last record in {} is skipped.", path);
+                    return;
+                }
+                crc.reset();
+                crc.update(buffer, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    log.error("Corrupted record in {}", path);
+                    throw new IllegalArgumentException("Corrupted record: checksum mismatch");
+                }
+                handler.accept(buffer, length);
+            }
+        } catch (IOException e) {
+            log.error("File {} can't be read.", path);
+            throw new ManagerSaveException("File reading exception");
+        }
+    }
+
+    /**
+     * Читает записи двоичного файла параллельно. Границы записей находятся последовательным проходом
+     * по длинам записей, после чего части файла проверяются и разбираются задачами пула
+     * {@link java.util.concurrent.ForkJoinPool}.
+     *
+     * @param path        путь к файлу
+     * @param parallelism количество потоков разбора
+     * @return записи каждой части файла, в порядке следования частей
+     */
+    public static List<List<TaskRecord>> readParallel(Path path, int parallelism) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = splitOnRecords(path, channel.size(), parallelism);
+            List<Callable<List<TaskRecord>>> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                chunks.add(() -> readChunk(path, channel, from, to));
+            }
+            return ParallelChunks.invokeAll(chunks, parallelism);
+        } catch (IOException e) {
+            log.error("File {} can't be read.", path);
+            throw new ManagerSaveException("File reading exception");
+        }
+    }
+
+    private static long[] splitOnRecords(Path path, long size, int parallelism) throws IOException {
+        long chunkSize = Math.max(1, size / ParallelChunks.chunkCount(size, parallelism));
+        List<Long> bounds = new ArrayList<>();
+        long offset = MAGIC.length + 1;
+        bounds.add(offset);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            in.skipNBytes(offset);
+            while (true) {
+                int length;
+                try {
+                    length = readVarint(in);
+                    if (length < 0) {
+                        break;
+                    }
+                    in.skipNBytes(length + 4L);
+                } catch (EOFException e) {
+                    log.warn("Incomplete last record in {} is skipped.", path);
+                    break;
+                }
+                offset += varintSize(length) + length + 4L;
+                if (offset - bounds.get(bounds.size() - 1) >= chunkSize) {
+                    bounds.add(offset);
+                }
+            }
+        }
+        if (bounds.get(bounds.size() - 1) != offset) {
+            bounds.add(offset);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static List<TaskRecord> readChunk(Path path, FileChannel channel, long from, long to)
+            throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        List<TaskRecord> records = new ArrayList<>();
+        while (bytes.hasRemaining()) {
+            TaskRecord record = new TaskRecord();
+            try {
+                decode(bytes, record);
+            } catch (IllegalArgumentException e) {
+                log.error("Corrupted record in {}", path);
+                throw e;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    /**
+     * Читает одну запись из буфера, начиная с его текущей позиции
+     *
+     * @param bytes  буфер с записью, позиция после чтения указывает на конец записи
+     * @param record заполняемая запись
+     * @throws IllegalArgumentException при повреждённой записи
+     */
+    public static void decode(ByteBuffer bytes, TaskRecord record) {
+        int length = readVarint(bytes);
+        if (length < 0 || length > bytes.remaining() - 4) {
+            throw new IllegalArgumentException("Corrupted record: length mismatch");
+        }
+        byte[] data = new byte[length];
+        bytes.get(data);
+        int checksum = bytes.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalArgumentException("Corrupted record: checksum mismatch");
+        }
+        decode(data, 0, length, record);
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupted record: malformed varint");
+    }
+
+    /**
+     * Заполняет запись из данных задачи, начинающихся с позиции {@code offset}
+     */
+    private static void decode(byte[] data, int offset, int length, TaskRecord record) {
+        int[] position = {offset + 2};
+        record.setType(type(data[offset]));
+        record.setStatus(status(data[offset + 1]));
+        record.setId(readVarint(data, position));
+        record.setEpicId(record.getType() == TaskType.SUBTASK ? readVarint(data, position) : 0);
+        record.setName(readString(data, position));
+        record.setDescription(readString(data, position));
+        checkLength(position[0], length);
+    }
+
+    private static JournalOperation decodeJournal(byte[] data, int length, TaskRecord record) {
+        if (length == 0 || data[0] < 0 || data[0] >= OPERATIONS.length) {
+            log.error("Illegal journal operation code.");
+            throw new IllegalArgumentException("Illegal journal operation.");
+        }
+        JournalOperation operation = OPERATIONS[data[0]];
+        int[] position = {2};
+        switch (operation) {
+            case ADD, UPDATE -> {
+                decode(data, 1, length, record);
+                return operation;
+            }
+            case DELETE -> {
+                record.setType(type(data[1]));
+                record.setId(readVarint(data, position));
+            }
+            case CLEAR -> record.setType(type(data[1]));
+            case STATUS -> {
+                record.setType(type(data[1]));
+                record.setStatus(status(data[position[0]++]));
+            }
+        }
+        checkLength(position[0], length);
+        return operation;
+    }
+
+    private static TaskType type(byte code) {
+        if (code < 0 || code >= TYPES.length) {
+            log.error("Illegal task type code: {}", code);
+            throw new IllegalArgumentException("Illegal task type.");
+        }
+        return TYPES[code];
+    }
+
+    private static Status status(byte code) {
+        if (code < 0 || code >= STATUSES.length) {
+            log.error("Illegal status code: {}", code);
+            throw new IllegalArgumentException("Illegal status provided");
+        }
+        return STATUSES[code];
+    }
+
+    private static void checkLength(int position, int length) {
+        if (position != length) {
+            log.error("Record length mismatch.");
+            throw new IllegalArgumentException("Corrupted record: length mismatch");
+        }
+    }
+
+    private static void writeTask(ByteArrayOutputStream payload, TaskType type, Status status, int id, int epicId,
+                                  String name, String description) {
+        payload.write(type.ordinal());
+        payload.write(status.ordinal());
+        writeVarint(payload, id);
+        if (type == TaskType.SUBTASK) {
+            writeVarint(payload, epicId);
+        }
+        writeString(payload, name);
+        writeString(payload, description);
+    }
+
+    private static void writeString(ByteArrayOutputStream payload, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(payload, bytes.length);
+        payload.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] frame(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(data.length + 9);
+        writeVarint(record, data.length);
+        record.write(data, 0, data.length);
+        int checksum = (int) crc.getValue();
+        record.write(checksum >>> 24);
+        record.write(checksum >>> 16);
+        record.write(checksum >>> 8);
+        record.write(checksum);
+        return record.toByteArray();
+    }
+
+    private static String readString(byte[] data, int[] position) {
+        int length = readVarint(data, position);
+        String value = new String(data, position[0], length, StandardCharsets.UTF_8);
+        position[0] += length;
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(byte[] data, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = data[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupted record: malformed varint");
+    }
+
+    /**
+     * @return значение или -1, если поток закончился на границе записи
+     */
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Corrupted record: malformed varint");
+    }
+
+    @FunctionalInterface
+    private interface FrameHandler {
+        void accept(byte[] data, int length);
+    }
+}
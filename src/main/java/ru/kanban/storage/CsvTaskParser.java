@@ -0,0 +1,321 @@
+package ru.kanban.storage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.exceptions.ManagerSaveException;
+import ru.kanban.model.Status;
+import ru.kanban.model.TaskType;
+
+import static ru.kanban.utils.Constants.HEADER;
+
+/**
+ * Потоковый разбор CSV файлов задач и истории.
+ * Файл читается большим буфером, поля строки находятся по позициям запятых в буфере без разбиения строки,
+ * проверка формата и заполнение {@link TaskRecord} выполняются за один проход.
+ * Строки создаются только для названия и описания задачи.
+ */
+public final class CsvTaskParser {
+    private static final Logger log = LoggerFactory.getLogger(CsvTaskParser.class);
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAX_FIELDS = 6;
+    private static final String FORMAT_MESSAGE = "Must be: id,type,name,status,description,epic id";
+    private static final TaskType[] TYPES = TaskType.values();
+    private static final Status[] STATUSES = Status.values();
+
+    private CsvTaskParser() {
+
+    }
+
+    /**
+     * Последовательно читает записи CSV файла
+     *
+     * @param path       путь к файлу
+     * @param withHeader true - первая строка файла должна быть {@link ru.kanban.utils.Constants#HEADER}
+     *                   (пустой файл допустим)
+     * @param skipEmpty  true - пустые строки пропускаются, иначе считаются ошибкой формата
+     * @param handler    получает каждую запись. Объект записи переиспользуется между вызовами
+     * @throws IllegalArgumentException при нарушении формата записи
+     */
+    public static void read(Path path, boolean withHeader, boolean skipEmpty, Consumer<TaskRecord> handler) {
+        TaskRecord record = new TaskRecord();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[BUFFER_SIZE];
+            int start = 0;
+            int end = 0;
+            boolean header = withHeader;
+            boolean eof = false;
+            while (!eof || start < end) {
+                int newline = indexOf(buffer, start, end, '\n');
+                if (newline < 0 && !eof) {
+                    if (start > 0) {
+                        System.arraycopy(buffer, start, buffer, 0, end - start);
+                        end -= start;
+                        start = 0;
+                    }
+                    if (end == buffer.length) {
+                        char[] grown = new char[buffer.length * 2];
+                        System.arraycopy(buffer, 0, grown, 0, end);
+                        buffer = grown;
+                    }
+                    int read = reader.read(buffer, end, buffer.length - end);
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        end += read;
+                    }
+                    continue;
+                }
+                int next = newline < 0 ? end : newline + 1;
+                parseLine(buffer, start, newline < 0 ? end : newline, header, skipEmpty, record, handler);
+                header = false;
+                start = next;
+            }
+        } catch (IOException e) {
+            log.error("File is missing");
+            throw new ManagerSaveException("File reading exception");
+        }
+    }
+
+    /**
+     * Читает записи CSV файла параллельно. Файл делится на части по границам строк,
+     * каждая часть разбирается отдельной задачей пула {@link java.util.concurrent.ForkJoinPool}.
+     * При ошибках формата в нескольких частях выбрасывается ошибка самой ранней по файлу части.
+     *
+     * @param path        путь к файлу
+     * @param withHeader  true - первая строка файла должна быть {@link ru.kanban.utils.Constants#HEADER}
+     * @param skipEmpty   true - пустые строки пропускаются, иначе считаются ошибкой формата
+     * @param parallelism количество потоков разбора
+     * @return записи каждой части файла, в порядке следования частей
+     */
+    public static List<List<TaskRecord>> readParallel(Path path, boolean withHeader, boolean skipEmpty,
+                                                      int parallelism) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = ParallelChunks.splitOnNewlines(channel, parallelism);
+            List<Callable<List<TaskRecord>>> chunks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long from = bounds[i];
+                long to = bounds[i + 1];
+                boolean header = withHeader && i == 0;
+                chunks.add(() -> parseChunk(channel, from, to, header, skipEmpty));
+            }
+            return ParallelChunks.invokeAll(chunks, parallelism);
+        } catch (IOException e) {
+            log.error("File is missing");
+            throw new ManagerSaveException("File reading exception");
+        }
+    }
+
+    /**
+     * Проверяет формат строки и заполняет запись
+     *
+     * @param line   строка, описывающая задачу
+     * @param record заполняемая запись
+     * @throws IllegalArgumentException при нарушении формата записи
+     */
+    public static void parse(String line, TaskRecord record) {
+        char[] chars = line.toCharArray();
+        parse(chars, 0, chars.length, record);
+    }
+
+    /**
+     * Проверяет формат строки, заданной диапазоном буфера, и заполняет запись.
+     * Поля разделяются запятыми, пустые поля в конце строки не учитываются.
+     * Порядок проверок и сообщения об ошибках: количество полей, ID, тип, название, статус, описание, ID эпика.
+     */
+    private static void parse(char[] buffer, int from, int to, TaskRecord record) {
+        int[] starts = new int[MAX_FIELDS + 1];
+        int[] ends = new int[MAX_FIELDS + 1];
+        int fields = 0;
+        int lastNonEmpty = -1;
+        int fieldStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || buffer[i] == ',') {
+                if (i > fieldStart) {
+                    lastNonEmpty = fields;
+                }
+                if (fields <= MAX_FIELDS) {
+                    starts[fields] = fieldStart;
+                    ends[fields] = i;
+                }
+                fields++;
+                fieldStart = i + 1;
+            }
+        }
+        int count = lastNonEmpty + 1;
+        if (count == 0) {
+            count = 1;
+        }
+        if (count < 5 || count > MAX_FIELDS) {
+            log.error(FORMAT_MESSAGE);
+            throw new IllegalArgumentException(FORMAT_MESSAGE);
+        }
+        int id;
+        try {
+            id = parseInt(buffer, starts[0], ends[0]);
+        } catch (NumberFormatException e) {
+            log.error("Task ID is missing.");
+            throw new IllegalArgumentException("Task ID is missing.");
+        }
+        TaskType type = match(TYPES, buffer, starts[1], ends[1]);
+        boolean correctName = !isBlank(buffer, starts[2], ends[2]);
+        Status status = match(STATUSES, buffer, starts[3], ends[3]);
+        boolean correctDescription = !isBlank(buffer, starts[4], ends[4]);
+        if (type == null) {
+            log.error("Illegal task type.");
+            throw new IllegalArgumentException("Illegal task type.");
+        }
+        String name = new String(buffer, starts[2], ends[2] - starts[2]);
+        if (!correctName) {
+            log.error("Task name is missing");
+            throw new IllegalArgumentException("Task name is missing");
+        }
+        if (status == null) {
+            log.error("Illegal status provided");
+            throw new IllegalArgumentException("Illegal status provided");
+        }
+        if (!correctDescription) {
+            log.error("Description is missing");
+            throw new IllegalArgumentException("Description is missing");
+        }
+        int epicId = 0;
+        if (type == TaskType.SUBTASK) {
+            if (count < MAX_FIELDS) {
+                log.error("Epic ID at subtask: {}, is missing", name);
+                throw new IllegalArgumentException("Epic ID at subtask: " + name + " is missing");
+            }
+            try {
+                epicId = parseInt(buffer, starts[5], ends[5]);
+            } catch (NumberFormatException e) {
+                log.error("Epic ID at subtask: {}, is invalid", name);
+                throw new IllegalArgumentException("Epic ID at subtask: " + name + " is invalid");
+            }
+        }
+        record.setId(id);
+        record.setType(type);
+        record.setName(name);
+        record.setStatus(status);
+        record.setDescription(new String(buffer, starts[4], ends[4] - starts[4]));
+        record.setEpicId(epicId);
+    }
+
+    private static List<TaskRecord> parseChunk(FileChannel channel, long from, long to, boolean header,
+                                               boolean skipEmpty) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+        char[] buffer = chars.array();
+        int end = chars.limit();
+        List<TaskRecord> records = new ArrayList<>();
+        int start = 0;
+        boolean first = header;
+        while (start < end) {
+            int newline = indexOf(buffer, start, end, '\n');
+            int lineEnd = newline < 0 ? end : newline;
+            parseLine(buffer, start, lineEnd, first, skipEmpty, new TaskRecord(), records::add);
+            first = false;
+            start = lineEnd + 1;
+        }
+        return records;
+    }
+
+    private static void parseLine(char[] buffer, int start, int end, boolean header, boolean skipEmpty,
+                                  TaskRecord record, Consumer<TaskRecord> handler) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if (header) {
+            checkHeader(buffer, start, end);
+        } else if (!(skipEmpty && end == start)) {
+            parse(buffer, start, end, record);
+            handler.accept(record);
+        }
+    }
+
+    private static void checkHeader(char[] buffer, int from, int to) {
+        boolean equal = to - from == HEADER.length();
+        for (int i = 0; equal && i < HEADER.length(); i++) {
+            equal = buffer[from + i] == HEADER.charAt(i);
+        }
+        if (!equal) {
+            log.error("File contains incorrect HEADER.");
+            throw new IllegalArgumentException(FORMAT_MESSAGE);
+        }
+    }
+
+    private static int indexOf(char[] buffer, int from, int to, char value) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Разбор целого числа по правилам {@link Integer#parseInt(String)} без создания строки
+     */
+    private static int parseInt(char[] buffer, int from, int to) {
+        if (from >= to) {
+            throw new NumberFormatException();
+        }
+        boolean negative = buffer[from] == '-';
+        int i = negative || buffer[from] == '+' ? from + 1 : from;
+        if (i == to) {
+            throw new NumberFormatException();
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = Character.digit(buffer[i], 10);
+            if (digit < 0) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new NumberFormatException();
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException();
+        }
+        return (int) value;
+    }
+
+    private static <E extends Enum<E>> E match(E[] values, char[] buffer, int from, int to) {
+        for (E value : values) {
+            String name = value.name();
+            if (name.length() != to - from) {
+                continue;
+            }
+            boolean equal = true;
+            for (int i = 0; equal && i < name.length(); i++) {
+                equal = buffer[from + i] == name.charAt(i);
+            }
+            if (equal) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isBlank(char[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!Character.isWhitespace(buffer[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
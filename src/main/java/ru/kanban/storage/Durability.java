@@ -0,0 +1,15 @@
+package ru.kanban.storage;
+
+/**
+ * Гарантии сохранности записей файлового хранилища.
+ * NONE - записи пишутся фоновым потоком пачками, без принудительного сброса на диск,
+ * BATCHED - записи пишутся фоновым потоком пачками, после каждой пачки данные сбрасываются на диск,
+ * WRITE_THROUGH - каждая запись сразу пишется в файл в вызывающем потоке, без принудительного сброса на диск,
+ * PER_WRITE - каждая запись сразу пишется в файл и сбрасывается на диск в вызывающем потоке.
+ */
+public enum Durability {
+    NONE,
+    BATCHED,
+    WRITE_THROUGH,
+    PER_WRITE
+}
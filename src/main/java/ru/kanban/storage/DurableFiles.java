@@ -0,0 +1,74 @@
+package ru.kanban.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Запись и атомарная подмена файлов хранилища со сбросом на диск.
+ * Временный файл сбрасывается на диск до подмены, каталог - после, поэтому после сбоя питания
+ * на месте файла оказывается либо прежнее, либо полностью записанное новое содержимое.
+ */
+public final class DurableFiles {
+    private static final Logger log = LoggerFactory.getLogger(DurableFiles.class);
+
+    private DurableFiles() {
+
+    }
+
+    /**
+     * Записывает содержимое в новый временный файл рядом с {@code target} и сбрасывает его на диск.
+     * Имя временного файла уникально, поэтому одновременные записи не мешают друг другу
+     *
+     * @param target  файл, который будет заменён временным
+     * @param content содержимое
+     * @return путь к временному файлу
+     */
+    public static Path writeTemp(Path target, byte[] content) throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path temp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return temp;
+    }
+
+    /**
+     * Атомарно заменяет файл {@code target} файлом {@code source} и сбрасывает на диск запись каталога
+     *
+     * @param source уже сброшенный на диск файл
+     * @param target заменяемый файл
+     */
+    public static void replace(Path source, Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Сбрасывает на диск каталог. Если файловая система не позволяет открыть каталог (Windows),
+     * подмена остаётся атомарной, но может не пережить сбой питания
+     */
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Directory {} can't be forced.", directory);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package ru.kanban.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.exceptions.ManagerSaveException;
+import ru.kanban.model.Epic;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.utils.IntMap;
+
+/**
+ * Файл истории фиксированного размера, отображённый в память.
+ * Файл состоит из заголовка {@link #HEADER_SIZE} байт ({@link #MAGIC}, версия, количество и размер ячеек,
+ * следующий порядковый номер просмотра) и заданного количества ячеек одинакового размера.
+ * Ячейка хранит порядковый номер просмотра (0 - ячейка свободна) и запись {@link BinaryTaskCodec}.
+ * Каждая задача истории занимает одну ячейку: повторный просмотр перезаписывает её ячейку, новая задача при
+ * заполненной истории занимает ячейку самого давнего просмотра. Размер файла не меняется,
+ * а при открытии читаются только сохранённые ячейки, в порядке просмотров.
+ * В памяти хранится индекс ID задачи - ячейка и список занятых ячеек в порядке просмотров, поэтому поиск ячейки
+ * задачи и ячейки самого давнего просмотра (голова списка) не зависит от количества ячеек.
+ */
+public class HistoryRing implements AutoCloseable {
+    public static final int MAGIC = 0x4B4E4852;
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 32;
+    public static final int DEFAULT_SLOT_SIZE = 1024;
+    public static final int MIN_SLOT_SIZE = 64;
+    private static final Logger log = LoggerFactory.getLogger(HistoryRing.class);
+    private static final int SEQUENCE_OFFSET = 16;
+    private static final int SLOT_HEADER_SIZE = 8;
+    private static final int NONE = -1;
+    private final Path path;
+    private final Durability durability;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int slotSize;
+    private final long[] sequences;
+    private final int[] ids;
+    /**
+     * Ячейка по ID задачи, только занятые ячейки
+     */
+    private final IntMap<Integer> slots;
+    /**
+     * Занятые ячейки в порядке просмотров: от {@link #head} (самый давний) к {@link #tail} (последний)
+     */
+    private final int[] previous;
+    private final int[] next;
+    private int head = NONE;
+    private int tail = NONE;
+    /**
+     * Свободные ячейки, связанные через {@link #next}
+     */
+    private int free = NONE;
+    private long nextSequence;
+
+    /**
+     * Открывает существующий файл истории или создаёт новый.
+     * Существующий файл сохраняет количество и размер своих ячеек.
+     *
+     * @param path       путь к файлу истории
+     * @param capacity   количество ячеек нового файла
+     * @param slotSize   размер ячейки нового файла в байтах
+     * @param durability {@link Durability#PER_WRITE} - каждая ячейка сбрасывается на диск сразу после записи,
+     *                   иначе изменения сбрасываются в {@link #flush()} и {@link #close()}
+     */
+    public HistoryRing(Path path, int capacity, int slotSize, Durability durability) {
+        if (capacity <= 0 || slotSize < MIN_SLOT_SIZE) {
+            log.error("Illegal history ring size: {} slots of {} bytes", capacity, slotSize);
+            throw new IllegalArgumentException("Illegal history ring size");
+        }
+        this.path = path;
+        this.durability = durability;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = channel.size() == 0;
+            if (!created && !isRing(path)) {
+                channel.close();
+                log.error("File {} is not a history ring.", path);
+                throw new IllegalArgumentException("Illegal history ring header.");
+            }
+            if (created) {
+                this.capacity = capacity;
+                this.slotSize = slotSize;
+            } else {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                channel.read(header, 0);
+                this.capacity = header.getInt(8);
+                this.slotSize = header.getInt(12);
+            }
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) this.capacity * this.slotSize);
+        } catch (IOException e) {
+            log.error("File {} can't be opened.", path);
+            throw new ManagerSaveException("History file opening exception");
+        }
+        this.sequences = new long[this.capacity];
+        this.ids = new int[this.capacity];
+        this.slots = new IntMap<>(this.capacity);
+        this.previous = new int[this.capacity];
+        this.next = new int[this.capacity];
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, this.capacity);
+            buffer.putInt(12, this.slotSize);
+            buffer.putLong(SEQUENCE_OFFSET, 1);
+            buffer.force();
+        }
+        this.nextSequence = buffer.getLong(SEQUENCE_OFFSET);
+        for (int slot = 0; slot < this.capacity; slot++) {
+            sequences[slot] = buffer.getLong(offset(slot));
+            TaskRecord record = sequences[slot] == 0 ? null : decode(slot);
+            if (record == null) {
+                sequences[slot] = 0;
+            } else {
+                ids[slot] = record.getId();
+            }
+        }
+        IntStream.range(0, this.capacity)
+                .boxed()
+                .sorted(Comparator.comparingLong(slot -> sequences[slot]))
+                .forEach(slot -> {
+                    if (sequences[slot] == 0) {
+                        release(slot);
+                    } else {
+                        Integer stale = slots.put(ids[slot], slot);
+                        if (stale != null) {
+                            unlink(stale);
+                            release(stale);
+                            sequences[stale] = 0;
+                        }
+                        append(slot);
+                    }
+                });
+    }
+
+    /**
+     * Проверяет, является ли файл файлом истории фиксированного размера
+     *
+     * @param path путь к файлу
+     * @return true - файл начинается с {@link #MAGIC}
+     * @throws IllegalArgumentException если версия формата не поддерживается
+     */
+    public static boolean isRing(Path path) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        byte[] header = new byte[8];
+        try (InputStream in = Files.newInputStream(path)) {
+            if (in.readNBytes(header, 0, header.length) < header.length) {
+                return false;
+            }
+        } catch (IOException e) {
+            log.error("File {} can't be read.", path);
+            throw new ManagerSaveException("File reading exception");
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(header);
+        if (bytes.getInt(0) != MAGIC) {
+            return false;
+        }
+        if (bytes.getInt(4) != VERSION) {
+            log.error("Unsupported history ring version: {}", bytes.getInt(4));
+            throw new IllegalArgumentException("Unsupported history ring version: " + bytes.getInt(4));
+        }
+        return true;
+    }
+
+    /**
+     * Записывает просмотр задачи: в ячейку этой задачи, в свободную ячейку или в ячейку самого давнего просмотра
+     *
+     * @param task просмотренная задача
+     */
+    public synchronized void put(Task task) {
+        Integer existing = slots.get(task.getId());
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            unlink(slot);
+        } else {
+            slot = acquire();
+            slots.put(task.getId(), slot);
+        }
+        append(slot);
+        byte[] record = fit(task);
+        int offset = offset(slot);
+        long sequence = nextSequence++;
+        buffer.putLong(offset, 0);
+        buffer.put(offset + SLOT_HEADER_SIZE, record);
+        buffer.putLong(offset, sequence);
+        buffer.putLong(SEQUENCE_OFFSET, nextSequence);
+        sequences[slot] = sequence;
+        ids[slot] = task.getId();
+        if (durability == Durability.PER_WRITE) {
+            buffer.force(offset, slotSize);
+            buffer.force(0, HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Освобождает ячейку задачи
+     *
+     * @param id ID задачи
+     */
+    public synchronized void remove(int id) {
+        Integer existing = slots.remove(id);
+        if (existing == null) {
+            return;
+        }
+        int slot = existing;
+        unlink(slot);
+        release(slot);
+        buffer.putLong(offset(slot), 0);
+        sequences[slot] = 0;
+        if (durability == Durability.PER_WRITE) {
+            buffer.force(offset(slot), SLOT_HEADER_SIZE);
+        }
+    }
+
+    /**
+     * Читает сохранённые просмотры в порядке от самого давнего к последнему.
+     * Повреждённые ячейки (прерванная запись) пропускаются при открытии файла.
+     *
+     * @param handler получает запись каждого просмотра
+     */
+    public synchronized void read(Consumer<TaskRecord> handler) {
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            handler.accept(decode(slot));
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Сбрасывает изменённые ячейки на диск
+     */
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            log.error("File {} can't be closed.", path);
+            throw new ManagerSaveException("History file closing exception");
+        }
+    }
+
+    /**
+     * @return запись ячейки или null, если ячейка повреждена прерванной записью
+     */
+    private TaskRecord decode(int slot) {
+        ByteBuffer bytes = buffer.slice(offset(slot) + SLOT_HEADER_SIZE, slotSize - SLOT_HEADER_SIZE);
+        TaskRecord record = new TaskRecord();
+        try {
+            BinaryTaskCodec.decode(bytes, record);
+        } catch (RuntimeException e) {
+            log.warn("Corrupted history slot {} in {} is skipped.", slot, path);
+            return null;
+        }
+        return record;
+    }
+
+    private int offset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    /**
+     * @return свободная ячейка или ячейка с самым давним просмотром, исключённая из списка просмотров
+     */
+    private int acquire() {
+        if (free != NONE) {
+            int slot = free;
+            free = next[slot];
+            return slot;
+        }
+        int oldest = head;
+        slots.remove(ids[oldest]);
+        unlink(oldest);
+        return oldest;
+    }
+
+    private void release(int slot) {
+        next[slot] = free;
+        free = slot;
+    }
+
+    /**
+     * Добавляет ячейку в конец списка просмотров
+     */
+    private void append(int slot) {
+        previous[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        if (previous[slot] == NONE) {
+            head = next[slot];
+        } else {
+            next[previous[slot]] = next[slot];
+        }
+        if (next[slot] == NONE) {
+            tail = previous[slot];
+        } else {
+            previous[next[slot]] = previous[slot];
+        }
+    }
+
+    /**
+     * Кодирует задачу так, чтобы запись поместилась в ячейку.
+     * Слишком длинные описание, а затем и название, укорачиваются.
+     */
+    private byte[] fit(Task task) {
+        int limit = slotSize - SLOT_HEADER_SIZE;
+        byte[] record = BinaryTaskCodec.encode(task);
+        if (record.length <= limit) {
+            return record;
+        }
+        log.warn("History record of task {} exceeds slot size {} and is shortened.", task.getId(), slotSize);
+        String name = task.getName();
+        String description = task.getDescription();
+        while (record.length > limit) {
+            int excess = record.length - limit;
+            if (!description.isEmpty()) {
+                description = description.substring(0, Math.max(0, description.length() - excess));
+            } else {
+                name = name.substring(0, Math.max(0, name.length() - excess));
+            }
+            record = BinaryTaskCodec.encode(copy(task, name, description));
+        }
+        return record;
+    }
+
+    private static Task copy(Task task, String name, String description) {
+        Task copy = switch (task.getType()) {
+            case EPIC -> new Epic(name, description, task.getStatus());
+            case SUBTASK -> new Subtask(name, description, task.getStatus(), ((Subtask) task).getEpic());
+            default -> new Task(name, description, task.getStatus());
+        };
+        copy.setId(task.getId());
+        return copy;
+    }
+
+}
@@ -0,0 +1,15 @@
+package ru.kanban.storage;
+
+/**
+ * Типы записей журнала файлового хранилища.
+ * ADD / UPDATE - содержат полное описание задачи,
+ * DELETE - ID и тип задачи, CLEAR - тип задач,
+ * STATUS - тип задач и статус, установленный всем задачам этого типа.
+ */
+public enum JournalOperation {
+    ADD,
+    UPDATE,
+    DELETE,
+    CLEAR,
+    STATUS
+}
@@ -0,0 +1,107 @@
+package ru.kanban.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import ru.kanban.exceptions.ManagerSaveException;
+
+/**
+ * Вспомогательные методы параллельной загрузки файлов хранилища:
+ * деление файла на части и выполнение задач разбора частей на {@link ForkJoinPool}.
+ */
+final class ParallelChunks {
+    /**
+     * Минимальный размер части файла. Более мелкое деление не окупает запуск задачи.
+     */
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    /**
+     * Максимальный размер части файла: часть отображается в память одним буфером.
+     */
+    static final long MAX_CHUNK_SIZE = 1 << 28;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelChunks() {
+
+    }
+
+    /**
+     * @return желаемое количество частей для файла заданного размера
+     */
+    static int chunkCount(long size, int parallelism) {
+        long bySize = Math.max(1, size / MIN_CHUNK_SIZE);
+        long count = Math.min(bySize, (long) parallelism * CHUNKS_PER_THREAD);
+        return (int) Math.max(count, size / MAX_CHUNK_SIZE + 1);
+    }
+
+    /**
+     * Делит текстовый файл на части так, что каждая часть начинается с начала строки
+     *
+     * @return границы частей: {@code [0, b1, ..., size]}
+     */
+    static long[] splitOnNewlines(FileChannel channel, int parallelism) throws IOException {
+        long size = channel.size();
+        int count = chunkCount(size, parallelism);
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < count; i++) {
+            long position = Math.max(size * i / count, bounds.get(bounds.size() - 1));
+            long boundary = nextLineStart(channel, position, probe);
+            if (boundary > bounds.get(bounds.size() - 1) && boundary < size) {
+                bounds.add(boundary);
+            }
+        }
+        if (size > 0) {
+            bounds.add(size);
+        }
+        return bounds.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Выполняет задачи разбора частей и возвращает их результаты в порядке задач.
+     * Если несколько задач завершились ошибкой, выбрасывается ошибка первой из них.
+     */
+    static <T> List<T> invokeAll(List<Callable<T>> tasks, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("File reading interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ManagerSaveException("File reading exception");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer probe) throws IOException {
+        long current = position;
+        while (true) {
+            probe.clear();
+            int read = channel.read(probe, current);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (probe.get(i) == '\n') {
+                    return current + i + 1;
+                }
+            }
+            current += read;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package ru.kanban.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.exceptions.ManagerSaveException;
+
+/**
+ * Дописывает строки в конец файла через постоянно открытый {@link FileChannel}.
+ * В режимах {@link Durability#NONE} и {@link Durability#BATCHED} записи попадают в ограниченную очередь,
+ * из которой фоновый поток забирает их пачками и записывает одним вызовом. При заполнении очереди
+ * пишущий поток ждёт, пока фоновый поток освободит место.
+ * В режимах {@link Durability#WRITE_THROUGH} и {@link Durability#PER_WRITE} запись выполняется сразу
+ * в вызывающем потоке, фоновый поток не создаётся.
+ */
+public class RecordAppender implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(RecordAppender.class);
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 512;
+    private final Path path;
+    private final Durability durability;
+    private final BlockingQueue<byte[]> queue;
+    private FileChannel channel;
+    private Thread flusher;
+    private long enqueued;
+    private long written;
+    private IOException failure;
+    private volatile boolean closed;
+
+    public RecordAppender(Path path, Durability durability) {
+        this.path = path;
+        this.durability = durability;
+        this.queue = durability == Durability.WRITE_THROUGH || durability == Durability.PER_WRITE
+                ? null : new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Дописывает строку с переводом строки в конец файла
+     *
+     * @param line строка без перевода строки
+     * @return количество байт записи
+     */
+    public int append(String line) {
+        return append((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Дописывает байты записи в конец файла без изменений
+     *
+     * @param data запись
+     * @return количество байт записи
+     */
+    public int append(byte[] data) {
+        if (closed) {
+            throw new ManagerSaveException("Appender is closed");
+        }
+        if (queue == null) {
+            synchronized (this) {
+                try {
+                    write(List.of(data));
+                    if (durability == Durability.PER_WRITE) {
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    log.error("File {} can't be written.", path);
+                    throw new ManagerSaveException("File writing exception");
+                }
+            }
+            return data.length;
+        }
+        synchronized (this) {
+            checkFailure();
+            startFlusher();
+            enqueued++;
+        }
+        try {
+            queue.put(data);
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                enqueued--;
+                notifyAll();
+            }
+            Thread.currentThread().interrupt();
+            throw new ManagerSaveException("File writing interrupted");
+        }
+        return data.length;
+    }
+
+    /**
+     * Дожидается записи в файл всех строк, добавленных до вызова метода
+     */
+    public synchronized void sync() {
+        long target = enqueued;
+        while (written < target && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ManagerSaveException("File writing interrupted");
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Дописывает все ожидающие записи, закрывает файл и выполняет над ним действие (удаление, подмену).
+     * Следующая запись заново откроет файл по тому же пути.
+     *
+     * @param action действие над закрытым файлом
+     */
+    public synchronized void reopen(Runnable action) {
+        sync();
+        closeChannel();
+        action.run();
+    }
+
+    /**
+     * Дописывает все ожидающие записи, останавливает фоновый поток и закрывает файл
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current = flusher;
+        }
+        if (current != null) {
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            closeChannel();
+        }
+    }
+
+    private void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = new Thread(this::flushLoop, "kanban-flusher-" + path.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private void flushLoop() {
+        List<byte[]> batch = new ArrayList<>(MAX_BATCH);
+        while (!closed || !queue.isEmpty()) {
+            byte[] first;
+            try {
+                first = queue.poll(50, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            synchronized (this) {
+                try {
+                    write(batch);
+                    if (durability == Durability.BATCHED) {
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    log.error("File {} can't be written.", path);
+                    failure = e;
+                }
+                written += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void write(List<byte[]> records) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+        ByteBuffer[] buffers = new ByteBuffer[records.size()];
+        long remaining = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(records.get(i));
+            remaining += buffers[i].remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("File {} can't be closed.", path);
+        }
+        channel = null;
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new ManagerSaveException("File writing exception");
+        }
+    }
+}
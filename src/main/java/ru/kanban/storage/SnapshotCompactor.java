@@ -0,0 +1,83 @@
+package ru.kanban.storage;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Фоновое сжатие журнала в снимок состояния.
+ * Сжатие выполняется в отдельном потоке, поэтому запись в хранилище во время сжатия не останавливается.
+ * Одновременно выполняется не более одного сжатия, повторные запросы во время работы игнорируются.
+ */
+public class SnapshotCompactor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCompactor.class);
+    private final Runnable compaction;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * @param compaction действие, выполняющее сжатие
+     * @param interval   период сжатия по времени. null - сжатие выполняется только по запросу
+     */
+    public SnapshotCompactor(Runnable compaction, Duration interval) {
+        this.compaction = compaction;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kanban-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (interval != null) {
+            long millis = interval.toMillis();
+            executor.scheduleWithFixedDelay(this::requestCompaction, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Ставит сжатие в очередь фонового потока, если оно ещё не запланировано.
+     */
+    public void requestCompaction() {
+        if (executor.isShutdown() || !scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::run);
+        } catch (RuntimeException e) {
+            scheduled.set(false);
+            log.warn("Compaction request rejected.");
+        }
+    }
+
+    /**
+     * Останавливает фоновый поток, дожидаясь завершения уже начатого сжатия.
+     */
+    @Override
+    public void close() {
+        shutdownAndAwait(executor);
+    }
+
+    private void run() {
+        scheduled.set(false);
+        try {
+            compaction.run();
+        } catch (RuntimeException e) {
+            log.error("Journal compaction failed.", e);
+        }
+    }
+
+    private static void shutdownAndAwait(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ru.kanban.storage;
+
+/**
+ * Формат файлов задач и истории.
+ * CSV - текстовый формат с заголовком {@link ru.kanban.utils.Constants#HEADER},
+ * BINARY - двоичный формат {@link BinaryTaskCodec}.
+ */
+public enum TaskFormat {
+    CSV,
+    BINARY
+}
@@ -0,0 +1,251 @@
+package ru.kanban.storage;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BiConsumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.exceptions.ManagerSaveException;
+import ru.kanban.model.Status;
+import ru.kanban.model.TaskType;
+
+/**
+ * Журнал изменений файлового хранилища (write-ahead log).
+ * Каждое изменение записывается в конец файла одной записью, поэтому стоимость записи не зависит
+ * от количества задач в хранилище. Формат записей совпадает с форматом файла задач: в CSV - строка вида
+ * {@code <операция>,<данные>}, в двоичном формате - запись {@link BinaryTaskCodec} с длиной и контрольной
+ * суммой, поэтому название и описание задачи могут содержать запятые и переводы строк.
+ */
+public class TaskJournal implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TaskJournal.class);
+    private final Path path;
+    private final RecordAppender appender;
+    private final TaskFormat format;
+    private long bytes;
+    private int records;
+
+    /**
+     * @param path путь к журналу. Каждая запись сразу пишется в файл без сброса на диск
+     *             ({@link Durability#WRITE_THROUGH})
+     */
+    public TaskJournal(Path path) {
+        this(path, Durability.WRITE_THROUGH);
+    }
+
+    public TaskJournal(Path path, Durability durability) {
+        this(path, durability, TaskFormat.CSV);
+    }
+
+    /**
+     * @param format формат записей журнала, совпадает с форматом файла задач хранилища
+     */
+    public TaskJournal(Path path, Durability durability, TaskFormat format) {
+        this.path = path;
+        this.appender = new RecordAppender(path, durability);
+        this.format = format;
+        this.bytes = size();
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public boolean exists() {
+        return Files.exists(path);
+    }
+
+    /**
+     * @return количество байт, записанных в журнал с момента открытия или последнего сжатия
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return количество записей, добавленных в журнал с момента открытия или последнего сжатия
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * @param operation тип записи
+     * @param record    поля записи: задача для ADD / UPDATE, тип и ID для DELETE, тип для CLEAR,
+     *                  тип и статус для STATUS
+     */
+    public void append(JournalOperation operation, TaskRecord record) {
+        bytes += appender.append(encode(operation, record));
+        records++;
+    }
+
+    /**
+     * Дописывает записи одной операции в журнал одной записью в файл
+     *
+     * @param operation тип записей
+     * @param records   поля записей
+     */
+    public void appendAll(JournalOperation operation, List<TaskRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        records.forEach(record -> out.writeBytes(encode(operation, record)));
+        bytes += appender.append(out.toByteArray());
+        this.records += records.size();
+    }
+
+    /**
+     * Дожидается записи в файл всех добавленных записей журнала
+     */
+    public void sync() {
+        appender.sync();
+    }
+
+    public void clear() {
+        appender.reopen(() -> {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.error("Journal file can't be deleted.");
+                throw new ManagerSaveException("Journal clearing exception");
+            }
+        });
+        bytes = 0;
+        records = 0;
+    }
+
+    @Override
+    public void close() {
+        appender.close();
+    }
+
+    /**
+     * @return текущий размер файла журнала в байтах
+     */
+    public long size() {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0;
+        } catch (IOException e) {
+            log.error("Journal file is missing.");
+            throw new ManagerSaveException("Journal reading exception");
+        }
+    }
+
+    /**
+     * Удаляет из журнала записи, сделанные до позиции {@code mark}.
+     * Оставшиеся записи копируются во временный файл, который атомарно заменяет журнал.
+     *
+     * @param mark позиция в байтах, до которой записи уже учтены в снимке
+     */
+    public void truncate(long mark) {
+        appender.reopen(() -> replaceWithTail(mark));
+    }
+
+    /**
+     * Последовательно передаёт все записи журнала обработчику
+     *
+     * @param handler принимает операцию и поля записи. Объект записи переиспользуется между вызовами
+     */
+    public void replay(BiConsumer<JournalOperation, TaskRecord> handler) {
+        if (!exists()) {
+            return;
+        }
+        if (format == TaskFormat.BINARY) {
+            BinaryTaskCodec.readJournal(path, handler);
+            return;
+        }
+        TaskRecord record = new TaskRecord();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                int separator = line.indexOf(',');
+                if (separator < 0) {
+                    log.error("Illegal journal record: {}", line);
+                    throw new IllegalArgumentException("Illegal journal record: " + line);
+                }
+                JournalOperation operation;
+                try {
+                    operation = JournalOperation.valueOf(line.substring(0, separator));
+                } catch (IllegalArgumentException e) {
+                    log.error("Illegal journal operation: {}", line);
+                    throw new IllegalArgumentException("Illegal journal operation: " + line);
+                }
+                parse(operation, line.substring(separator + 1), record);
+                handler.accept(operation, record);
+            }
+        } catch (IOException e) {
+            log.error("Journal file is missing.");
+            throw new ManagerSaveException("Journal reading exception");
+        }
+    }
+
+    private byte[] encode(JournalOperation operation, TaskRecord record) {
+        if (format == TaskFormat.BINARY) {
+            return BinaryTaskCodec.encodeJournal(operation, record);
+        }
+        String data = switch (operation) {
+            case ADD, UPDATE -> String.format("%d,%s,%s,%s,%s,%s", record.getId(), record.getType(),
+                    record.getName(), record.getStatus(), record.getDescription(),
+                    record.getType() == TaskType.SUBTASK ? record.getEpicId() : "");
+            case DELETE -> record.getId() + "," + record.getType();
+            case CLEAR -> record.getType().name();
+            case STATUS -> record.getType() + "," + record.getStatus();
+        };
+        return (operation.name() + ',' + data + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void parse(JournalOperation operation, String data, TaskRecord record) {
+        switch (operation) {
+            case ADD, UPDATE -> CsvTaskParser.parse(data, record);
+            case DELETE -> {
+                String[] parts = data.split(",");
+                record.setId(Integer.parseInt(parts[0]));
+                record.setType(TaskType.valueOf(parts[1]));
+            }
+            case CLEAR -> record.setType(TaskType.valueOf(data));
+            case STATUS -> {
+                String[] parts = data.split(",");
+                record.setType(TaskType.valueOf(parts[0]));
+                record.setStatus(Status.valueOf(parts[1]));
+            }
+        }
+    }
+
+    private void replaceWithTail(long mark) {
+        if (!exists()) {
+            bytes = 0;
+            records = 0;
+            return;
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long tail = source.size() - mark;
+            long copied = 0;
+            while (copied < tail) {
+                copied += source.transferTo(mark + copied, tail - copied, target);
+            }
+            target.force(true);
+            bytes = tail;
+            records = 0;
+        } catch (IOException e) {
+            log.error("Journal can't be truncated.");
+            throw new ManagerSaveException("Journal truncating exception");
+        }
+        try {
+            DurableFiles.replace(temp, path);
+        } catch (IOException e) {
+            log.error("Journal can't be replaced.");
+            throw new ManagerSaveException("Journal truncating exception");
+        }
+    }
+}
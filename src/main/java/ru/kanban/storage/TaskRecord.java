@@ -0,0 +1,82 @@
+package ru.kanban.storage;
+
+import ru.kanban.model.Status;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.model.TaskType;
+
+/**
+ * Поля одной записи файла задач, прочитанные до создания задачи.
+ * Объект изменяемый и переиспользуется при чтении всех записей файла.
+ */
+public class TaskRecord {
+    private int id;
+    private TaskType type;
+    private String name;
+    private Status status;
+    private String description;
+    private int epicId;
+
+    /**
+     * @param task задача
+     * @return новая запись с полями задачи
+     */
+    public static TaskRecord of(Task task) {
+        TaskRecord record = new TaskRecord();
+        record.setId(task.getId());
+        record.setType(task.getType());
+        record.setName(task.getName());
+        record.setStatus(task.getStatus());
+        record.setDescription(task.getDescription());
+        record.setEpicId(task.getType() == TaskType.SUBTASK ? ((Subtask) task).getEpic().getId() : 0);
+        return record;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public TaskType getType() {
+        return type;
+    }
+
+    public void setType(TaskType type) {
+        this.type = type;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public int getEpicId() {
+        return epicId;
+    }
+
+    public void setEpicId(int epicId) {
+        this.epicId = epicId;
+    }
+}
@@ -0,0 +1,164 @@
+package ru.kanban.utils;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Потокобезопасная обёртка {@link IntMap}. Изменения выполняются под блокировкой записи, выборки списков -
+ * под блокировкой чтения. Чтение по ключу выполняется без блокировки (оптимистичное чтение {@link StampedLock})
+ * и повторяется под блокировкой чтения, только если словарь менялся во время чтения.
+ *
+ * @param <V> тип значений
+ */
+public class ConcurrentIntMap<V> {
+    private final IntMap<V> map;
+    private final StampedLock lock = new StampedLock();
+
+    public ConcurrentIntMap() {
+        this.map = new IntMap<>();
+    }
+
+    public ConcurrentIntMap(int expectedSize) {
+        this.map = new IntMap<>(expectedSize);
+    }
+
+    public V get(int key) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                V value = map.get(key);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // массивы словаря заменялись во время чтения, чтение повторяется под блокировкой
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return map.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return предыдущее значение по ключу, null - если ключа не было
+     */
+    public V put(int key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return map.put(key, value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Заменяет значение, только если ключ есть в словаре
+     *
+     * @return предыдущее значение, null - если ключа нет
+     */
+    public V replace(int key, V value) {
+        long stamp = lock.writeLock();
+        try {
+            return map.containsKey(key) ? map.put(key, value) : null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Заменяет значение, только если по ключу хранится ожидаемый экземпляр
+     *
+     * @return true - если значение заменено
+     */
+    public boolean replace(int key, V expected, V value) {
+        long stamp = lock.writeLock();
+        try {
+            if (map.get(key) != expected) {
+                return false;
+            }
+            map.put(key, value);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return удалённое значение, null - если ключа не было
+     */
+    public V remove(int key) {
+        long stamp = lock.writeLock();
+        try {
+            return map.remove(key);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Удаляет запись, только если по ключу хранится ожидаемый экземпляр
+     *
+     * @return true - если запись удалена
+     */
+    public boolean remove(int key, V expected) {
+        long stamp = lock.writeLock();
+        try {
+            if (map.get(key) != expected) {
+                return false;
+            }
+            map.remove(key);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            map.clear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return map.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return снимок значений в порядке возрастания ключей
+     */
+    public List<V> values() {
+        long stamp = lock.readLock();
+        try {
+            return map.values();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @see IntMap#page(int, int)
+     */
+    public List<V> page(int afterKey, int limit) {
+        long stamp = lock.readLock();
+        try {
+            return map.page(afterKey, limit);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
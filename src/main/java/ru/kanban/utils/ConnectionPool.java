@@ -0,0 +1,338 @@
+package ru.kanban.utils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.kanban.configurations.PoolOptions;
+
+/**
+ * Ограниченный пул соединений с БД.
+ * Количество одновременно выданных соединений ограничено {@link PoolOptions#getMaxSize()}, при отсутствии
+ * свободного соединения поток ждёт не дольше {@link PoolOptions#getAcquireTimeout()}.
+ * Соединение, простоявшее дольше {@link PoolOptions#getValidationInterval()}, проверяется перед выдачей,
+ * неисправные соединения закрываются и заменяются новыми. Фоновый поток закрывает соединения,
+ * простаивающие дольше {@link PoolOptions#getIdleTimeout()}.
+ * При возврате в пул незавершённая транзакция откатывается, а изменённые настройки соединения
+ * (автофиксация, уровень изоляции, режим только для чтения, каталог, схема) сбрасываются.
+ * Каждое соединение хранит кэш подготовленных запросов ({@link PoolOptions#getStatementCacheSize()}),
+ * поэтому часто выполняемый запрос разбирается и планируется один раз на соединение.
+ * <p>
+ * Пул также привязывает транзакцию к потоку: между {@link #begin()} и {@link #commit()} / {@link #rollback()}
+ * {@link #getConnection()} в этом потоке возвращает одно и то же соединение, поэтому все DAO,
+ * работающие через пул, участвуют в одной транзакции.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+    private final ConnectionFactory factory;
+    private final PoolOptions options;
+    private final Semaphore permits;
+    private final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final ThreadLocal<Transaction> transaction = new ThreadLocal<>();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    /**
+     * @param url      адрес БД
+     * @param username имя пользователя
+     * @param password пароль
+     * @param options  настройки пула
+     */
+    public ConnectionPool(String url, String username, String password, PoolOptions options) {
+        this(() -> DriverManager.getConnection(url, username, password), options);
+    }
+
+    /**
+     * @param factory создаёт новое физическое соединение
+     * @param options настройки пула
+     */
+    public ConnectionPool(ConnectionFactory factory, PoolOptions options) {
+        this.factory = factory;
+        this.options = options;
+        this.permits = new Semaphore(options.getMaxSize(), true);
+        Duration idleTimeout = options.getIdleTimeout();
+        if (idleTimeout == null) {
+            this.evictor = null;
+            return;
+        }
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "kanban-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(idleTimeout.toMillis() / 2, 100);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Выдаёт соединение. Закрытие полученного соединения возвращает его в пул.
+     * Внутри транзакции потока возвращается соединение транзакции, его закрытие ничего не делает.
+     *
+     * @return соединение
+     * @throws SQLTransientConnectionException если свободное соединение не появилось за время ожидания
+     * @throws SQLException                    если пул закрыт или новое соединение не удалось открыть
+     */
+    public Connection getConnection() throws SQLException {
+        Transaction current = transaction.get();
+        if (current != null) {
+            return current.pooled.borrow(() -> { });
+        }
+        PooledConnection pooled = acquire();
+        return pooled.borrow(() -> release(pooled));
+    }
+
+    /**
+     * Начинает транзакцию потока: выдаёт соединение, отключает автофиксацию и привязывает соединение к потоку.
+     * Вложенный вызов только увеличивает глубину транзакции.
+     */
+    public void begin() throws SQLException {
+        Transaction current = transaction.get();
+        if (current != null) {
+            current.depth++;
+            return;
+        }
+        PooledConnection pooled = acquire();
+        try {
+            pooled.getConnection().setAutoCommit(false);
+        } catch (SQLException e) {
+            discard(pooled);
+            permits.release();
+            throw e;
+        }
+        transaction.set(new Transaction(pooled));
+    }
+
+    /**
+     * Фиксирует транзакцию потока и возвращает её соединение в пул.
+     * Во вложенной транзакции только уменьшает глубину. Если вложенная транзакция была откачена,
+     * внешняя транзакция также откатывается.
+     */
+    public void commit() throws SQLException {
+        Transaction current = transaction.get();
+        if (current == null) {
+            return;
+        }
+        if (--current.depth > 0) {
+            return;
+        }
+        transaction.remove();
+        try {
+            if (current.rollbackOnly) {
+                current.pooled.getConnection().rollback();
+            } else {
+                current.pooled.getConnection().commit();
+            }
+        } finally {
+            release(current.pooled);
+        }
+    }
+
+    /**
+     * Откатывает транзакцию потока и возвращает её соединение в пул.
+     * Во вложенной транзакции только помечает внешнюю транзакцию для отката.
+     */
+    public void rollback() throws SQLException {
+        Transaction current = transaction.get();
+        if (current == null) {
+            return;
+        }
+        if (--current.depth > 0) {
+            current.rollbackOnly = true;
+            return;
+        }
+        transaction.remove();
+        try {
+            current.pooled.getConnection().rollback();
+        } finally {
+            release(current.pooled);
+        }
+    }
+
+    /**
+     * @return количество свободных соединений
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return количество выданных соединений
+     */
+    public int getActiveCount() {
+        return options.getMaxSize() - permits.availablePermits();
+    }
+
+    /**
+     * Закрывает свободные соединения и останавливает фоновый поток.
+     * Выданные соединения закрываются при возврате в пул.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+        }
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled);
+        }
+    }
+
+    private PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(options.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.error("Connection acquire timeout: {} connections in use.", getActiveCount());
+                throw new SQLTransientConnectionException(
+                        "Connection acquire timeout after " + options.getAcquireTimeout().toMillis() + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Connection acquire interrupted", e);
+        }
+        try {
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                if (isValid(pooled)) {
+                    return pooled;
+                }
+                discard(pooled);
+            }
+            return create();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private PooledConnection create() throws SQLException {
+        Connection connection = factory.create();
+        try {
+            if (connection.getTransactionIsolation() != options.getIsolation()) {
+                connection.setTransactionIsolation(options.getIsolation());
+            }
+            if (options.getPrepareThreshold() != null && connection.isWrapperFor(PGConnection.class)) {
+                connection.unwrap(PGConnection.class).setPrepareThreshold(options.getPrepareThreshold());
+            }
+            return new PooledConnection(connection, options.getStatementCacheSize());
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        long idleNanos = System.nanoTime() - pooled.getLastUsed();
+        if (idleNanos < options.getValidationInterval().toNanos()) {
+            return true;
+        }
+        try {
+            return pooled.getConnection().isValid(options.getValidationTimeoutSeconds());
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (closed) {
+                discard(pooled);
+            } else if (reset(pooled)) {
+                pooled.touch();
+                idle.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Откатывает незавершённую транзакцию и возвращает изменённые настройки соединения к исходным
+     *
+     * @return false - соединение неисправно и должно быть закрыто
+     */
+    private boolean reset(PooledConnection pooled) {
+        Connection connection = pooled.getConnection();
+        int dirty = pooled.getDirty();
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if ((dirty & PooledConnection.ISOLATION) != 0) {
+                connection.setTransactionIsolation(options.getIsolation());
+            }
+            if ((dirty & PooledConnection.READ_ONLY) != 0) {
+                connection.setReadOnly(false);
+            }
+            if ((dirty & PooledConnection.CATALOG) != 0) {
+                connection.setCatalog(pooled.getCatalog());
+            }
+            if ((dirty & PooledConnection.SCHEMA) != 0) {
+                connection.setSchema(pooled.getSchema());
+            }
+            connection.clearWarnings();
+            pooled.clean();
+            return true;
+        } catch (SQLException e) {
+            log.warn("Connection state reset failed, connection is closed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        try {
+            pooled.close();
+        } catch (SQLException e) {
+            log.warn("Connection close failed: {}", e.getMessage());
+        }
+    }
+
+    private void evictIdle() {
+        long idleTimeout = options.getIdleTimeout().toNanos();
+        for (PooledConnection pooled : idle) {
+            if (System.nanoTime() - pooled.getLastUsed() > idleTimeout && idle.remove(pooled)) {
+                discard(pooled);
+                log.debug("Idle connection evicted.");
+            }
+        }
+    }
+
+    /**
+     * Транзакция, привязанная к потоку
+     */
+    private static final class Transaction {
+        private final PooledConnection pooled;
+        private int depth = 1;
+        private boolean rollbackOnly;
+
+        private Transaction(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+    }
+
+    /**
+     * Создаёт физические соединения пула
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+}
@@ -2,9 +2,15 @@ package ru.kanban.utils;
 
 public final class Constants {
     public static final String HEADER = "id,type,name,status,description,epic";
+    public static final String JOURNAL_EXTENSION = ".journal";
+    /**
+     * Ёмкость истории просмотров по умолчанию
+     */
     public static final int HISTORY_SIZE = 10;
-    public static final int FIRST_IN_HISTORY = 0;
-    public static final int MAX_SIZE = 10;
+    /**
+     * Пользователь общей истории: методы истории без ID пользователя работают с его историей
+     */
+    public static final int DEFAULT_USER_ID = 0;
 
     private Constants() {
 
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import ru.kanban.configurations.Config;
+import ru.kanban.configurations.PoolOptions;
 
 public class DbUtils {
     private DbUtils() {
@@ -17,6 +18,41 @@ public class DbUtils {
         );
     }
 
+    /**
+     * Создаёт пул соединений с БД по параметрам конфигурации
+     *
+     * @param config  конфигурация с параметрами url, username и password
+     * @param options настройки пула
+     * @return пул соединений
+     */
+    public static ConnectionPool createPool(Config config, PoolOptions options) {
+        return new ConnectionPool(config.get("url"), config.get("username"), config.get("password"), options);
+    }
+
+    public static void begin(ConnectionPool pool) {
+        try {
+            pool.begin();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void rollback(ConnectionPool pool) {
+        try {
+            pool.rollback();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void commit(ConnectionPool pool) {
+        try {
+            pool.commit();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public static void setAutoCommit(Connection connection, boolean value) {
         if (connection != null) {
             try {
@@ -0,0 +1,290 @@
+package ru.kanban.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Словарь с ключами-примитивами int и открытой адресацией, без упаковки ключей и объектов-узлов.
+ * Записи хранятся в плотных массивах ключей и значений в порядке добавления, хэш-таблица индексов (линейное
+ * пробирование, заполнение не больше половины) хранит позиции записей. Удалённая запись оставляет пустую ячейку
+ * в плотных массивах, ячейки освобождаются при расширении. Запись занимает около 16 байт против ~50 байт
+ * у {@link java.util.HashMap} с ключами Integer.
+ * Пока ключи добавляются по возрастанию (ID выдаются счётчиком), плотные массивы упорядочены по ключу, и страница
+ * записей находится двоичным поиском. Иначе записи упорядочиваются при выборке и при очередном расширении.
+ * Значения не могут быть null. Класс не потокобезопасный, см. {@link ConcurrentIntMap}.
+ *
+ * @param <V> тип значений
+ */
+public class IntMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    private int[] keys;
+    private Object[] values;
+    /**
+     * Хэш-таблица: позиция записи в плотных массивах + 1, 0 - пустая ячейка
+     */
+    private int[] index;
+    private int mask;
+    private int used;
+    private int size;
+    private boolean sorted = true;
+
+    public IntMap() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize ожидаемое количество записей, до которого словарь не расширяется
+     */
+    public IntMap(int expectedSize) {
+        allocate(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(expectedSize, 1) - 1) << 1));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Число проверок ячеек ограничено размером таблицы, поэтому чтение без блокировки во время изменения
+     * словаря другим потоком завершается (с неверным результатом или исключением), а не зацикливается
+     *
+     * @return значение по ключу, null - если ключа нет
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int[] table = index;
+        int[] denseKeys = keys;
+        Object[] denseValues = values;
+        int tableMask = table.length - 1;
+        int slot = hash(key) & tableMask;
+        for (int probes = 0; probes < table.length; probes++) {
+            int position = table[slot];
+            if (position == 0) {
+                return null;
+            }
+            if (denseKeys[position - 1] == key) {
+                return (V) denseValues[position - 1];
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return null;
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return предыдущее значение по ключу, null - если ключа не было
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        Objects.requireNonNull(value);
+        int slot = slot(key);
+        if (slot >= 0) {
+            int position = index[slot] - 1;
+            V previous = (V) values[position];
+            values[position] = value;
+            return previous;
+        }
+        if (used == keys.length) {
+            resize(size * 2 <= used ? keys.length : keys.length * 2);
+            slot = slot(key);
+        }
+        if (used > 0 && key <= keys[used - 1]) {
+            sorted = false;
+        }
+        keys[used] = key;
+        values[used] = value;
+        index[-slot - 1] = ++used;
+        size++;
+        return null;
+    }
+
+    /**
+     * @return удалённое значение, null - если ключа не было
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int slot = slot(key);
+        if (slot < 0) {
+            return null;
+        }
+        int position = index[slot] - 1;
+        V previous = (V) values[position];
+        values[position] = null;
+        size--;
+        deleteSlot(slot);
+        if (size == 0) {
+            used = 0;
+            sorted = true;
+        }
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(index, 0);
+        Arrays.fill(values, 0, used, null);
+        used = 0;
+        size = 0;
+        sorted = true;
+    }
+
+    /**
+     * Обходит записи в порядке добавления без создания объектов. Изменять словарь во время обхода нельзя
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(IntObjConsumer<? super V> consumer) {
+        for (int i = 0; i < used; i++) {
+            if (values[i] != null) {
+                consumer.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return значения в порядке возрастания ключей
+     */
+    public List<V> values() {
+        return page(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Страница значений в порядке возрастания ключей (keyset-пагинация)
+     *
+     * @param afterKey ключ последней записи предыдущей страницы
+     * @param limit    максимальный размер страницы
+     * @return значения с ключами больше {@code afterKey}
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> page(int afterKey, int limit) {
+        List<V> result = new ArrayList<>(Math.min(limit, size));
+        if (sorted) {
+            int position = Arrays.binarySearch(keys, 0, used, afterKey);
+            position = position >= 0 ? position + 1 : -position - 1;
+            for (int i = position; i < used && result.size() < limit; i++) {
+                if (values[i] != null) {
+                    result.add((V) values[i]);
+                }
+            }
+            return result;
+        }
+        long[] ordered = new long[size];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (values[i] != null && keys[i] > afterKey) {
+                ordered[count++] = (long) keys[i] << 32 | i;
+            }
+        }
+        Arrays.sort(ordered, 0, count);
+        for (int i = 0; i < count && result.size() < limit; i++) {
+            result.add((V) values[(int) ordered[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * @return ячейка хэш-таблицы с ключом либо -(пустая ячейка + 1)
+     */
+    private int slot(int key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int position = index[slot];
+            if (position == 0) {
+                return -slot - 1;
+            }
+            if (keys[position - 1] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Освобождает ячейку хэш-таблицы и сдвигает назад следующие записи цепочки пробирования,
+     * чтобы поиск не останавливался на освобождённой ячейке
+     */
+    private void deleteSlot(int slot) {
+        int free = slot;
+        index[free] = 0;
+        int next = free;
+        while (true) {
+            next = (next + 1) & mask;
+            int position = index[next];
+            if (position == 0) {
+                return;
+            }
+            int home = hash(keys[position - 1]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                index[free] = position;
+                index[next] = 0;
+                free = next;
+            }
+        }
+    }
+
+    /**
+     * Переносит записи в массивы заданной ёмкости без пустых ячеек, упорядочивая их по ключу
+     */
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        int oldUsed = used;
+        long[] ordered = null;
+        if (!sorted) {
+            ordered = new long[size];
+            int count = 0;
+            for (int i = 0; i < oldUsed; i++) {
+                if (oldValues[i] != null) {
+                    ordered[count++] = (long) oldKeys[i] << 32 | i;
+                }
+            }
+            Arrays.sort(ordered);
+        }
+        allocate(capacity);
+        if (ordered == null) {
+            for (int i = 0; i < oldUsed; i++) {
+                if (oldValues[i] != null) {
+                    append(oldKeys[i], oldValues[i]);
+                }
+            }
+        } else {
+            for (long entry : ordered) {
+                append(oldKeys[(int) entry], oldValues[(int) entry]);
+            }
+        }
+        sorted = true;
+    }
+
+    private void append(int key, Object value) {
+        keys[used] = key;
+        values[used] = value;
+        index[-slot(key) - 1] = ++used;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        index = new int[capacity * 2];
+        mask = index.length - 1;
+        used = 0;
+    }
+
+    private static int hash(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Обработчик записи словаря: ключ передаётся без упаковки
+     */
+    @FunctionalInterface
+    public interface IntObjConsumer<V> {
+        void accept(int key, V value);
+    }
+}
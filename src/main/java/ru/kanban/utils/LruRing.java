@@ -0,0 +1,412 @@
+package ru.kanban.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Ограниченный список последних использованных элементов (LRU) с ключами int на массивах.
+ * Элементы лежат в ячейках массива и связаны в двусвязный список индексами ячеек (prev / next), ключ -> ячейка
+ * хранится в хэш-таблице с открытой адресацией (линейное пробирование). Добавление, перенос элемента в конец
+ * (самый свежий) и удаление выполняются за O(1) и не создают объектов при любой ёмкости: при переполнении
+ * ячейка самого давнего элемента переиспользуется новым.
+ * Элементы можно разбить на группы ({@link #LruRing(int, int)}): элементы группы дополнительно связаны в свою
+ * цепочку, поэтому {@link #removeGroup(int, IntConsumer)} удаляет группу за время, пропорциональное её размеру.
+ * Массивы создаются сразу на всю ёмкость. Класс не потокобезопасный.
+ *
+ * @param <T> тип элементов
+ */
+public class LruRing<T> {
+    private static final int NONE = -1;
+    private final int capacity;
+    private final int[] keys;
+    private final Object[] items;
+    private final int[] prev;
+    private final int[] next;
+    /**
+     * Хэш-таблица: ячейка элемента + 1, 0 - пустая ячейка таблицы
+     */
+    private final int[] table;
+    private final int mask;
+    /**
+     * Цепочки групп, null - список без групп
+     */
+    private final Groups groups;
+    private int head = NONE;
+    private int tail = NONE;
+    private int size;
+
+    /**
+     * @param capacity максимальное количество элементов
+     */
+    public LruRing(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param capacity максимальное количество элементов
+     * @param groups   количество групп элементов, 0 - без групп
+     */
+    public LruRing(int capacity, int groups) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("LRU capacity must be positive");
+        }
+        if (groups < 0) {
+            throw new IllegalArgumentException("LRU groups must not be negative");
+        }
+        this.capacity = capacity;
+        this.keys = new int[capacity];
+        this.items = new Object[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        this.table = new int[Integer.highestOneBit(capacity) << 2];
+        this.mask = table.length - 1;
+        this.groups = groups > 0 ? new Groups(capacity, groups) : null;
+    }
+
+    /**
+     * Оценка памяти списка без групп заданной ёмкости в байтах (64-битная JVM со сжатыми ссылками, без самих элементов).
+     * Массивы создаются сразу на всю ёмкость, поэтому оценка не зависит от количества элементов
+     */
+    public static long estimateBytes(int capacity) {
+        long arrayHeader = 16;
+        long tableLength = (long) Integer.highestOneBit(capacity) << 2;
+        long arrays = 4 * align(arrayHeader + 4L * capacity) + align(arrayHeader + 4 * tableLength);
+        return align(12 + 5 * 4 + 6 * 4) + arrays;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * Добавляет элемент как самый свежий. Элемент с тем же ключом заменяется и переносится в конец,
+     * при переполнении вытесняется самый давний элемент
+     *
+     * @return вытесненный элемент, null - если вытеснения не было
+     */
+    public T put(int key, T item) {
+        return put(key, item, 0);
+    }
+
+    /**
+     * Добавляет элемент группы как самый свежий, см. {@link #put(int, Object)}.
+     * Для списка без групп группа не учитывается
+     *
+     * @param group группа элемента от 0 до количества групп
+     * @return вытесненный элемент, null - если вытеснения не было
+     */
+    @SuppressWarnings("unchecked")
+    public T put(int key, T item, int group) {
+        if (groups != null && (group < 0 || group >= groups.head.length)) {
+            throw new IllegalArgumentException("LRU group out of range: " + group);
+        }
+        int found = find(key);
+        if (found >= 0) {
+            int slot = table[found] - 1;
+            items[slot] = item;
+            moveToTail(slot);
+            if (groups != null) {
+                unlinkGroup(slot);
+                linkGroupLast(slot, group);
+            }
+            return null;
+        }
+        T evicted = null;
+        int slot;
+        if (size == capacity) {
+            slot = head;
+            evicted = (T) items[slot];
+            unlink(slot);
+            if (groups != null) {
+                unlinkGroup(slot);
+            }
+            deleteFromTable(find(keys[slot]));
+        } else {
+            slot = size++;
+        }
+        keys[slot] = key;
+        items[slot] = item;
+        linkLast(slot);
+        if (groups != null) {
+            linkGroupLast(slot, group);
+        }
+        table[-find(key) - 1] = slot + 1;
+        return evicted;
+    }
+
+    /**
+     * @return удалённый элемент, null - если ключа нет
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int key) {
+        int found = find(key);
+        if (found < 0) {
+            return null;
+        }
+        int slot = table[found] - 1;
+        T removed = (T) items[slot];
+        deleteFromTable(found);
+        unlink(slot);
+        if (groups != null) {
+            unlinkGroup(slot);
+        }
+        int last = --size;
+        if (slot != last) {
+            moveSlot(last, slot);
+        }
+        items[last] = null;
+        return removed;
+    }
+
+    /**
+     * Удаляет все элементы группы, не просматривая элементы других групп
+     *
+     * @param removed получает ключи удалённых элементов
+     * @return количество удалённых элементов
+     */
+    public int removeGroup(int group, IntConsumer removed) {
+        if (groups == null) {
+            throw new IllegalStateException("LRU has no groups");
+        }
+        int count = 0;
+        while (groups.head[group] != NONE) {
+            int key = keys[groups.head[group]];
+            remove(key);
+            removed.accept(key);
+            count++;
+        }
+        return count;
+    }
+
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(table, 0);
+        if (groups != null) {
+            Arrays.fill(groups.head, NONE);
+            Arrays.fill(groups.tail, NONE);
+        }
+        head = NONE;
+        tail = NONE;
+        size = 0;
+    }
+
+    /**
+     * Обходит элементы от самого давнего к самому свежему. Изменять список во время обхода нельзя
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> consumer) {
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            consumer.accept((T) items[slot]);
+        }
+    }
+
+    /**
+     * Обходит ключи и элементы от самого давнего к самому свежему без упаковки ключей.
+     * Изменять список во время обхода нельзя
+     */
+    @SuppressWarnings("unchecked")
+    public void forEachEntry(IntMap.IntObjConsumer<? super T> consumer) {
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            consumer.accept(keys[slot], (T) items[slot]);
+        }
+    }
+
+    /**
+     * @return ключ самого давнего элемента, вытесняемого следующим добавлением в заполненный список
+     * @throws java.util.NoSuchElementException если список пуст
+     */
+    public int eldestKey() {
+        if (head == NONE) {
+            throw new NoSuchElementException("LRU is empty");
+        }
+        return keys[head];
+    }
+
+    /**
+     * @return элементы от самого давнего к самому свежему
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>(size);
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Переносит элемент из последней занятой ячейки в освободившуюся, чтобы занятые ячейки шли подряд
+     */
+    private void moveSlot(int from, int to) {
+        keys[to] = keys[from];
+        items[to] = items[from];
+        prev[to] = prev[from];
+        next[to] = next[from];
+        if (prev[to] == NONE) {
+            head = to;
+        } else {
+            next[prev[to]] = to;
+        }
+        if (next[to] == NONE) {
+            tail = to;
+        } else {
+            prev[next[to]] = to;
+        }
+        if (groups != null) {
+            int group = groups.of[from];
+            groups.of[to] = group;
+            groups.prev[to] = groups.prev[from];
+            groups.next[to] = groups.next[from];
+            if (groups.prev[to] == NONE) {
+                groups.head[group] = to;
+            } else {
+                groups.next[groups.prev[to]] = to;
+            }
+            if (groups.next[to] == NONE) {
+                groups.tail[group] = to;
+            } else {
+                groups.prev[groups.next[to]] = to;
+            }
+        }
+        table[find(keys[to])] = to + 1;
+    }
+
+    private void linkGroupLast(int slot, int group) {
+        groups.of[slot] = group;
+        groups.prev[slot] = groups.tail[group];
+        groups.next[slot] = NONE;
+        if (groups.tail[group] == NONE) {
+            groups.head[group] = slot;
+        } else {
+            groups.next[groups.tail[group]] = slot;
+        }
+        groups.tail[group] = slot;
+    }
+
+    private void unlinkGroup(int slot) {
+        int group = groups.of[slot];
+        int before = groups.prev[slot];
+        int after = groups.next[slot];
+        if (before == NONE) {
+            groups.head[group] = after;
+        } else {
+            groups.next[before] = after;
+        }
+        if (after == NONE) {
+            groups.tail[group] = before;
+        } else {
+            groups.prev[after] = before;
+        }
+    }
+
+    private void moveToTail(int slot) {
+        if (slot != tail) {
+            unlink(slot);
+            linkLast(slot);
+        }
+    }
+
+    private void linkLast(int slot) {
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = prev[slot];
+        int after = next[slot];
+        if (before == NONE) {
+            head = after;
+        } else {
+            next[before] = after;
+        }
+        if (after == NONE) {
+            tail = before;
+        } else {
+            prev[after] = before;
+        }
+    }
+
+    /**
+     * @return ячейка хэш-таблицы с ключом либо -(пустая ячейка + 1)
+     */
+    private int find(int key) {
+        int index = hash(key) & mask;
+        while (true) {
+            int slot = table[index];
+            if (slot == 0) {
+                return -index - 1;
+            }
+            if (keys[slot - 1] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Освобождает ячейку хэш-таблицы со сдвигом назад следующих записей цепочки пробирования
+     */
+    private void deleteFromTable(int index) {
+        int free = index;
+        table[free] = 0;
+        int current = free;
+        while (true) {
+            current = (current + 1) & mask;
+            int slot = table[current];
+            if (slot == 0) {
+                return;
+            }
+            int home = hash(keys[slot - 1]) & mask;
+            if (((current - home) & mask) >= ((current - free) & mask)) {
+                table[free] = slot;
+                table[current] = 0;
+                free = current;
+            }
+        }
+    }
+
+    /**
+     * Цепочки групп: группа каждой ячейки, ссылки на соседние ячейки группы, первая и последняя ячейка группы
+     */
+    private static final class Groups {
+        private final int[] of;
+        private final int[] prev;
+        private final int[] next;
+        private final int[] head;
+        private final int[] tail;
+
+        private Groups(int capacity, int groups) {
+            this.of = new int[capacity];
+            this.prev = new int[capacity];
+            this.next = new int[capacity];
+            this.head = new int[groups];
+            this.tail = new int[groups];
+            Arrays.fill(head, NONE);
+            Arrays.fill(tail, NONE);
+        }
+    }
+
+    private static int hash(int key) {
+        int hash = key * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,6 +1,8 @@
 package ru.kanban.utils;
 
 import java.sql.Connection;
+import ru.kanban.configurations.StorageOptions;
+import ru.kanban.configurations.WriteBehindOptions;
 import ru.kanban.dao.*;
 
 public class Managers {
@@ -16,6 +18,40 @@ public class Managers {
         return new InMemoryHistoryDao();
     }
 
+    /**
+     * @param taskDao хранилище, из которого читаются задачи истории
+     * @return история в памяти, хранящая только ID и типы просмотренных задач
+     */
+    public static HistoryDao getDefaultHistoryManager(TaskDao taskDao) {
+        return new InMemoryHistoryDao(taskDao);
+    }
+
+    /**
+     * @param capacity максимальное количество задач в истории
+     */
+    public static HistoryDao getHistoryManager(int capacity) {
+        return new InMemoryHistoryDao(capacity);
+    }
+
+    /**
+     * @param taskDao  хранилище, из которого читаются задачи истории
+     * @param capacity максимальное количество задач в истории
+     * @return история в памяти для обращений из нескольких потоков
+     */
+    public static HistoryDao getConcurrentHistoryManager(TaskDao taskDao, int capacity) {
+        return new ConcurrentHistoryDao(new InMemoryHistoryDao(taskDao, capacity));
+    }
+
+    /**
+     * @param taskDao      хранилище, из которого читаются задачи истории
+     * @param capacity     максимальное количество задач в истории одного пользователя
+     * @param memoryBudget ограничение памяти всех сессий в байтах
+     * @return история в памяти по пользователям
+     */
+    public static SessionHistoryDao getSessionHistoryManager(TaskDao taskDao, int capacity, long memoryBudget) {
+        return new SessionHistoryDao(taskDao, capacity, memoryBudget);
+    }
+
     public static FileBackedHistoryDao getDefaultFileBackedHistoryManager(String string) {
         return new FileBackedHistoryDao(string);
     }
@@ -24,6 +60,16 @@ public class Managers {
         return new FileBackedTaskDao(path);
     }
 
+    public static FileBackedTaskDao getJournaledFileBackedManager(String path) {
+        StorageOptions options = new StorageOptions();
+        options.setJournaled(true);
+        return new FileBackedTaskDao(path, options);
+    }
+
+    public static MappedTaskDao getMappedManager(String path) {
+        return new MappedTaskDao(path);
+    }
+
     public static DbHistoryDao getDbHistoryManager(Connection connection) {
         return new DbHistoryDao(connection);
     }
@@ -31,4 +77,30 @@ public class Managers {
     public static DbTaskDao getDbManager(Connection connection) {
     return new DbTaskDao(connection);
     }
+
+    public static DbHistoryDao getDbHistoryManager(ConnectionPool pool) {
+        return new DbHistoryDao(pool);
+    }
+
+    public static DbTaskDao getDbManager(ConnectionPool pool) {
+        return new DbTaskDao(pool);
+    }
+
+    /**
+     * @param capacity максимальное количество задач в кэше
+     * @return хранилище в БД с кэшем задач, прочитанных по ID
+     */
+    public static CachingTaskDao getCachedDbManager(ConnectionPool pool, int capacity) {
+        return new CachingTaskDao(new DbTaskDao(pool), capacity);
+    }
+
+    /**
+     * Хранилище нужно закрыть ({@link WriteBehindTaskDao#close()}) или зарегистрировать запись буфера при
+     * завершении JVM ({@link WriteBehindTaskDao#registerShutdownHook()}): иначе ожидающие записи обновления теряются
+     *
+     * @return хранилище в БД с отложенной записью обновлений задач и подзадач
+     */
+    public static WriteBehindTaskDao getWriteBehindDbManager(ConnectionPool pool, WriteBehindOptions options) {
+        return new WriteBehindTaskDao(new DbTaskDao(pool), options);
+    }
 }
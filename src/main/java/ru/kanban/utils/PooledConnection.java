@@ -0,0 +1,161 @@
+package ru.kanban.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Физическое соединение пула {@link ConnectionPool} и сведения о его использовании.
+ * Соединение выдаётся пользователю через {@link #borrow(Runnable)} - обёртку, закрытие которой возвращает
+ * соединение в пул. Обёртка отмечает изменённые пользователем настройки соединения,
+ * чтобы при возврате в пул сбрасывались только они, и выдаёт подготовленные запросы
+ * из {@link StatementCache} соединения.
+ */
+final class PooledConnection {
+    static final int AUTO_COMMIT = 1;
+    static final int ISOLATION = 1 << 1;
+    static final int READ_ONLY = 1 << 2;
+    static final int CATALOG = 1 << 3;
+    static final int SCHEMA = 1 << 4;
+
+    private final Connection connection;
+    private final String catalog;
+    private final String schema;
+    private final StatementCache statements;
+    private long lastUsed;
+    private int dirty;
+
+    /**
+     * @param connection         физическое соединение
+     * @param statementCacheSize размер кэша подготовленных запросов. 0 - запросы не кэшируются
+     */
+    PooledConnection(Connection connection, int statementCacheSize) throws SQLException {
+        this.connection = connection;
+        this.statements = statementCacheSize > 0 ? new StatementCache(statementCacheSize) : null;
+        this.catalog = connection.getCatalog();
+        this.schema = connection.getSchema();
+        this.lastUsed = System.nanoTime();
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    String getCatalog() {
+        return catalog;
+    }
+
+    String getSchema() {
+        return schema;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.nanoTime();
+    }
+
+    /**
+     * @return изменённые с момента выдачи настройки, битовая маска {@link #AUTO_COMMIT}, {@link #ISOLATION} и др.
+     */
+    int getDirty() {
+        return dirty;
+    }
+
+    void clean() {
+        dirty = 0;
+    }
+
+    /**
+     * @return кэш подготовленных запросов соединения или null, если кэш отключён
+     */
+    StatementCache getStatements() {
+        return statements;
+    }
+
+    /**
+     * Закрывает кэшированные запросы и физическое соединение
+     */
+    void close() throws SQLException {
+        if (statements != null) {
+            statements.close();
+        }
+        connection.close();
+    }
+
+    /**
+     * Создаёт обёртку соединения для выдачи пользователю
+     *
+     * @param onClose действие при первом закрытии обёртки. Повторное закрытие ничего не делает,
+     *                остальные методы закрытой обёртки выбрасывают {@link SQLException}
+     * @return обёртка соединения
+     */
+    Connection borrow(Runnable onClose) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handler(onClose));
+    }
+
+    private final class Handler implements InvocationHandler {
+        private final Runnable onClose;
+        private boolean closed;
+
+        private Handler(Runnable onClose) {
+            this.onClose = onClose;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        onClose.run();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || connection.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + connection;
+                }
+                case "setAutoCommit" -> dirty |= AUTO_COMMIT;
+                case "setTransactionIsolation" -> dirty |= ISOLATION;
+                case "setReadOnly" -> dirty |= READ_ONLY;
+                case "setCatalog" -> dirty |= CATALOG;
+                case "setSchema" -> dirty |= SCHEMA;
+                default -> {
+                }
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            if (statements != null && method.getName().equals("prepareStatement")) {
+                Class<?>[] types = method.getParameterTypes();
+                if (types.length == 1) {
+                    return statements.prepare(connection, (String) args[0], Statement.NO_GENERATED_KEYS);
+                }
+                if (types.length == 2 && types[1] == int.class) {
+                    return statements.prepare(connection, (String) args[0], (Integer) args[1]);
+                }
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.kanban.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Операция над соединением с БД, выполняемая DAO через {@link ConnectionPool}
+ *
+ * @param <T> тип результата операции
+ */
+@FunctionalInterface
+public interface SqlFunction<T> {
+    T apply(Connection connection) throws SQLException;
+}
@@ -0,0 +1,202 @@
+package ru.kanban.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Кэш подготовленных запросов одного соединения с вытеснением давно не использованных (LRU).
+ * Ключ кэша - текст запроса и режим возврата сгенерированных ключей.
+ * Пользователь получает обёртку запроса: её закрытие очищает параметры и возвращает запрос в кэш,
+ * физически запрос закрывается только при вытеснении из кэша или закрытии соединения.
+ * Если запрос с тем же текстом уже выдан и не возвращён (вложенное использование), выдаётся новый
+ * некэшируемый запрос. Запрос, выполнявший пакет ({@link PreparedStatement#addBatch()}), при возврате
+ * закрывается и удаляется из кэша: H2 после пакета возвращает сгенерированные ключи пакета и при
+ * последующих одиночных выполнениях.
+ * Кэш не потокобезопасен: соединение пула одновременно используется одним потоком.
+ */
+final class StatementCache {
+    private static final Logger log = LoggerFactory.getLogger(StatementCache.class);
+    private final int capacity;
+    private final Map<Key, Entry> statements;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param capacity максимальное количество запросов в кэше
+     */
+    StatementCache(int capacity) {
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Выдаёт подготовленный запрос из кэша или подготавливает и кэширует новый
+     *
+     * @param connection        физическое соединение
+     * @param sql               текст запроса
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} или {@link Statement#NO_GENERATED_KEYS}
+     * @return обёртка подготовленного запроса
+     */
+    PreparedStatement prepare(Connection connection, String sql, int autoGeneratedKeys) throws SQLException {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry entry = statements.get(key);
+        if (entry != null && entry.inUse) {
+            misses++;
+            return connection.prepareStatement(sql, autoGeneratedKeys);
+        }
+        if (entry == null) {
+            misses++;
+            entry = new Entry(key, connection.prepareStatement(sql, autoGeneratedKeys));
+            statements.put(key, entry);
+            evict();
+        } else {
+            hits++;
+        }
+        entry.inUse = true;
+        return entry.borrow();
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Закрывает все кэшированные запросы
+     */
+    void close() {
+        statements.values().forEach(Entry::closeQuietly);
+        statements.clear();
+    }
+
+    /**
+     * Вытесняет давно не использованные запросы сверх ёмкости кэша.
+     * Выданный запрос закрывается при возврате.
+     */
+    private void evict() {
+        Iterator<Entry> iterator = statements.values().iterator();
+        while (statements.size() > capacity && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            eldest.evicted = true;
+            if (!eldest.inUse) {
+                eldest.closeQuietly();
+            }
+        }
+    }
+
+    private record Key(String sql, int autoGeneratedKeys) {
+    }
+
+    private final class Entry {
+        private final Key key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private Entry(Key key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        private PreparedStatement borrow() {
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new Handler(this));
+        }
+
+        /**
+         * Возвращает запрос в кэш: закрывает открытую выборку и очищает параметры
+         */
+        private void release(boolean batched) {
+            inUse = false;
+            if (batched && !evicted) {
+                statements.remove(key);
+                evicted = true;
+            }
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                ResultSet resultSet = statement.getResultSet();
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                statement.clearParameters();
+            } catch (SQLException e) {
+                evicted = true;
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                log.warn("Statement close failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Entry entry;
+        private boolean closed;
+        private boolean batched;
+
+        private Handler(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        entry.release(batched);
+                    }
+                    return null;
+                }
+                case "addBatch" -> batched = true;
+                case "isClosed" -> {
+                    return closed || entry.statement.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                default -> {
+                }
+            }
+            if (closed) {
+                throw new SQLException("Statement is closed");
+            }
+            try {
+                return method.invoke(entry.statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -27,6 +27,21 @@ public class TaskValidator {
 
     }
 
+    /**
+     * Проверяет параметры страницы: курсор - ID последней задачи предыдущей страницы (0 - первая страница),
+     * размер страницы - положительное число
+     */
+    public void validatePage(int afterId, int limit) {
+        if (afterId < 0) {
+            log.error("Page cursor can't be negative: {}", afterId);
+            throw new IllegalArgumentException("Page cursor can't be negative");
+        }
+        if (limit <= 0) {
+            log.error("Page limit must be positive: {}", limit);
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+    }
+
     public void validateId(int id) {
         if (id <= 0) {
             log.error("ID value: cant be zero");
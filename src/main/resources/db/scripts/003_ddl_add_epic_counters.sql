@@ -0,0 +1,22 @@
+alter table tasks
+    add column if not exists new_count int not null default 0;
+
+alter table tasks
+    add column if not exists in_progress_count int not null default 0;
+
+alter table tasks
+    add column if not exists done_count int not null default 0;
+
+update tasks e
+set new_count         = (select count(*) from tasks s where s.epic_id = e.id and s.status = 'NEW'),
+    in_progress_count = (select count(*) from tasks s where s.epic_id = e.id and s.status = 'IN_PROGRESS'),
+    done_count        = (select count(*) from tasks s where s.epic_id = e.id and s.status = 'DONE')
+where e.type = 'EPIC';
+
+update tasks
+set status = case
+                 when in_progress_count = 0 and done_count = 0 then 'NEW'
+                 when new_count = 0 and in_progress_count = 0 then 'DONE'
+                 else 'IN_PROGRESS'
+    end
+where type = 'EPIC';
@@ -0,0 +1,21 @@
+create table if not exists user_history
+(
+    user_id   int not null default 0,
+    task_id   int references tasks (id) on delete cascade,
+    viewed_at timestamp default current_timestamp,
+    type      varchar(25),
+    primary key (user_id, task_id)
+);
+
+insert into user_history (user_id, task_id, viewed_at, type)
+select 0, task_id, viewed_at, type
+from history;
+
+drop table history;
+
+alter table user_history
+    rename to history;
+
+create index if not exists history_user_viewed_at_idx on history (user_id, viewed_at);
+
+create index if not exists history_task_idx on history (task_id);
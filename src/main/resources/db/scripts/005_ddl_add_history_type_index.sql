@@ -0,0 +1 @@
+create index if not exists history_type_idx on history (type);
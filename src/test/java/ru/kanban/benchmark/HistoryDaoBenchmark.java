@@ -0,0 +1,102 @@
+package ru.kanban.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.kanban.dao.ConcurrentHistoryDao;
+import ru.kanban.dao.HistoryDao;
+import ru.kanban.dao.InMemoryHistoryDao;
+import ru.kanban.model.Status;
+import ru.kanban.model.Task;
+
+/**
+ * Пропускная способность записи просмотров при 1, 4 и 16 потоках: история в памяти под общей блокировкой
+ * (synchronized) против {@link ConcurrentHistoryDao} с буферами просмотров. Каждая 1000-я операция читает историю.
+ * Запуск: mvn test-compile, затем main этого класса с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryDaoBenchmark {
+    private static final int TASKS = 10_000;
+    private static final int CAPACITY = 1000;
+
+    @Param({"synchronized", "buffered"})
+    private String history;
+
+    private HistoryDao dao;
+    private Task[] tasks;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        dao = "buffered".equals(history)
+                ? new ConcurrentHistoryDao(new InMemoryHistoryDao(CAPACITY))
+                : new SynchronizedHistoryDao(new InMemoryHistoryDao(CAPACITY));
+        tasks = new Task[TASKS];
+        for (int i = 0; i < TASKS; i++) {
+            tasks[i] = new Task("Task " + i, "Description " + i, Status.NEW);
+            tasks[i].setId(i + 1);
+        }
+    }
+
+    @Benchmark
+    public int view() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        dao.addToHistory(tasks[random.nextInt(TASKS)]);
+        return random.nextInt(1000) == 0 ? dao.getViewedTasks().size() : 0;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            new Runner(new OptionsBuilder()
+                    .include(HistoryDaoBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+    private static final class SynchronizedHistoryDao implements HistoryDao {
+        private final HistoryDao delegate;
+
+        private SynchronizedHistoryDao(HistoryDao delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized void setToViewed(Task task) {
+            delegate.setToViewed(task);
+        }
+
+        @Override
+        public synchronized void addToHistory(Task task) {
+            delegate.addToHistory(task);
+        }
+
+        @Override
+        public synchronized void remove(int id) {
+            delegate.remove(id);
+        }
+
+        @Override
+        public synchronized List<Task> getViewedTasks() {
+            return delegate.getViewedTasks();
+        }
+
+        @Override
+        public synchronized void addAll(List<? extends Task> tasks) {
+            delegate.addAll(tasks);
+        }
+
+        @Override
+        public synchronized void deleteAllByType(String type) {
+            delegate.deleteAllByType(type);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package ru.kanban.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.kanban.dao.InMemoryTaskDao;
+import ru.kanban.model.Epic;
+import ru.kanban.model.Status;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+
+/**
+ * Пропускная способность общего хранилища в памяти при 1, 4 и 16 потоках:
+ * чтение задачи, добавление подзадачи и смена статуса подзадачи.
+ * Запуск: mvn test-compile, затем main этого класса с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InMemoryTaskDaoBenchmark {
+    private static final int TASKS = 10_000;
+    private static final int EPICS = 64;
+    private static final Status[] STATUSES = Status.values();
+
+    private InMemoryTaskDao dao;
+    private List<Epic> epics;
+    private int firstTaskId;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        dao = new InMemoryTaskDao();
+        firstTaskId = dao.addTask(new Task("Task 0", "Description 0", Status.NEW)).getId();
+        for (int i = 1; i < TASKS; i++) {
+            dao.addTask(new Task("Task " + i, "Description " + i, Status.NEW));
+        }
+        epics = new ArrayList<>();
+        for (int i = 0; i < EPICS; i++) {
+            Epic epic = dao.addEpic(new Epic("Epic " + i, "Description " + i, Status.NEW));
+            dao.addSubtask(new Subtask("Subtask " + i, "Description " + i, Status.NEW, epic));
+            epics.add(epic);
+        }
+    }
+
+    @Benchmark
+    public Optional<Task> getTask() {
+        return dao.getTask(firstTaskId + ThreadLocalRandom.current().nextInt(TASKS));
+    }
+
+    @Benchmark
+    public Subtask addSubtask() {
+        Epic epic = epics.get(ThreadLocalRandom.current().nextInt(EPICS));
+        return dao.addSubtask(new Subtask("Subtask", "Description", Status.NEW, epic));
+    }
+
+    @Benchmark
+    public Status changeSubtaskStatus() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Subtask subtask = epics.get(random.nextInt(EPICS)).getSubtasks().get(0);
+        subtask.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        return subtask.getEpic().getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads : new int[]{1, 4, 16}) {
+            new Runner(new OptionsBuilder()
+                    .include(InMemoryTaskDaoBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.kanban.benchmark;
+
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.kanban.model.Status;
+import ru.kanban.model.Task;
+import ru.kanban.utils.IntMap;
+
+/**
+ * Задержка чтения по ID из {@link IntMap} и из {@link HashMap} с ключами Integer на миллионе задач.
+ * Перед замером main печатает занимаемую словарями память (без самих задач).
+ * Запуск: mvn test-compile, затем main этого класса с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntMapBenchmark {
+    private static final int TASKS = 1_000_000;
+    private static final Task TASK = new Task("Task", "Description", Status.NEW);
+
+    private IntMap<Task> intMap;
+    private Map<Integer, Task> hashMap;
+
+    @Setup
+    public void setUp() {
+        intMap = fillIntMap();
+        hashMap = fillHashMap();
+    }
+
+    @Benchmark
+    public Task intMapGet() {
+        return intMap.get(1 + ThreadLocalRandom.current().nextInt(TASKS));
+    }
+
+    @Benchmark
+    public Task hashMapGet() {
+        return hashMap.get(1 + ThreadLocalRandom.current().nextInt(TASKS));
+    }
+
+    private static IntMap<Task> fillIntMap() {
+        IntMap<Task> map = new IntMap<>();
+        for (int id = 1; id <= TASKS; id++) {
+            map.put(id, TASK);
+        }
+        return map;
+    }
+
+    private static Map<Integer, Task> fillHashMap() {
+        Map<Integer, Task> map = new HashMap<>();
+        for (int id = 1; id <= TASKS; id++) {
+            map.put(id, TASK);
+        }
+        return map;
+    }
+
+    /**
+     * @return приблизительный прирост занятой памяти после построения словаря, в байтах
+     */
+    private static long footprint(Supplier<Object> factory) {
+        long before = usedMemory();
+        Object map = factory.get();
+        long after = usedMemory();
+        Reference.reachabilityFence(map);
+        return after - before;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.printf("IntMap heap per %d tasks: %d MB%n", TASKS, footprint(IntMapBenchmark::fillIntMap) >> 20);
+        System.out.printf("HashMap heap per %d tasks: %d MB%n", TASKS, footprint(IntMapBenchmark::fillHashMap) >> 20);
+        new Runner(new OptionsBuilder()
+                .include(IntMapBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
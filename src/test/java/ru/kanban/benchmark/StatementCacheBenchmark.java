@@ -0,0 +1,87 @@
+package ru.kanban.benchmark;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.kanban.configurations.PoolOptions;
+import ru.kanban.dao.DbTaskDao;
+import ru.kanban.model.Status;
+import ru.kanban.model.Task;
+import ru.kanban.utils.ConnectionPool;
+
+/**
+ * Задержка чтения задачи из БД (H2 в режиме PostgreSQL) с кэшем подготовленных запросов и без него.
+ * Запуск: mvn test-compile, затем main этого класса с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementCacheBenchmark {
+    private static final int TASKS = 1000;
+
+    @Param({"0", "64"})
+    private int statementCacheSize;
+
+    private ConnectionPool pool;
+    private DbTaskDao dao;
+    private int firstId;
+
+    @Setup
+    public void setUp() throws Exception {
+        Properties config = new Properties();
+        try (InputStream in = StatementCacheBenchmark.class.getClassLoader()
+                .getResourceAsStream("db/test.properties")) {
+            config.load(in);
+        }
+        PoolOptions options = new PoolOptions();
+        options.setStatementCacheSize(statementCacheSize);
+        pool = new ConnectionPool(
+                config.getProperty("url"),
+                config.getProperty("username"),
+                config.getProperty("password"),
+                options);
+        wipe();
+        dao = new DbTaskDao(pool);
+        firstId = dao.addTask(new Task("Task 0", "Description 0", Status.NEW)).getId();
+        for (int i = 1; i < TASKS; i++) {
+            dao.addTask(new Task("Task " + i, "Description " + i, Status.NEW));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        wipe();
+        pool.close();
+    }
+
+    @Benchmark
+    public Task getTask() {
+        return dao.getTask(firstId + ThreadLocalRandom.current().nextInt(TASKS)).orElseThrow();
+    }
+
+    private void wipe() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement deleteHistory = connection.prepareStatement("DELETE from history");
+             PreparedStatement deleteTasks = connection.prepareStatement("DELETE from tasks")) {
+            deleteHistory.execute();
+            deleteTasks.execute();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(StatementCacheBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,107 @@
+package ru.kanban.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.StorageOptions;
+import ru.kanban.model.Task;
+import ru.kanban.storage.Durability;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.NEW;
+import static ru.kanban.utils.Constants.HEADER;
+import static ru.kanban.utils.Constants.JOURNAL_EXTENSION;
+
+class BatchedFileBackedTaskDaoTest extends DaoTest {
+    private File tempFile;
+    private File tempHistoryFile;
+
+    @Override
+    TaskDao createDao() throws IOException {
+        tempHistoryFile = File.createTempFile("temp_history", ".csv");
+        tempFile = File.createTempFile("temp", ".csv");
+        StorageOptions options = new StorageOptions();
+        options.setDurability(Durability.BATCHED);
+        return new FileBackedTaskDao(tempFile.toString(), options);
+    }
+
+    @AfterEach
+    void close() {
+        ((FileBackedTaskDao) taskDao).close();
+    }
+
+    private FileBackedTaskDao reload() throws IOException {
+        return FileBackedTaskDao.loadFromFile(new String[]{tempFile.toString(), tempHistoryFile.toString()});
+    }
+
+    @Test
+    void whenFlushThenFileContainsAllAddedTasks() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        ((FileBackedTaskDao) taskDao).flush();
+
+        assertThat(Files.readAllLines(tempFile.toPath())).containsExactly(
+                HEADER,
+                "1,TASK,task1,NEW,desc,",
+                "2,EPIC,epic1,NEW,desc,",
+                "3,SUBTASK,subtask1,NEW,desc,2");
+    }
+
+    @Test
+    void whenUpdateAfterQueuedAddsThenSnapshotIsNotOverwrittenByQueue() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        Task updated = new Task("updated", "desc", NEW);
+        updated.setId(task1.getId());
+        taskDao.updateTask(updated);
+        ((FileBackedTaskDao) taskDao).close();
+
+        FileBackedTaskDao loaded = reload();
+        assertThat(loaded.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+        assertThat(loaded.getTasks()).hasSize(2);
+    }
+
+    @Test
+    void whenManyThreadsAddThenCloseWritesEveryRecord() throws Exception {
+        FileBackedTaskDao dao = (FileBackedTaskDao) taskDao;
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread writer = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    dao.addTask(new Task("task", "desc", NEW));
+                }
+            });
+            writers.add(writer);
+            writer.start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        dao.close();
+
+        assertThat(Files.readAllLines(tempFile.toPath())).hasSize(4001);
+        assertThat(reload().getTasks()).hasSize(4000);
+    }
+
+    @Test
+    void whenJournaledWithBatchedDurabilityThenCloseFlushesJournal() throws IOException {
+        File snapshot = File.createTempFile("temp", ".csv");
+        StorageOptions options = new StorageOptions();
+        options.setJournaled(true);
+        options.setDurability(Durability.BATCHED);
+        FileBackedTaskDao dao = new FileBackedTaskDao(snapshot.toString(), options);
+        dao.addTask(task1);
+        dao.addTask(task2);
+        dao.close();
+
+        assertThat(Files.readAllLines(Path.of(snapshot + JOURNAL_EXTENSION))).containsExactly(
+                "ADD,1,TASK,task1,NEW,desc,",
+                "ADD,2,TASK,task2,IN_PROGRESS,desc,");
+    }
+}
@@ -0,0 +1,179 @@
+package ru.kanban.dao;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.StorageOptions;
+import ru.kanban.model.Epic;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.storage.BinaryTaskCodec;
+import ru.kanban.storage.Durability;
+import ru.kanban.storage.TaskFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.DONE;
+import static ru.kanban.model.Status.NEW;
+import static ru.kanban.model.TaskType.TASK;
+
+class BinaryFileBackedTaskDaoTest extends DaoTest {
+    private File tempFile;
+    private File tempHistoryFile;
+
+    @Override
+    TaskDao createDao() throws IOException {
+        tempHistoryFile = File.createTempFile("temp_history", ".bin");
+        tempFile = File.createTempFile("temp", ".bin");
+        StorageOptions options = new StorageOptions();
+        options.setFormat(TaskFormat.BINARY);
+        return new FileBackedTaskDao(tempFile.toString(), options);
+    }
+
+    private FileBackedTaskDao reload() throws IOException {
+        return FileBackedTaskDao.loadFromFile(new String[]{tempFile.toString(), tempHistoryFile.toString()});
+    }
+
+    @Test
+    void whenAddTaskThenFileStartsWithMagicAndVersion() throws IOException {
+        taskDao.addTask(task1);
+        byte[] content = Files.readAllBytes(tempFile.toPath());
+        assertThat(Arrays.copyOf(content, 5)).isEqualTo(BinaryTaskCodec.header());
+    }
+
+    @Test
+    void whenLoadBinaryFileThenFormatIsDetectedAndTasksRestored() throws IOException {
+        Task withComma = new Task("name, with comma", "описание, с запятой", DONE);
+        taskDao.addTask(withComma);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        FileBackedHistoryDao history = new FileBackedHistoryDao(
+                tempHistoryFile.toString(), Durability.PER_WRITE, TaskFormat.BINARY);
+        history.addToHistory(withComma);
+        history.addToHistory(subtask1);
+
+        FileBackedTaskDao loaded = reload();
+
+        assertThat(loaded.getFormat()).isEqualTo(TaskFormat.BINARY);
+        assertThat(loaded.getTask(withComma.getId()).get().getDescription()).isEqualTo("описание, с запятой");
+        assertThat(loaded.getTask(withComma.getId()).get().getName()).isEqualTo("name, with comma");
+        assertThat(loaded.getEpics()).containsExactly(epic1);
+        assertThat(loaded.getSubtasks()).containsExactly(subtask1);
+        assertThat(new FileBackedHistoryDao(tempHistoryFile.toString()).getFormat()).isEqualTo(TaskFormat.BINARY);
+    }
+
+    @Test
+    void whenUpdateThenBinarySnapshotIsRewritten() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        Subtask subtask = new Subtask("subtask", "desc", NEW, epic1);
+        taskDao.addSubtask(subtask);
+        Task updated = new Task("updated", "desc", DONE);
+        updated.setId(task1.getId());
+        taskDao.updateTask(updated);
+
+        FileBackedTaskDao loaded = reload();
+
+        assertThat(loaded.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+        Epic epic = loaded.getEpic(epic1.getId()).get();
+        assertThat(loaded.getSubtask(subtask.getId()).get().getEpic()).isSameAs(epic);
+    }
+
+    @Test
+    void whenJournaledBinaryStoreReloadedThenRecordsWithCommasAreReplayed() throws IOException {
+        File snapshot = File.createTempFile("journaled", ".bin");
+        StorageOptions options = new StorageOptions();
+        options.setFormat(TaskFormat.BINARY);
+        options.setJournaled(true);
+        FileBackedTaskDao dao = new FileBackedTaskDao(snapshot.toString(), options);
+        String description = "описание, с запятой" + System.lineSeparator() + "и строкой";
+        Task withComma = new Task("name, with comma", description, NEW);
+        dao.addTask(withComma);
+        dao.addTask(task2);
+        dao.addEpic(epic1);
+        dao.addSubtask(subtask1);
+        dao.deleteTask(task2.getId());
+        dao.renewAllStatuses(TASK.name(), DONE.name());
+        dao.close();
+
+        FileBackedTaskDao loaded = FileBackedTaskDao.loadFromFile(
+                new String[]{snapshot.toString(), tempHistoryFile.toString()});
+
+        assertThat(loaded.isJournaled()).isTrue();
+        assertThat(loaded.getTasks()).containsExactly(withComma);
+        Task task = loaded.getTask(withComma.getId()).get();
+        assertThat(task.getName()).isEqualTo("name, with comma");
+        assertThat(task.getDescription()).isEqualTo(description);
+        assertThat(task.getStatus()).isEqualTo(DONE);
+        assertThat(loaded.getEpic(epic1.getId()).get().getSubtasks()).containsExactly(subtask1);
+        loaded.close();
+    }
+
+    @Test
+    void whenRecordIsCorruptedThenExceptionThrown() throws IOException {
+        taskDao.addTask(task1);
+        byte[] content = Files.readAllBytes(tempFile.toPath());
+        content[content.length - 6] ^= 1;
+        Files.write(tempFile.toPath(), content);
+
+        assertThatThrownBy(this::reload)
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("checksum mismatch");
+    }
+
+    @Test
+    void whenLastRecordIsIncompleteThenItIsSkipped() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        byte[] content = Files.readAllBytes(tempFile.toPath());
+        Files.write(tempFile.toPath(), Arrays.copyOf(content, content.length - 3));
+
+        assertThat(reload().getTasks()).containsExactly(task1);
+    }
+
+    @Test
+    void whenExistingCsvFileThenFormatIsKept() throws IOException {
+        File csv = File.createTempFile("temp", ".csv");
+        new FileBackedTaskDao(csv.toString()).addTask(task1);
+        StorageOptions options = new StorageOptions();
+        options.setFormat(TaskFormat.BINARY);
+
+        assertThat(new FileBackedTaskDao(csv.toString(), options).getFormat()).isEqualTo(TaskFormat.CSV);
+    }
+
+    @Test
+    void whenParallelLoadBinaryFileThenAllRecordsRestored() throws IOException {
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            Epic epic = new Epic("epic " + i, "desc", NEW);
+            epic.setId(i);
+            epics.add(epic);
+        }
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            out.write(BinaryTaskCodec.header());
+            for (int i = 101; i <= 100_000; i++) {
+                Subtask subtask = new Subtask("subtask " + i, "description, " + i, DONE, epics.get(i % 100));
+                subtask.setId(i);
+                out.write(BinaryTaskCodec.encode(subtask));
+            }
+            for (Epic epic : epics) {
+                out.write(BinaryTaskCodec.encode(epic));
+            }
+        }
+        StorageOptions options = new StorageOptions();
+        options.setLoadParallelism(4);
+        FileBackedTaskDao loaded = FileBackedTaskDao.loadFromFile(
+                new String[]{tempFile.toString(), tempHistoryFile.toString()}, options);
+
+        assertThat(loaded.getSubtasks()).hasSize(99_900);
+        assertThat(loaded.getSubtask(100_000).get().getDescription()).isEqualTo("description, 100000");
+        assertThat(loaded.getSubtask(101).get().getEpic()).isSameAs(loaded.getEpic(2).get());
+    }
+}
@@ -0,0 +1,271 @@
+package ru.kanban.dao;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.*;
+import ru.kanban.configurations.PoolOptions;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.utils.ConnectionPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.DONE;
+import static ru.kanban.model.Status.IN_PROGRESS;
+import static ru.kanban.model.Status.NEW;
+
+class CachingTaskDaoTest extends DaoTest {
+    private static ConnectionPool pool;
+
+    @Override
+    TaskDao createDao() {
+        return new CachingTaskDao(new DbTaskDao(pool), 100);
+    }
+
+    @BeforeAll
+    public static void initPool() {
+        try (InputStream in = DbTaskDao.class.getClassLoader().getResourceAsStream("db/test.properties")) {
+            Properties config = new Properties();
+            config.load(in);
+            pool = new ConnectionPool(
+                    config.getProperty("url"),
+                    config.getProperty("username"),
+                    config.getProperty("password"),
+                    new PoolOptions());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @AfterAll
+    public static void closePool() {
+        pool.close();
+    }
+
+    @BeforeEach
+    public void wipeTable() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement deleteHistory = connection.prepareStatement("DELETE from history");
+             PreparedStatement deleteTasks = connection.prepareStatement("DELETE from tasks")) {
+            deleteHistory.execute();
+            deleteTasks.execute();
+        }
+    }
+
+    @AfterEach
+    public void checkConnectionsReturned() {
+        assertThat(pool.getActiveCount()).isZero();
+    }
+
+    @Test
+    void whenCapacityIsNotPositiveThenException() {
+        assertThatThrownBy(() -> new CachingTaskDao(new InMemoryTaskDao(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenGetTaskTwiceThenSecondReadIsHit() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        Task first = cached.getTask(task1.getId()).get();
+        Task second = cached.getTask(task1.getId()).get();
+        assertThat(second).isEqualTo(first).isNotSameAs(first);
+        assertThat(cached.getStats()).isEqualTo(new CachingTaskDao.CacheStats(1, 1, 0, 1));
+        assertThat(cached.getStats().hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void whenTaskIsMissingThenItIsNotCached() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        assertThat(cached.getTask(55)).isEmpty();
+        assertThat(cached.getTask(55)).isEmpty();
+        assertThat(cached.getStats()).isEqualTo(new CachingTaskDao.CacheStats(0, 2, 0, 0));
+    }
+
+    @Test
+    void whenCapacityExceededThenLeastRecentlyReadIsEvicted() {
+        CachingTaskDao cached = new CachingTaskDao(new DbTaskDao(pool), 2);
+        cached.addTask(task1);
+        cached.addTask(task2);
+        cached.addTask(task3);
+        cached.getTask(task1.getId());
+        cached.getTask(task2.getId());
+        cached.getTask(task1.getId());
+        cached.getTask(task3.getId());
+        cached.getTask(task1.getId());
+        cached.getTask(task2.getId());
+        assertThat(cached.getStats()).isEqualTo(new CachingTaskDao.CacheStats(2, 4, 2, 2));
+    }
+
+    @Test
+    void whenSameIdDifferentTypeThenSeparateEntries() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        assertThat(cached.getTask(task1.getId())).isPresent();
+        assertThat(cached.getEpic(task1.getId())).isEmpty();
+        assertThat(cached.getSubtask(task1.getId())).isEmpty();
+        assertThat(cached.getStats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUpdateTaskThenNextReadReturnsUpdated() {
+        taskDao.addTask(task1);
+        taskDao.getTask(task1.getId());
+        Task update = new Task("updated", "desc", DONE);
+        update.setId(task1.getId());
+        taskDao.updateTask(update);
+        assertThat(taskDao.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+    }
+
+    @Test
+    void whenUpdateSubtaskThenEpicIsReadAgain() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        taskDao.getEpic(epic1.getId());
+        Subtask update = new Subtask("subtask1", "desc", IN_PROGRESS, epic1);
+        update.setId(subtask1.getId());
+        taskDao.updateSubtask(update);
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(IN_PROGRESS);
+    }
+
+    @Test
+    void whenDeleteEpicThenItsSubtasksAreEvictedFromCache() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addEpic(epic1);
+        cached.addSubtask(subtask1);
+        cached.getEpic(epic1.getId());
+        cached.getSubtask(subtask1.getId());
+        cached.deleteEpic(epic1.getId());
+        assertThat(cached.getStats().size()).isZero();
+        assertThat(cached.getSubtask(subtask1.getId())).isEmpty();
+    }
+
+    @Test
+    void whenCommitThenReadsArePublished() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        cached.begin();
+        cached.getTask(task1.getId());
+        assertThat(cached.getStats().size()).isZero();
+        cached.commit();
+        assertThat(cached.getStats().size()).isEqualTo(1);
+        cached.getTask(task1.getId());
+        assertThat(cached.getStats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void whenNestedCommitThenReadsArePublishedByOuterCommit() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        cached.addTask(task2);
+        cached.begin();
+        cached.getTask(task1.getId());
+        cached.begin();
+        cached.getTask(task2.getId());
+        cached.commit();
+        assertThat(cached.getStats().size()).isZero();
+        cached.commit();
+        assertThat(cached.getStats().size()).isEqualTo(2);
+    }
+
+    @Test
+    void whenNestedRollbackThenOuterCommitPublishesNothing() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        cached.begin();
+        cached.begin();
+        cached.getTask(task1.getId());
+        cached.rollback();
+        cached.getTask(task1.getId());
+        cached.commit();
+        assertThat(cached.getStats().size()).isZero();
+    }
+
+    @Test
+    void whenOtherTaskChangedDuringReadThenReadIsCached() {
+        CachingTaskDao cached = cacheChangingDuringRead(() -> task2);
+        cached.addTask(task1);
+        cached.addTask(task2);
+        cached.getTask(task1.getId());
+        assertThat(cached.getStats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenTaskChangedDuringReadThenReadIsNotCached() {
+        CachingTaskDao cached = cacheChangingDuringRead(() -> task1);
+        cached.addTask(task1);
+        cached.getTask(task1.getId());
+        assertThat(cached.getStats().size()).isZero();
+    }
+
+    @Test
+    void whenRollbackThenReadsAndUpdatesAreDropped() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        cached.getTask(task1.getId());
+        cached.begin();
+        Task update = new Task("updated", "desc", DONE);
+        update.setId(task1.getId());
+        cached.updateTask(update);
+        assertThat(cached.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+        cached.rollback();
+        assertThat(cached.getTask(task1.getId()).get().getName()).isEqualTo("task1");
+        assertThat(cached.getStats().size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenUpdateCommittedThenCachedTaskIsReplaced() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addTask(task1);
+        cached.getTask(task1.getId());
+        cached.begin();
+        Task update = new Task("updated", "desc", DONE);
+        update.setId(task1.getId());
+        cached.updateTask(update);
+        cached.getTask(task1.getId());
+        cached.commit();
+        assertThat(cached.getStats().size()).isZero();
+        assertThat(cached.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+    }
+
+    @Test
+    void whenReadTaskChangedByCallerThenCacheKeepsStoredState() {
+        CachingTaskDao cached = (CachingTaskDao) taskDao;
+        cached.addEpic(epic1);
+        cached.addSubtask(subtask1);
+        cached.getSubtask(subtask1.getId());
+        cached.begin();
+        Subtask read = cached.getSubtask(subtask1.getId()).get();
+        read.setName("uncommitted");
+        read.setStatus(DONE);
+        cached.rollback();
+        Subtask reread = cached.getSubtask(subtask1.getId()).get();
+        assertThat(reread.getName()).isEqualTo("subtask1");
+        assertThat(reread.getStatus()).isEqualTo(NEW);
+        assertThat(reread.getEpic().getStatus()).isEqualTo(NEW);
+        assertThat(cached.getStats().hits()).isEqualTo(2);
+    }
+
+    /**
+     * Кэш, в котором каждое чтение задачи из хранилища сопровождается изменением задачи через тот же кэш
+     */
+    private static CachingTaskDao cacheChangingDuringRead(Supplier<Task> changed) {
+        CachingTaskDao[] cached = new CachingTaskDao[1];
+        cached[0] = new CachingTaskDao(new DbTaskDao(pool) {
+            @Override
+            public Optional<Task> getTask(int id) {
+                Optional<Task> result = super.getTask(id);
+                Task update = new Task("changed", "desc", DONE);
+                update.setId(changed.get().getId());
+                cached[0].updateTask(update);
+                return result;
+            }
+        }, 100);
+        return cached[0];
+    }
+}
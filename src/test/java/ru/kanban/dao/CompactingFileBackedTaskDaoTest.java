@@ -0,0 +1,143 @@
+package ru.kanban.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.StorageOptions;
+import ru.kanban.model.Epic;
+import ru.kanban.model.EpicProgress;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.DONE;
+import static ru.kanban.model.Status.NEW;
+import static ru.kanban.utils.Constants.HEADER;
+import static ru.kanban.utils.Constants.JOURNAL_EXTENSION;
+
+class CompactingFileBackedTaskDaoTest extends DaoTest {
+    private File tempFile;
+    private File tempHistoryFile;
+
+    @Override
+    TaskDao createDao() throws IOException {
+        tempHistoryFile = File.createTempFile("temp_history", ".csv");
+        tempFile = File.createTempFile("temp", ".csv");
+        StorageOptions options = new StorageOptions();
+        options.setJournaled(true);
+        options.setCompactionJournalRecords(3);
+        return new FileBackedTaskDao(tempFile.toString(), options);
+    }
+
+    @AfterEach
+    void close() {
+        ((FileBackedTaskDao) taskDao).close();
+    }
+
+    private Path journal() {
+        return Path.of(tempFile + JOURNAL_EXTENSION);
+    }
+
+    private FileBackedTaskDao reload() throws IOException {
+        return FileBackedTaskDao.loadFromFile(new String[]{tempFile.toString(), tempHistoryFile.toString()});
+    }
+
+    @Test
+    void whenCompactThenSnapshotContainsStateAndJournalIsEmpty() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        ((FileBackedTaskDao) taskDao).compact();
+
+        assertThat(Files.readAllLines(tempFile.toPath())).containsExactly(
+                HEADER,
+                "1,TASK,task1,NEW,desc,",
+                "2,EPIC,epic1,NEW,desc,",
+                "3,SUBTASK,subtask1,NEW,desc,2");
+        assertThat(Files.readAllLines(journal())).isEmpty();
+    }
+
+    @Test
+    void whenJournalReachesThresholdThenCompactionRunsInBackground() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        taskDao.addTask(task3);
+        ((FileBackedTaskDao) taskDao).close();
+
+        assertThat(Files.readAllLines(tempFile.toPath())).contains("1,TASK,task1,NEW,desc,");
+        FileBackedTaskDao loaded = reload();
+        assertThat(loaded.getTasks()).containsExactlyInAnyOrder(task1, task2, task3);
+    }
+
+    @Test
+    void whenCompactThenRecordsAppendedLaterStayInJournal() throws IOException {
+        taskDao.addTask(task1);
+        ((FileBackedTaskDao) taskDao).compact();
+        taskDao.addTask(task2);
+
+        assertThat(Files.readAllLines(journal())).containsExactly("ADD,2,TASK,task2,IN_PROGRESS,desc,");
+        FileBackedTaskDao loaded = reload();
+        assertThat(loaded.getTasks()).containsExactlyInAnyOrder(task1, task2);
+    }
+
+    @Test
+    void whenWritersRunDuringCompactionThenNoRecordIsLost() throws Exception {
+        FileBackedTaskDao dao = (FileBackedTaskDao) taskDao;
+        List<Task> added = new ArrayList<>();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                added.add(dao.addTask(new Task("task" + i, "desc", NEW)));
+            }
+        });
+        writer.start();
+        for (int i = 0; i < 20; i++) {
+            dao.compact();
+        }
+        writer.join();
+        dao.close();
+
+        FileBackedTaskDao loaded = reload();
+        assertThat(loaded.getTasks()).containsExactlyInAnyOrderElementsOf(added);
+    }
+
+    @Test
+    void whenCrashBetweenSnapshotSwapAndJournalTruncateThenReplayedJournalKeepsState() throws IOException {
+        File snapshot = File.createTempFile("crash", ".csv");
+        File history = File.createTempFile("crash_history", ".csv");
+        Path crashJournal = Path.of(snapshot + JOURNAL_EXTENSION);
+        StorageOptions options = new StorageOptions();
+        options.setJournaled(true);
+        FileBackedTaskDao dao = new FileBackedTaskDao(snapshot.toString(), options);
+        dao.addEpic(epic1);
+        dao.addSubtask(subtask1);
+        dao.compact();
+        dao.addSubtask(new Subtask("orphan", "desc", NEW, epic1));
+        dao.deleteEpic(epic1.getId());
+        dao.addEpic(epic2);
+        dao.addSubtask(subtask2);
+        Subtask updated = new Subtask("subtask2", "desc", DONE, epic2);
+        updated.setId(subtask2.getId());
+        dao.updateSubtask(updated);
+        dao.flush();
+        byte[] journalBeforeTruncate = Files.readAllBytes(crashJournal);
+        dao.compact();
+        dao.close();
+        Files.write(crashJournal, journalBeforeTruncate);
+
+        FileBackedTaskDao loaded = FileBackedTaskDao.loadFromFile(
+                new String[]{snapshot.toString(), history.toString()});
+        Epic loadedEpic = loaded.getEpic(epic2.getId()).get();
+        assertThat(loaded.getEpic(epic1.getId())).isEmpty();
+        assertThat(loaded.getSubtasks()).containsExactly(updated);
+        assertThat(loadedEpic.getSubtasks()).containsExactly(updated);
+        assertThat(loaded.getSubtask(subtask2.getId()).get().getEpic()).isSameAs(loadedEpic);
+        assertThat(loaded.getEpicProgress(epic2.getId())).isEqualTo(new EpicProgress(0, 0, 1));
+        assertThat(loadedEpic.getStatus()).isEqualTo(DONE);
+        loaded.close();
+    }
+}
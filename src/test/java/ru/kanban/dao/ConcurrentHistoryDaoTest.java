@@ -0,0 +1,81 @@
+package ru.kanban.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import ru.kanban.model.Task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.NEW;
+
+class ConcurrentHistoryDaoTest extends HistoryDaoTest {
+
+    @Override
+    HistoryDao createHistoryDao() {
+        return new ConcurrentHistoryDao(new InMemoryHistoryDao());
+    }
+
+    @Test
+    void whenViewsOverflowBuffersThenOrderSameAsSingleThreaded() {
+        HistoryDao concurrent = new ConcurrentHistoryDao(new InMemoryHistoryDao(50), 1);
+        HistoryDao expected = new InMemoryHistoryDao(50);
+        for (int i = 0; i < 1000; i++) {
+            Task task = task(i % 137);
+            concurrent.addToHistory(task);
+            expected.addToHistory(task);
+        }
+        assertThat(concurrent.getViewedTasks()).containsExactlyElementsOf(expected.getViewedTasks());
+    }
+
+    @Test
+    void whenViewedFromManyThreadsThenEveryThreadOrderKept() throws Exception {
+        int threads = 8;
+        int views = 2000;
+        HistoryDao history = new ConcurrentHistoryDao(new InMemoryHistoryDao(threads * views));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int first = t * views + 1;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int id = first; id < first + views; id++) {
+                    history.addToHistory(task(id));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        List<Task> viewed = history.getViewedTasks();
+        assertThat(viewed).hasSize(threads * views);
+        int[] lastByThread = new int[threads];
+        for (Task task : viewed) {
+            int thread = (task.getId() - 1) / views;
+            assertThat(task.getId()).isGreaterThan(lastByThread[thread]);
+            lastByThread[thread] = task.getId();
+        }
+    }
+
+    @Test
+    void whenRemoveAfterViewThenRemovedEvenIfBuffered() {
+        HistoryDao history = new ConcurrentHistoryDao(new InMemoryHistoryDao(), 4);
+        history.addToHistory(task(1));
+        history.addToHistory(task(2));
+        history.remove(1);
+        assertThat(history.getViewedTasks()).extracting(Task::getId).containsExactly(2);
+    }
+
+    private static Task task(int id) {
+        Task task = new Task("task" + id, "desc", NEW);
+        task.setId(id);
+        return task;
+    }
+}
@@ -2,16 +2,23 @@ package ru.kanban.dao;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import ru.kanban.model.Epic;
+import ru.kanban.model.EpicProgress;
 import ru.kanban.model.Subtask;
 import ru.kanban.model.Task;
+import ru.kanban.model.TaskType;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.DONE;
 import static ru.kanban.model.Status.IN_PROGRESS;
 import static ru.kanban.model.Status.NEW;
+import static ru.kanban.model.TaskType.EPIC;
+import static ru.kanban.model.TaskType.SUBTASK;
+import static ru.kanban.model.TaskType.TASK;
 
 public abstract class DaoTest {
     protected TaskDao taskDao;
@@ -108,6 +115,18 @@ public abstract class DaoTest {
         assertThat(taskDao.getTasks()).isEqualTo(expected);
     }
 
+    @Test
+    void whenUpdateMissingAnyTaskThenResIsEmpty() {
+        taskDao.addEpic(epic1);
+        task1.setId(666);
+        epic2.setId(667);
+        subtask1.setId(668);
+        assertThat(taskDao.updateTask(task1)).isEmpty();
+        assertThat(taskDao.updateEpic(epic2)).isEmpty();
+        assertThat(taskDao.updateSubtask(subtask1)).isEmpty();
+        assertThat(taskDao.getEpics()).containsOnly(epic1);
+    }
+
     @Test
     void whenDeleteAllTasksThenTableDoesntExistsByIdAnyTasks() {
         taskDao.addTask(task1);
@@ -222,6 +241,16 @@ public abstract class DaoTest {
         assertThat(taskDao.getSubtasks()).hasSize(1).containsOnly(subtask2);
     }
 
+    @Test
+    void whenDeleteSubtaskThenDeletedSubtaskWithEpicReturned() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        Subtask deleted = taskDao.deleteSubtask(subtask1.getId()).get();
+        assertThat(deleted).isEqualTo(subtask1);
+        assertThat(deleted.getEpic().getId()).isEqualTo(epic1.getId());
+        assertThat(taskDao.deleteSubtask(subtask1.getId())).isEmpty();
+    }
+
     @Test
     void whenDeleteSubtaskByIncorrectIdSubtaskListIsSame() {
         taskDao.addTask(task1);
@@ -256,4 +285,201 @@ public abstract class DaoTest {
         taskDao.updateSubtask(subtask);
         assertThat(taskDao.getSubtask(subtask1.getId()).get()).isEqualTo(subtask);
     }
+
+    @Test
+    void whenUpdateSubtaskThenEpicStatusSettledByDao() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        Subtask updated = new Subtask("subtask1", "desc", DONE, epic1);
+        updated.setId(subtask1.getId());
+        assertThat(taskDao.updateSubtask(updated)).isPresent();
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(DONE);
+    }
+
+    @Test
+    void whenUpdateSubtaskOfUnknownEpicThenEmptyAndSubtaskUnchanged() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        Subtask updated = new Subtask("subtask1", "desc", DONE, epic2);
+        updated.setId(subtask1.getId());
+        assertThat(taskDao.updateSubtask(updated)).isEmpty();
+        assertThat(taskDao.getSubtask(subtask1.getId()).get().getStatus()).isEqualTo(NEW);
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(NEW);
+    }
+
+    @Test
+    void whenUpdateSubtaskWithOtherEpicThenSubtaskMovedWithCounters() {
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        assertThat(taskDao.getEpic(epic1.getId()).get().getSubtasks()).hasSize(1);
+        Subtask moved = new Subtask("subtask1", "desc", DONE, epic2);
+        moved.setId(subtask1.getId());
+        assertThat(taskDao.updateSubtask(moved)).isPresent();
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(0, 0, 0));
+        assertThat(taskDao.getEpicProgress(epic2.getId())).isEqualTo(new EpicProgress(0, 0, 1));
+        assertThat(taskDao.getEpic(epic2.getId()).get().getStatus()).isEqualTo(DONE);
+        assertThat(taskDao.getEpic(epic1.getId()).get().getSubtasks()).isEmpty();
+        assertThat(taskDao.getEpic(epic2.getId()).get().getSubtasks()).containsExactly(moved);
+    }
+
+    @Test
+    void whenAddTasksThenIdsAssignedInOrder() {
+        List<Task> added = taskDao.addTasks(List.of(task1, task2, task3));
+        assertThat(added).containsExactly(task1, task2, task3);
+        assertThat(task1.getId()).isLessThan(task2.getId());
+        assertThat(task2.getId()).isLessThan(task3.getId());
+        assertThat(taskDao.getTask(task3.getId()).get()).isEqualTo(task3);
+        assertThat(taskDao.getTasks()).containsOnly(task1, task2, task3);
+    }
+
+    @Test
+    void whenAddSubtasksThenDaoContainsSubtasks() {
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtasks(List.of(subtask1, subtask2));
+        assertThat(subtask1.getId()).isNotEqualTo(subtask2.getId());
+        assertThat(taskDao.getSubtasks()).containsOnly(subtask1, subtask2);
+        assertThat(taskDao.getEpicSubtasksStatuses(epic1.getId())).containsExactly(NEW);
+    }
+
+    @Test
+    void whenUpdateTasksThenOnlyExistingTasksUpdated() {
+        taskDao.addTasks(List.of(task1, task2));
+        Task updated = new Task("updated", "desc", IN_PROGRESS);
+        updated.setId(task1.getId());
+        Task missing = new Task("missing", "desc", NEW);
+        missing.setId(666);
+        assertThat(taskDao.updateTasks(List.of(updated, missing))).containsExactly(updated);
+        assertThat(taskDao.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+        assertThat(taskDao.getTask(666)).isEmpty();
+    }
+
+    @Test
+    void whenUpdateSubtasksThenEpicProgressFollows() {
+        Subtask subtask3 = new Subtask("subtask3", "desc", NEW, epic1);
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtasks(List.of(subtask1, subtask2, subtask3));
+        Subtask done = new Subtask("done", "desc", DONE, epic1);
+        done.setId(subtask1.getId());
+        Subtask started = new Subtask("started", "desc", IN_PROGRESS, epic2);
+        started.setId(subtask2.getId());
+        Subtask missing = new Subtask("missing", "desc", NEW, epic1);
+        missing.setId(666);
+        assertThat(taskDao.updateSubtasks(List.of(done, started, missing))).containsExactly(done, started);
+        assertThat(taskDao.getSubtask(subtask1.getId()).get().getName()).isEqualTo("done");
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(1, 0, 1));
+        assertThat(taskDao.getEpicProgress(epic2.getId())).isEqualTo(new EpicProgress(0, 1, 0));
+    }
+
+    @Test
+    void whenDeleteTasksThenOnlyTasksDeleted() {
+        taskDao.addTasks(List.of(task1, task2, task3));
+        taskDao.addEpic(epic1);
+        List<Task> deleted = taskDao.deleteTasks(task1.getId(), task3.getId(), epic1.getId(), 666);
+        assertThat(deleted).containsOnly(task1, task3);
+        assertThat(taskDao.getTasks()).containsOnly(task2);
+        assertThat(taskDao.getEpic(epic1.getId())).isPresent();
+    }
+
+    @Test
+    void whenGetTasksByPagesThenAllTasksInIdOrder() {
+        taskDao.addTasks(List.of(task1, task2, task3));
+        taskDao.addEpic(epic1);
+        List<Task> first = taskDao.getTasks(0, 2);
+        List<Task> second = taskDao.getTasks(first.get(1).getId(), 2);
+        assertThat(first).containsExactly(task1, task2);
+        assertThat(second).containsExactly(task3);
+        assertThat(taskDao.getTasks(task3.getId(), 2)).isEmpty();
+    }
+
+    @Test
+    void whenGetEpicsAndSubtasksByPagesThenPageAfterCursor() {
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask2);
+        assertThat(taskDao.getEpics(epic1.getId(), 10)).containsExactly(epic2);
+        assertThat(taskDao.getSubtasks(0, 1)).containsExactly(subtask1);
+        assertThat(taskDao.getSubtasks(subtask1.getId(), 1)).containsExactly(subtask2);
+    }
+
+    @Test
+    void whenForEachThenConsumerReceivesEveryTask() {
+        taskDao.addTasks(List.of(task1, task2));
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        List<Task> tasks = new ArrayList<>();
+        List<Epic> epics = new ArrayList<>();
+        List<Subtask> subtasks = new ArrayList<>();
+        taskDao.forEachTask(tasks::add);
+        taskDao.forEachEpic(epics::add);
+        taskDao.forEachSubtask(subtasks::add);
+        assertThat(tasks).containsOnly(task1, task2);
+        assertThat(epics).containsOnly(epic1);
+        assertThat(subtasks).containsOnly(subtask1);
+    }
+
+    @Test
+    void whenGetEpicsThenEpicsContainTheirSubtasks() {
+        Subtask subtask3 = new Subtask("subtask3", "desc", NEW, epic1);
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask3);
+        List<Epic> epics = taskDao.getEpics();
+        assertThat(epics).containsExactly(epic1, epic2);
+        Epic first = epics.get(0);
+        assertThat(first.getSubtasks()).containsExactly(subtask1, subtask3);
+        assertThat(first.getSubtasks()).allSatisfy(subtask -> assertThat(subtask.getEpic()).isSameAs(first));
+        assertThat(epics.get(1).getSubtasks()).isEmpty();
+    }
+
+    @Test
+    void whenGetSubtasksThenSubtasksOfEpicShareOneEpicInstance() {
+        Subtask subtask3 = new Subtask("subtask3", "desc", NEW, epic1);
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask2);
+        taskDao.addSubtask(subtask3);
+        List<Subtask> subtasks = taskDao.getSubtasks();
+        assertThat(subtasks).containsExactly(subtask1, subtask2, subtask3);
+        assertThat(subtasks.get(0).getEpic()).isSameAs(subtasks.get(2).getEpic());
+        assertThat(subtasks.get(0).getEpic()).isNotSameAs(subtasks.get(1).getEpic());
+        assertThat(subtasks.get(0).getEpic().getSubtasks()).contains(subtask1, subtask3);
+    }
+
+    @Test
+    void whenSubtasksChangeThenEpicProgressCountsByStatus() {
+        Subtask subtask3 = new Subtask("subtask3", "desc", NEW, epic1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask3);
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(2, 0, 0));
+        Subtask updated = new Subtask("subtask1", "desc", DONE, epic1);
+        updated.setId(subtask1.getId());
+        taskDao.updateSubtask(updated);
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(1, 0, 1));
+        taskDao.deleteSubtask(subtask3.getId());
+        EpicProgress progress = taskDao.getEpicProgress(epic1.getId());
+        assertThat(progress).isEqualTo(new EpicProgress(0, 0, 1));
+        assertThat(progress.status()).isEqualTo(DONE);
+        assertThat(progress.percent()).isEqualTo(100);
+    }
+
+    @Test
+    void whenGetByIdsThenFoundTasksOfAllTypesInRequestedOrder() {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        int[] ids = {subtask1.getId(), 555, task1.getId(), epic1.getId(), task1.getId()};
+        TaskType[] types = {SUBTASK, TASK, TASK, EPIC, EPIC};
+        List<Task> result = taskDao.getByIds(ids, types);
+        assertThat(result).containsExactly(subtask1, task1, epic1);
+        Epic epic = (Epic) result.get(2);
+        assertThat(epic.getSubtasks()).containsExactly(subtask1);
+        assertThat(((Subtask) result.get(0)).getEpic().getId()).isEqualTo(epic1.getId());
+    }
 }
@@ -5,11 +5,13 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Properties;
 import org.junit.jupiter.api.*;
 import ru.kanban.model.Task;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static ru.kanban.model.Status.NEW;
 
 class DbHistoryDaoTest extends HistoryDaoTest {
@@ -92,4 +94,44 @@ class DbHistoryDaoTest extends HistoryDaoTest {
         historyDao.addToHistory(subtask1);
         assertThat(historyDao.getViewedTasks()).containsExactly(task1, epic1, subtask1);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenCapacityConfiguredThenHistoryKeepsThatManyTasks() {
+        HistoryDao limited = new DbHistoryDao(connection, 2);
+        limited.addToHistory(task1);
+        limited.addToHistory(task2);
+        limited.addToHistory(task3);
+        assertThat(limited.getViewedTasks()).hasSize(2);
+        limited.addAll(List.of(epic1, epic2, subtask1));
+        assertThat(limited.getViewedTasks()).hasSize(2);
+    }
+
+    @Test
+    void whenCapacityIsNotPositiveThenException() {
+        assertThatThrownBy(() -> new DbHistoryDao(connection, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenUsersViewTasksThenHistoriesAreSeparate() {
+        historyDao.addToHistory(1, task1);
+        historyDao.addToHistory(2, task2);
+        historyDao.addAll(2, List.of(task3));
+        assertThat(historyDao.getViewedTasks(1)).extracting(Task::getId).containsExactly(task1.getId());
+        assertThat(historyDao.getViewedTasks(2)).extracting(Task::getId)
+                .containsExactlyInAnyOrder(task2.getId(), task3.getId());
+        assertThat(historyDao.getViewedTasks()).isEmpty();
+        historyDao.remove(task2.getId());
+        assertThat(historyDao.getViewedTasks(2)).extracting(Task::getId).containsExactly(task3.getId());
+    }
+
+    @Test
+    void whenUserHistoryFullThenOtherUsersNotTrimmed() {
+        HistoryDao limited = new DbHistoryDao(connection, 1);
+        limited.addToHistory(1, task1);
+        limited.addToHistory(2, task2);
+        limited.addToHistory(2, task3);
+        assertThat(limited.getViewedTasks(1)).extracting(Task::getId).containsExactly(task1.getId());
+        assertThat(limited.getViewedTasks(2)).hasSize(1);
+    }
+}
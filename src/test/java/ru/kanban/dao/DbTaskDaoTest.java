@@ -1,12 +1,29 @@
 package ru.kanban.dao;
 
 import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
 import org.junit.jupiter.api.*;
+import ru.kanban.model.EpicProgress;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static ru.kanban.model.Status.*;
+import static ru.kanban.model.TaskType.SUBTASK;
 
 class DbTaskDaoTest extends DaoTest {
     private static Connection connection;
@@ -75,4 +92,130 @@ class DbTaskDaoTest extends DaoTest {
         taskDao.getEpic(epic2.getId());
         taskDao.deleteAllSubtasks();
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenSubtaskStatusChangedThenEpicCountersAndStatusSettledInDb() {
+        Subtask subtask3 = new Subtask("subtask3", "desc", NEW, epic1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtasks(List.of(subtask1, subtask3));
+        Subtask updated = new Subtask("subtask1", "desc", DONE, epic1);
+        updated.setId(subtask1.getId());
+        taskDao.updateSubtask(updated);
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(IN_PROGRESS);
+        taskDao.renewAllStatuses(SUBTASK.name(), DONE.name());
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(0, 0, 2));
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(DONE);
+        taskDao.deleteSubtask(subtask3.getId());
+        taskDao.deleteAllSubtasks();
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(EpicProgress.EMPTY);
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(NEW);
+    }
+
+    /**
+     * H2 не поддерживает изменяющие CTE, поэтому запрос для PostgreSQL проверяется на соединении-заглушке,
+     * которое представляется PostgreSQL и запоминает подготовленные запросы и их параметры
+     */
+    @Test
+    void whenPostgresThenSubtaskAndEpicCountersUpdatedByOneStatement() {
+        List<String> prepared = new ArrayList<>();
+        Map<Integer, Object> params = new TreeMap<>();
+        int[] updatedRows = {1};
+        PreparedStatement statement = stub(PreparedStatement.class, (method, args) -> switch (method) {
+            case "setString", "setInt" -> params.put((Integer) args[0], args[1]);
+            case "executeUpdate" -> updatedRows[0];
+            default -> null;
+        });
+        DatabaseMetaData metaData = stub(DatabaseMetaData.class,
+                (method, args) -> "getDatabaseProductName".equals(method) ? "PostgreSQL" : null);
+        Connection postgres = stub(Connection.class, (method, args) -> switch (method) {
+            case "getMetaData" -> metaData;
+            case "getAutoCommit" -> true;
+            case "prepareStatement" -> {
+                prepared.add((String) args[0]);
+                yield statement;
+            }
+            default -> null;
+        });
+        TaskDao dao = new DbTaskDao(postgres);
+        epic1.setId(7);
+        Subtask updated = new Subtask("upd", "desc", DONE, epic1);
+        updated.setId(8);
+
+        assertThat(dao.updateSubtask(updated)).containsSame(updated);
+        assertThat(prepared).singleElement().asString()
+                .contains("with changed as", "update tasks e set", "from delta d");
+        assertThat(params).containsExactly(
+                entry(1, "upd"), entry(2, "desc"), entry(3, "DONE"), entry(4, 7), entry(5, 8),
+                entry(6, 7));
+
+        updatedRows[0] = 0;
+        assertThat(dao.updateSubtask(updated)).isEmpty();
+        assertThat(prepared).hasSize(2);
+    }
+
+    @Test
+    void whenPostgresThenTasksDeletedAndReturnedByOneStatement() {
+        List<String> prepared = new ArrayList<>();
+        int[] rows = {1};
+        ResultSet resultSet = stub(ResultSet.class, (method, args) -> switch (method) {
+            case "next" -> rows[0]-- > 0;
+            case "getInt" -> 3;
+            case "getString" -> "status".equals(args[0]) ? "DONE" : "deleted";
+            default -> null;
+        });
+        PreparedStatement statement = stub(PreparedStatement.class,
+                (method, args) -> "executeQuery".equals(method) ? resultSet : null);
+        DatabaseMetaData metaData = stub(DatabaseMetaData.class,
+                (method, args) -> "getDatabaseProductName".equals(method) ? "PostgreSQL" : null);
+        Connection postgres = stub(Connection.class, (method, args) -> switch (method) {
+            case "getMetaData" -> metaData;
+            case "createArrayOf" -> stub(Array.class, (arrayMethod, arrayArgs) -> null);
+            case "prepareStatement" -> {
+                prepared.add((String) args[0]);
+                yield statement;
+            }
+            default -> null;
+        });
+        Task expected = new Task("deleted", "deleted", DONE);
+        expected.setId(3);
+
+        assertThat(new DbTaskDao(postgres).deleteTasks(3, 4)).containsExactly(expected);
+        assertThat(prepared).singleElement().asString().contains("delete from tasks", "returning");
+    }
+
+    @Test
+    void whenPostgresThenSubtaskDeletedWithEpicCountersByOneStatement() {
+        List<String> prepared = new ArrayList<>();
+        int[] rows = {1};
+        ResultSet resultSet = stub(ResultSet.class, (method, args) -> switch (method) {
+            case "next" -> rows[0]-- > 0;
+            case "getInt" -> "e_id".equals(args[0]) ? 7 : 8;
+            case "getString" -> ((String) args[0]).endsWith("status") ? "DONE" : "deleted";
+            default -> null;
+        });
+        PreparedStatement statement = stub(PreparedStatement.class,
+                (method, args) -> "executeQuery".equals(method) ? resultSet : null);
+        DatabaseMetaData metaData = stub(DatabaseMetaData.class,
+                (method, args) -> "getDatabaseProductName".equals(method) ? "PostgreSQL" : null);
+        Connection postgres = stub(Connection.class, (method, args) -> switch (method) {
+            case "getMetaData" -> metaData;
+            case "prepareStatement" -> {
+                prepared.add((String) args[0]);
+                yield statement;
+            }
+            default -> null;
+        });
+
+        Subtask deleted = new DbTaskDao(postgres).deleteSubtask(8).get();
+        assertThat(deleted.getId()).isEqualTo(8);
+        assertThat(deleted.getEpic().getId()).isEqualTo(7);
+        assertThat(prepared).singleElement().asString()
+                .contains("delete from tasks", "update tasks e set", "left join epic e");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, BiFunction<String, Object[], Object> answer) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                (proxy, method, args) -> answer.apply(method.getName(), args));
+    }
+}
@@ -3,7 +3,9 @@ package ru.kanban.dao;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.file.Files;
 import org.junit.jupiter.api.Test;
+import ru.kanban.storage.Durability;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -41,5 +43,17 @@ class FileBackedHistoryDaoTest extends HistoryDaoTest {
         assertThat(historyFile).isEmpty();
     }
 
+    @Test
+    void whenBatchedDurabilityThenFlushWritesQueuedViews() throws IOException {
+        task1.setId(1);
+        epic1.setId(2);
+        FileBackedHistoryDao batched = new FileBackedHistoryDao(tempFile.toString(), Durability.BATCHED);
+        batched.addToHistory(task1);
+        batched.addToHistory(epic1);
+        batched.flush();
+        assertThat(Files.readAllLines(tempFile.toPath())).containsExactly(
+                "1,TASK,task1,NEW,desc,",
+                "2,EPIC,epic1,NEW,desc,");
+        batched.close();
+    }
 }
-
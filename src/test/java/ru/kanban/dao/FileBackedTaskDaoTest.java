@@ -3,12 +3,14 @@ package ru.kanban.dao;
 import java.io.*;
 import java.util.List;
 import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.StorageOptions;
 import ru.kanban.model.Epic;
 import ru.kanban.model.Subtask;
 import ru.kanban.model.Task;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.DONE;
 import static ru.kanban.model.Status.IN_PROGRESS;
 import static ru.kanban.model.Status.NEW;
 
@@ -135,6 +137,21 @@ class FileBackedTaskDaoTest extends DaoTest {
         assertThat(subtasksAfterLoad).containsAll(subtasksBeforeLoad);
     }
 
+    @Test
+    void whenBatchMutateThenLoadFromFileHasSameContent() throws IOException {
+        String[] args = {tempFile.toString(), tempHistoryFile.toString()};
+        taskDao.addEpic(epic1);
+        taskDao.addTasks(List.of(task1, task2, task3));
+        taskDao.addSubtasks(List.of(subtask1));
+        Task updated = new Task("updated", "desc", DONE);
+        updated.setId(task2.getId());
+        taskDao.updateTasks(List.of(updated));
+        taskDao.deleteTasks(task1.getId());
+        FileBackedTaskDao newManager = FileBackedTaskDao.loadFromFile(args);
+        assertThat(newManager.getTasks()).containsOnly(updated, task3);
+        assertThat(newManager.getSubtasks()).containsExactly(subtask1);
+    }
+
     @Test
     void whenNotEnoughArgumentsThenExceptionThrown() {
         String[] args = {tempFile.toString()};
@@ -401,4 +418,77 @@ class FileBackedTaskDaoTest extends DaoTest {
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessageContaining("Epic ID at subtask: Subtask is missing");
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenLoadFileLargerThanReadBufferThenAllTasksRestored() throws IOException {
+        for (int i = 0; i < 5000; i++) {
+            taskDao.addTask(new Task("task" + i, "description of task " + i, NEW));
+        }
+        String[] args = {tempFile.toString(), tempHistoryFile.toString()};
+        FileBackedTaskDao loaded = FileBackedTaskDao.loadFromFile(args);
+        assertThat(loaded.getTasks()).hasSize(5000);
+        assertThat(loaded.getTask(5000).get().getDescription()).isEqualTo("description of task 4999");
+    }
+
+    @Test
+    void whenTaskFileHasWindowsLineEndingsThenTasksRestored() throws IOException {
+        try (PrintWriter writer = new PrintWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile))
+        )) {
+            writer.print("id,type,name,status,description,epic\r\n");
+            writer.print("1,EPIC,Epic,NEW,Desc,\r\n");
+            writer.print("2,SUBTASK,Subtask,IN_PROGRESS,Desc,1\r\n");
+        }
+        String[] args = {tempFile.toString(), tempHistoryFile.toString()};
+        FileBackedTaskDao loaded = FileBackedTaskDao.loadFromFile(args);
+        assertThat(loaded.getSubtask(2).get().getEpic()).isSameAs(loaded.getEpic(1).get());
+        assertThat(loaded.getSubtask(2).get().getStatus()).isEqualTo(IN_PROGRESS);
+    }
+
+    @Test
+    void whenParallelLoadThenSubtasksBeforeEpicsAreResolved() throws IOException {
+        try (PrintWriter writer = new PrintWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile))
+        )) {
+            writer.println("id,type,name,status,description,epic");
+            for (int i = 1; i <= 50_000; i++) {
+                writer.println((i + 50_000) + ",SUBTASK,Subtask " + i + ",DONE,Description " + i + "," + i);
+            }
+            for (int i = 1; i <= 50_000; i++) {
+                writer.println(i + ",EPIC,Epic " + i + ",NEW,Description " + i + ",");
+            }
+        }
+        StorageOptions options = new StorageOptions();
+        options.setLoadParallelism(4);
+        String[] args = {tempFile.toString(), tempHistoryFile.toString()};
+        FileBackedTaskDao loaded = FileBackedTaskDao.loadFromFile(args, options);
+
+        assertThat(loaded.getEpics()).hasSize(50_000);
+        assertThat(loaded.getSubtasks()).hasSize(50_000);
+        assertThat(loaded.getSubtask(100_000).get().getEpic()).isSameAs(loaded.getEpic(50_000).get());
+        assertThat(loaded.getEpic(1).get().getStatus()).isEqualTo(DONE);
+        assertThat(loaded.addTask(new Task("task", "desc", NEW)).getId()).isEqualTo(100_001);
+    }
+
+    @Test
+    void whenParallelLoadWithBrokenRecordsThenFirstErrorInFileIsThrown() throws IOException {
+        try (PrintWriter writer = new PrintWriter(
+                new OutputStreamWriter(new FileOutputStream(tempFile))
+        )) {
+            writer.println("id,type,name,status,description,epic");
+            for (int i = 1; i <= 100_000; i++) {
+                writer.println(i + ",TASK,Task " + i + ",NEW,Description " + i + ",");
+            }
+            writer.println("x,TASK,Task,NEW,Description,");
+            for (int i = 1; i <= 100_000; i++) {
+                writer.println(i + ",TASK,Task " + i + ",UNKNOWN,Description " + i + ",");
+            }
+        }
+        StorageOptions options = new StorageOptions();
+        options.setLoadParallelism(4);
+        String[] args = {tempFile.toString(), tempHistoryFile.toString()};
+        assertThatThrownBy(() -> FileBackedTaskDao.loadFromFile(args, options))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Task ID is missing.");
+    }
+}
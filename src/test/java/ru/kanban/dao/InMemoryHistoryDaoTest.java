@@ -1,5 +1,15 @@
 package ru.kanban.dao;
 
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import ru.kanban.model.Epic;
+import ru.kanban.model.Task;
+import ru.kanban.model.TaskType;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.NEW;
+
 class InMemoryHistoryDaoTest extends HistoryDaoTest {
 
     @Override
@@ -7,4 +17,66 @@ class InMemoryHistoryDaoTest extends HistoryDaoTest {
         return new InMemoryHistoryDao();
     }
 
-}
\ No newline at end of file
+    @Test
+    void whenCapacityIsNotPositiveThenException() {
+        assertThatThrownBy(() -> new InMemoryHistoryDao(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenLargeCapacityThenKeepsLastViewedInOrder() {
+        int capacity = 100_000;
+        InMemoryHistoryDao history = new InMemoryHistoryDao(capacity);
+        for (int id = 1; id <= capacity + 10; id++) {
+            Task task = new Task("task" + id, "desc", NEW);
+            task.setId(id);
+            history.addToHistory(task);
+        }
+        Task reviewed = history.getViewedTasks().get(0);
+        history.addToHistory(reviewed);
+        List<Task> viewed = history.getViewedTasks();
+        assertThat(viewed).hasSize(capacity);
+        assertThat(viewed.get(0).getId()).isEqualTo(12);
+        assertThat(viewed.get(capacity - 1)).isSameAs(reviewed);
+        assertThat(reviewed.getId()).isEqualTo(11);
+    }
+
+    @Test
+    void whenTaskDaoGivenThenHistoryReadsCurrentTasksInOneCall() {
+        int[] calls = new int[1];
+        TaskDao taskDao = new InMemoryTaskDao() {
+            @Override
+            public List<Task> getByIds(int[] ids, TaskType[] types) {
+                calls[0]++;
+                return super.getByIds(ids, types);
+            }
+        };
+        HistoryDao history = new InMemoryHistoryDao(taskDao);
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        history.addToHistory(task1);
+        history.addToHistory(task2);
+        Task updated = new Task("renamed", "desc", NEW);
+        updated.setId(task1.getId());
+        taskDao.updateTask(updated);
+        taskDao.deleteTask(task2.getId());
+        assertThat(history.getViewedTasks()).singleElement().isSameAs(updated);
+        assertThat(calls[0]).isEqualTo(1);
+    }
+
+    @Test
+    void whenDeleteAllByTypeThenOtherTypesKeepOrder() {
+        InMemoryHistoryDao history = new InMemoryHistoryDao(1000);
+        for (int id = 1; id <= 1000; id++) {
+            Task task = id % 3 == 0 ? new Epic("epic" + id, "desc", NEW) : new Task("task" + id, "desc", NEW);
+            task.setId(id);
+            history.addToHistory(task);
+        }
+        history.deleteAllByType("TASK");
+        List<Task> viewed = history.getViewedTasks();
+        assertThat(viewed).hasSize(333).allMatch(task -> task instanceof Epic);
+        assertThat(viewed).extracting(Task::getId).isSorted();
+        history.deleteAllByType("EPIC");
+        assertThat(history.getViewedTasks()).isEmpty();
+    }
+}
@@ -1,10 +1,105 @@
 package ru.kanban.dao;
 
 import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.Test;
+import ru.kanban.model.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
 
 class InMemoryTaskDaoTest extends DaoTest {
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 2000;
+
     @Override
     TaskDao createDao() throws IOException {
         return new InMemoryTaskDao();
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenParallelWritersThenEpicsAndSubtasksStayConsistent() throws Exception {
+        List<Epic> epics = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            epics.add(taskDao.addEpic(new Epic("epic" + i, "desc", Status.NEW)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                Status[] statuses = Status.values();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    Epic epic = epics.get(random.nextInt(epics.size()));
+                    Status status = statuses[random.nextInt(statuses.length)];
+                    int id = random.nextInt(1, OPERATIONS * THREADS);
+                    switch (random.nextInt(5)) {
+                        case 0, 1 -> taskDao.addSubtask(new Subtask("subtask", "desc", status, epic));
+                        case 2 -> {
+                            Subtask update = new Subtask("updated", "desc", status, epic);
+                            update.setId(id);
+                            taskDao.updateSubtask(update);
+                        }
+                        case 3 -> taskDao.getSubtask(id).ifPresent(subtask -> subtask.setStatus(status));
+                        default -> taskDao.deleteSubtask(id);
+                    }
+                    taskDao.addTask(new Task("task", "desc", status));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        executor.shutdown();
+
+        List<Subtask> subtasks = taskDao.getSubtasks();
+        Set<Integer> ids = new HashSet<>();
+        taskDao.getTasks().forEach(task -> ids.add(task.getId()));
+        epics.forEach(epic -> ids.add(epic.getId()));
+        subtasks.forEach(subtask -> ids.add(subtask.getId()));
+        assertThat(ids).hasSize(THREADS * OPERATIONS + epics.size() + subtasks.size());
+        for (Epic epic : epics) {
+            List<Subtask> expected = subtasks.stream()
+                    .filter(subtask -> subtask.getEpic() == epic)
+                    .toList();
+            assertThat(epic.getSubtasks()).containsExactlyInAnyOrderElementsOf(expected);
+            EpicProgress progress = new EpicProgress(
+                    (int) expected.stream().filter(subtask -> subtask.getStatus() == Status.NEW).count(),
+                    (int) expected.stream().filter(subtask -> subtask.getStatus() == Status.IN_PROGRESS).count(),
+                    (int) expected.stream().filter(subtask -> subtask.getStatus() == Status.DONE).count());
+            assertThat(taskDao.getEpicProgress(epic.getId())).isEqualTo(progress);
+            assertThat(epic.getStatus()).isEqualTo(progress.status());
+        }
+    }
+
+    @Test
+    void whenUpdateSubtaskWithUnknownEpicThenEmptyAndSubtaskUnchanged() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        Subtask updated = new Subtask("upd", "desc", Status.DONE, new Epic("unknown", "desc", Status.NEW));
+        updated.setId(subtask1.getId());
+        assertThat(taskDao.updateSubtask(updated)).isEmpty();
+        assertThat(taskDao.getSubtask(subtask1.getId())).containsSame(subtask1);
+        assertThat(epic1.getSubtasks()).containsExactly(subtask1);
+        assertThat(epic1.getStatus()).isEqualTo(Status.NEW);
+    }
+
+    @Test
+    void whenDeleteAllSubtasksThenEpicsSubtasksAndCountersCleared() {
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask2);
+        subtask1.setStatus(Status.DONE);
+        taskDao.deleteAllSubtasks();
+        assertThat(taskDao.getSubtasks()).isEmpty();
+        assertThat(epic1.getSubtasks()).isEmpty();
+        assertThat(epic2.getSubtasks()).isEmpty();
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(EpicProgress.EMPTY);
+        assertThat(epic1.getStatus()).isEqualTo(Status.NEW);
+    }
+}
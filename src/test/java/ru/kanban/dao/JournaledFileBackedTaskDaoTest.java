@@ -0,0 +1,140 @@
+package ru.kanban.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.utils.Managers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.DONE;
+import static ru.kanban.model.Status.IN_PROGRESS;
+import static ru.kanban.utils.Constants.HEADER;
+import static ru.kanban.utils.Constants.JOURNAL_EXTENSION;
+
+class JournaledFileBackedTaskDaoTest extends DaoTest {
+    private File tempFile;
+    private File tempHistoryFile;
+
+    @Override
+    TaskDao createDao() throws IOException {
+        tempHistoryFile = File.createTempFile("temp_history", ".csv");
+        tempFile = File.createTempFile("temp", ".csv");
+        return Managers.getJournaledFileBackedManager(tempFile.toString());
+    }
+
+    private Path journal() {
+        return Path.of(tempFile + JOURNAL_EXTENSION);
+    }
+
+    private FileBackedTaskDao reload() throws IOException {
+        return FileBackedTaskDao.loadFromFile(new String[]{tempFile.toString(), tempHistoryFile.toString()});
+    }
+
+    @Test
+    void whenMutateThenSnapshotIsNotRewrittenAndJournalGrows() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        task2.setId(task1.getId());
+        taskDao.updateTask(task2);
+        taskDao.deleteSubtask(subtask1.getId());
+        assertThat(Files.readAllLines(tempFile.toPath())).containsExactly(HEADER);
+        assertThat(Files.readAllLines(journal())).containsExactly(
+                "ADD,1,TASK,task1,NEW,desc,",
+                "ADD,2,EPIC,epic1,NEW,desc,",
+                "ADD,3,SUBTASK,subtask1,NEW,desc,2",
+                "UPDATE,1,TASK,task2,IN_PROGRESS,desc,",
+                "DELETE,3,SUBTASK");
+    }
+
+    @Test
+    void whenBatchMutateThenJournalIsReplayedAfterReload() throws IOException {
+        taskDao.addEpic(epic1);
+        taskDao.addTasks(List.of(task1, task2, task3));
+        taskDao.addSubtasks(List.of(subtask1, new Subtask("subtask3", "desc", DONE, epic1)));
+        Task updated = new Task("updated", "desc", DONE);
+        updated.setId(task2.getId());
+        taskDao.updateTasks(List.of(updated));
+        taskDao.deleteTasks(task1.getId(), task3.getId());
+
+        FileBackedTaskDao loaded = reload();
+
+        assertThat(loaded.getTasks()).containsExactly(updated);
+        assertThat(loaded.getSubtasks()).hasSize(2);
+        assertThat(Files.readAllLines(journal())).hasSize(9);
+    }
+
+    @Test
+    void whenLoadFromFileThenJournalIsReplayedOverSnapshot() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask2);
+        Task updated = new Task("updated", "desc", DONE);
+        updated.setId(task2.getId());
+        taskDao.updateTask(updated);
+        taskDao.deleteTask(task1.getId());
+        taskDao.deleteEpic(epic2.getId());
+        taskDao.updateEpicStatus(epic1.getId(), IN_PROGRESS);
+
+        FileBackedTaskDao loaded = reload();
+
+        assertThat(loaded.isJournaled()).isTrue();
+        assertThat(loaded.getTasks()).containsExactly(updated);
+        assertThat(loaded.getTask(task2.getId()).get().getName()).isEqualTo("updated");
+        assertThat(loaded.getEpics()).containsExactly(epic1);
+        assertThat(loaded.getEpic(epic1.getId()).get().getStatus()).isEqualTo(IN_PROGRESS);
+        assertThat(loaded.getSubtasks()).containsExactly(subtask1);
+    }
+
+    @Test
+    void whenLoadFromFileThenIdsAreKeptAndNewIdsContinueSequence() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        taskDao.addTask(task3);
+        taskDao.deleteTask(task1.getId());
+        taskDao.deleteTask(task2.getId());
+
+        FileBackedTaskDao loaded = reload();
+        Task added = loaded.addTask(new Task("task4", "desc", IN_PROGRESS));
+
+        assertThat(loaded.getTask(task3.getId())).contains(task3);
+        assertThat(added.getId()).isEqualTo(task3.getId() + 1);
+    }
+
+    @Test
+    void whenSaveThenJournalIsCleared() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        ((FileBackedTaskDao) taskDao).save();
+        taskDao.addSubtask(subtask1);
+
+        assertThat(Files.readAllLines(journal())).containsExactly("ADD,3,SUBTASK,subtask1,NEW,desc,2");
+        FileBackedTaskDao loaded = reload();
+        assertThat(loaded.getTasks()).containsExactly(task1);
+        assertThat(loaded.getEpics()).containsExactly(epic1);
+        assertThat(loaded.getSubtasks()).containsExactly(subtask1);
+    }
+
+    @Test
+    void whenDeleteAllThenClearIsReplayed() throws IOException {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        taskDao.deleteAllEpics();
+
+        FileBackedTaskDao loaded = reload();
+
+        assertThat(loaded.getTasks()).containsExactly(task1);
+        assertThat(loaded.getEpics()).isEmpty();
+        assertThat(loaded.getSubtasks()).isEmpty();
+        assertThat(Files.readAllLines(journal())).endsWith("CLEAR,EPIC");
+    }
+}
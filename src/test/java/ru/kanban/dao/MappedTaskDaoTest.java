@@ -0,0 +1,138 @@
+package ru.kanban.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.kanban.model.Epic;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.DONE;
+import static ru.kanban.model.Status.NEW;
+
+class MappedTaskDaoTest extends DaoTest {
+    private File tempFile;
+
+    @Override
+    TaskDao createDao() throws IOException {
+        tempFile = File.createTempFile("temp", ".map");
+        tempFile.delete();
+        return new MappedTaskDao(tempFile.toString());
+    }
+
+    @AfterEach
+    void close() {
+        ((MappedTaskDao) taskDao).close();
+    }
+
+    private MappedTaskDao reopen() {
+        ((MappedTaskDao) taskDao).close();
+        taskDao = new MappedTaskDao(tempFile.toString());
+        return (MappedTaskDao) taskDao;
+    }
+
+    @Test
+    void whenReopenThenStateIsRestored() {
+        taskDao.addTask(task1);
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        taskDao.addTask(task2);
+        taskDao.deleteTask(task1.getId());
+
+        MappedTaskDao reopened = reopen();
+
+        assertThat(reopened.getTasks()).containsExactly(task2);
+        assertThat(reopened.getEpics()).containsExactly(epic1);
+        assertThat(reopened.getSubtask(subtask1.getId()).orElseThrow().getEpic().getId()).isEqualTo(epic1.getId());
+        assertThat(reopened.getEpicSubtasksStatuses(epic1.getId())).containsExactly(subtask1.getStatus());
+    }
+
+    @Test
+    void whenReopenThenIdsContinue() {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+
+        MappedTaskDao reopened = reopen();
+        Task added = reopened.addTask(new Task("task", "desc", NEW));
+
+        assertThat(added.getId()).isEqualTo(task2.getId() + 1);
+    }
+
+    @Test
+    void whenUpdateDoesntFitThenRecordIsRelocated() {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        task1.setDescription("a much longer description that does not fit into the original record");
+        task1.setStatus(DONE);
+
+        taskDao.updateTask(task1);
+        MappedTaskDao reopened = reopen();
+
+        assertThat(reopened.getTask(task1.getId())).contains(task1);
+        assertThat(reopened.getTasks()).containsExactlyInAnyOrder(task1, task2);
+    }
+
+    @Test
+    void whenRecordIsDeletedThenItsSpaceIsReused() {
+        taskDao.addTask(task1);
+        taskDao.deleteTask(task1.getId());
+        taskDao.addTask(task2);
+
+        MappedTaskDao reopened = reopen();
+
+        assertThat(reopened.getTasks()).containsExactly(task2);
+    }
+
+    @Test
+    void whenManyRecordsThenFileGrows() {
+        for (int i = 0; i < 100; i++) {
+            Epic epic = taskDao.addEpic(new Epic("epic" + i, "desc", NEW));
+            for (int j = 0; j < 100; j++) {
+                taskDao.addSubtask(new Subtask("subtask" + j, "d".repeat(100), NEW, epic));
+            }
+        }
+
+        MappedTaskDao reopened = reopen();
+
+        assertThat(reopened.getEpics()).hasSize(100);
+        assertThat(reopened.getSubtasks()).hasSize(10_000);
+    }
+
+    @Test
+    void whenDeleteEpicThenItsSubtasksAreDeleted() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+
+        taskDao.deleteEpic(epic1.getId());
+
+        assertThat(reopen().getSubtasks()).isEmpty();
+    }
+
+    @Test
+    void whenSubtaskReadThenSiblingsAreReadOnlyWhenEpicSubtasksRequested() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        Subtask read = taskDao.getSubtask(subtask1.getId()).orElseThrow();
+        Subtask sibling = taskDao.addSubtask(new Subtask("sibling", "desc", DONE, epic1));
+
+        Epic epic = read.getEpic();
+
+        assertThat(epic.getSubtasks()).containsExactly(subtask1, sibling);
+        assertThat(epic.getSubtasks().get(0)).isSameAs(read);
+        assertThat(epic.getProgress()).isEqualTo(taskDao.getEpicProgress(epic1.getId()));
+    }
+
+    @Test
+    void whenFileIsNotMappedStorageThenException() throws IOException {
+        File other = File.createTempFile("temp", ".map");
+        Files.writeString(other.toPath(), "not a mapped storage file");
+
+        assertThatThrownBy(() -> new MappedTaskDao(other.toString()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Illegal mapped file header.");
+    }
+}
@@ -0,0 +1,56 @@
+package ru.kanban.dao;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import org.junit.jupiter.api.*;
+import ru.kanban.configurations.PoolOptions;
+import ru.kanban.utils.ConnectionPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledDbTaskDaoTest extends DaoTest {
+    private static ConnectionPool pool;
+
+    @Override
+    TaskDao createDao() {
+        return new DbTaskDao(pool);
+    }
+
+    @BeforeAll
+    public static void initPool() {
+        try (InputStream in = DbTaskDao.class.getClassLoader().getResourceAsStream("db/test.properties")) {
+            Properties config = new Properties();
+            config.load(in);
+            pool = new ConnectionPool(
+                    config.getProperty("url"),
+                    config.getProperty("username"),
+                    config.getProperty("password"),
+                    new PoolOptions());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @AfterAll
+    public static void closePool() {
+        pool.close();
+    }
+
+    @BeforeEach
+    public void wipeTable() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement deleteHistory = connection.prepareStatement("DELETE from history");
+             PreparedStatement deleteTasks = connection.prepareStatement("DELETE from tasks")) {
+            deleteHistory.execute();
+            deleteTasks.execute();
+        }
+    }
+
+    @AfterEach
+    public void checkConnectionsReturned() {
+        assertThat(pool.getActiveCount()).isZero();
+    }
+}
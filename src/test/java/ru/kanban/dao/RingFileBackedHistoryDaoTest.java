@@ -0,0 +1,136 @@
+package ru.kanban.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.StorageOptions;
+import ru.kanban.model.Epic;
+import ru.kanban.model.Task;
+import ru.kanban.storage.HistoryRing;
+import ru.kanban.storage.TaskFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.NEW;
+import static ru.kanban.utils.Constants.HISTORY_SIZE;
+
+class RingFileBackedHistoryDaoTest extends HistoryDaoTest {
+    private File tempFile;
+
+    @Override
+    HistoryDao createHistoryDao() throws IOException {
+        tempFile = File.createTempFile("temp_history", ".bin");
+        return new FileBackedHistoryDao(tempFile.toString(), ringOptions());
+    }
+
+    @AfterEach
+    void close() {
+        ((FileBackedHistoryDao) historyDao).close();
+    }
+
+    private StorageOptions ringOptions() {
+        StorageOptions options = new StorageOptions();
+        options.setHistoryRing(true);
+        return options;
+    }
+
+    private FileBackedHistoryDao reopen() {
+        ((FileBackedHistoryDao) historyDao).close();
+        FileBackedHistoryDao reopened = new FileBackedHistoryDao(tempFile.toString());
+        historyDao = reopened;
+        reopened.loadRing(record -> {
+            Task task = new Task(record.getName(), record.getDescription(), record.getStatus());
+            task.setId(record.getId());
+            return task;
+        });
+        return reopened;
+    }
+
+    private List<Task> tasks(int count) {
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Task task = new Task("task" + i, "desc", NEW);
+            task.setId(i);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    @Test
+    void whenManyViewsThenFileSizeIsConstant() throws IOException {
+        long size = Files.size(tempFile.toPath());
+        tasks(1000).forEach(historyDao::addToHistory);
+
+        assertThat(Files.size(tempFile.toPath())).isEqualTo(size)
+                .isEqualTo(HistoryRing.HEADER_SIZE + (long) HISTORY_SIZE * HistoryRing.DEFAULT_SLOT_SIZE);
+        assertThat(((FileBackedHistoryDao) historyDao).getFormat()).isEqualTo(TaskFormat.BINARY);
+    }
+
+    @Test
+    void whenReopenThenOnlyRetainedViewsAreRestoredInOrder() {
+        List<Task> tasks = tasks(25);
+        tasks.forEach(historyDao::addToHistory);
+        historyDao.addToHistory(tasks.get(16));
+
+        FileBackedHistoryDao reopened = reopen();
+
+        assertThat(reopened.isRing()).isTrue();
+        assertThat(reopened.getViewedTasks()).isEqualTo(historyDao.getViewedTasks());
+        assertThat(reopened.getViewedTasks()).extracting(Task::getId)
+                .containsExactly(16, 18, 19, 20, 21, 22, 23, 24, 25, 17);
+    }
+
+    @Test
+    void whenViewsAfterReopenThenLeastRecentlyViewedSlotsAreReused() {
+        List<Task> tasks = tasks(14);
+        tasks.subList(0, 10).forEach(historyDao::addToHistory);
+        historyDao.remove(5);
+        FileBackedHistoryDao reopened = reopen();
+        reopened.addToHistory(tasks.get(0));
+        tasks.subList(10, 14).forEach(reopened::addToHistory);
+
+        assertThat(reopen().getViewedTasks()).extracting(Task::getId)
+                .containsExactly(6, 7, 8, 9, 10, 1, 11, 12, 13, 14);
+    }
+
+    @Test
+    void whenRemoveThenViewIsNotRestored() {
+        List<Task> tasks = tasks(3);
+        tasks.forEach(historyDao::addToHistory);
+        historyDao.remove(2);
+
+        FileBackedHistoryDao reopened = reopen();
+
+        assertThat(reopened.getViewedTasks()).extracting(Task::getId).containsExactly(1, 3);
+    }
+
+    @Test
+    void whenRecordExceedsSlotThenItIsShortened() {
+        Task task = new Task("task", "d".repeat(5000), NEW);
+        task.setId(1);
+        historyDao.addToHistory(task);
+
+        FileBackedHistoryDao reopened = reopen();
+
+        Task restored = reopened.getViewedTasks().get(0);
+        assertThat(restored.getName()).isEqualTo("task");
+        assertThat(restored.getDescription()).startsWith("ddd").hasSizeLessThan(HistoryRing.DEFAULT_SLOT_SIZE);
+    }
+
+    @Test
+    void whenDeleteAllByTypeThenViewsOfTypeAreNotRestored() {
+        List<Task> tasks = tasks(2);
+        tasks.forEach(historyDao::addToHistory);
+        Epic epic = new Epic("epic", "desc", NEW);
+        epic.setId(3);
+        historyDao.addToHistory(epic);
+        historyDao.deleteAllByType("TASK");
+
+        FileBackedHistoryDao reopened = reopen();
+
+        assertThat(reopened.getViewedTasks()).extracting(Task::getId).containsExactly(3);
+    }
+}
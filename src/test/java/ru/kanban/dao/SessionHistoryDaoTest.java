@@ -0,0 +1,116 @@
+package ru.kanban.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.kanban.model.Task;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.NEW;
+import static ru.kanban.utils.Constants.HISTORY_SIZE;
+
+class SessionHistoryDaoTest extends HistoryDaoTest {
+    private TaskDao taskDao;
+
+    @Override
+    HistoryDao createHistoryDao() {
+        taskDao = new InMemoryTaskDao();
+        return new SessionHistoryDao(taskDao, HISTORY_SIZE, 1 << 20);
+    }
+
+    @BeforeEach
+    void addTasks() {
+        taskDao.addTask(task1);
+        taskDao.addTask(task2);
+        taskDao.addTask(task3);
+        taskDao.addEpic(epic1);
+        taskDao.addEpic(epic2);
+        taskDao.addSubtask(subtask1);
+        taskDao.addSubtask(subtask2);
+    }
+
+    @Override
+    @Test
+    void whenAddAllTypesOfTaskThenHistoryContainsAll() {
+        historyDao.addToHistory(task1);
+        historyDao.addToHistory(epic1);
+        historyDao.addToHistory(subtask1);
+        assertThat(historyDao.getViewedTasks()).containsExactly(task1, epic1, subtask1);
+    }
+
+    @Override
+    @Test
+    void whenAddMoreThan10TasksThenHistoryDoesntContainsFirstViewedWillAbsent() {
+        historyDao.addToHistory(task1);
+        historyDao.addToHistory(task2);
+        historyDao.addToHistory(task3);
+        for (int i = 4; i <= 11; i++) {
+            historyDao.addToHistory(taskDao.addTask(new Task("task" + i, "desc", NEW)));
+        }
+        assertThat(historyDao.getViewedTasks()).hasSize(10)
+                .doesNotContain(task1)
+                .contains(task2, task3);
+    }
+
+    @Test
+    void whenUsersViewTasksThenHistoriesAreSeparate() {
+        historyDao.addToHistory(1, task1);
+        historyDao.addToHistory(2, task2);
+        historyDao.addToHistory(2, task1);
+        assertThat(historyDao.getViewedTasks(1)).containsExactly(task1);
+        assertThat(historyDao.getViewedTasks(2)).containsExactly(task2, task1);
+        assertThat(historyDao.getViewedTasks()).isEmpty();
+        assertThat(historyDao.getViewedTasks(3)).isEmpty();
+    }
+
+    @Test
+    void whenRemoveThenRemovedFromEveryUser() {
+        historyDao.addToHistory(1, task1);
+        historyDao.addToHistory(2, task1);
+        historyDao.addToHistory(2, epic1);
+        historyDao.remove(task1.getId());
+        historyDao.deleteAllByType("EPIC");
+        assertThat(historyDao.getViewedTasks(1)).isEmpty();
+        assertThat(historyDao.getViewedTasks(2)).isEmpty();
+    }
+
+    @Test
+    void whenTaskUpdatedThenHistoryShowsCurrentTask() {
+        historyDao.addToHistory(1, task1);
+        Task updated = new Task("renamed", "desc", NEW);
+        updated.setId(task1.getId());
+        taskDao.updateTask(updated);
+        assertThat(historyDao.getViewedTasks(1)).singleElement().isSameAs(updated);
+    }
+
+    @Test
+    void whenBudgetExceededThenIdleSessionEvicted() {
+        long sessionBytes = new SessionHistoryDao(taskDao, HISTORY_SIZE, 1 << 20).getSessionBytes();
+        SessionHistoryDao history = new SessionHistoryDao(taskDao, HISTORY_SIZE, sessionBytes * 2);
+        history.addToHistory(1, task1);
+        history.addToHistory(2, task1);
+        history.getViewedTasks(1);
+        history.addToHistory(3, task1);
+        assertThat(history.getSessionCount()).isEqualTo(2);
+        assertThat(history.getEvictedSessions()).isEqualTo(1);
+        assertThat(history.getViewedTasks(1)).containsExactly(task1);
+        assertThat(history.getViewedTasks(2)).isEmpty();
+    }
+
+    @Test
+    void whenHundredThousandSessionsThenBudgetUnderFiftyMegabytes() {
+        SessionHistoryDao history = new SessionHistoryDao(taskDao, HISTORY_SIZE, 50L << 20);
+        assertThat(history.getMaxSessions()).isGreaterThanOrEqualTo(100_000);
+        for (int user = 1; user <= 100_000; user++) {
+            history.addToHistory(user, task1);
+        }
+        assertThat(history.getSessionCount()).isEqualTo(100_000);
+        assertThat(history.getEvictedSessions()).isZero();
+    }
+
+    @Test
+    void whenBudgetLessThanOneSessionThenException() {
+        assertThatThrownBy(() -> new SessionHistoryDao(taskDao, HISTORY_SIZE, 100))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,281 @@
+package ru.kanban.dao;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.*;
+import ru.kanban.configurations.PoolOptions;
+import ru.kanban.configurations.WriteBehindOptions;
+import ru.kanban.model.EpicProgress;
+import ru.kanban.model.Subtask;
+import ru.kanban.model.Task;
+import ru.kanban.service.HistoryServiceImpl;
+import ru.kanban.service.TaskService;
+import ru.kanban.service.TaskServiceImpl;
+import ru.kanban.utils.ConnectionPool;
+import ru.kanban.validator.TaskValidator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.kanban.model.Status.DONE;
+import static ru.kanban.model.Status.IN_PROGRESS;
+
+class WriteBehindTaskDaoTest extends DaoTest {
+    private static ConnectionPool pool;
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger updates = new AtomicInteger();
+    private DbTaskDao storage;
+
+    @Override
+    TaskDao createDao() {
+        storage = new DbTaskDao(pool) {
+            @Override
+            public List<Task> updateTasks(List<Task> tasks) {
+                batches.incrementAndGet();
+                updates.addAndGet(tasks.size());
+                return super.updateTasks(tasks);
+            }
+
+            @Override
+            public List<Subtask> updateSubtasks(List<Subtask> subtasks) {
+                batches.incrementAndGet();
+                updates.addAndGet(subtasks.size());
+                return super.updateSubtasks(subtasks);
+            }
+        };
+        WriteBehindOptions options = new WriteBehindOptions();
+        options.setFlushInterval(Duration.ofMinutes(1));
+        options.setMaxPending(10);
+        return new WriteBehindTaskDao(storage, options);
+    }
+
+    @BeforeAll
+    public static void initPool() {
+        try (InputStream in = DbTaskDao.class.getClassLoader().getResourceAsStream("db/test.properties")) {
+            Properties config = new Properties();
+            config.load(in);
+            pool = new ConnectionPool(
+                    config.getProperty("url"),
+                    config.getProperty("username"),
+                    config.getProperty("password"),
+                    new PoolOptions());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @AfterAll
+    public static void closePool() {
+        pool.close();
+    }
+
+    @BeforeEach
+    public void wipeTable() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement deleteHistory = connection.prepareStatement("DELETE from history");
+             PreparedStatement deleteTasks = connection.prepareStatement("DELETE from tasks")) {
+            deleteHistory.execute();
+            deleteTasks.execute();
+        }
+    }
+
+    @AfterEach
+    public void closeDao() throws Exception {
+        ((WriteBehindTaskDao) taskDao).close();
+        assertThat(pool.getActiveCount()).isZero();
+    }
+
+    @Test
+    void whenOptionsAreNotPositiveThenException() {
+        WriteBehindOptions options = new WriteBehindOptions();
+        options.setMaxPending(0);
+        assertThatThrownBy(() -> new WriteBehindTaskDao(storage, options))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenTaskUpdatedSeveralTimesThenOnlyLatestStateIsWritten() {
+        WriteBehindTaskDao writeBehind = (WriteBehindTaskDao) taskDao;
+        writeBehind.addTask(task1);
+        for (int i = 1; i <= 3; i++) {
+            Task update = new Task("update" + i, "desc", IN_PROGRESS);
+            update.setId(task1.getId());
+            assertThat(writeBehind.updateTask(update)).contains(update);
+        }
+        assertThat(writeBehind.getPendingCount()).isEqualTo(1);
+        assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("task1");
+        assertThat(writeBehind.getTask(task1.getId()).get().getName()).isEqualTo("update3");
+        assertThat(writeBehind.getTasks()).extracting(Task::getName).containsExactly("update3");
+        writeBehind.flush();
+        assertThat(batches.get()).isEqualTo(1);
+        assertThat(updates.get()).isEqualTo(1);
+        assertThat(writeBehind.getPendingCount()).isZero();
+        assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("update3");
+    }
+
+    @Test
+    void whenUpdatedTaskChangedByCallerThenBufferKeepsUpdatedState() {
+        WriteBehindTaskDao writeBehind = (WriteBehindTaskDao) taskDao;
+        writeBehind.addEpic(epic1);
+        writeBehind.addTask(task1);
+        writeBehind.addSubtask(subtask1);
+        Task update = new Task("updated", "desc", IN_PROGRESS);
+        update.setId(task1.getId());
+        Subtask subtaskUpdate = new Subtask("updated", "desc", IN_PROGRESS, epic1);
+        subtaskUpdate.setId(subtask1.getId());
+        writeBehind.updateTask(update);
+        writeBehind.updateSubtask(subtaskUpdate);
+        update.setName("changed by caller");
+        subtaskUpdate.setName("changed by caller");
+        writeBehind.flush();
+        assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+        assertThat(storage.getSubtask(subtask1.getId()).get().getName()).isEqualTo("updated");
+    }
+
+    @Test
+    void whenUpdateMissingTaskThenEmptyAndNothingBuffered() {
+        task1.setId(666);
+        assertThat(taskDao.updateTask(task1)).isEmpty();
+        assertThat(((WriteBehindTaskDao) taskDao).getPendingCount()).isZero();
+    }
+
+    @Test
+    void whenMaxPendingReachedThenFlushedInOneBatch() {
+        for (int i = 0; i < 10; i++) {
+            Task task = taskDao.addTask(new Task("task" + i, "desc", IN_PROGRESS));
+            Task update = new Task("updated" + i, "desc", DONE);
+            update.setId(task.getId());
+            taskDao.updateTask(update);
+        }
+        assertThat(batches.get()).isEqualTo(1);
+        assertThat(updates.get()).isEqualTo(10);
+        assertThat(((WriteBehindTaskDao) taskDao).getPendingCount()).isZero();
+    }
+
+    @Test
+    void whenIntervalPassedThenFlushedInBackground() throws Exception {
+        WriteBehindOptions options = new WriteBehindOptions();
+        options.setFlushInterval(Duration.ofMillis(20));
+        try (WriteBehindTaskDao writeBehind = new WriteBehindTaskDao(storage, options)) {
+            writeBehind.addTask(task1);
+            Task update = new Task("updated", "desc", DONE);
+            update.setId(task1.getId());
+            writeBehind.updateTask(update);
+            long deadline = System.currentTimeMillis() + 5000;
+            while (writeBehind.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+        }
+    }
+
+    @Test
+    void whenCloseThenPendingUpdatesWritten() throws Exception {
+        WriteBehindTaskDao writeBehind = new WriteBehindTaskDao(storage);
+        writeBehind.addTask(task1);
+        Task update = new Task("updated", "desc", DONE);
+        update.setId(task1.getId());
+        writeBehind.updateTask(update);
+        writeBehind.close();
+        assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("updated");
+    }
+
+    @Test
+    void whenSubtaskUpdatePendingThenEpicReadsFlushFirst() {
+        taskDao.addEpic(epic1);
+        taskDao.addSubtask(subtask1);
+        Subtask update = new Subtask("subtask1", "desc", DONE, epic1);
+        update.setId(subtask1.getId());
+        taskDao.updateSubtask(update);
+        assertThat(storage.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(1, 0, 0));
+        assertThat(taskDao.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(0, 0, 1));
+        assertThat(taskDao.getEpic(epic1.getId()).get().getStatus()).isEqualTo(DONE);
+    }
+
+    @Test
+    void whenDeleteTaskThenPendingUpdateDropped() {
+        taskDao.addTask(task1);
+        Task update = new Task("updated", "desc", DONE);
+        update.setId(task1.getId());
+        taskDao.updateTask(update);
+        assertThat(taskDao.deleteTask(task1.getId())).map(Task::getName).isEqualTo(Optional.of("task1"));
+        assertThat(((WriteBehindTaskDao) taskDao).getPendingCount()).isZero();
+        assertThat(taskDao.getTask(task1.getId())).isEmpty();
+    }
+
+    @Test
+    void whenUpdatesCommittedInTransactionsThenBufferedAndCoalesced() {
+        WriteBehindTaskDao writeBehind = (WriteBehindTaskDao) taskDao;
+        writeBehind.addTask(task1);
+        for (int i = 1; i <= 3; i++) {
+            Task update = new Task("update" + i, "desc", DONE);
+            update.setId(task1.getId());
+            writeBehind.begin();
+            writeBehind.updateTask(update);
+            assertThat(writeBehind.getTask(task1.getId()).get().getName()).isEqualTo("update" + i);
+            writeBehind.commit();
+        }
+        assertThat(writeBehind.getPendingCount()).isEqualTo(1);
+        assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("task1");
+        writeBehind.flush();
+        assertThat(batches.get()).isEqualTo(1);
+        assertThat(updates.get()).isEqualTo(1);
+        assertThat(storage.getTask(task1.getId()).get().getName()).isEqualTo("update3");
+    }
+
+    @Test
+    void whenTransactionRolledBackThenItsUpdatesDiscarded() {
+        WriteBehindTaskDao writeBehind = (WriteBehindTaskDao) taskDao;
+        writeBehind.addTask(task1);
+        Task update = new Task("updated", "desc", DONE);
+        update.setId(task1.getId());
+        writeBehind.begin();
+        writeBehind.updateTask(update);
+        writeBehind.rollback();
+        assertThat(writeBehind.getPendingCount()).isZero();
+        assertThat(writeBehind.getTask(task1.getId()).get().getName()).isEqualTo("task1");
+    }
+
+    @Test
+    void whenEpicReadInTransactionThenStagedSubtaskUpdatesVisibleAndRolledBack() {
+        WriteBehindTaskDao writeBehind = (WriteBehindTaskDao) taskDao;
+        writeBehind.addEpic(epic1);
+        writeBehind.addSubtask(subtask1);
+        Subtask update = new Subtask("subtask1", "desc", DONE, epic1);
+        update.setId(subtask1.getId());
+        writeBehind.begin();
+        writeBehind.updateSubtask(update);
+        assertThat(writeBehind.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(0, 0, 1));
+        writeBehind.rollback();
+        assertThat(writeBehind.getPendingCount()).isZero();
+        assertThat(writeBehind.getEpicProgress(epic1.getId())).isEqualTo(new EpicProgress(1, 0, 0));
+    }
+
+    @Test
+    void whenServiceUpdatesOneTaskSeveralTimesThenOneFlush() {
+        WriteBehindTaskDao writeBehind = (WriteBehindTaskDao) taskDao;
+        TaskService service = new TaskServiceImpl(writeBehind,
+                new HistoryServiceImpl(new InMemoryHistoryDao()), new TaskValidator());
+        service.addEpic(epic1);
+        service.addSubtask(subtask1);
+        Subtask update = null;
+        for (int i = 1; i <= 5; i++) {
+            update = new Subtask("update" + i, "desc", i % 2 == 0 ? IN_PROGRESS : DONE, epic1);
+            update.setId(subtask1.getId());
+            service.updateSubtask(update);
+        }
+        assertThat(batches.get()).isZero();
+        assertThat(writeBehind.getPendingCount()).isEqualTo(1);
+        writeBehind.flush();
+        assertThat(batches.get()).isEqualTo(1);
+        assertThat(updates.get()).isEqualTo(1);
+        assertThat(storage.getSubtask(subtask1.getId())).contains(update);
+        assertThat(storage.getEpic(epic1.getId()).get().getStatus()).isEqualTo(DONE);
+    }
+}
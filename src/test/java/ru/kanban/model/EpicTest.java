@@ -97,4 +97,37 @@ class EpicTest {
         anotherEpic.setId(3);
         assertThat(firstEpic).isNotEqualTo(anotherEpic);
     }
-}
\ No newline at end of file
+
+    @Test
+    void whenSubtaskStatusChangedThenEpicCountersAndStatusUpdated() {
+        firstSubtask.setId(1);
+        secondSubtask.setId(2);
+        firstEpic.addSubtask(firstSubtask);
+        firstEpic.addSubtask(secondSubtask);
+        firstSubtask.setStatus(Status.DONE);
+        assertThat(firstEpic.getProgress()).isEqualTo(new EpicProgress(1, 0, 1));
+        assertThat(firstEpic.getStatus()).isEqualTo(Status.IN_PROGRESS);
+        secondSubtask.setStatus(Status.DONE);
+        assertThat(firstEpic.getStatus()).isEqualTo(Status.DONE);
+        assertThat(firstEpic.getProgress().percent()).isEqualTo(100);
+    }
+
+    @Test
+    void whenSubtaskReplacedOrRemovedThenEpicCountersUpdated() {
+        firstSubtask.setId(1);
+        secondSubtask.setId(2);
+        firstEpic.addSubtask(firstSubtask);
+        firstEpic.addSubtask(secondSubtask);
+        Subtask replacement = new Subtask("First subtask", "Updated", Status.IN_PROGRESS, firstEpic);
+        replacement.setId(1);
+        firstEpic.replaceSubtask(replacement);
+        assertThat(firstEpic.getProgress()).isEqualTo(new EpicProgress(1, 1, 0));
+        firstSubtask.setStatus(Status.DONE);
+        assertThat(firstEpic.getProgress()).isEqualTo(new EpicProgress(1, 1, 0));
+        firstEpic.removeSubtask(secondSubtask);
+        assertThat(firstEpic.getProgress()).isEqualTo(new EpicProgress(0, 1, 0));
+        firstEpic.clearSubtasks();
+        assertThat(firstEpic.getProgress()).isEqualTo(EpicProgress.EMPTY);
+        assertThat(firstEpic.getStatus()).isEqualTo(Status.NEW);
+    }
+}
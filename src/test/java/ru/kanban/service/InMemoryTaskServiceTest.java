@@ -10,8 +10,8 @@ public class InMemoryTaskServiceTest extends TaskServiceTest {
 
     @Override
     TaskService createService() {
-        HistoryDao historyDao = new InMemoryHistoryDao();
         TaskDao taskDao = new InMemoryTaskDao();
+        HistoryDao historyDao = new InMemoryHistoryDao(taskDao);
         HistoryService historyService = new HistoryServiceImpl(historyDao);
         return new TaskServiceImpl(taskDao, historyService, new TaskValidator());
     }
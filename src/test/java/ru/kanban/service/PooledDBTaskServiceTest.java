@@ -0,0 +1,90 @@
+package ru.kanban.service;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.*;
+import ru.kanban.configurations.PoolOptions;
+import ru.kanban.dao.DbHistoryDao;
+import ru.kanban.dao.DbTaskDao;
+import ru.kanban.model.Task;
+import ru.kanban.utils.ConnectionPool;
+import ru.kanban.validator.TaskValidator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.kanban.model.Status.NEW;
+
+public class PooledDBTaskServiceTest extends TaskServiceTest {
+    private static ConnectionPool pool;
+
+    @BeforeAll
+    static void initPool() {
+        try (InputStream in = TaskService.class.getClassLoader().getResourceAsStream("db/test.properties")) {
+            Properties config = new Properties();
+            config.load(in);
+            PoolOptions options = new PoolOptions();
+            options.setMaxSize(4);
+            pool = new ConnectionPool(
+                    config.getProperty("url"),
+                    config.getProperty("username"),
+                    config.getProperty("password"),
+                    options);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @AfterAll
+    static void close() {
+        pool.close();
+    }
+
+    @BeforeEach
+    void wipeTable() throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement deleteFromTasks = connection.prepareStatement("delete from tasks");
+             PreparedStatement deleteFromHistory = connection.prepareStatement("delete from history")) {
+            deleteFromTasks.execute();
+            deleteFromHistory.execute();
+        }
+    }
+
+    @AfterEach
+    void checkConnectionsReturned() {
+        assertThat(pool.getActiveCount()).isZero();
+    }
+
+    @Override
+    TaskService createService() {
+        HistoryService historyService = new HistoryServiceImpl(new DbHistoryDao(pool));
+        return new TaskServiceImpl(new DbTaskDao(pool), historyService, new TaskValidator());
+    }
+
+    @Test
+    void whenManyThreadsUseServiceThenAllOperationsSucceed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Task>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            int number = i;
+            futures.add(executor.submit(() -> {
+                Task task = taskService.addTask(new Task("task" + number, "desc", NEW));
+                return taskService.getTask(task.getId());
+            }));
+        }
+        List<Task> added = new ArrayList<>();
+        for (Future<Task> future : futures) {
+            added.add(future.get());
+        }
+        executor.shutdown();
+
+        assertThat(taskService.getTasks()).containsExactlyInAnyOrderElementsOf(added);
+        assertThat(taskService.getHistory()).hasSize(10);
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import ru.kanban.model.Epic;
+import ru.kanban.model.EpicProgress;
 import ru.kanban.model.Subtask;
 import ru.kanban.model.Task;
 
@@ -319,9 +320,14 @@ public abstract class TaskServiceTest {
         taskService.getEpics();
         taskService.getSubtasks();
         taskService.deleteAllSubtasks();
+        Epic expectedEpic1 = new Epic(epic1.getName(), epic1.getDescription(), NEW);
+        expectedEpic1.setId(epic1.getId());
+        Epic expectedEpic2 = new Epic(epic2.getName(), epic2.getDescription(), NEW);
+        expectedEpic2.setId(epic2.getId());
         assertThat(taskService.getSubtasks()).isEmpty();
         assertThat(taskService.getHistory()).doesNotContain(subtask1, subtask2);
-        assertThat(taskService.getHistory()).containsExactly(task1, task2, task3, epic1, epic2);
+        assertThat(taskService.getHistory()).containsExactly(task1, task2, task3, expectedEpic1, expectedEpic2);
+        assertThat(taskService.getEpics()).allSatisfy(epic -> assertThat(epic.getSubtasks()).isEmpty());
         assertThat(taskService.getTasks()).containsExactly(task1, task2, task3);
     }
 
@@ -355,6 +361,117 @@ public abstract class TaskServiceTest {
         taskService.updateSubtask(updated);
         assertThat(taskService.getHistory()).isEmpty();
     }
-}
 
+    @Test
+    @DisplayName("Тест пакетного добавления подзадач с пересчетом статусов эпиков")
+    void whenAddSubtasksThenEachEpicStatusRenewed() {
+        taskService.addEpic(epic1);
+        taskService.addEpic(epic2);
+        Subtask done = new Subtask("done", "desc", DONE, epic1);
+        Subtask inProgress = new Subtask("in progress", "desc", IN_PROGRESS, epic2);
+        Subtask doneToo = new Subtask("done too", "desc", DONE, epic1);
+        List<Subtask> added = taskService.addSubtasks(List.of(done, inProgress, doneToo));
+        assertThat(added).extracting(Subtask::getId).doesNotHaveDuplicates();
+        assertThat(taskService.getEpic(epic1.getId()).getStatus()).isEqualTo(DONE);
+        assertThat(taskService.getEpic(epic2.getId()).getStatus()).isEqualTo(IN_PROGRESS);
+    }
+
+    @Test
+    @DisplayName("Тест на выброс исключения при пакетном добавлении подзадач без эпика")
+    void whenAddSubtasksAndEpicMissingThenTaskNotFoundExceptionThrown() {
+        taskService.addEpic(epic1);
+        assertThatThrownBy(() -> taskService.addSubtasks(List.of(subtask1, subtask2)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("EPIC with id: " + epic2.getId() + " not found");
+    }
+
+    @Test
+    @DisplayName("Тест пакетного добавления, обновления и удаления задач")
+    void whenBatchTasksThenServiceAndHistoryUpdated() {
+        taskService.addTasks(List.of(task1, task2, task3));
+        taskService.getTasks();
+        Task updated = new Task("updated", "desc", DONE);
+        updated.setId(task2.getId());
+
+        taskService.updateTasks(List.of(updated));
+        List<Task> deleted = taskService.deleteTasks(task1.getId(), task1.getId());
+
+        assertThat(deleted).containsExactly(task1);
+        assertThat(taskService.getHistory()).containsExactly(task3);
+        assertThat(taskService.getTask(task2.getId()).getName()).isEqualTo("updated");
+        assertThat(taskService.getTasks()).hasSize(2);
+    }
+
+    @Test
+    @DisplayName("Тест на выброс исключения при пакетном обновлении несуществующей задачи")
+    void whenUpdateTasksWithIllegalIdThenTaskNotFoundThrown() {
+        taskService.addTask(task1);
+        Task missing = new Task("missing", "desc", NEW);
+        missing.setId(666);
+        assertThatThrownBy(() -> taskService.updateTasks(List.of(missing)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("TASK with ids: [666] not found");
+        assertThatThrownBy(() -> taskService.deleteTasks(task1.getId(), 666))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("TASK with ids: [666] not found");
+    }
+
+    @Test
+    @DisplayName("Тест на неизменность пакета задач, если одна из задач пакета не найдена")
+    void whenBatchContainsIllegalIdThenNoTaskChanged() {
+        taskService.addTask(task1);
+        Task updated = new Task("updated", "desc", DONE);
+        updated.setId(task1.getId());
+        Task missing = new Task("missing", "desc", NEW);
+        missing.setId(666);
+        assertThatThrownBy(() -> taskService.updateTasks(List.of(updated, missing)))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("TASK with ids: [666] not found");
+        assertThatThrownBy(() -> taskService.deleteTasks(task1.getId(), 666))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("TASK with ids: [666] not found");
+        Task stored = taskService.getTask(task1.getId());
+        assertThat(stored.getName()).isEqualTo("task1");
+        assertThat(stored.getStatus()).isEqualTo(task1.getStatus());
+    }
+
+    @Test
+    @DisplayName("Тест постраничного чтения задач с попаданием страницы в историю")
+    void whenGetTasksByPageThenPageAddedToHistory() {
+        taskService.addTasks(List.of(task1, task2, task3));
+        List<Task> page = taskService.getTasks(task1.getId(), 1);
+        assertThat(page).containsExactly(task2);
+        assertThat(taskService.getHistory()).containsExactly(task2);
+        assertThat(taskService.getTasks(task3.getId(), 10)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Тест на выброс исключения при некорректных параметрах страницы")
+    void whenIllegalPageThenIllegalArgumentExceptionThrown() {
+        assertThatThrownBy(() -> taskService.getTasks(-1, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Page cursor can't be negative");
+        assertThatThrownBy(() -> taskService.getSubtasks(0, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Page limit must be positive");
+    }
 
+    @Test
+    @DisplayName("Тест счётчиков подзадач эпика и процента выполнения")
+    void whenSubtaskDoneThenEpicProgressUpdated() {
+        Subtask subtask3 = new Subtask("subtask3", "desc", NEW, epic1);
+        taskService.addEpic(epic1);
+        taskService.addSubtask(subtask1);
+        taskService.addSubtask(subtask3);
+        Subtask updated = new Subtask("subtask1", "desc", DONE, epic1);
+        updated.setId(subtask1.getId());
+        taskService.updateSubtask(updated);
+        EpicProgress progress = taskService.getEpicProgress(epic1.getId());
+        assertThat(progress.total()).isEqualTo(2);
+        assertThat(progress.percent()).isEqualTo(50);
+        assertThat(taskService.getEpic(epic1.getId()).getStatus()).isEqualTo(IN_PROGRESS);
+        assertThatThrownBy(() -> taskService.getEpicProgress(666))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("EPIC with id: 666 not found");
+    }
+}
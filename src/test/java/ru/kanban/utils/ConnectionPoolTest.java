@@ -0,0 +1,156 @@
+package ru.kanban.utils;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.PoolOptions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConnectionPoolTest {
+    private static Properties config;
+    private final AtomicInteger created = new AtomicInteger();
+    private ConnectionPool pool;
+
+    @BeforeAll
+    static void loadConfig() throws Exception {
+        try (InputStream in = ConnectionPoolTest.class.getClassLoader().getResourceAsStream("db/test.properties")) {
+            config = new Properties();
+            config.load(in);
+        }
+    }
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    private ConnectionPool createPool(PoolOptions options) {
+        pool = new ConnectionPool(() -> {
+            created.incrementAndGet();
+            return DriverManager.getConnection(
+                    config.getProperty("url"),
+                    config.getProperty("username"),
+                    config.getProperty("password"));
+        }, options);
+        return pool;
+    }
+
+    @Test
+    void whenConnectionClosedThenItIsReused() throws SQLException {
+        createPool(new PoolOptions());
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+
+        assertThat(created).hasValue(1);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+        assertThat(pool.getActiveCount()).isZero();
+    }
+
+    @Test
+    void whenPoolExhaustedThenAcquireTimesOut() throws SQLException {
+        PoolOptions options = new PoolOptions();
+        options.setMaxSize(1);
+        options.setAcquireTimeout(Duration.ofMillis(100));
+        createPool(options);
+
+        try (Connection ignored = pool.getConnection()) {
+            assertThatThrownBy(() -> pool.getConnection())
+                    .isInstanceOf(SQLTransientConnectionException.class)
+                    .hasMessageContaining("Connection acquire timeout");
+        }
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.isClosed()).isFalse();
+        }
+    }
+
+    @Test
+    void whenConnectionReturnedThenStateIsReset() throws SQLException {
+        createPool(new PoolOptions());
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+            connection.setReadOnly(true);
+        }
+
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+            assertThat(connection.getTransactionIsolation()).isEqualTo(Connection.TRANSACTION_READ_COMMITTED);
+            assertThat(connection.isReadOnly()).isFalse();
+        }
+        assertThat(created).hasValue(1);
+    }
+
+    @Test
+    void whenIdleConnectionIsBrokenThenItIsReplaced() throws SQLException {
+        PoolOptions options = new PoolOptions();
+        options.setValidationInterval(Duration.ZERO);
+        createPool(options);
+        try (Connection connection = pool.getConnection()) {
+            connection.unwrap(Connection.class).close();
+        }
+        assertThat(pool.getIdleCount()).isZero();
+
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.isValid(1)).isTrue();
+        }
+        assertThat(created).hasValue(2);
+    }
+
+    @Test
+    void whenConnectionIdleTooLongThenItIsEvicted() throws Exception {
+        PoolOptions options = new PoolOptions();
+        options.setIdleTimeout(Duration.ofMillis(100));
+        createPool(options);
+        pool.getConnection().close();
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+
+        Thread.sleep(500);
+
+        assertThat(pool.getIdleCount()).isZero();
+    }
+
+    @Test
+    void whenTransactionActiveThenSameConnectionIsUsedUntilCommit() throws SQLException {
+        createPool(new PoolOptions());
+        pool.begin();
+        try (Connection first = pool.getConnection(); Connection second = pool.getConnection()) {
+            assertThat(first.unwrap(Connection.class)).isSameAs(second.unwrap(Connection.class));
+            assertThat(first.getAutoCommit()).isFalse();
+        }
+        assertThat(pool.getActiveCount()).isEqualTo(1);
+        pool.commit();
+
+        assertThat(pool.getActiveCount()).isZero();
+        try (Connection connection = pool.getConnection()) {
+            assertThat(connection.getAutoCommit()).isTrue();
+        }
+    }
+
+    @Test
+    void whenClosedConnectionUsedThenException() throws SQLException {
+        createPool(new PoolOptions());
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+
+        assertThat(connection.isClosed()).isTrue();
+        assertThatThrownBy(connection::createStatement)
+                .isInstanceOf(SQLException.class)
+                .hasMessage("Connection is closed");
+        assertThat(pool.getActiveCount()).isZero();
+    }
+}
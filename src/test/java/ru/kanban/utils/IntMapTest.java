@@ -0,0 +1,91 @@
+package ru.kanban.utils;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IntMapTest {
+
+    @Test
+    void whenPutThenGetReturnsValueAndReplacesExisting() {
+        IntMap<String> map = new IntMap<>();
+        assertThat(map.put(1, "one")).isNull();
+        assertThat(map.put(1, "uno")).isEqualTo("one");
+        assertThat(map.get(1)).isEqualTo("uno");
+        assertThat(map.get(2)).isNull();
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenPutNullThenException() {
+        assertThatThrownBy(() -> new IntMap<String>().put(1, null))
+                .isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    void whenRemoveThenOtherKeysOfProbeChainStillFound() {
+        IntMap<Integer> map = new IntMap<>();
+        for (int i = 1; i <= 1000; i++) {
+            map.put(i, i);
+        }
+        for (int i = 1; i <= 1000; i += 2) {
+            assertThat(map.remove(i)).isEqualTo(i);
+        }
+        assertThat(map.remove(1)).isNull();
+        for (int i = 2; i <= 1000; i += 2) {
+            assertThat(map.get(i)).isEqualTo(i);
+        }
+        assertThat(map.size()).isEqualTo(500);
+    }
+
+    @Test
+    void whenKeysAddedOutOfOrderThenValuesAndPagesOrderedByKey() {
+        IntMap<Integer> map = new IntMap<>();
+        for (int key : new int[]{5, 3, 9, 1, 7}) {
+            map.put(key, key);
+        }
+        assertThat(map.values()).containsExactly(1, 3, 5, 7, 9);
+        assertThat(map.page(3, 2)).containsExactly(5, 7);
+        List<Integer> visited = new ArrayList<>();
+        map.forEach((key, value) -> visited.add(key));
+        assertThat(visited).containsExactly(5, 3, 9, 1, 7);
+    }
+
+    @Test
+    void whenClearThenEmptyAndReusable() {
+        IntMap<Integer> map = new IntMap<>();
+        map.put(1, 1);
+        map.put(2, 2);
+        map.clear();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(1)).isNull();
+        map.put(1, 10);
+        assertThat(map.values()).containsExactly(10);
+    }
+
+    @Test
+    void whenRandomOperationsThenSameAsTreeMap() {
+        IntMap<Integer> map = new IntMap<>();
+        TreeMap<Integer, Integer> expected = new TreeMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2000) - 100;
+            switch (random.nextInt(3)) {
+                case 0, 1 -> assertThat(map.put(key, i)).isEqualTo(expected.put(key, i));
+                default -> assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            }
+            if (i % 10_000 == 0) {
+                int after = random.nextInt(2000) - 100;
+                assertThat(map.page(after, 50))
+                        .containsExactlyElementsOf(expected.tailMap(after, false).values().stream().limit(50).toList());
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(map.values()).containsExactlyElementsOf(expected.values());
+        for (int key = -100; key < 1900; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package ru.kanban.utils;
+
+import java.util.*;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LruRingTest {
+
+    @Test
+    void whenCapacityIsNotPositiveThenException() {
+        assertThatThrownBy(() -> new LruRing<String>(0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenPutExistingKeyThenMovedToMostRecent() {
+        LruRing<String> ring = new LruRing<>(3);
+        ring.put(1, "a");
+        ring.put(2, "b");
+        ring.put(3, "c");
+        ring.put(1, "a2");
+        assertThat(ring.toList()).containsExactly("b", "c", "a2");
+    }
+
+    @Test
+    void whenFullThenOldestEvicted() {
+        LruRing<String> ring = new LruRing<>(2);
+        ring.put(1, "a");
+        ring.put(2, "b");
+        assertThat(ring.put(3, "c")).isEqualTo("a");
+        assertThat(ring.contains(1)).isFalse();
+        assertThat(ring.toList()).containsExactly("b", "c");
+    }
+
+    @Test
+    void whenRemoveThenOrderOfOthersKept() {
+        LruRing<String> ring = new LruRing<>(4);
+        ring.put(1, "a");
+        ring.put(2, "b");
+        ring.put(3, "c");
+        assertThat(ring.remove(1)).isEqualTo("a");
+        assertThat(ring.remove(1)).isNull();
+        ring.put(4, "d");
+        assertThat(ring.toList()).containsExactly("b", "c", "d");
+        ring.clear();
+        assertThat(ring.size()).isZero();
+        assertThat(ring.toList()).isEmpty();
+    }
+
+    @Test
+    void whenRandomOperationsThenSameAsLinkedHashMapLru() {
+        int capacity = 100;
+        LruRing<Integer> ring = new LruRing<>(capacity);
+        Map<Integer, Integer> expected = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                assertThat(ring.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                ring.put(key, i);
+                expected.put(key, i);
+            }
+        }
+        assertThat(ring.size()).isEqualTo(expected.size());
+        assertThat(ring.toList()).containsExactlyElementsOf(expected.values());
+    }
+
+    @Test
+    void whenRemoveGroupThenOnlyThatGroupRemoved() {
+        LruRing<String> ring = new LruRing<>(4, 2);
+        ring.put(1, "a", 0);
+        ring.put(2, "b", 1);
+        ring.put(3, "c", 0);
+        ring.put(4, "d", 1);
+        ring.put(2, "b2", 0);
+        List<Integer> removed = new ArrayList<>();
+        assertThat(ring.removeGroup(0, removed::add)).isEqualTo(3);
+        assertThat(removed).containsExactly(1, 3, 2);
+        assertThat(ring.toList()).containsExactly("d");
+        assertThatThrownBy(() -> ring.put(5, "e", 2)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void whenRandomOperationsWithGroupsThenSameAsFilteredModel() {
+        int capacity = 50;
+        LruRing<Integer> ring = new LruRing<>(capacity, 3);
+        Map<Integer, Integer> expected = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+        Random random = new Random(11);
+        for (int i = 0; i < 50_000; i++) {
+            int key = random.nextInt(150);
+            int operation = random.nextInt(20);
+            if (operation == 0) {
+                int group = random.nextInt(3);
+                List<Integer> removed = new ArrayList<>();
+                ring.removeGroup(group, removed::add);
+                List<Integer> inGroup = new ArrayList<>();
+                expected.forEach((k, g) -> {
+                    if (g == group) {
+                        inGroup.add(k);
+                    }
+                });
+                assertThat(removed).containsExactlyElementsOf(inGroup);
+                inGroup.forEach(expected::remove);
+            } else if (operation < 5) {
+                assertThat(ring.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                int group = random.nextInt(3);
+                ring.put(key, group, group);
+                expected.put(key, group);
+            }
+        }
+        assertThat(ring.toList()).containsExactlyElementsOf(expected.values());
+    }
+}
@@ -0,0 +1,129 @@
+package ru.kanban.utils;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.kanban.configurations.PoolOptions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatementCacheTest {
+    private Connection connection;
+    private StatementCache cache;
+
+    @BeforeEach
+    void open() throws Exception {
+        try (InputStream in = StatementCacheTest.class.getClassLoader().getResourceAsStream("db/test.properties")) {
+            Properties config = new Properties();
+            config.load(in);
+            connection = DriverManager.getConnection(
+                    config.getProperty("url"),
+                    config.getProperty("username"),
+                    config.getProperty("password"));
+        }
+        cache = new StatementCache(2);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        cache.close();
+        connection.close();
+    }
+
+    private PreparedStatement prepare(String sql) throws SQLException {
+        return cache.prepare(connection, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    @Test
+    void whenSameSqlPreparedAgainThenStatementIsReused() throws SQLException {
+        PreparedStatement first = prepare("select ?");
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.setInt(1, 1);
+        first.executeQuery().next();
+        first.close();
+
+        try (PreparedStatement second = prepare("select ?")) {
+            assertThat(second.unwrap(PreparedStatement.class)).isSameAs(physical);
+            second.setInt(1, 2);
+            ResultSet resultSet = second.executeQuery();
+            resultSet.next();
+            assertThat(resultSet.getInt(1)).isEqualTo(2);
+        }
+        assertThat(cache.getHits()).isEqualTo(1);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void whenStatementInUseThenNestedPrepareGetsNewStatement() throws SQLException {
+        try (PreparedStatement outer = prepare("select 1");
+             PreparedStatement nested = prepare("select 1")) {
+            assertThat(nested.unwrap(PreparedStatement.class)).isNotSameAs(outer.unwrap(PreparedStatement.class));
+        }
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void whenCacheIsFullThenLeastRecentlyUsedIsClosed() throws SQLException {
+        PreparedStatement first = prepare("select 1");
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        first.close();
+        prepare("select 2").close();
+        prepare("select 1").close();
+        PreparedStatement second = prepare("select 2").unwrap(PreparedStatement.class);
+        prepare("select 3").close();
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(physical.isClosed()).isTrue();
+        assertThat(second.isClosed()).isFalse();
+    }
+
+    @Test
+    void whenStatementExecutedBatchThenItIsNotReused() throws SQLException {
+        PreparedStatement batch = prepare("select ?");
+        PreparedStatement physical = batch.unwrap(PreparedStatement.class);
+        batch.setInt(1, 1);
+        batch.addBatch();
+        batch.close();
+
+        assertThat(physical.isClosed()).isTrue();
+        assertThat(cache.size()).isZero();
+        try (PreparedStatement next = prepare("select ?")) {
+            assertThat(next.unwrap(PreparedStatement.class)).isNotSameAs(physical);
+        }
+    }
+
+    @Test
+    void whenStatementReturnedThenItCantBeUsed() throws SQLException {
+        PreparedStatement statement = prepare("select 1");
+        statement.close();
+
+        assertThat(statement.isClosed()).isTrue();
+        assertThatThrownBy(statement::executeQuery)
+                .isInstanceOf(SQLException.class)
+                .hasMessage("Statement is closed");
+    }
+
+    @Test
+    void whenPoolConnectionPreparesStatementThenItIsCached() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool(() -> connection, new PoolOptions())) {
+            PreparedStatement physical;
+            try (Connection pooled = pool.getConnection();
+                 PreparedStatement statement = pooled.prepareStatement("select 1")) {
+                physical = statement.unwrap(PreparedStatement.class);
+            }
+            try (Connection pooled = pool.getConnection();
+                 PreparedStatement statement = pooled.prepareStatement("select 1")) {
+                assertThat(statement.unwrap(PreparedStatement.class)).isSameAs(physical);
+            }
+        }
+    }
+}